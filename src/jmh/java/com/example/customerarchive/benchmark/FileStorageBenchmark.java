@@ -0,0 +1,120 @@
+package com.example.customerarchive.benchmark;
+
+import com.example.customerarchive.model.File;
+import com.example.customerarchive.repository.FileRepository;
+import com.example.customerarchive.repository.StoredBlobRepository;
+import com.example.customerarchive.service.CompressionPolicy;
+import com.example.customerarchive.service.FileStorageServiceImpl;
+import com.example.customerarchive.service.LocalStorageBackend;
+import com.example.customerarchive.service.PreviewService;
+import com.example.customerarchive.service.SegmentStore;
+import com.example.customerarchive.service.StorageLayout;
+import com.example.customerarchive.service.StorageReclaimer;
+import com.example.customerarchive.service.StoredFile;
+import com.example.customerarchive.service.StreamingFileWriter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.Resource;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * {@link FileStorageServiceImpl} against a temporary upload-dir, with the repositories mocked out so only
+ * hashing, compression, file I/O and the rename into the sharded layout are measured. Random content is
+ * stored as it is; CSV-like text takes the gzip path.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FileStorageBenchmark {
+
+    @Param({"1024", "65536", "1048576", "16777216"})
+    private int size;
+
+    @Param({"random", "text"})
+    private String content;
+
+    private byte[] body;
+    private Path directory;
+    private FileStorageServiceImpl fileStorageService;
+    private File storedFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        body = "text".equals(content) ? csv(size) : random(size);
+        directory = Files.createTempDirectory("storage-benchmark");
+
+        StoredBlobRepository storedBlobRepository = mock(StoredBlobRepository.class);
+        // Every store takes the new-blob path: write, hash, create shard directories and rename.
+        when(storedBlobRepository.addReference(anyString(), anyLong())).thenReturn(true);
+        StorageLayout storageLayout = new StorageLayout(directory.toString(), 2, 2);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        LocalStorageBackend storageBackend = new LocalStorageBackend(storageLayout, meterRegistry,
+                List.of(directory.toString()), DataSize.ofBytes(0));
+        fileStorageService = new FileStorageServiceImpl(storageBackend,
+                mock(FileRepository.class), storedBlobRepository, new StreamingFileWriter(65536),
+                new CompressionPolicy(true, List.of("text/plain"), 1.5, 6, 4096), mock(PreviewService.class),
+                mock(StorageReclaimer.class), mock(SegmentStore.class), meterRegistry);
+
+        StoredFile stored = fileStorageService.storeFile(new ByteArrayInputStream(body), "existing.bin");
+        storedFile = new File();
+        storedFile.setFileId(1L);
+        storedFile.setFileName(stored.getFileName());
+        storedFile.setFilePath(stored.getPath().toString());
+        storedFile.setChecksum(stored.getChecksum());
+        storedFile.setFileSize(stored.getSize());
+        storedFile.setCodec(stored.getCodec());
+        storedFile.setStorageRoot(stored.getStorageRoot());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public StoredFile storeFile() {
+        return fileStorageService.storeFile(new ByteArrayInputStream(body), "upload.bin");
+    }
+
+    @Benchmark
+    public Resource loadFileAsResource() {
+        return fileStorageService.loadFileAsResource(storedFile);
+    }
+
+    private static byte[] random(int size) {
+        byte[] bytes = new byte[size];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] csv(int size) {
+        Random random = new Random(42);
+        StringBuilder text = new StringBuilder(size + 64);
+        for (int row = 0; text.length() < size; row++) {
+            text.append(row).append(",customer-").append(random.nextInt(1000)).append(",")
+                    .append(random.nextInt(100_000) / 100.0).append(",2024-01-").append(1 + random.nextInt(28)).append("\n");
+        }
+        return text.substring(0, size).getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.customerarchive.benchmark;
+
+import com.example.customerarchive.security.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request JWT cost. {@code uncachedRequest} replays what one authenticated request used to do:
+ * four signature verifications, each with a freshly decoded key. {@code cachedRequest} is the
+ * filter path after the claims cache: one lookup for the subject plus {@code validateToken}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtRequestBenchmark {
+    private static final String SECRET = "sfFJSyaAScLIIUO0prtr+2an0Xuhdae0+MkJu0CAsrE=";
+
+    private JwtUtil jwtUtil;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtUtil = new JwtUtil(10_000, new SimpleMeterRegistry());
+        token = jwtUtil.generateToken("benchmark-user");
+    }
+
+    @Benchmark
+    public boolean uncachedRequest() {
+        // filter: extractUsername, then validateToken: extractUsername + isTokenExpired
+        String username = parse(token).getSubject();
+        boolean valid = parse(token).getSubject().equals(username)
+                && !parse(token).getExpiration().before(new Date());
+        // controller: jwtUtil.extractUsername(jwtUtil.resolveToken(request))
+        return valid && parse(token).getSubject() != null;
+    }
+
+    @Benchmark
+    public boolean cachedRequest() {
+        String username = jwtUtil.extractAllClaims(token).getSubject();
+        return jwtUtil.validateToken(token, username);
+    }
+
+    private Claims parse(String jwt) {
+        return Jwts.parser()
+                .verifyWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET)))
+                .build()
+                .parseSignedClaims(jwt)
+                .getPayload();
+    }
+}
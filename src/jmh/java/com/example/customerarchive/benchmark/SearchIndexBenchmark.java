@@ -0,0 +1,58 @@
+package com.example.customerarchive.benchmark;
+
+import com.example.customerarchive.dto.SearchResultDto;
+import com.example.customerarchive.service.SearchIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Typeahead queries against one user's partition of {@link SearchIndex}: a short prefix, a two-term prefix
+ * and a misspelled name that only the fuzzy path finds.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchIndexBenchmark {
+    private static final String[] FIRST_NAMES = {"john", "jane", "maria", "mohamed", "wei", "olga", "pedro", "aisha",
+            "lucas", "yuki", "fatima", "david", "sofia", "ahmed", "emma", "noah", "chloe", "ivan", "leila", "omar"};
+    private static final String[] LAST_NAMES = {"smith", "garcia", "mueller", "chen", "kowalski", "silva", "haddad",
+            "nakamura", "johnson", "rossi", "dubois", "novak", "khan", "jensen", "okafor", "petrov", "larsen", "moreau"};
+    private static final String[] FILE_TYPES = {"application/pdf", "image/png", "image/jpeg", "text/plain"};
+
+    @Param({"10000", "50000"})
+    private int customers;
+
+    @Param({"jo", "maria gar", "jhonson"})
+    private String query;
+
+    private SearchIndex searchIndex;
+
+    @Setup
+    public void setUp() {
+        searchIndex = new SearchIndex(3);
+        Random random = new Random(42);
+        long fileId = 1;
+        for (long customerId = 1; customerId <= customers; customerId++) {
+            String first = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+            String last = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+            // Outside a transaction the index applies changes immediately.
+            searchIndex.customerSaved("user", customerId, first + " " + last + " " + customerId,
+                    first + "." + last + customerId + "@example.com");
+            for (int i = 0; i < 2; i++) {
+                String type = FILE_TYPES[random.nextInt(FILE_TYPES.length)];
+                searchIndex.fileSaved(customerId, fileId++, "invoice-" + last + "-" + i + "." + type.substring(type.indexOf('/') + 1), type);
+            }
+        }
+    }
+
+    @Benchmark
+    public List<SearchResultDto> search() {
+        return searchIndex.search("user", query, 20);
+    }
+}
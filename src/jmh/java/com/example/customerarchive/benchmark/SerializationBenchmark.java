@@ -0,0 +1,89 @@
+package com.example.customerarchive.benchmark;
+
+import com.example.customerarchive.dto.CustomerDto;
+import com.example.customerarchive.dto.FileDto;
+import com.example.customerarchive.model.Customer;
+import com.example.customerarchive.model.File;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of customer/file graphs: the entity graph the API used to return, against the
+ * flat DTO lists it returns now.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+    @Param({"10", "100"})
+    private int customers;
+
+    @Param({"0", "10", "100"})
+    private int filesPerCustomer;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private List<Customer> customerGraph;
+    private List<CustomerDto> customerDtos;
+    private List<FileDto> fileDtos;
+
+    @Setup
+    public void setUp() {
+        customerGraph = new ArrayList<>(customers);
+        customerDtos = new ArrayList<>(customers);
+        fileDtos = new ArrayList<>(filesPerCustomer);
+        long fileId = 1;
+        for (long customerId = 1; customerId <= customers; customerId++) {
+            Customer customer = new Customer();
+            customer.setCustomerId(customerId);
+            customer.setName("Customer " + customerId);
+            customer.setEmail("customer" + customerId + "@example.com");
+            Set<File> files = new HashSet<>();
+            for (int i = 0; i < filesPerCustomer; i++) {
+                File file = new File();
+                file.setFileId(fileId++);
+                file.setFileName("scan-" + i + ".pdf");
+                file.setFilePath("/uploads/ab/cd/" + Long.toHexString(file.getFileId()));
+                file.setFileType("application/pdf");
+                file.setFileSize(250_000L);
+                file.setChecksum("0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef");
+                file.setUploadDate(new Date());
+                file.setUpdateDate(new Date());
+                file.setCustomer(customer);
+                files.add(file);
+                if (customerId == 1) {
+                    fileDtos.add(FileDto.from(file));
+                }
+            }
+            customer.setFiles(files);
+            customerGraph.add(customer);
+            customerDtos.add(CustomerDto.from(customer));
+        }
+    }
+
+    @Benchmark
+    public byte[] customerEntityGraph() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(customerGraph);
+    }
+
+    @Benchmark
+    public byte[] customerDtos() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(customerDtos);
+    }
+
+    @Benchmark
+    public byte[] fileDtosForOneCustomer() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(fileDtos);
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.customerarchive.benchmark;
+
+import com.example.customerarchive.service.StreamingFileWriter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Compares the MultipartFile upload path (container spools the body, then it is copied into upload-dir)
+ * with the single-pass StreamingFileWriter.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UploadPipelineBenchmark {
+
+    @Param({"1048576", "67108864"})
+    private int size;
+
+    @Param({"8192", "65536", "1048576"})
+    private int bufferSize;
+
+    private byte[] body;
+    private Path directory;
+    private StreamingFileWriter streamingFileWriter;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        body = new byte[size];
+        new Random(42).nextBytes(body);
+        directory = Files.createTempDirectory("upload-benchmark");
+        streamingFileWriter = new StreamingFileWriter(bufferSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public String multipartSpoolThenCopy() throws Exception {
+        Path spool = directory.resolve("spool.tmp");
+        Path target = directory.resolve("multipart.bin");
+        Files.copy(new ByteArrayInputStream(body), spool, StandardCopyOption.REPLACE_EXISTING);
+        MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+        try (InputStream in = new DigestInputStream(Files.newInputStream(spool), messageDigest)) {
+            Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.delete(spool);
+        Files.delete(target);
+        return HexFormat.of().formatHex(messageDigest.digest());
+    }
+
+    @Benchmark
+    public String singlePassStreaming() throws IOException {
+        Path target = directory.resolve("streamed.bin");
+        String checksum = streamingFileWriter.write(new ByteArrayInputStream(body), target).getChecksum();
+        Files.delete(target);
+        return checksum;
+    }
+}
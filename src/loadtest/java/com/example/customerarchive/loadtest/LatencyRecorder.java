@@ -0,0 +1,164 @@
+package com.example.customerarchive.loadtest;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Raw latency samples per endpoint. Each worker owns one recorder, so recording takes no lock;
+ * the recorders are merged once a stage has finished.
+ */
+class LatencyRecorder {
+    private final Map<String, Samples> samples = new TreeMap<>();
+
+    void record(String endpoint, long nanos, boolean success) {
+        Samples endpointSamples = samples.computeIfAbsent(endpoint, key -> new Samples());
+        if (success) {
+            endpointSamples.add(nanos);
+        } else {
+            endpointSamples.errors++;
+        }
+    }
+
+    void merge(LatencyRecorder other) {
+        other.samples.forEach((endpoint, otherSamples) -> {
+            Samples endpointSamples = samples.computeIfAbsent(endpoint, key -> new Samples());
+            for (int i = 0; i < otherSamples.count; i++) {
+                endpointSamples.add(otherSamples.values[i]);
+            }
+            endpointSamples.errors += otherSamples.errors;
+        });
+    }
+
+    Map<String, Summary> summarize(double seconds) {
+        Map<String, Summary> summaries = new TreeMap<>();
+        Samples total = new Samples();
+        samples.forEach((endpoint, endpointSamples) -> {
+            summaries.put(endpoint, endpointSamples.summarize(seconds));
+            for (int i = 0; i < endpointSamples.count; i++) {
+                total.add(endpointSamples.values[i]);
+            }
+            total.errors += endpointSamples.errors;
+        });
+        summaries.put(LoadTest.TOTAL, total.summarize(seconds));
+        return summaries;
+    }
+
+    private static class Samples {
+        private long[] values = new long[1024];
+        private int count;
+        private long errors;
+
+        void add(long nanos) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = nanos;
+        }
+
+        Summary summarize(double seconds) {
+            long[] sorted = Arrays.copyOf(values, count);
+            Arrays.sort(sorted);
+            Summary summary = new Summary();
+            summary.setRequests(count);
+            summary.setErrors(errors);
+            summary.setThroughput((count + errors) / seconds);
+            summary.setP50(percentile(sorted, 0.50));
+            summary.setP95(percentile(sorted, 0.95));
+            summary.setP99(percentile(sorted, 0.99));
+            summary.setP999(percentile(sorted, 0.999));
+            summary.setMax(sorted.length == 0 ? 0 : toMillis(sorted[sorted.length - 1]));
+            return summary;
+        }
+
+        private static double percentile(long[] sorted, double quantile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(quantile * sorted.length) - 1;
+            return toMillis(sorted[Math.max(index, 0)]);
+        }
+
+        private static double toMillis(long nanos) {
+            return nanos / 1_000_000.0;
+        }
+    }
+
+    /**
+     * Latencies are in milliseconds, throughput in requests per second including errors.
+     */
+    public static class Summary {
+        private long requests;
+        private long errors;
+        private double throughput;
+        private double p50;
+        private double p95;
+        private double p99;
+        private double p999;
+        private double max;
+
+        public long getRequests() {
+            return requests;
+        }
+
+        public void setRequests(long requests) {
+            this.requests = requests;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public void setErrors(long errors) {
+            this.errors = errors;
+        }
+
+        public double getThroughput() {
+            return throughput;
+        }
+
+        public void setThroughput(double throughput) {
+            this.throughput = throughput;
+        }
+
+        public double getP50() {
+            return p50;
+        }
+
+        public void setP50(double p50) {
+            this.p50 = p50;
+        }
+
+        public double getP95() {
+            return p95;
+        }
+
+        public void setP95(double p95) {
+            this.p95 = p95;
+        }
+
+        public double getP99() {
+            return p99;
+        }
+
+        public void setP99(double p99) {
+            this.p99 = p99;
+        }
+
+        public double getP999() {
+            return p999;
+        }
+
+        public void setP999(double p999) {
+            this.p999 = p999;
+        }
+
+        public double getMax() {
+            return max;
+        }
+
+        public void setMax(double max) {
+            this.max = max;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.customerarchive.loadtest;
+
+import com.example.customerarchive.CustomerArchiveApplication;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Boots the application on a random port against in-memory H2 and a temporary upload-dir, seeds users,
+ * customers and files over HTTP, then replays the {@link Operation} mix and reports throughput and
+ * latency percentiles per endpoint.
+ *
+ * <p>Each entry of {@code loadtest.rates} is one stage. A rate of 0 runs closed-loop: every virtual user
+ * sends its next request as soon as the previous one returns. A positive rate (requests per second across
+ * all users) runs open-loop, and latency is measured from the scheduled start, so time spent queueing
+ * behind a slow server is counted instead of hidden.
+ *
+ * <p>Application properties can be overridden as program arguments, e.g.
+ * {@code --spring.threads.virtual.enabled=true}.
+ */
+public class LoadTest {
+    static final String TOTAL = "total";
+
+    private final int users;
+    private final int customersPerUser;
+    private final int filesPerCustomer;
+    private final Duration warmup;
+    private final Duration duration;
+    private final List<Double> rates;
+    private final Path result;
+
+    LoadTest() {
+        users = Integer.getInteger("loadtest.users", 32);
+        customersPerUser = Integer.getInteger("loadtest.customers-per-user", 5);
+        filesPerCustomer = Integer.getInteger("loadtest.files-per-customer", 3);
+        warmup = DurationStyle.detectAndParse(System.getProperty("loadtest.warmup", "10s"));
+        duration = DurationStyle.detectAndParse(System.getProperty("loadtest.duration", "30s"));
+        rates = new ArrayList<>();
+        for (String rate : System.getProperty("loadtest.rates", "0").split(",")) {
+            rates.add(Double.parseDouble(rate.trim()));
+        }
+        result = Path.of(System.getProperty("loadtest.result", "target/loadtest-result.json"));
+    }
+
+    public static void main(String[] args) throws Exception {
+        new LoadTest().run(args);
+    }
+
+    void run(String[] args) throws Exception {
+        Path uploadDir = Files.createTempDirectory("customer-archive-loadtest");
+        ConfigurableApplicationContext context = SpringApplication.run(CustomerArchiveApplication.class,
+                applicationArguments(uploadDir, args));
+        ExecutorService workers = Executors.newFixedThreadPool(users);
+        try {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            ObjectMapper objectMapper = new ObjectMapper();
+            HttpClient httpClient = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .build();
+
+            List<VirtualUser> virtualUsers = new ArrayList<>();
+            for (int i = 0; i < users; i++) {
+                virtualUsers.add(new VirtualUser(httpClient, objectMapper, "http://localhost:" + port,
+                        "load-user-" + i, i, Operation.maxUploadSize()));
+            }
+            List<Future<?>> seeding = new ArrayList<>();
+            for (VirtualUser virtualUser : virtualUsers) {
+                seeding.add(workers.submit(() -> {
+                    virtualUser.seed(customersPerUser, filesPerCustomer);
+                    return null;
+                }));
+            }
+            for (Future<?> future : seeding) {
+                future.get();
+            }
+            System.out.printf("Seeded %d users, %d customers and %d files%n",
+                    users, users * customersPerUser, users * customersPerUser * filesPerCustomer);
+
+            runStage(workers, virtualUsers, rates.get(0), warmup);
+            List<Map<String, Object>> stages = new ArrayList<>();
+            for (double rate : rates) {
+                LatencyRecorder recorder = runStage(workers, virtualUsers, rate, duration);
+                Map<String, LatencyRecorder.Summary> summaries = recorder.summarize(duration.toMillis() / 1000.0);
+                print(rate, summaries);
+                Map<String, Object> stage = new LinkedHashMap<>();
+                stage.put("targetRate", rate);
+                stage.put("endpoints", summaries);
+                stages.add(stage);
+            }
+            writeResult(objectMapper, stages);
+        } finally {
+            workers.shutdownNow();
+            context.close();
+            FileSystemUtils.deleteRecursively(uploadDir);
+        }
+    }
+
+    private String[] applicationArguments(Path uploadDir, String[] args) {
+        List<String> arguments = new ArrayList<>(List.of(
+                "--server.port=0",
+                // Not MODE=MySQL: in that mode H2 can hand out duplicate identity values to concurrent inserts.
+                "--spring.datasource.url=jdbc:h2:mem:loadtest;NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--file.upload-dir=" + uploadDir,
+                "--file.storage.migration.enabled=false",
+                "--spring.jpa.properties.hibernate.generate_statistics=false",
+                // Per-request INFO logging to the console would otherwise dominate the measurements.
+                "--logging.level.com.example.customerarchive=WARN",
+                "--spring.main.banner-mode=off"));
+        arguments.addAll(List.of(args));
+        return arguments.toArray(new String[0]);
+    }
+
+    private LatencyRecorder runStage(ExecutorService workers, List<VirtualUser> virtualUsers, double rate, Duration length)
+            throws Exception {
+        long start = System.nanoTime();
+        long end = start + length.toNanos();
+        // Zero means closed-loop; otherwise each user gets an equal share of the target rate.
+        long interval = rate > 0 ? (long) (virtualUsers.size() * 1_000_000_000L / rate) : 0;
+        List<Future<LatencyRecorder>> futures = new ArrayList<>();
+        for (VirtualUser virtualUser : virtualUsers) {
+            futures.add(workers.submit(() -> drive(virtualUser, start, end, interval)));
+        }
+        LatencyRecorder recorder = new LatencyRecorder();
+        for (Future<LatencyRecorder> future : futures) {
+            recorder.merge(future.get());
+        }
+        return recorder;
+    }
+
+    private LatencyRecorder drive(VirtualUser virtualUser, long start, long end, long interval) {
+        LatencyRecorder recorder = new LatencyRecorder();
+        // Users start at random offsets within one interval, so an open-loop stage does not arrive in bursts.
+        long next = interval > 0 ? start + (long) (virtualUser.random().nextDouble() * interval) : start;
+        while (true) {
+            long now = System.nanoTime();
+            if (interval > 0 && next > now) {
+                LockSupport.parkNanos(next - now);
+                now = System.nanoTime();
+            }
+            long scheduled = interval > 0 ? next : now;
+            if (scheduled >= end || now >= end) {
+                return recorder;
+            }
+            Operation operation = Operation.pick(virtualUser.random());
+            while (!virtualUser.canPerform(operation)) {
+                operation = Operation.pick(virtualUser.random());
+            }
+            boolean success;
+            try {
+                success = virtualUser.perform(operation);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return recorder;
+            } catch (Exception ex) {
+                success = false;
+            }
+            recorder.record(operation.getEndpoint(), System.nanoTime() - scheduled, success);
+            next += interval;
+        }
+    }
+
+    private void print(double rate, Map<String, LatencyRecorder.Summary> summaries) {
+        System.out.println();
+        System.out.println(rate > 0 ? String.format("Target rate %.0f req/s, %s", rate, duration)
+                : String.format("Closed loop, %d users, %s", users, duration));
+        System.out.printf("%-34s %9s %7s %9s %9s %9s %9s %9s %9s%n",
+                "endpoint", "requests", "errors", "req/s", "p50 ms", "p95 ms", "p99 ms", "p999 ms", "max ms");
+        summaries.forEach((endpoint, summary) -> System.out.printf("%-34s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                endpoint, summary.getRequests(), summary.getErrors(), summary.getThroughput(), summary.getP50(),
+                summary.getP95(), summary.getP99(), summary.getP999(), summary.getMax()));
+    }
+
+    private void writeResult(ObjectMapper objectMapper, List<Map<String, Object>> stages) throws Exception {
+        Map<String, Object> settings = new LinkedHashMap<>();
+        settings.put("users", users);
+        settings.put("customersPerUser", customersPerUser);
+        settings.put("filesPerCustomer", filesPerCustomer);
+        settings.put("warmup", warmup.toString());
+        settings.put("duration", duration.toString());
+        Map<String, Object> output = new LinkedHashMap<>();
+        output.put("settings", settings);
+        output.put("stages", stages);
+        if (result.getParent() != null) {
+            Files.createDirectories(result.getParent());
+        }
+        objectMapper.enable(SerializationFeature.INDENT_OUTPUT).writeValue(result.toFile(), output);
+        System.out.println();
+        System.out.println("Results written to " + result.toAbsolutePath());
+    }
+}
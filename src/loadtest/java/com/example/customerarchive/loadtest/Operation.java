@@ -0,0 +1,70 @@
+package com.example.customerarchive.loadtest;
+
+import java.util.Random;
+
+/**
+ * The request mix. Weights are relative: reads dominate, uploads are mostly small and a few large.
+ */
+enum Operation {
+    LOGIN("POST /api/auth/login", 2, 0),
+    LIST_CUSTOMERS("GET /api/customers/getAll", 8, 0),
+    CUSTOMERS_PAGE("GET /api/customers/page", 8, 0),
+    GET_CUSTOMER("GET /api/customers/{id}", 12, 0),
+    ADD_CUSTOMER("POST /api/customers/add", 4, 0),
+    UPDATE_CUSTOMER("PUT /api/customers/{id}", 4, 0),
+    DELETE_CUSTOMER("DELETE /api/customers/{id}", 2, 0),
+    LIST_FILES("GET /files/customer/{id}", 10, 0),
+    FILES_PAGE("GET /files/customer/{id}/page", 8, 0),
+    DOWNLOAD("GET /files/download/{id}", 25, 0),
+    UPLOAD_1KB("POST /files/upload/{id} 1KB", 9, 1024),
+    UPLOAD_64KB("POST /files/upload/{id} 64KB", 5, 64 * 1024),
+    UPLOAD_1MB("POST /files/upload/{id} 1MB", 2, 1024 * 1024),
+    UPLOAD_8MB("POST /files/upload/{id} 8MB", 1, 8 * 1024 * 1024);
+
+    private static final int TOTAL_WEIGHT;
+
+    static {
+        int total = 0;
+        for (Operation operation : values()) {
+            total += operation.weight;
+        }
+        TOTAL_WEIGHT = total;
+    }
+
+    private final String endpoint;
+    private final int weight;
+    private final int uploadSize;
+
+    Operation(String endpoint, int weight, int uploadSize) {
+        this.endpoint = endpoint;
+        this.weight = weight;
+        this.uploadSize = uploadSize;
+    }
+
+    static Operation pick(Random random) {
+        int value = random.nextInt(TOTAL_WEIGHT);
+        for (Operation operation : values()) {
+            value -= operation.weight;
+            if (value < 0) {
+                return operation;
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    static int maxUploadSize() {
+        int max = 0;
+        for (Operation operation : values()) {
+            max = Math.max(max, operation.uploadSize);
+        }
+        return max;
+    }
+
+    String getEndpoint() {
+        return endpoint;
+    }
+
+    int getUploadSize() {
+        return uploadSize;
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.customerarchive.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * One registered user with its own token, customers and files. Each virtual user is driven by a single
+ * worker thread, so its state needs no synchronization.
+ */
+class VirtualUser {
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(60);
+    private static final String PASSWORD = "load-test-password";
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final String baseUrl;
+    private final String username;
+    private final Random random;
+    private final byte[] content;
+
+    private final List<Long> seededCustomerIds = new ArrayList<>();
+    private final List<Long> createdCustomerIds = new ArrayList<>();
+    private final List<Long> fileIds = new ArrayList<>();
+    private String token;
+    private long sequence;
+
+    VirtualUser(HttpClient httpClient, ObjectMapper objectMapper, String baseUrl, String username, long seed, int maxUploadSize) {
+        this.httpClient = httpClient;
+        this.objectMapper = objectMapper;
+        this.baseUrl = baseUrl;
+        this.username = username;
+        this.random = new Random(seed);
+        this.content = new byte[maxUploadSize];
+        random.nextBytes(content);
+    }
+
+    void seed(int customers, int filesPerCustomer) throws IOException, InterruptedException {
+        HttpResponse<String> response = send(post("/api/auth/register", json("username", username,
+                "password", PASSWORD, "email", username + "@example.com")));
+        expectOk(response);
+        token = response.body();
+        for (int i = 0; i < customers; i++) {
+            Long customerId = addCustomer();
+            seededCustomerIds.add(customerId);
+            for (int j = 0; j < filesPerCustomer; j++) {
+                HttpResponse<String> upload = upload(customerId, 1024);
+                expectOk(upload);
+            }
+        }
+    }
+
+    Random random() {
+        return random;
+    }
+
+    boolean canPerform(Operation operation) {
+        return switch (operation) {
+            case DELETE_CUSTOMER -> !createdCustomerIds.isEmpty();
+            case DOWNLOAD -> !fileIds.isEmpty();
+            default -> true;
+        };
+    }
+
+    boolean perform(Operation operation) throws IOException, InterruptedException {
+        return switch (operation) {
+            case LOGIN -> {
+                HttpResponse<String> response = send(request("/api/auth/login")
+                        .header("Content-Type", "application/json")
+                        .POST(json("username", username, "password", PASSWORD))
+                        .build());
+                if (response.statusCode() == 200) {
+                    token = response.body();
+                }
+                yield isOk(response);
+            }
+            case LIST_CUSTOMERS -> isOk(send(get("/api/customers/getAll")));
+            case CUSTOMERS_PAGE -> isOk(send(get("/api/customers/page?size=20")));
+            case GET_CUSTOMER -> isOk(send(get("/api/customers/" + pick(seededCustomerIds))));
+            case ADD_CUSTOMER -> {
+                createdCustomerIds.add(addCustomer());
+                yield true;
+            }
+            case UPDATE_CUSTOMER -> isOk(send(authorized("/api/customers/" + pick(seededCustomerIds))
+                    .PUT(json("name", "Customer " + nextSequence(), "email", uniqueEmail()))
+                    .header("Content-Type", "application/json")
+                    .build()));
+            case DELETE_CUSTOMER -> isOk(send(authorized("/api/customers/"
+                    + createdCustomerIds.remove(createdCustomerIds.size() - 1)).DELETE().build()));
+            case LIST_FILES -> isOk(send(get("/files/customer/" + pick(seededCustomerIds))));
+            case FILES_PAGE -> isOk(send(get("/files/customer/" + pick(seededCustomerIds) + "/page?size=20")));
+            case DOWNLOAD -> {
+                HttpResponse<Void> response = httpClient.send(authorized("/files/download/" + pick(fileIds)).GET().build(),
+                        HttpResponse.BodyHandlers.discarding());
+                yield response.statusCode() == 200;
+            }
+            case UPLOAD_1KB, UPLOAD_64KB, UPLOAD_1MB, UPLOAD_8MB ->
+                    isOk(upload(pick(seededCustomerIds), operation.getUploadSize()));
+        };
+    }
+
+    private Long addCustomer() throws IOException, InterruptedException {
+        HttpResponse<String> response = send(post("/api/customers/add",
+                json("name", "Customer " + nextSequence(), "email", uniqueEmail())));
+        expectOk(response);
+        return objectMapper.readTree(response.body()).get("customerId").asLong();
+    }
+
+    private HttpResponse<String> upload(Long customerId, int size) throws IOException, InterruptedException {
+        // A unique prefix keeps content-addressed storage from deduplicating every upload into one blob.
+        ByteBuffer.wrap(content).putLong(nextSequence()).putLong(username.hashCode());
+        String boundary = "----load-test-" + sequence;
+        String fileName = "upload-" + sequence + ".bin";
+        byte[] head = ("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + fileName + "\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+        byte[] tail = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8);
+        HttpRequest request = authorized("/files/upload/" + customerId)
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.concat(
+                        HttpRequest.BodyPublishers.ofByteArray(head),
+                        HttpRequest.BodyPublishers.ofByteArray(content, 0, size),
+                        HttpRequest.BodyPublishers.ofByteArray(tail)))
+                .build();
+        HttpResponse<String> response = send(request);
+        if (response.statusCode() == 200) {
+            JsonNode file = objectMapper.readTree(response.body());
+            fileIds.add(file.get("fileId").asLong());
+        }
+        return response;
+    }
+
+    private HttpRequest get(String path) {
+        return authorized(path).GET().build();
+    }
+
+    private HttpRequest post(String path, HttpRequest.BodyPublisher body) {
+        HttpRequest.Builder builder = token == null ? request(path) : authorized(path);
+        return builder.header("Content-Type", "application/json").POST(body).build();
+    }
+
+    private HttpRequest.Builder authorized(String path) {
+        return request(path).header("Authorization", "Bearer " + token);
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(REQUEST_TIMEOUT);
+    }
+
+    private HttpRequest.BodyPublisher json(String... keyValues) throws IOException {
+        var node = objectMapper.createObjectNode();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            node.put(keyValues[i], keyValues[i + 1]);
+        }
+        return HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(node));
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private <T> T pick(List<T> values) {
+        return values.get(random.nextInt(values.size()));
+    }
+
+    private String uniqueEmail() {
+        return username + "-" + nextSequence() + "@example.com";
+    }
+
+    private long nextSequence() {
+        return ++sequence;
+    }
+
+    private static boolean isOk(HttpResponse<?> response) {
+        return response.statusCode() == 200;
+    }
+
+    private static void expectOk(HttpResponse<String> response) {
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Request failed with " + response.statusCode() + ": " + response.body());
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.customerarchive.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class ExportExecutorConfig {
+
+    /**
+     * Runs export response bodies, and only those; other async requests keep the MVC default. Each export
+     * holds a thread for the whole transfer, so the pool size caps concurrent exports, further requests
+     * wait in the queue, and a full queue is answered with 503. Virtual threads keep the same limits.
+     */
+    @Bean
+    public AsyncTaskExecutor exportExecutor(@Value("${file.export.threads:4}") int threads,
+                                            @Value("${file.export.queue-capacity:50}") int queueCapacity,
+                                            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        if (virtualThreads) {
+            return VirtualThreadExecutors.rejecting("export-", threads, queueCapacity);
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("export-");
+        executor.setTaskDecorator(new MdcTaskDecorator());
+        executor.initialize();
+        return executor;
+    }
+}
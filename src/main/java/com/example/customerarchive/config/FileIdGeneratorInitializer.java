@@ -0,0 +1,47 @@
+package com.example.customerarchive.config;
+
+import com.example.customerarchive.model.File;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * File ids used to come from an auto-increment column. Before the first insert through {@link com.example.customerarchive.model.PooledId},
+ * its pooled value is raised above the highest existing id so new ids cannot collide with old rows.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class FileIdGeneratorInitializer implements InitializingBean {
+    private static final Logger logger = LoggerFactory.getLogger(FileIdGeneratorInitializer.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public FileIdGeneratorInitializer(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        transactionTemplate.executeWithoutResult(status -> {
+            Long maxFileId = jdbcTemplate.queryForObject("select coalesce(max(file_id), 0) from file", Long.class);
+            // The pooled optimizer hands out the block ending at the stored value, so the floor is a full block above.
+            long floor = (maxFileId != null ? maxFileId : 0) + File.ID_ALLOCATION_SIZE;
+            String table = File.ID_GENERATOR_TABLE;
+            Integer rows = jdbcTemplate.queryForObject("select count(*) from " + table + " where generator_name = ?",
+                    Integer.class, File.ID_GENERATOR_NAME);
+            if (rows == null || rows == 0) {
+                jdbcTemplate.update("insert into " + table + " (generator_name, next_val) values (?, ?)", File.ID_GENERATOR_NAME, floor);
+                logger.info("Initialized file id generator at {}", floor);
+            } else if (jdbcTemplate.update("update " + table + " set next_val = ? where generator_name = ? and next_val < ?",
+                    floor, File.ID_GENERATOR_NAME, floor) > 0) {
+                logger.info("Raised file id generator to {}", floor);
+            }
+        });
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.customerarchive.config;
+
+import com.example.customerarchive.model.File;
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Reserves id blocks for {@link PooledIdGenerator} on a pool of its own. Table generators reserve them on a
+ * second connection from the application pool while the inserting transaction holds one, so once every
+ * connection belongs to a transaction that needs a block, they all wait until the pool times out. A block is
+ * reserved in a short transaction of its own, so this pool never needs more than a couple of connections.
+ * <p>
+ * A row's {@code next_val} is the last id of the next block, as with Hibernate's pooled optimizer, so rows
+ * written by the table generators this replaces carry on without gaps or overlaps.
+ */
+@Component
+public class IdBlockAllocator implements DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(IdBlockAllocator.class);
+    private static final String TABLE = File.ID_GENERATOR_TABLE;
+
+    private final HikariDataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public IdBlockAllocator(DataSourceProperties dataSourceProperties,
+                            @Value("${persistence.id-generator.pool-size:2}") int poolSize) {
+        this.dataSource = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        this.dataSource.setPoolName("id-generator");
+        this.dataSource.setMaximumPoolSize(poolSize);
+        this.dataSource.setMinimumIdle(0);
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    /**
+     * Reserves the next {@code size} ids of the named row and returns the last of them.
+     */
+    public long reserve(String name, int size) {
+        while (true) {
+            try {
+                Long last = transactionTemplate.execute(status -> reserveBlock(name, size));
+                return last != null ? last : 0;
+            } catch (DuplicateKeyException ex) {
+                // Another instance created the row first; its value is read on the next attempt.
+                logger.debug("Id generator row {} was created concurrently", name);
+            }
+        }
+    }
+
+    private long reserveBlock(String name, int size) {
+        List<Long> values = jdbcTemplate.queryForList("select next_val from " + TABLE + " where generator_name = ? for update",
+                Long.class, name);
+        if (values.isEmpty()) {
+            jdbcTemplate.update("insert into " + TABLE + " (generator_name, next_val) values (?, ?)", name, 2L * size);
+            return size;
+        }
+        long last = values.get(0);
+        jdbcTemplate.update("update " + TABLE + " set next_val = ? where generator_name = ?", last + size, name);
+        return last;
+    }
+
+    @Override
+    public void destroy() {
+        dataSource.close();
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.customerarchive.config;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps one in {@code keepOneIn} INFO and lower events from the configured logger categories and drops the
+ * rest. WARN and ERROR always pass. Each category keeps its own counter, so a busy one does not starve a quiet
+ * one of samples.
+ */
+public class LogSamplingFilter extends TurboFilter {
+    private final List<String> prefixes = new ArrayList<>();
+    private final List<AtomicLong> counters = new ArrayList<>();
+    private int keepOneIn = 1;
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        // A null format is an isXxxEnabled() check rather than an event, and must not use up a sample.
+        if (keepOneIn <= 1 || format == null || level.isGreaterOrEqual(Level.WARN)
+                || !level.isGreaterOrEqual(logger.getEffectiveLevel())) {
+            return FilterReply.NEUTRAL;
+        }
+        String name = logger.getName();
+        for (int i = 0; i < prefixes.size(); i++) {
+            if (name.startsWith(prefixes.get(i))) {
+                return counters.get(i).getAndIncrement() % keepOneIn == 0 ? FilterReply.NEUTRAL : FilterReply.DENY;
+            }
+        }
+        return FilterReply.NEUTRAL;
+    }
+
+    public void setLoggers(String loggers) {
+        for (String logger : loggers.split(",")) {
+            if (!logger.isBlank()) {
+                prefixes.add(logger.trim());
+                counters.add(new AtomicLong());
+            }
+        }
+    }
+
+    public void setKeepOneIn(int keepOneIn) {
+        this.keepOneIn = keepOneIn;
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.customerarchive.config;
+
+import com.example.customerarchive.model.PooledId;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.factory.spi.CustomIdGeneratorCreationContext;
+import org.hibernate.resource.beans.spi.ManagedBeanRegistry;
+import org.hibernate.service.ServiceRegistry;
+
+import java.lang.reflect.Member;
+
+/**
+ * Hands out the ids of a block reserved by {@link IdBlockAllocator}. The allocator is a Spring bean looked up
+ * on first use, since generators are created while the entity manager factory is still being built.
+ */
+public class PooledIdGenerator implements IdentifierGenerator {
+    private final String name;
+    private final int allocationSize;
+    private final ServiceRegistry serviceRegistry;
+    private IdBlockAllocator allocator;
+    private long next;
+    private long last = -1;
+
+    public PooledIdGenerator(PooledId config, Member member, CustomIdGeneratorCreationContext context) {
+        this.name = config.name();
+        this.allocationSize = config.allocationSize();
+        this.serviceRegistry = context.getServiceRegistry();
+    }
+
+    @Override
+    public synchronized Object generate(SharedSessionContractImplementor session, Object object) {
+        if (next > last) {
+            if (allocator == null) {
+                allocator = serviceRegistry.requireService(ManagedBeanRegistry.class)
+                        .getBean(IdBlockAllocator.class).getBeanInstance();
+            }
+            last = allocator.reserve(name, allocationSize);
+            next = last - allocationSize + 1;
+        }
+        return next++;
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.customerarchive.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class PreviewExecutorConfig {
+
+    /**
+     * Bounded pool for rendering previews. Rendering is CPU-bound, so it stays on platform threads even when
+     * virtual threads are enabled. Jobs are persisted, so a full queue rejects the submission and the
+     * poller resubmits it later.
+     */
+    @Bean
+    public AsyncTaskExecutor previewExecutor(@Value("${file.preview.threads:2}") int threads,
+                                             @Value("${file.preview.queue-capacity:100}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("preview-");
+        executor.setTaskDecorator(new MdcTaskDecorator());
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Runs each render so the preview thread can give up on it after {@code file.preview.render-timeout}.
+     * Decoders do not all stop when interrupted, so a render that timed out may keep its thread until it
+     * finishes; the headroom over the preview pool absorbs a few of those, and beyond that a render is
+     * rejected and retried on a later poll.
+     */
+    @Bean
+    public AsyncTaskExecutor previewRenderExecutor(@Value("${file.preview.threads:2}") int threads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads * 2);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("preview-render-");
+        executor.setTaskDecorator(new MdcTaskDecorator());
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+        return executor;
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.customerarchive.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Runs the background jobs (reclaim, reconcile, previews, content indexing, compaction, session expiry).
+ * Tests turn it off with {@code scheduling.enabled=false} and call the jobs directly, so polls never touch
+ * the database in the middle of an assertion.
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "scheduling.enabled", havingValue = "true", matchIfMissing = true)
+public class SchedulingConfig {
+}
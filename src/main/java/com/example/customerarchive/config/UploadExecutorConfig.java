@@ -0,0 +1,37 @@
+package com.example.customerarchive.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class UploadExecutorConfig {
+
+    /**
+     * Bounded pool for writing batch uploads to disk. When it is saturated the submitting request thread
+     * waits (virtual threads) or writes the file itself (platform threads), which throttles callers instead
+     * of rejecting their uploads.
+     */
+    @Bean
+    public AsyncTaskExecutor uploadExecutor(@Value("${file.upload.batch.threads:4}") int threads,
+                                            @Value("${file.upload.batch.queue-capacity:100}") int queueCapacity,
+                                            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        if (virtualThreads) {
+            return VirtualThreadExecutors.bounded("upload-", threads);
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("upload-");
+        executor.setTaskDecorator(new MdcTaskDecorator());
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.initialize();
+        return executor;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.customerarchive.config;
+
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.util.concurrent.Semaphore;
+
+final class VirtualThreadExecutors {
+
+    private VirtualThreadExecutors() {
+    }
+
+    /**
+     * One virtual thread per task. The concurrency limit keeps the bound the platform pools had on disk and
+     * connection use; submitters block once it is reached.
+     */
+    static SimpleAsyncTaskExecutor bounded(String threadNamePrefix, int concurrencyLimit) {
+        SimpleAsyncTaskExecutor executor = unbounded(threadNamePrefix);
+        executor.setConcurrencyLimit(concurrencyLimit);
+        return executor;
+    }
+
+    /**
+     * One virtual thread per task, at most {@code concurrencyLimit} of them running. Up to {@code queueCapacity}
+     * further tasks wait on their own thread for a slot, and past that submissions are rejected with
+     * {@link TaskRejectedException} as a full platform pool would; submitters never block.
+     */
+    static AsyncTaskExecutor rejecting(String threadNamePrefix, int concurrencyLimit, int queueCapacity) {
+        return new RejectingExecutor(unbounded(threadNamePrefix), concurrencyLimit, queueCapacity);
+    }
+
+    private static SimpleAsyncTaskExecutor unbounded(String threadNamePrefix) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+        executor.setVirtualThreads(true);
+        executor.setTaskDecorator(new MdcTaskDecorator());
+        executor.setTaskTerminationTimeout(30_000);
+        return executor;
+    }
+
+    private static final class RejectingExecutor implements AsyncTaskExecutor, AutoCloseable {
+        private final SimpleAsyncTaskExecutor delegate;
+        private final Semaphore admitted;
+        private final Semaphore running;
+
+        RejectingExecutor(SimpleAsyncTaskExecutor delegate, int concurrencyLimit, int queueCapacity) {
+            this.delegate = delegate;
+            this.admitted = new Semaphore(concurrencyLimit + queueCapacity);
+            this.running = new Semaphore(concurrencyLimit);
+        }
+
+        public void execute(Runnable task) {
+            if (!admitted.tryAcquire()) {
+                throw new TaskRejectedException("Executor [" + delegate.getThreadNamePrefix()
+                        + "] is running and queueing as many tasks as it allows; " + task + " was rejected");
+            }
+            try {
+                delegate.execute(() -> {
+                    try {
+                        running.acquire();
+                    } catch (InterruptedException e) {
+                        admitted.release();
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    try {
+                        task.run();
+                    } finally {
+                        running.release();
+                        admitted.release();
+                    }
+                });
+            } catch (RuntimeException e) {
+                admitted.release();
+                throw e;
+            }
+        }
+
+        public void close() {
+            delegate.close();
+        }
+    }
+}
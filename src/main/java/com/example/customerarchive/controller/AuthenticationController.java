@@ -4,6 +4,7 @@ import com.example.customerarchive.dto.AuthenticationRequestDto;
 import com.example.customerarchive.model.User;
 import com.example.customerarchive.repository.UserRepository;
 import com.example.customerarchive.security.JwtUtil;
+import com.example.customerarchive.service.MyUserDetailsService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,7 +13,6 @@ import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
@@ -25,12 +25,12 @@ public class AuthenticationController {
 
     private final AuthenticationManager authenticationManager;
     private final JwtUtil jwtUtil;
-    private final UserDetailsService userDetailsService;
+    private final MyUserDetailsService userDetailsService;
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
 
     @Autowired
-    public AuthenticationController(AuthenticationManager authenticationManager, JwtUtil jwtUtil, UserDetailsService userDetailsService, UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public AuthenticationController(AuthenticationManager authenticationManager, JwtUtil jwtUtil, MyUserDetailsService userDetailsService, UserRepository userRepository, PasswordEncoder passwordEncoder) {
         this.authenticationManager = authenticationManager;
         this.jwtUtil = jwtUtil;
         this.userDetailsService = userDetailsService;
@@ -40,7 +40,7 @@ public class AuthenticationController {
 
     @PostMapping("/register")
     public ResponseEntity<?> registerUser(@RequestBody User newUser) {
-        logger.info("Registering new user: {}", newUser.getUsername());
+        logger.debug("Registering new user: {}", newUser.getUsername());
 
         Optional<User> existingUserByUsername = userRepository.findByUsername(newUser.getUsername());
         if (existingUserByUsername.isPresent()) {
@@ -56,12 +56,13 @@ public class AuthenticationController {
 
             newUser.setPassword(passwordEncoder.encode(newUser.getPassword()));
             userRepository.save(newUser);
+            userDetailsService.evictUser(newUser.getUsername());
             logger.info("User registered successfully: {}", newUser.getUsername());
 
 
             final UserDetails userDetails = userDetailsService.loadUserByUsername(newUser.getUsername());
             final String jwt = jwtUtil.generateToken(userDetails.getUsername());
-            logger.info("JWT generated for user: {}", newUser.getUsername());
+            logger.debug("JWT generated for user: {}", newUser.getUsername());
 
             return ResponseEntity.ok(jwt);
         }
@@ -69,7 +70,7 @@ public class AuthenticationController {
 
     @PostMapping("/login")
     public ResponseEntity<?> loginUser(@RequestBody AuthenticationRequestDto authenticationRequest) {
-        logger.info("Authenticating user: {}", authenticationRequest.getUsername());
+        logger.debug("Authenticating user: {}", authenticationRequest.getUsername());
 
         try {
             authenticationManager.authenticate(
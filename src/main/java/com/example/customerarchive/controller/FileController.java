@@ -1,26 +1,47 @@
 package com.example.customerarchive.controller;
 
+import com.example.customerarchive.dto.BatchUploadResult;
+import com.example.customerarchive.dto.CursorPage;
+import com.example.customerarchive.dto.FileDto;
 import com.example.customerarchive.exception.CustomFileNotFoundException;
+import com.example.customerarchive.exception.PayloadTooLargeException;
 import com.example.customerarchive.exception.ResourceNotFoundException;
 import com.example.customerarchive.model.Customer;
 import com.example.customerarchive.model.File;
-import com.example.customerarchive.security.JwtUtil;
+import com.example.customerarchive.model.Preview;
+import com.example.customerarchive.service.BlobContent;
 import com.example.customerarchive.service.CustomerService;
 import com.example.customerarchive.service.FileService;
 import com.example.customerarchive.service.FileStorageService;
+import com.example.customerarchive.service.PreviewService;
+import com.example.customerarchive.service.StorageLayout;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.Resource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 
 @RestController
@@ -35,28 +56,78 @@ public class FileController {
     private CustomerService customerService;
 
     @Autowired
-    private JwtUtil jwtUtil;
+    private FileService fileService;
 
     @Autowired
-    private FileService fileService;
+    private FileDownloadWriter fileDownloadWriter;
+
+    @Autowired
+    private ZipExportWriter zipExportWriter;
+
+    @Autowired
+    private PreviewService previewService;
+
+    @Autowired
+    private StorageLayout storageLayout;
+
+    @Autowired
+    @Qualifier("exportExecutor")
+    private AsyncTaskExecutor exportExecutor;
+
+    @Value("${file.export.timeout:1h}")
+    private Duration exportTimeout;
+
+    @Value("${file.upload.stream.max-size:10GB}")
+    private DataSize maxStreamSize;
 
     @PostMapping("/upload/{customerId}")
-    public ResponseEntity<?> uploadFile(@PathVariable Long customerId, @RequestParam("file") MultipartFile file, HttpServletRequest request) {
-        String username = jwtUtil.extractUsername(jwtUtil.resolveToken(request));
-        logger.info("User {} is attempting to upload a file for customer {}", username, customerId);
+    public ResponseEntity<?> uploadFile(@PathVariable Long customerId, @RequestParam("file") MultipartFile file, Principal principal) {
+        String username = principal.getName();
+        logger.debug("User {} is attempting to upload a file for customer {}", username, customerId);
         if (!customerService.isCustomerOwnedByUser(customerId, username)) {
             logger.warn("User {} is not allowed to upload files for customer {}", username, customerId);
             return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Error: You are not allowed to upload files for this customer.");
         }
         File uploadedFile = fileService.addFile(customerId, file);
         logger.info("File uploaded successfully for customer {}", customerId);
-        return ResponseEntity.ok(uploadedFile);
+        return ResponseEntity.ok(FileDto.from(uploadedFile));
+    }
+
+    @PostMapping("/batch/{customerId}")
+    public ResponseEntity<?> uploadFiles(@PathVariable Long customerId, @RequestParam("files") List<MultipartFile> files, Principal principal) {
+        String username = principal.getName();
+        logger.debug("User {} is attempting to upload {} files for customer {}", username, files.size(), customerId);
+        if (!customerService.isCustomerOwnedByUser(customerId, username)) {
+            logger.warn("User {} is not allowed to upload files for customer {}", username, customerId);
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Error: You are not allowed to upload files for this customer.");
+        }
+        List<BatchUploadResult> results = fileService.addFiles(customerId, files);
+        logger.debug("Batch upload finished for customer {}", customerId);
+        return ResponseEntity.ok(results);
+    }
+
+    @PostMapping(value = "/stream/{customerId}", consumes = MediaType.ALL_VALUE)
+    public ResponseEntity<?> streamFile(@PathVariable Long customerId, @RequestParam("fileName") String fileName, HttpServletRequest request, Principal principal) throws IOException {
+        String username = principal.getName();
+        logger.debug("User {} is attempting to stream a file for customer {}", username, customerId);
+        if (!customerService.isCustomerOwnedByUser(customerId, username)) {
+            logger.warn("User {} is not allowed to upload files for customer {}", username, customerId);
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Error: You are not allowed to upload files for this customer.");
+        }
+        if (request.getContentLengthLong() > maxStreamSize.toBytes()) {
+            throw new PayloadTooLargeException("A streamed upload may not be larger than " + maxStreamSize.toBytes() + " bytes");
+        }
+        // A chunked body has no length up front, so it is also counted as it is read.
+        InputStream in = new SizeLimitedInputStream(request.getInputStream(), maxStreamSize.toBytes());
+        File uploadedFile = fileService.addFile(customerId, in, fileName, request.getContentType());
+        logger.info("File streamed successfully for customer {}", customerId);
+        return ResponseEntity.ok(FileDto.from(uploadedFile));
     }
 
     @DeleteMapping("/delete/{fileId}")
-    public ResponseEntity<?> deleteFile(@PathVariable Long fileId, HttpServletRequest request) {
-        String username = jwtUtil.extractUsername(jwtUtil.resolveToken(request));
-        logger.info("User {} is attempting to delete file {}", username, fileId);
+    public ResponseEntity<?> deleteFile(@PathVariable Long fileId, Principal principal) {
+        String username = principal.getName();
+        logger.debug("User {} is attempting to delete file {}", username, fileId);
         if (!fileService.isFileOwnedByUser(fileId, username)) {
             logger.warn("User {} is not allowed to delete file {}", username, fileId);
             return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Error: You are not allowed to delete this file.");
@@ -67,60 +138,133 @@ public class FileController {
     }
 
     @PutMapping("/update/{fileId}")
-    public ResponseEntity<?> updateFile(@PathVariable Long fileId, @RequestParam("file") MultipartFile file, HttpServletRequest request) {
-        String username = jwtUtil.extractUsername(jwtUtil.resolveToken(request));
-        logger.info("User {} is attempting to update file {}", username, fileId);
+    public ResponseEntity<?> updateFile(@PathVariable Long fileId, @RequestParam("file") MultipartFile file, Principal principal) {
+        String username = principal.getName();
+        logger.debug("User {} is attempting to update file {}", username, fileId);
         if (!fileService.isFileOwnedByUser(fileId, username)) {
             logger.warn("User {} is not allowed to update file {}", username, fileId);
             return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Error: You are not allowed to update this file.");
         }
         File updatedFile = fileService.updateFile(fileId, file);
         logger.info("File {} updated successfully", fileId);
-        return ResponseEntity.ok(updatedFile);
+        return ResponseEntity.ok(FileDto.from(updatedFile));
     }
 
     @GetMapping("/download/{fileId}")
-    public ResponseEntity<?> downloadFile(@PathVariable Long fileId, HttpServletRequest request) {
-        String username = jwtUtil.extractUsername(jwtUtil.resolveToken(request));
-        logger.info("User {} is attempting to download file {}", username, fileId);
+    public ResponseEntity<?> downloadFile(@PathVariable Long fileId, HttpServletRequest request, HttpServletResponse response, Principal principal) throws IOException {
+        String username = principal.getName();
+        logger.debug("User {} is attempting to download file {}", username, fileId);
         try {
             if (!fileService.isFileOwnedByUser(fileId, username)) {
                 logger.warn("User {} is not allowed to download file {}", username, fileId);
                 return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Error: You are not allowed to download this file.");
             }
-            Resource resource = fileService.loadFileAsResource(fileId);
+            File file = fileService.getFile(fileId);
+            BlobContent content = fileStorageService.openContent(file);
 
-            String contentType = null;
-            try {
-                contentType = request.getServletContext().getMimeType(resource.getFile().getAbsolutePath());
-            } catch (IOException ex) {
-                logger.error("Could not determine file type for file {}", fileId, ex);
+            String contentType = file.getFileType();
+            if (contentType == null) {
+                contentType = request.getServletContext().getMimeType(file.getFileName());
             }
 
             if (contentType == null) {
                 contentType = "application/octet-stream";
             }
 
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + resource.getFilename() + "\"")
-                    .body(resource);
+            fileDownloadWriter.write(file, content, contentType, request, response);
+            return null;
         } catch (ResourceNotFoundException | CustomFileNotFoundException ex) {
             logger.error("File not found: {}", ex.getMessage());
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ex.getMessage());
         }
     }
 
+    @GetMapping("/preview/{fileId}")
+    public ResponseEntity<?> previewFile(@PathVariable Long fileId, Principal principal) {
+        String username = principal.getName();
+        if (!fileService.isFileOwnedByUser(fileId, username)) {
+            logger.warn("User {} is not allowed to preview file {}", username, fileId);
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Error: You are not allowed to preview this file.");
+        }
+        File file = fileService.getFile(fileId);
+        Preview preview = previewService.getPreview(file);
+        switch (preview.getStatus()) {
+            case READY:
+                // Previews are immutable per checksum, so the checksum doubles as a strong validator.
+                return ResponseEntity.ok()
+                        .eTag("\"" + file.getChecksum() + "-preview\"")
+                        .cacheControl(CacheControl.noCache().cachePrivate())
+                        .contentType(MediaType.IMAGE_JPEG)
+                        .body(new FileSystemResource(storageLayout.previewPath(file.getChecksum())));
+            case PENDING:
+            case RUNNING:
+                return ResponseEntity.status(HttpStatus.ACCEPTED)
+                        .header(HttpHeaders.RETRY_AFTER, "2")
+                        .body("Preview is being generated.");
+            default:
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body("No preview available for this file.");
+        }
+    }
+
     @GetMapping("/customer/{customerId}")
-    public ResponseEntity<?> getFilesForCustomer(@PathVariable Long customerId, HttpServletRequest request) {
-        String username = jwtUtil.extractUsername(jwtUtil.resolveToken(request));
-        logger.info("User {} is attempting to get files for customer {}", username, customerId);
+    public ResponseEntity<?> getFilesForCustomer(@PathVariable Long customerId, Principal principal) {
+        String username = principal.getName();
+        logger.debug("User {} is attempting to get files for customer {}", username, customerId);
         if (!customerService.isCustomerOwnedByUser(customerId, username)) {
             logger.warn("User {} is not allowed to get files for customer {}", username, customerId);
             return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Error: You are not allowed to get files for this customer.");
         }
-        List<File> files = fileService.getAllFilesForCustomer(customerId);
-        logger.info("Found {} files for customer {}", files.size(), customerId);
+        List<FileDto> files = fileService.getAllFilesForCustomer(customerId);
+        logger.debug("Found {} files for customer {}", files.size(), customerId);
         return ResponseEntity.ok(files);
     }
+
+    @GetMapping("/customer/{customerId}/page")
+    public ResponseEntity<?> getFilesPageForCustomer(@PathVariable Long customerId,
+                                                     @RequestParam(required = false) String cursor,
+                                                     @RequestParam(required = false) Integer size,
+                                                     @RequestParam(defaultValue = "date") String sort,
+                                                     Principal principal) {
+        String username = principal.getName();
+        logger.debug("User {} is attempting to get a page of files for customer {}", username, customerId);
+        if (!customerService.isCustomerOwnedByUser(customerId, username)) {
+            logger.warn("User {} is not allowed to get files for customer {}", username, customerId);
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Error: You are not allowed to get files for this customer.");
+        }
+        CursorPage<FileDto> page = fileService.getFilesPage(customerId, cursor, size, sort);
+        logger.debug("Found {} files for customer {}", page.getItems().size(), customerId);
+        return ResponseEntity.ok(page);
+    }
+
+    @GetMapping("/customer/{customerId}/export")
+    public WebAsyncTask<Void> exportFilesForCustomer(@PathVariable Long customerId,
+                                                     @RequestParam(required = false) List<Long> fileIds,
+                                                     Principal principal, HttpServletResponse response) throws IOException {
+        String username = principal.getName();
+        logger.debug("User {} is attempting to export files for customer {}", username, customerId);
+        if (!customerService.isCustomerOwnedByUser(customerId, username)) {
+            logger.warn("User {} is not allowed to export files for customer {}", username, customerId);
+            response.setStatus(HttpStatus.FORBIDDEN.value());
+            response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+            response.getOutputStream().write("Error: You are not allowed to export files for this customer.".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }
+        // Paths are resolved before streaming starts, while a missing file can still be reported as a 404.
+        List<ZipExportWriter.ExportEntry> entries = new ArrayList<>();
+        for (File file : fileService.getFilesForExport(customerId, fileIds)) {
+            entries.add(new ZipExportWriter.ExportEntry(file, fileStorageService.openContent(file)));
+        }
+        logger.info("Streaming {} files for customer {}", entries.size(), customerId);
+        // The export pool is given per request, so other async endpoints keep the default executor. Headers
+        // are set once the export has a thread, so a rejected export leaves none behind for the 503.
+        return new WebAsyncTask<>(exportTimeout.toMillis(), exportExecutor, () -> {
+            response.setContentType("application/zip");
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                    .filename("customer-" + customerId + ".zip").build().toString());
+            OutputStream out = response.getOutputStream();
+            zipExportWriter.write(entries, out);
+            out.flush();
+            return null;
+        });
+    }
 }
@@ -0,0 +1,367 @@
+package com.example.customerarchive.controller;
+
+import com.example.customerarchive.model.File;
+import com.example.customerarchive.model.StorageCodec;
+import com.example.customerarchive.service.BlobContent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.List;
+
+/**
+ * Writes stored files with conditional GET and byte-range support. Single ranges are handed to the
+ * container's sendfile support when the blob has a file of its own; everything else is transferred from the
+ * file's channel or the segment's mapping.
+ * Compressed blobs are sent with their Content-Encoding when the client accepts it, and decoded otherwise.
+ */
+@Component
+public class FileDownloadWriter {
+    private static final Logger logger = LoggerFactory.getLogger(FileDownloadWriter.class);
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    private static final int DECODE_BUFFER_SIZE = 65536;
+
+    private final long sendfileThreshold;
+    private final Counter bytesRead;
+
+    public FileDownloadWriter(@Value("${file.download.sendfile-threshold:49152}") long sendfileThreshold, MeterRegistry meterRegistry) {
+        this.sendfileThreshold = sendfileThreshold;
+        this.bytesRead = Counter.builder("archive.storage.bytes.read")
+                .baseUnit(BaseUnits.BYTES)
+                .tag("operation", "download")
+                .register(meterRegistry);
+    }
+
+    public void write(File file, BlobContent content, String contentType, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        StorageCodec codec = file.getCodec();
+        // Encoded blobs go out as stored to clients that accept the coding, and are decoded for everyone else.
+        boolean sendEncoded = codec != StorageCodec.IDENTITY && acceptsEncoding(request, codec.getContentEncoding());
+        if (codec != StorageCodec.IDENTITY) {
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        String etag = etagFor(file, sendEncoded ? codec : StorageCodec.IDENTITY);
+        long lastModified = file.getUpdateDate() != null ? file.getUpdateDate().getTime() : -1;
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            logger.info("File {} not modified, skipping body", file.getFileId());
+            return;
+        }
+
+        if (codec != StorageCodec.IDENTITY && !sendEncoded) {
+            try (DecodedBody body = new DecodedBody(content, codec, file.getFileSize())) {
+                writeBody(file, body, contentType, etag, lastModified, request, response);
+            }
+            return;
+        }
+        if (sendEncoded) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, codec.getContentEncoding());
+        }
+        writeBody(file, new StoredBody(content), contentType, etag, lastModified, request, response);
+    }
+
+    private void writeBody(File file, Body body, String contentType, String etag, long lastModified,
+                           HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long length = body.length();
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(file.getFileName(), StandardCharsets.UTF_8).build().toString());
+
+        List<HttpRange> ranges = requestedRanges(request, etag, lastModified);
+        if (ranges.isEmpty()) {
+            response.setContentType(contentType);
+            writeRegion(body, 0, length, request, response);
+            return;
+        }
+
+        List<long[]> regions = new ArrayList<>(ranges.size());
+        long requested = 0;
+        for (HttpRange range : ranges) {
+            long start = range.getRangeStart(length);
+            long end = Math.min(range.getRangeEnd(length), length - 1);
+            if (start >= length || start > end) {
+                logger.warn("Unsatisfiable range {} for file {} of length {}", range, file.getFileId(), length);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            regions.add(new long[]{start, end});
+            requested += end - start + 1;
+        }
+        if (requested > length) {
+            // Overlapping ranges such as "0-,0-" would otherwise send the file many times over.
+            logger.warn("Ranges {} ask for more than the {} bytes of file {}, sending it whole", ranges, length, file.getFileId());
+            response.setContentType(contentType);
+            writeRegion(body, 0, length, request, response);
+            return;
+        }
+        regions = coalesce(regions);
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        if (regions.size() == 1) {
+            long[] region = regions.get(0);
+            response.setContentType(contentType);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + region[0] + "-" + region[1] + "/" + length);
+            writeRegion(body, region[0], region[1] - region[0] + 1, request, response);
+        } else {
+            writeMultipartRegions(body, regions, length, contentType, request, response);
+        }
+    }
+
+    /**
+     * Sorts the regions and merges those that overlap or touch, so each byte is sent at most once and a
+     * decoded body is read in a single pass.
+     */
+    private static List<long[]> coalesce(List<long[]> regions) {
+        regions.sort(Comparator.comparingLong(region -> region[0]));
+        List<long[]> merged = new ArrayList<>(regions.size());
+        for (long[] region : regions) {
+            long[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && region[0] <= last[1] + 1) {
+                last[1] = Math.max(last[1], region[1]);
+            } else {
+                merged.add(region);
+            }
+        }
+        return merged;
+    }
+
+    private String etagFor(File file, StorageCodec codec) {
+        if (file.getChecksum() != null) {
+            // Each representation needs its own strong validator, or a range could be applied to the wrong bytes.
+            String suffix = codec != StorageCodec.IDENTITY ? "-" + codec.getContentEncoding() : "";
+            return "\"" + file.getChecksum() + suffix + "\"";
+        }
+        long version = file.getUpdateDate() != null ? file.getUpdateDate().getTime() : 0;
+        return "W/\"" + file.getFileId() + "-" + version + "\"";
+    }
+
+    private static boolean acceptsEncoding(HttpServletRequest request, String encoding) {
+        Enumeration<String> headers = request.getHeaders(HttpHeaders.ACCEPT_ENCODING);
+        while (headers != null && headers.hasMoreElements()) {
+            for (String coding : headers.nextElement().split(",")) {
+                String[] parameters = coding.split(";");
+                String name = parameters[0].trim();
+                if (name.equalsIgnoreCase(encoding) || name.equals("*")) {
+                    for (int i = 1; i < parameters.length; i++) {
+                        String parameter = parameters[i].trim();
+                        if (parameter.startsWith("q=") && quality(parameter.substring(2)) == 0) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A malformed weight is treated as the default of 1 rather than failing the download.
+     */
+    private static double quality(String value) {
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException ex) {
+            return 1;
+        }
+    }
+
+    private List<HttpRange> requestedRanges(HttpServletRequest request, String etag, long lastModified) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || !ifRangeMatches(request, etag, lastModified)) {
+            return List.of();
+        }
+        try {
+            return HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException ex) {
+            logger.warn("Ignoring invalid Range header {}", rangeHeader);
+            return List.of();
+        }
+    }
+
+    private boolean ifRangeMatches(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return !etag.startsWith("W/") && ifRange.equals(etag);
+        }
+        try {
+            long ifRangeDate = request.getDateHeader(HttpHeaders.IF_RANGE);
+            return lastModified >= 0 && lastModified / 1000 <= ifRangeDate / 1000;
+        } catch (IllegalArgumentException ex) {
+            return false;
+        }
+    }
+
+    private void writeRegion(Body body, long start, long count,
+                             HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentLengthLong(count);
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+        bytesRead.increment(count);
+        Path sendfilePath = body.sendfilePath();
+        if (sendfilePath != null && count >= sendfileThreshold && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, sendfilePath.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + count);
+            return;
+        }
+        OutputStream out = response.getOutputStream();
+        body.transfer(start, count, out);
+        out.flush();
+    }
+
+    private void writeMultipartRegions(Body body, List<long[]> regions, long length, String contentType,
+                                       HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String boundary = new String(MimeTypeUtils.generateMultipartBoundary(), StandardCharsets.US_ASCII);
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+
+        List<byte[]> partHeaders = new ArrayList<>(regions.size());
+        long contentLength = 0;
+        for (long[] region : regions) {
+            String header = "\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": bytes " + region[0] + "-" + region[1] + "/" + length + "\r\n\r\n";
+            byte[] headerBytes = header.getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(headerBytes);
+            contentLength += headerBytes.length + region[1] - region[0] + 1;
+        }
+        byte[] closing = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        response.setContentLengthLong(contentLength + closing.length);
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+
+        OutputStream out = response.getOutputStream();
+        for (int i = 0; i < regions.size(); i++) {
+            long[] region = regions.get(i);
+            out.write(partHeaders.get(i));
+            body.transfer(region[0], region[1] - region[0] + 1, out);
+            bytesRead.increment(region[1] - region[0] + 1);
+        }
+        out.write(closing);
+        out.flush();
+    }
+
+    /**
+     * The bytes of one representation of a file: the stored bytes as they are, or their decoded content.
+     */
+    private interface Body {
+        long length() throws IOException;
+
+        /**
+         * The file to hand to the container's sendfile, or null if the bytes must pass through here.
+         */
+        Path sendfilePath();
+
+        void transfer(long start, long count, OutputStream out) throws IOException;
+    }
+
+    private static class StoredBody implements Body {
+        private final BlobContent content;
+
+        StoredBody(BlobContent content) {
+            this.content = content;
+        }
+
+        @Override
+        public long length() throws IOException {
+            return content.length();
+        }
+
+        @Override
+        public Path sendfilePath() {
+            return content.getPath();
+        }
+
+        @Override
+        public void transfer(long start, long count, OutputStream out) throws IOException {
+            content.transferTo(start, count, Channels.newChannel(out));
+        }
+    }
+
+    /**
+     * Keeps one decoder open across the regions of a response. Regions arrive sorted, so a response costs a
+     * single pass over the blob; a region that starts before the decoder's position would open a new one.
+     */
+    private static class DecodedBody implements Body, Closeable {
+        private final BlobContent content;
+        private final StorageCodec codec;
+        private final long length;
+        private InputStream in;
+        private long position;
+
+        DecodedBody(BlobContent content, StorageCodec codec, long length) {
+            this.content = content;
+            this.codec = codec;
+            this.length = length;
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public Path sendfilePath() {
+            return null;
+        }
+
+        @Override
+        public void transfer(long start, long count, OutputStream out) throws IOException {
+            if (in == null || start < position) {
+                close();
+                in = codec.decode(content.openStream());
+                position = 0;
+            }
+            in.skipNBytes(start - position);
+            position = start;
+            byte[] buffer = new byte[DECODE_BUFFER_SIZE];
+            long remaining = count;
+            while (remaining > 0) {
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    throw new IOException("File ended before the requested range was written");
+                }
+                out.write(buffer, 0, read);
+                position += read;
+                remaining -= read;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (in != null) {
+                in.close();
+                in = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.customerarchive.controller;
+
+import com.example.customerarchive.dto.ImportJobDto;
+import com.example.customerarchive.model.ImportJob;
+import com.example.customerarchive.service.CustomerService;
+import com.example.customerarchive.service.ImportService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.security.Principal;
+
+@RestController
+@RequestMapping("/files/import")
+public class ImportController {
+    private static final Logger logger = LoggerFactory.getLogger(ImportController.class);
+
+    private final ImportService importService;
+    private final CustomerService customerService;
+
+    public ImportController(ImportService importService, CustomerService customerService) {
+        this.importService = importService;
+        this.customerService = customerService;
+    }
+
+    @PostMapping(consumes = MediaType.ALL_VALUE)
+    public ResponseEntity<?> importArchive(@RequestParam(required = false) Long customerId,
+                                           @RequestParam(required = false) Long jobId,
+                                           HttpServletRequest request, Principal principal) throws IOException {
+        String username = principal.getName();
+        logger.debug("User {} is attempting to import an archive", username);
+        if (customerId != null && !customerService.isCustomerOwnedByUser(customerId, username)) {
+            logger.warn("User {} is not allowed to import files for customer {}", username, customerId);
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Error: You are not allowed to import files for this customer.");
+        }
+        ImportJob job = importService.importArchive(request.getInputStream(), customerId, jobId, username);
+        logger.debug("Import job {} finished for user {}", job.getImportJobId(), username);
+        return ResponseEntity.ok(ImportJobDto.from(job));
+    }
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<ImportJobDto> getImportJob(@PathVariable Long jobId, Principal principal) {
+        String username = principal.getName();
+        logger.debug("User {} is fetching import job {}", username, jobId);
+        return ResponseEntity.ok(ImportJobDto.from(importService.getImportJob(jobId, username)));
+    }
+}
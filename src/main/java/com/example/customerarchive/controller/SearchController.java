@@ -0,0 +1,48 @@
+package com.example.customerarchive.controller;
+
+import com.example.customerarchive.dto.ContentSearchResultDto;
+import com.example.customerarchive.dto.SearchResultDto;
+import com.example.customerarchive.service.ContentSearchService;
+import com.example.customerarchive.service.SearchService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.security.Principal;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/search")
+public class SearchController {
+    private static final Logger logger = LoggerFactory.getLogger(SearchController.class);
+
+    private final SearchService searchService;
+    private final ContentSearchService contentSearchService;
+
+    public SearchController(SearchService searchService, ContentSearchService contentSearchService) {
+        this.searchService = searchService;
+        this.contentSearchService = contentSearchService;
+    }
+
+    @GetMapping
+    public ResponseEntity<List<SearchResultDto>> search(@RequestParam("q") String query,
+                                                        @RequestParam(required = false) Integer limit,
+                                                        Principal principal) {
+        String username = principal.getName();
+        logger.debug("Searching for user: {}", username);
+        return ResponseEntity.ok(searchService.search(username, query, limit));
+    }
+
+    @GetMapping("/content")
+    public ResponseEntity<List<ContentSearchResultDto>> searchContent(@RequestParam("q") String query,
+                                                                      @RequestParam(required = false) Integer limit,
+                                                                      Principal principal) {
+        String username = principal.getName();
+        logger.debug("Searching file contents for user: {}", username);
+        return ResponseEntity.ok(contentSearchService.search(username, query, limit));
+    }
+}
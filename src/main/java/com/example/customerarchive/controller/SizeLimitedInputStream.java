@@ -0,0 +1,58 @@
+package com.example.customerarchive.controller;
+
+import com.example.customerarchive.exception.PayloadTooLargeException;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Fails the read that goes past the limit, so a body without a Content-Length is cut off as soon as it is
+ * too large instead of after it has been written out in full.
+ */
+class SizeLimitedInputStream extends FilterInputStream {
+    private final long limit;
+    private long count;
+
+    SizeLimitedInputStream(InputStream in, long limit) {
+        super(in);
+        this.limit = limit;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+            count(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = super.read(b, off, len);
+        if (read > 0) {
+            count(read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        count(skipped);
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private void count(long read) {
+        count += read;
+        if (count > limit) {
+            throw new PayloadTooLargeException("A streamed upload may not be larger than " + limit + " bytes");
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.customerarchive.controller;
+
+import com.example.customerarchive.dto.FileDto;
+import com.example.customerarchive.dto.UploadSessionDto;
+import com.example.customerarchive.dto.UploadSessionRequestDto;
+import com.example.customerarchive.model.File;
+import com.example.customerarchive.service.CustomerService;
+import com.example.customerarchive.service.UploadSessionService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.security.Principal;
+
+@RestController
+@RequestMapping("/files/uploads")
+public class UploadSessionController {
+    public static final String CHUNK_CHECKSUM_HEADER = "X-Chunk-SHA256";
+
+    private static final Logger logger = LoggerFactory.getLogger(UploadSessionController.class);
+
+    private final UploadSessionService uploadSessionService;
+    private final CustomerService customerService;
+
+    public UploadSessionController(UploadSessionService uploadSessionService, CustomerService customerService) {
+        this.uploadSessionService = uploadSessionService;
+        this.customerService = customerService;
+    }
+
+    @PostMapping("/customer/{customerId}")
+    public ResponseEntity<?> createSession(@PathVariable Long customerId, @RequestBody UploadSessionRequestDto request,
+                                           Principal principal) {
+        String username = principal.getName();
+        logger.debug("User {} is attempting to start an upload for customer {}", username, customerId);
+        if (!customerService.isCustomerOwnedByUser(customerId, username)) {
+            logger.warn("User {} is not allowed to upload files for customer {}", username, customerId);
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Error: You are not allowed to upload files for this customer.");
+        }
+        return ResponseEntity.status(HttpStatus.CREATED).body(uploadSessionService.createSession(customerId, request, username));
+    }
+
+    @GetMapping("/{uploadId}")
+    public ResponseEntity<UploadSessionDto> getSession(@PathVariable String uploadId, Principal principal) {
+        return ResponseEntity.ok(uploadSessionService.getSession(uploadId, principal.getName()));
+    }
+
+    @PutMapping(value = "/{uploadId}/chunks/{chunkIndex}", consumes = MediaType.ALL_VALUE)
+    public ResponseEntity<Void> putChunk(@PathVariable String uploadId, @PathVariable int chunkIndex,
+                                         @RequestHeader(value = CHUNK_CHECKSUM_HEADER, required = false) String checksum,
+                                         HttpServletRequest request, Principal principal) throws IOException {
+        uploadSessionService.writeChunk(uploadId, chunkIndex, request.getInputStream(), request.getContentLengthLong(),
+                checksum, principal.getName());
+        return ResponseEntity.noContent().build();
+    }
+
+    @PostMapping("/{uploadId}/commit")
+    public ResponseEntity<FileDto> commit(@PathVariable String uploadId, Principal principal) {
+        File file = uploadSessionService.commitSession(uploadId, principal.getName());
+        logger.info("Upload {} committed as file {}", uploadId, file.getFileId());
+        return ResponseEntity.ok(FileDto.from(file));
+    }
+
+    @DeleteMapping("/{uploadId}")
+    public ResponseEntity<Void> abort(@PathVariable String uploadId, Principal principal) {
+        uploadSessionService.abortSession(uploadId, principal.getName());
+        return ResponseEntity.noContent().build();
+    }
+}
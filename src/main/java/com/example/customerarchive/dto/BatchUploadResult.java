@@ -0,0 +1,39 @@
+package com.example.customerarchive.dto;
+
+public class BatchUploadResult {
+    private final String fileName;
+    private final boolean success;
+    private final FileDto file;
+    private final String error;
+
+    private BatchUploadResult(String fileName, boolean success, FileDto file, String error) {
+        this.fileName = fileName;
+        this.success = success;
+        this.file = file;
+        this.error = error;
+    }
+
+    public static BatchUploadResult succeeded(FileDto file) {
+        return new BatchUploadResult(file.getFileName(), true, file, null);
+    }
+
+    public static BatchUploadResult failed(String fileName, String error) {
+        return new BatchUploadResult(fileName, false, null, error);
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public FileDto getFile() {
+        return file;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
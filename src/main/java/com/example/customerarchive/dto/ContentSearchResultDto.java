@@ -0,0 +1,37 @@
+package com.example.customerarchive.dto;
+
+public class ContentSearchResultDto {
+    private final Long fileId;
+    private final Long customerId;
+    private final String fileName;
+    private final String fileType;
+    private final float score;
+
+    public ContentSearchResultDto(Long fileId, Long customerId, String fileName, String fileType, float score) {
+        this.fileId = fileId;
+        this.customerId = customerId;
+        this.fileName = fileName;
+        this.fileType = fileType;
+        this.score = score;
+    }
+
+    public Long getFileId() {
+        return fileId;
+    }
+
+    public Long getCustomerId() {
+        return customerId;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public String getFileType() {
+        return fileType;
+    }
+
+    public float getScore() {
+        return score;
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.customerarchive.dto;
+
+import com.example.customerarchive.model.Customer;
+
+public class CustomerDto {
+    private final Long customerId;
+    private final String name;
+    private final String email;
+
+    public CustomerDto(Long customerId, String name, String email) {
+        this.customerId = customerId;
+        this.name = name;
+        this.email = email;
+    }
+
+    public static CustomerDto from(Customer customer) {
+        return new CustomerDto(customer.getCustomerId(), customer.getName(), customer.getEmail());
+    }
+
+    public Long getCustomerId() {
+        return customerId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+}
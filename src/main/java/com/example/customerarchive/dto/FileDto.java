@@ -0,0 +1,58 @@
+package com.example.customerarchive.dto;
+
+import com.example.customerarchive.model.File;
+
+import java.util.Date;
+
+public class FileDto {
+    private final Long fileId;
+    private final String fileName;
+    private final String fileType;
+    private final Long fileSize;
+    private final String checksum;
+    private final Date uploadDate;
+    private final Date updateDate;
+
+    public FileDto(Long fileId, String fileName, String fileType, Long fileSize, String checksum, Date uploadDate, Date updateDate) {
+        this.fileId = fileId;
+        this.fileName = fileName;
+        this.fileType = fileType;
+        this.fileSize = fileSize;
+        this.checksum = checksum;
+        this.uploadDate = uploadDate;
+        this.updateDate = updateDate;
+    }
+
+    public static FileDto from(File file) {
+        return new FileDto(file.getFileId(), file.getFileName(), file.getFileType(), file.getFileSize(),
+                file.getChecksum(), file.getUploadDate(), file.getUpdateDate());
+    }
+
+    public Long getFileId() {
+        return fileId;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public String getFileType() {
+        return fileType;
+    }
+
+    public Long getFileSize() {
+        return fileSize;
+    }
+
+    public String getChecksum() {
+        return checksum;
+    }
+
+    public Date getUploadDate() {
+        return uploadDate;
+    }
+
+    public Date getUpdateDate() {
+        return updateDate;
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.customerarchive.dto;
+
+import com.example.customerarchive.model.ImportJob;
+import com.example.customerarchive.model.ImportStatus;
+
+import java.util.Date;
+
+public class ImportJobDto {
+    private final Long importJobId;
+    private final ImportStatus status;
+    private final long processedEntries;
+    private final long importedFiles;
+    private final long failedEntries;
+    private final long importedBytes;
+    private final String errorMessage;
+    private final Date createdDate;
+    private final Date updateDate;
+
+    private ImportJobDto(ImportJob job) {
+        this.importJobId = job.getImportJobId();
+        this.status = job.getStatus();
+        this.processedEntries = job.getProcessedEntries();
+        this.importedFiles = job.getImportedFiles();
+        this.failedEntries = job.getFailedEntries();
+        this.importedBytes = job.getImportedBytes();
+        this.errorMessage = job.getErrorMessage();
+        this.createdDate = job.getCreatedDate();
+        this.updateDate = job.getUpdateDate();
+    }
+
+    public static ImportJobDto from(ImportJob job) {
+        return new ImportJobDto(job);
+    }
+
+    public Long getImportJobId() {
+        return importJobId;
+    }
+
+    public ImportStatus getStatus() {
+        return status;
+    }
+
+    public long getProcessedEntries() {
+        return processedEntries;
+    }
+
+    public long getImportedFiles() {
+        return importedFiles;
+    }
+
+    public long getFailedEntries() {
+        return failedEntries;
+    }
+
+    public long getImportedBytes() {
+        return importedBytes;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public Date getCreatedDate() {
+        return createdDate;
+    }
+
+    public Date getUpdateDate() {
+        return updateDate;
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.customerarchive.dto;
+
+import com.example.customerarchive.exception.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque keyset position: the id of the last row returned plus the value of the sort column,
+ * so the next page can start with a {@code where (key, id) > (:key, :id)} seek instead of an offset.
+ */
+public final class PageCursor {
+    private static final char SEPARATOR = ':';
+
+    private final long id;
+    private final String key;
+
+    public PageCursor(long id, String key) {
+        this.id = id;
+        this.key = key;
+    }
+
+    public static PageCursor first() {
+        return new PageCursor(0, null);
+    }
+
+    public static PageCursor decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return first();
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = decoded.indexOf(SEPARATOR);
+            if (separator < 0) {
+                return new PageCursor(Long.parseLong(decoded), null);
+            }
+            return new PageCursor(Long.parseLong(decoded.substring(0, separator)), decoded.substring(separator + 1));
+        } catch (IllegalArgumentException ex) {
+            throw new BadRequestException("Invalid page cursor", ex);
+        }
+    }
+
+    public String encode() {
+        String value = key == null ? Long.toString(id) : id + String.valueOf(SEPARATOR) + key;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getKey() {
+        return key;
+    }
+}
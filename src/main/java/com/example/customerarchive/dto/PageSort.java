@@ -0,0 +1,17 @@
+package com.example.customerarchive.dto;
+
+import com.example.customerarchive.exception.BadRequestException;
+
+public enum PageSort {
+    NAME,
+    DATE;
+
+    public static PageSort from(String value) {
+        for (PageSort sort : values()) {
+            if (sort.name().equalsIgnoreCase(value)) {
+                return sort;
+            }
+        }
+        throw new BadRequestException("Unsupported sort: " + value);
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.customerarchive.dto;
+
+public class SearchResultDto {
+    public static final String CUSTOMER = "customer";
+    public static final String FILE = "file";
+
+    private final String type;
+    private final Long customerId;
+    private final Long fileId;
+    private final String name;
+    private final String email;
+    private final String fileType;
+    private final float score;
+
+    private SearchResultDto(String type, Long customerId, Long fileId, String name, String email, String fileType, float score) {
+        this.type = type;
+        this.customerId = customerId;
+        this.fileId = fileId;
+        this.name = name;
+        this.email = email;
+        this.fileType = fileType;
+        this.score = score;
+    }
+
+    public static SearchResultDto customer(Long customerId, String name, String email, float score) {
+        return new SearchResultDto(CUSTOMER, customerId, null, name, email, null, score);
+    }
+
+    public static SearchResultDto file(Long customerId, Long fileId, String fileName, String fileType, float score) {
+        return new SearchResultDto(FILE, customerId, fileId, fileName, null, fileType, score);
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public Long getCustomerId() {
+        return customerId;
+    }
+
+    public Long getFileId() {
+        return fileId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getFileType() {
+        return fileType;
+    }
+
+    public float getScore() {
+        return score;
+    }
+}
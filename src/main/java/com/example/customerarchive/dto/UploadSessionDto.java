@@ -0,0 +1,127 @@
+package com.example.customerarchive.dto;
+
+import com.example.customerarchive.model.UploadSession;
+import com.example.customerarchive.model.UploadStatus;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+public class UploadSessionDto {
+    private final String uploadId;
+    private final Long customerId;
+    private final String fileName;
+    private final long size;
+    private final int chunkSize;
+    private final int chunkCount;
+    private final UploadStatus status;
+    private final int receivedChunks;
+    private final List<ByteRange> receivedRanges;
+    private final Date expiresAt;
+
+    private UploadSessionDto(UploadSession session, List<Integer> chunkIndexes, Date expiresAt) {
+        this.uploadId = session.getUploadId();
+        this.customerId = session.getCustomerId();
+        this.fileName = session.getFileName();
+        this.size = session.getFileSize();
+        this.chunkSize = session.getChunkSize();
+        this.chunkCount = session.getChunkCount();
+        this.status = session.getStatus();
+        this.receivedChunks = chunkIndexes.size();
+        this.receivedRanges = toRanges(session, chunkIndexes);
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * @param chunkIndexes the received chunks in ascending order
+     */
+    public static UploadSessionDto from(UploadSession session, List<Integer> chunkIndexes, Date expiresAt) {
+        return new UploadSessionDto(session, chunkIndexes, expiresAt);
+    }
+
+    // Runs of consecutive chunks collapse into one byte range, so a nearly finished upload stays short.
+    private static List<ByteRange> toRanges(UploadSession session, List<Integer> chunkIndexes) {
+        List<ByteRange> ranges = new ArrayList<>();
+        int runStart = -1;
+        int previous = -2;
+        for (int index : chunkIndexes) {
+            if (index != previous + 1) {
+                if (runStart >= 0) {
+                    ranges.add(ByteRange.of(session, runStart, previous));
+                }
+                runStart = index;
+            }
+            previous = index;
+        }
+        if (runStart >= 0) {
+            ranges.add(ByteRange.of(session, runStart, previous));
+        }
+        return ranges;
+    }
+
+    public String getUploadId() {
+        return uploadId;
+    }
+
+    public Long getCustomerId() {
+        return customerId;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    public UploadStatus getStatus() {
+        return status;
+    }
+
+    public int getReceivedChunks() {
+        return receivedChunks;
+    }
+
+    public List<ByteRange> getReceivedRanges() {
+        return receivedRanges;
+    }
+
+    public Date getExpiresAt() {
+        return expiresAt;
+    }
+
+    /**
+     * An inclusive range of byte offsets, like an HTTP byte range.
+     */
+    public static class ByteRange {
+        private final long start;
+        private final long end;
+
+        private ByteRange(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        static ByteRange of(UploadSession session, int firstChunk, int lastChunk) {
+            long end = Math.min((long) (lastChunk + 1) * session.getChunkSize(), session.getFileSize()) - 1;
+            return new ByteRange((long) firstChunk * session.getChunkSize(), end);
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getEnd() {
+            return end;
+        }
+    }
+}
@@ -14,5 +14,15 @@ class ErrorDetails {
         this.details = details;
     }
 
-    // Getters and setters
+    public Date getTimestamp() {
+        return timestamp;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public String getDetails() {
+        return details;
+    }
 }
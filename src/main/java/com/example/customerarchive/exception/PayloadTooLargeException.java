@@ -0,0 +1,7 @@
+package com.example.customerarchive.exception;
+
+public class PayloadTooLargeException extends RuntimeException {
+    public PayloadTooLargeException(String message) {
+        super(message);
+    }
+}
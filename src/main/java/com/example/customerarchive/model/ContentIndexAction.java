@@ -0,0 +1,9 @@
+package com.example.customerarchive.model;
+
+public enum ContentIndexAction {
+    INDEX_FILE,
+    DELETE_FILE,
+    DELETE_CUSTOMER,
+    // Indexes every file with an id above the target id, one batch at a time.
+    BACKFILL
+}
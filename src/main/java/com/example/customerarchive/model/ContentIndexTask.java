@@ -0,0 +1,86 @@
+package com.example.customerarchive.model;
+import jakarta.persistence.*;
+
+import java.util.Date;
+
+/**
+ * A pending change to the content index, written in the same transaction as the change itself.
+ */
+@Entity
+@Table(indexes = @Index(name = "idx_content_index_task_action", columnList = "action, taskId"))
+public class ContentIndexTask {
+    @Id
+    @PooledId(name = "content_index_task")
+    private Long taskId;
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16, nullable = false)
+    private ContentIndexAction action;
+    // A file id or customer id depending on the action; for BACKFILL, the last file id indexed so far.
+    private Long targetId;
+    // Failed attempts so far; a task is retried after notBefore until it reaches the limit.
+    private int attempts;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date notBefore;
+    // Set once the task has failed too often; it stays in the table for inspection but is not applied again.
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date failedDate;
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date createdDate;
+
+    public Long getTaskId() {
+        return taskId;
+    }
+
+    public void setTaskId(Long taskId) {
+        this.taskId = taskId;
+    }
+
+    public ContentIndexAction getAction() {
+        return action;
+    }
+
+    public void setAction(ContentIndexAction action) {
+        this.action = action;
+    }
+
+    public Long getTargetId() {
+        return targetId;
+    }
+
+    public void setTargetId(Long targetId) {
+        this.targetId = targetId;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public Date getNotBefore() {
+        return notBefore;
+    }
+
+    public void setNotBefore(Date notBefore) {
+        this.notBefore = notBefore;
+    }
+
+    public Date getFailedDate() {
+        return failedDate;
+    }
+
+    public void setFailedDate(Date failedDate) {
+        this.failedDate = failedDate;
+    }
+
+    public Date getCreatedDate() {
+        return createdDate;
+    }
+
+    public void setCreatedDate(Date createdDate) {
+        this.createdDate = createdDate;
+    }
+}
@@ -6,6 +6,7 @@ import jakarta.persistence.*;
 import java.util.Set;
 
 @Entity
+@Table(indexes = @Index(name = "idx_customer_user_name", columnList = "user_id, name"))
 public class Customer {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -14,7 +15,7 @@ public class Customer {
     @Column(unique = true)
     private String email;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
     @JsonBackReference
     private User user;
@@ -5,20 +5,39 @@ import jakarta.persistence.*;
 import java.util.Date;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_file_checksum", columnList = "checksum"),
+        @Index(name = "idx_file_customer_name", columnList = "customer_id, fileName"),
+        @Index(name = "idx_file_customer_upload_date", columnList = "customer_id, uploadDate")
+})
 public class File {
+    public static final String ID_GENERATOR_TABLE = "id_generator";
+    public static final String ID_GENERATOR_NAME = "file";
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    // Pooled ids let Hibernate batch inserts; IDENTITY forces one round trip per row.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @PooledId(name = ID_GENERATOR_NAME, allocationSize = ID_ALLOCATION_SIZE)
     private Long fileId;
     private String fileName;
     private String filePath;
     private String fileType;
+    @Column(length = 64)
+    private String checksum;
+    private Long fileSize;
+    // Null for rows written before compression at rest, which are all stored as they are.
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private StorageCodec codec;
+    // The storage root holding the blob. Null for rows written before storage roots, which use upload-dir.
+    private String storageRoot;
 
     @Temporal(TemporalType.TIMESTAMP)
     private Date uploadDate;
     @Temporal(TemporalType.TIMESTAMP)
     private Date updateDate;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "customer_id")
     @JsonBackReference
     private Customer customer;
@@ -78,4 +97,36 @@ public class File {
     public void setUpdateDate(Date updateDate) {
         this.updateDate = updateDate;
     }
+
+    public String getChecksum() {
+        return checksum;
+    }
+
+    public void setChecksum(String checksum) {
+        this.checksum = checksum;
+    }
+
+    public Long getFileSize() {
+        return fileSize;
+    }
+
+    public void setFileSize(Long fileSize) {
+        this.fileSize = fileSize;
+    }
+
+    public StorageCodec getCodec() {
+        return codec != null ? codec : StorageCodec.IDENTITY;
+    }
+
+    public void setCodec(StorageCodec codec) {
+        this.codec = codec;
+    }
+
+    public String getStorageRoot() {
+        return storageRoot;
+    }
+
+    public void setStorageRoot(String storageRoot) {
+        this.storageRoot = storageRoot;
+    }
 }
@@ -0,0 +1,36 @@
+package com.example.customerarchive.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * A row of the table {@link PooledId} reserves id blocks from. Mapped so that the schema is generated with
+ * the rest; the rows are only read and written by the generator.
+ */
+@Entity
+@Table(name = File.ID_GENERATOR_TABLE)
+public class IdGeneratorRow {
+    @Id
+    @Column(name = "generator_name")
+    private String generatorName;
+    @Column(name = "next_val")
+    private Long nextVal;
+
+    public String getGeneratorName() {
+        return generatorName;
+    }
+
+    public void setGeneratorName(String generatorName) {
+        this.generatorName = generatorName;
+    }
+
+    public Long getNextVal() {
+        return nextVal;
+    }
+
+    public void setNextVal(Long nextVal) {
+        this.nextVal = nextVal;
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.customerarchive.model;
+import jakarta.persistence.*;
+
+import java.util.Date;
+
+@Entity
+public class ImportJob {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long importJobId;
+    @Column(nullable = false)
+    private String username;
+    private Long defaultCustomerId;
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private ImportStatus status;
+    // Archive entries (including directories and the manifest) whose outcome is committed; a restart skips these.
+    private long processedEntries;
+    private long importedFiles;
+    private long failedEntries;
+    private long importedBytes;
+    @Column(length = 1000)
+    private String errorMessage;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date createdDate;
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date updateDate;
+
+    public Long getImportJobId() {
+        return importJobId;
+    }
+
+    public void setImportJobId(Long importJobId) {
+        this.importJobId = importJobId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public Long getDefaultCustomerId() {
+        return defaultCustomerId;
+    }
+
+    public void setDefaultCustomerId(Long defaultCustomerId) {
+        this.defaultCustomerId = defaultCustomerId;
+    }
+
+    public ImportStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(ImportStatus status) {
+        this.status = status;
+    }
+
+    public long getProcessedEntries() {
+        return processedEntries;
+    }
+
+    public void setProcessedEntries(long processedEntries) {
+        this.processedEntries = processedEntries;
+    }
+
+    public long getImportedFiles() {
+        return importedFiles;
+    }
+
+    public void setImportedFiles(long importedFiles) {
+        this.importedFiles = importedFiles;
+    }
+
+    public long getFailedEntries() {
+        return failedEntries;
+    }
+
+    public void setFailedEntries(long failedEntries) {
+        this.failedEntries = failedEntries;
+    }
+
+    public long getImportedBytes() {
+        return importedBytes;
+    }
+
+    public void setImportedBytes(long importedBytes) {
+        this.importedBytes = importedBytes;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+
+    public Date getCreatedDate() {
+        return createdDate;
+    }
+
+    public void setCreatedDate(Date createdDate) {
+        this.createdDate = createdDate;
+    }
+
+    public Date getUpdateDate() {
+        return updateDate;
+    }
+
+    public void setUpdateDate(Date updateDate) {
+        this.updateDate = updateDate;
+    }
+}
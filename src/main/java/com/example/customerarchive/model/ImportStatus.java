@@ -0,0 +1,7 @@
+package com.example.customerarchive.model;
+
+public enum ImportStatus {
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
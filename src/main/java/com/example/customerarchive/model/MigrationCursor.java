@@ -0,0 +1,44 @@
+package com.example.customerarchive.model;
+import jakarta.persistence.*;
+
+import java.util.Date;
+
+/**
+ * How far a background migration has got, so a restart resumes after the last committed batch instead of
+ * scanning the files table from the start. One row per migration and target layout.
+ */
+@Entity
+public class MigrationCursor {
+    @Id
+    @Column(length = 64)
+    private String name;
+    // Every file up to and including this id has been handled.
+    private Long lastFileId;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date updatedDate;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Long getLastFileId() {
+        return lastFileId;
+    }
+
+    public void setLastFileId(Long lastFileId) {
+        this.lastFileId = lastFileId;
+    }
+
+    public Date getUpdatedDate() {
+        return updatedDate;
+    }
+
+    public void setUpdatedDate(Date updatedDate) {
+        this.updatedDate = updatedDate;
+    }
+}
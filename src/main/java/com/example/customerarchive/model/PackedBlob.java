@@ -0,0 +1,62 @@
+package com.example.customerarchive.model;
+import jakarta.persistence.*;
+
+import java.util.Date;
+
+/**
+ * Where a small blob sits inside a segment file. Keyed like the blob's own file would be named: the
+ * checksum plus the codec's extension.
+ */
+@Entity
+@Table(indexes = @Index(name = "idx_packed_blob_segment", columnList = "segmentId"))
+public class PackedBlob {
+    @Id
+    @Column(length = 72)
+    private String blobKey;
+    private int segmentId;
+    private long segmentOffset;
+    private long storedLength;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date createdDate;
+
+    public String getBlobKey() {
+        return blobKey;
+    }
+
+    public void setBlobKey(String blobKey) {
+        this.blobKey = blobKey;
+    }
+
+    public int getSegmentId() {
+        return segmentId;
+    }
+
+    public void setSegmentId(int segmentId) {
+        this.segmentId = segmentId;
+    }
+
+    public long getSegmentOffset() {
+        return segmentOffset;
+    }
+
+    public void setSegmentOffset(long segmentOffset) {
+        this.segmentOffset = segmentOffset;
+    }
+
+    public long getStoredLength() {
+        return storedLength;
+    }
+
+    public void setStoredLength(long storedLength) {
+        this.storedLength = storedLength;
+    }
+
+    public Date getCreatedDate() {
+        return createdDate;
+    }
+
+    public void setCreatedDate(Date createdDate) {
+        this.createdDate = createdDate;
+    }
+}
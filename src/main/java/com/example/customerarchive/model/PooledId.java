@@ -0,0 +1,26 @@
+package com.example.customerarchive.model;
+
+import com.example.customerarchive.config.PooledIdGenerator;
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Ids handed out in blocks from a row of the {@code id_generator} table, so inserts can be batched.
+ * Unlike a JPA table generator, the blocks are reserved on a small pool of their own: an insert never
+ * waits for a second connection from the pool its transaction already holds one of.
+ */
+@IdGeneratorType(PooledIdGenerator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface PooledId {
+    /**
+     * The {@code generator_name} of the row.
+     */
+    String name();
+
+    int allocationSize() default 50;
+}
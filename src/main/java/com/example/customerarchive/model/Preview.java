@@ -0,0 +1,85 @@
+package com.example.customerarchive.model;
+import jakarta.persistence.*;
+
+import java.util.Date;
+
+/**
+ * The preview of one blob, and at the same time its entry in the render queue while it is PENDING.
+ */
+@Entity
+@Table(indexes = @Index(name = "idx_preview_status_update_date", columnList = "status, updateDate"))
+public class Preview {
+    @Id
+    @Column(length = 64)
+    private String digest;
+    // Sniffed type and codec of the blob the preview is rendered from.
+    private String contentType;
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private StorageCodec codec;
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private PreviewStatus status;
+    private int attempts;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date createdDate;
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date updateDate;
+
+    public String getDigest() {
+        return digest;
+    }
+
+    public void setDigest(String digest) {
+        this.digest = digest;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public StorageCodec getCodec() {
+        return codec;
+    }
+
+    public void setCodec(StorageCodec codec) {
+        this.codec = codec;
+    }
+
+    public PreviewStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(PreviewStatus status) {
+        this.status = status;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public Date getCreatedDate() {
+        return createdDate;
+    }
+
+    public void setCreatedDate(Date createdDate) {
+        this.createdDate = createdDate;
+    }
+
+    public Date getUpdateDate() {
+        return updateDate;
+    }
+
+    public void setUpdateDate(Date updateDate) {
+        this.updateDate = updateDate;
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.customerarchive.model;
+
+public enum PreviewStatus {
+    PENDING,
+    RUNNING,
+    READY,
+    UNSUPPORTED,
+    FAILED
+}
@@ -0,0 +1,66 @@
+package com.example.customerarchive.model;
+import jakarta.persistence.*;
+
+import java.util.Date;
+
+/**
+ * Storage that may no longer be needed, written in the same transaction that dropped the reference to it.
+ * Either a blob, which is only deleted if nothing references it by the time the task runs, or the path of
+ * a file stored before content addressing.
+ */
+@Entity
+@Table(indexes = @Index(name = "idx_reclaim_task_not_before", columnList = "notBefore"))
+public class ReclaimTask {
+    @Id
+    @PooledId(name = "reclaim_task")
+    private Long taskId;
+    @Column(length = 64)
+    private String digest;
+    // The path the released row pointed at, if it is not where the layout puts the blob.
+    private String filePath;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date notBefore;
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date createdDate;
+
+    public Long getTaskId() {
+        return taskId;
+    }
+
+    public void setTaskId(Long taskId) {
+        this.taskId = taskId;
+    }
+
+    public String getDigest() {
+        return digest;
+    }
+
+    public void setDigest(String digest) {
+        this.digest = digest;
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public void setFilePath(String filePath) {
+        this.filePath = filePath;
+    }
+
+    public Date getNotBefore() {
+        return notBefore;
+    }
+
+    public void setNotBefore(Date notBefore) {
+        this.notBefore = notBefore;
+    }
+
+    public Date getCreatedDate() {
+        return createdDate;
+    }
+
+    public void setCreatedDate(Date createdDate) {
+        this.createdDate = createdDate;
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.customerarchive.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * How a blob's bytes are encoded on disk. Checksums and sizes always describe the decoded content.
+ */
+public enum StorageCodec {
+    IDENTITY("", null),
+    GZIP(".gz", "gzip");
+
+    private final String extension;
+    private final String contentEncoding;
+
+    StorageCodec(String extension, String contentEncoding) {
+        this.extension = extension;
+        this.contentEncoding = contentEncoding;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * The HTTP content-coding that matches the stored bytes, or null if they are sent as they are.
+     */
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    public InputStream decode(InputStream in) throws IOException {
+        return this == GZIP ? new GZIPInputStream(in, 65536) : in;
+    }
+}
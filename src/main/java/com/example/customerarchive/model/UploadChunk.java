@@ -0,0 +1,52 @@
+package com.example.customerarchive.model;
+import jakarta.persistence.*;
+
+/**
+ * A chunk of an {@link UploadSession} that was written and flushed to disk. One row per chunk lets chunks
+ * arrive in parallel without contending on the session row.
+ */
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_upload_chunk_upload_index", columnNames = {"uploadId", "chunkIndex"}))
+public class UploadChunk {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long chunkId;
+    @Column(length = 36, nullable = false)
+    private String uploadId;
+    private int chunkIndex;
+    // SHA-256 of the chunk as received.
+    @Column(length = 64)
+    private String checksum;
+
+    public Long getChunkId() {
+        return chunkId;
+    }
+
+    public void setChunkId(Long chunkId) {
+        this.chunkId = chunkId;
+    }
+
+    public String getUploadId() {
+        return uploadId;
+    }
+
+    public void setUploadId(String uploadId) {
+        this.uploadId = uploadId;
+    }
+
+    public int getChunkIndex() {
+        return chunkIndex;
+    }
+
+    public void setChunkIndex(int chunkIndex) {
+        this.chunkIndex = chunkIndex;
+    }
+
+    public String getChecksum() {
+        return checksum;
+    }
+
+    public void setChecksum(String checksum) {
+        this.checksum = checksum;
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.customerarchive.model;
+import jakarta.persistence.*;
+
+import java.util.Date;
+
+/**
+ * A resumable upload in progress. Its content is written chunk by chunk into a preallocated file, and the
+ * session is deleted in the transaction that stores the finished file.
+ */
+@Entity
+@Table(indexes = @Index(name = "idx_upload_session_update_date", columnList = "updateDate"))
+public class UploadSession {
+    @Id
+    @Column(length = 36)
+    private String uploadId;
+    @Column(nullable = false)
+    private String username;
+    @Column(nullable = false)
+    private Long customerId;
+    private String fileName;
+    // As declared by the client; the sniffed type is used if this is missing.
+    private String contentType;
+    private long fileSize;
+    private int chunkSize;
+    private int chunkCount;
+    // Optional SHA-256 of the whole file, checked on commit.
+    @Column(length = 64)
+    private String checksum;
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private UploadStatus status;
+    // The storage root the part is written under and the blob is stored on. Null for sessions created before
+    // roots were chosen per session, whose parts are under upload-dir.
+    private String storageRoot;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date createdDate;
+    // Moved forward by every chunk; the session expires when this gets too old.
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date updateDate;
+
+    public String getUploadId() {
+        return uploadId;
+    }
+
+    public void setUploadId(String uploadId) {
+        this.uploadId = uploadId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public Long getCustomerId() {
+        return customerId;
+    }
+
+    public void setCustomerId(Long customerId) {
+        this.customerId = customerId;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public void setFileSize(long fileSize) {
+        this.fileSize = fileSize;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    public void setChunkCount(int chunkCount) {
+        this.chunkCount = chunkCount;
+    }
+
+    public String getChecksum() {
+        return checksum;
+    }
+
+    public void setChecksum(String checksum) {
+        this.checksum = checksum;
+    }
+
+    public String getStorageRoot() {
+        return storageRoot;
+    }
+
+    public void setStorageRoot(String storageRoot) {
+        this.storageRoot = storageRoot;
+    }
+
+    public UploadStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(UploadStatus status) {
+        this.status = status;
+    }
+
+    public Date getCreatedDate() {
+        return createdDate;
+    }
+
+    public void setCreatedDate(Date createdDate) {
+        this.createdDate = createdDate;
+    }
+
+    public Date getUpdateDate() {
+        return updateDate;
+    }
+
+    public void setUpdateDate(Date updateDate) {
+        this.updateDate = updateDate;
+    }
+}
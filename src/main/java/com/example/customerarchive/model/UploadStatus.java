@@ -0,0 +1,6 @@
+package com.example.customerarchive.model;
+
+public enum UploadStatus {
+    UPLOADING,
+    COMMITTING
+}
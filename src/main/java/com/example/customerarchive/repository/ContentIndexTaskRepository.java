@@ -0,0 +1,21 @@
+package com.example.customerarchive.repository;
+
+import com.example.customerarchive.model.ContentIndexAction;
+import com.example.customerarchive.model.ContentIndexTask;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+public interface ContentIndexTaskRepository extends JpaRepository<ContentIndexTask, Long> {
+    List<ContentIndexTask> findByActionNotAndFailedDateIsNullAndNotBeforeLessThanEqualOrderByTaskId(ContentIndexAction action,
+                                                                                                  Date now, Pageable pageable);
+
+    Optional<ContentIndexTask> findFirstByActionOrderByTaskId(ContentIndexAction action);
+
+    boolean existsByAction(ContentIndexAction action);
+
+    boolean existsByFailedDateIsNull();
+}
@@ -1,7 +1,11 @@
 package com.example.customerarchive.repository;
 
+import com.example.customerarchive.dto.CustomerDto;
 import com.example.customerarchive.model.Customer;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 import java.util.Optional;
@@ -10,4 +14,25 @@ public interface CustomerRepository extends JpaRepository<Customer, Long> {
     List<Customer> findByUserUsername(String username);
     Optional<Customer> findByCustomerIdAndUserUsername(Long id, String username);
 
-}
\ No newline at end of file
+    @Query("select new com.example.customerarchive.dto.CustomerDto(c.customerId, c.name, c.email) from Customer c where c.user.username = :username order by c.customerId")
+    List<CustomerDto> findDtosByUsername(@Param("username") String username);
+
+    @Query("select new com.example.customerarchive.dto.CustomerDto(c.customerId, c.name, c.email) from Customer c where c.customerId = :customerId and c.user.username = :username")
+    Optional<CustomerDto> findDtoByIdAndUsername(@Param("customerId") Long customerId, @Param("username") String username);
+
+    @Query("select u.username from Customer c join c.user u where c.customerId = :customerId")
+    Optional<String> findOwnerUsername(@Param("customerId") Long customerId);
+
+    @Query("select new com.example.customerarchive.dto.CustomerDto(c.customerId, c.name, c.email) from Customer c where c.user.username = :username and c.customerId > :afterId order by c.customerId")
+    List<CustomerDto> findPageOrderById(@Param("username") String username, @Param("afterId") Long afterId, Pageable pageable);
+
+    // Null names sort first on MySQL, so a cursor inside the null block continues by id and then moves on to named rows.
+    @Query("select new com.example.customerarchive.dto.CustomerDto(c.customerId, c.name, c.email) from Customer c where c.user.username = :username and ((c.name is null and c.customerId > :afterId) or c.name is not null) order by c.name, c.customerId")
+    List<CustomerDto> findPageOrderByNameAfterNull(@Param("username") String username, @Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("select new com.example.customerarchive.dto.CustomerDto(c.customerId, c.name, c.email) from Customer c where c.user.username = :username and (c.name > :afterName or (c.name = :afterName and c.customerId > :afterId)) order by c.name, c.customerId")
+    List<CustomerDto> findPageOrderByName(@Param("username") String username, @Param("afterName") String afterName, @Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("select c.customerId as customerId, c.name as name, c.email as email, u.username as ownerUsername from Customer c join c.user u where c.customerId > :afterId order by c.customerId")
+    List<CustomerSearchRow> findSearchRows(@Param("afterId") Long afterId, Pageable pageable);
+}
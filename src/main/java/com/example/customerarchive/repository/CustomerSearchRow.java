@@ -0,0 +1,11 @@
+package com.example.customerarchive.repository;
+
+public interface CustomerSearchRow {
+    Long getCustomerId();
+
+    String getName();
+
+    String getEmail();
+
+    String getOwnerUsername();
+}
@@ -0,0 +1,15 @@
+package com.example.customerarchive.repository;
+
+import com.example.customerarchive.model.StorageCodec;
+
+public interface FileLocation {
+    Long getFileId();
+
+    String getFilePath();
+
+    String getChecksum();
+
+    StorageCodec getCodec();
+
+    String getStorageRoot();
+}
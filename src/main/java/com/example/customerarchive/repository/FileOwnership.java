@@ -0,0 +1,7 @@
+package com.example.customerarchive.repository;
+
+public interface FileOwnership {
+    Long getCustomerId();
+
+    String getOwnerUsername();
+}
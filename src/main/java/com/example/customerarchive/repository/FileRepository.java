@@ -1,10 +1,51 @@
 package com.example.customerarchive.repository;
 
+import com.example.customerarchive.dto.FileDto;
 import com.example.customerarchive.model.File;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
 import java.util.Optional;
 
 public interface FileRepository extends JpaRepository<File, Long> {
+    List<File> findByCustomerCustomerId(Long customerId);
 
-}
\ No newline at end of file
+    List<File> findByCustomerCustomerIdOrderByFileId(Long customerId);
+
+    List<File> findByCustomerCustomerIdAndFileIdInOrderByFileId(Long customerId, Collection<Long> fileIds);
+
+    @Query("select new com.example.customerarchive.dto.FileDto(f.fileId, f.fileName, f.fileType, f.fileSize, f.checksum, f.uploadDate, f.updateDate) from File f where f.customer.customerId = :customerId order by f.fileId")
+    List<FileDto> findDtosByCustomerId(@Param("customerId") Long customerId);
+
+    @Query("select new com.example.customerarchive.dto.FileDto(f.fileId, f.fileName, f.fileType, f.fileSize, f.checksum, f.uploadDate, f.updateDate) from File f where f.customer.customerId = :customerId and (f.fileName > :afterName or (f.fileName = :afterName and f.fileId > :afterId)) order by f.fileName, f.fileId")
+    List<FileDto> findPageOrderByName(@Param("customerId") Long customerId, @Param("afterName") String afterName, @Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("select new com.example.customerarchive.dto.FileDto(f.fileId, f.fileName, f.fileType, f.fileSize, f.checksum, f.uploadDate, f.updateDate) from File f where f.customer.customerId = :customerId and (f.uploadDate > :afterDate or (f.uploadDate = :afterDate and f.fileId > :afterId)) order by f.uploadDate, f.fileId")
+    List<FileDto> findPageOrderByUploadDate(@Param("customerId") Long customerId, @Param("afterDate") Date afterDate, @Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("select c.customerId as customerId, u.username as ownerUsername from File f join f.customer c join c.user u where f.fileId = :fileId")
+    Optional<FileOwnership> findOwnership(@Param("fileId") Long fileId);
+
+    List<FileLocation> findByFileIdGreaterThanOrderByFileIdAsc(Long fileId, Pageable pageable);
+
+    boolean existsByFilePath(String filePath);
+
+    @Modifying
+    @Query("update File f set f.filePath = :newPath where f.filePath = :oldPath")
+    int updateFilePath(@Param("oldPath") String oldPath, @Param("newPath") String newPath);
+
+    @Modifying
+    @Query("update File f set f.filePath = :filePath, f.storageRoot = :storageRoot, f.checksum = :checksum, f.fileSize = :fileSize where f.fileId = :fileId")
+    int updateStoredLocation(@Param("fileId") Long fileId, @Param("filePath") String filePath,
+                             @Param("storageRoot") String storageRoot, @Param("checksum") String checksum,
+                             @Param("fileSize") long fileSize);
+
+    @Query("select f.fileId as fileId, f.customer.customerId as customerId, f.fileName as fileName, f.fileType as fileType from File f where f.fileId > :afterId order by f.fileId")
+    List<FileSearchRow> findSearchRows(@Param("afterId") Long afterId, Pageable pageable);
+}
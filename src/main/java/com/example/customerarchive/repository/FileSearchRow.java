@@ -0,0 +1,11 @@
+package com.example.customerarchive.repository;
+
+public interface FileSearchRow {
+    Long getFileId();
+
+    Long getCustomerId();
+
+    String getFileName();
+
+    String getFileType();
+}
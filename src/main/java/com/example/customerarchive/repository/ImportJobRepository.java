@@ -0,0 +1,10 @@
+package com.example.customerarchive.repository;
+
+import com.example.customerarchive.model.ImportJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Optional;
+
+public interface ImportJobRepository extends JpaRepository<ImportJob, Long> {
+    Optional<ImportJob> findByImportJobIdAndUsername(Long importJobId, String username);
+}
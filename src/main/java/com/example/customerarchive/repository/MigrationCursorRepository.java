@@ -0,0 +1,7 @@
+package com.example.customerarchive.repository;
+
+import com.example.customerarchive.model.MigrationCursor;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface MigrationCursorRepository extends JpaRepository<MigrationCursor, String> {
+}
@@ -0,0 +1,33 @@
+package com.example.customerarchive.repository;
+
+import com.example.customerarchive.model.PackedBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface PackedBlobRepository extends JpaRepository<PackedBlob, String> {
+    List<PackedBlob> findBySegmentIdOrderBySegmentOffset(int segmentId);
+
+    @Query("select p.segmentId as segmentId, sum(p.storedLength) as liveBytes from PackedBlob p group by p.segmentId")
+    List<SegmentUsage> findSegmentUsage();
+
+    @Query("select p.blobKey from PackedBlob p where p.blobKey in :blobKeys")
+    List<String> findExistingKeys(@Param("blobKeys") Collection<String> blobKeys);
+
+    /**
+     * Points the entry at its copy, unless it was deleted or replaced since compaction read it.
+     */
+    @Modifying
+    @Query("update PackedBlob p set p.segmentId = :toSegment, p.segmentOffset = :toOffset "
+            + "where p.blobKey = :blobKey and p.segmentId = :fromSegment and p.segmentOffset = :fromOffset")
+    int relocate(@Param("blobKey") String blobKey, @Param("fromSegment") int fromSegment, @Param("fromOffset") long fromOffset,
+                 @Param("toSegment") int toSegment, @Param("toOffset") long toOffset);
+
+    @Modifying
+    @Query("delete from PackedBlob p where p.blobKey in :blobKeys")
+    int deleteByBlobKeys(@Param("blobKeys") Collection<String> blobKeys);
+}
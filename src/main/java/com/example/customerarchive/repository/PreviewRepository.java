@@ -0,0 +1,30 @@
+package com.example.customerarchive.repository;
+
+import com.example.customerarchive.model.Preview;
+import com.example.customerarchive.model.PreviewStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Date;
+import java.util.List;
+
+public interface PreviewRepository extends JpaRepository<Preview, String> {
+    @Query("select p.digest from Preview p where p.status = :status order by p.updateDate")
+    List<String> findDigestsByStatus(@Param("status") PreviewStatus status, Pageable pageable);
+
+    /**
+     * Moves a pending preview to RUNNING. Returns 0 if another worker got there first.
+     */
+    @Modifying
+    @Query("update Preview p set p.status = :running, p.attempts = p.attempts + 1, p.updateDate = :now where p.digest = :digest and p.status = :pending")
+    int claim(@Param("digest") String digest, @Param("pending") PreviewStatus pending,
+              @Param("running") PreviewStatus running, @Param("now") Date now);
+
+    @Modifying
+    @Query("update Preview p set p.status = :pending, p.updateDate = :now where p.status = :running and p.updateDate < :staleBefore")
+    int requeueStale(@Param("running") PreviewStatus running, @Param("pending") PreviewStatus pending,
+                     @Param("staleBefore") Date staleBefore, @Param("now") Date now);
+}
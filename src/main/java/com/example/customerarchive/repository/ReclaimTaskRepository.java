@@ -0,0 +1,21 @@
+package com.example.customerarchive.repository;
+
+import com.example.customerarchive.model.ReclaimTask;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Date;
+import java.util.List;
+
+public interface ReclaimTaskRepository extends JpaRepository<ReclaimTask, Long> {
+    List<ReclaimTask> findByNotBeforeLessThanEqualOrderByTaskId(Date now, Pageable pageable);
+
+    boolean existsByDigestIsNull();
+
+    @Modifying
+    @Query("update ReclaimTask t set t.notBefore = :notBefore where t.taskId = :taskId")
+    int postpone(@Param("taskId") Long taskId, @Param("notBefore") Date notBefore);
+}
@@ -0,0 +1,7 @@
+package com.example.customerarchive.repository;
+
+public interface SegmentUsage {
+    Integer getSegmentId();
+
+    Long getLiveBytes();
+}
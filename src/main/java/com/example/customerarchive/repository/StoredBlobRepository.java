@@ -0,0 +1,21 @@
+package com.example.customerarchive.repository;
+
+import com.example.customerarchive.model.StoredBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface StoredBlobRepository extends JpaRepository<StoredBlob, String>, StoredBlobRepositoryCustom {
+    @Modifying
+    @Query("update StoredBlob b set b.refCount = b.refCount + 1 where b.digest = :digest")
+    int incrementRefCount(@Param("digest") String digest);
+
+    @Modifying
+    @Query("update StoredBlob b set b.refCount = b.refCount - 1 where b.digest = :digest and b.refCount > 0")
+    int decrementRefCount(@Param("digest") String digest);
+
+    @Modifying
+    @Query("delete from StoredBlob b where b.digest = :digest and b.refCount = 0")
+    int deleteIfUnreferenced(@Param("digest") String digest);
+}
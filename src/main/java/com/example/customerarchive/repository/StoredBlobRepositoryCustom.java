@@ -0,0 +1,8 @@
+package com.example.customerarchive.repository;
+
+public interface StoredBlobRepositoryCustom {
+    /**
+     * Adds a reference to the blob, creating its row on first use. Returns true if the blob is new.
+     */
+    boolean addReference(String digest, long size);
+}
@@ -0,0 +1,39 @@
+package com.example.customerarchive.repository;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+
+/**
+ * Runs on the transaction's connection through JDBC rather than the entity manager, so that losing the
+ * insert to a concurrent upload of the same content does not mark the transaction rollback-only. MySQL only
+ * rolls back the failed statement, and the increment is retried against the winner's row.
+ */
+class StoredBlobRepositoryCustomImpl implements StoredBlobRepositoryCustom {
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    StoredBlobRepositoryCustomImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public boolean addReference(String digest, long size) {
+        DuplicateKeyException lastConflict = null;
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            if (jdbcTemplate.update("update stored_blob set ref_count = ref_count + 1 where digest = ?", digest) > 0) {
+                return false;
+            }
+            try {
+                // Waits for a concurrent insert of the same digest to commit or roll back.
+                jdbcTemplate.update("insert into stored_blob (digest, size, ref_count, created_date) values (?, ?, 1, ?)",
+                        digest, size, new Timestamp(System.currentTimeMillis()));
+                return true;
+            } catch (DuplicateKeyException ex) {
+                lastConflict = ex;
+            }
+        }
+        throw lastConflict;
+    }
+}
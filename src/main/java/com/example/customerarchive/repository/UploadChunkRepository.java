@@ -0,0 +1,23 @@
+package com.example.customerarchive.repository;
+
+import com.example.customerarchive.model.UploadChunk;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface UploadChunkRepository extends JpaRepository<UploadChunk, Long> {
+    Optional<UploadChunk> findByUploadIdAndChunkIndex(String uploadId, int chunkIndex);
+
+    @Query("select c.chunkIndex from UploadChunk c where c.uploadId = :uploadId order by c.chunkIndex")
+    List<Integer> findChunkIndexes(@Param("uploadId") String uploadId);
+
+    long countByUploadId(String uploadId);
+
+    @Modifying
+    @Query("delete from UploadChunk c where c.uploadId = :uploadId")
+    int deleteByUploadId(@Param("uploadId") String uploadId);
+}
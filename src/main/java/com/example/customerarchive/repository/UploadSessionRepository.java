@@ -0,0 +1,36 @@
+package com.example.customerarchive.repository;
+
+import com.example.customerarchive.model.UploadSession;
+import com.example.customerarchive.model.UploadStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+    Optional<UploadSession> findByUploadIdAndUsername(String uploadId, String username);
+
+    /**
+     * Moves a session from one status to another. Returns 0 if it is no longer in {@code from}.
+     */
+    @Modifying
+    @Query("update UploadSession s set s.status = :to, s.updateDate = :now where s.uploadId = :uploadId and s.status = :from")
+    int transition(@Param("uploadId") String uploadId, @Param("from") UploadStatus from,
+                   @Param("to") UploadStatus to, @Param("now") Date now);
+
+    @Modifying
+    @Query("update UploadSession s set s.updateDate = :now where s.uploadId = :uploadId and s.status = :status")
+    int touch(@Param("uploadId") String uploadId, @Param("status") UploadStatus status, @Param("now") Date now);
+
+    @Query("select s.uploadId from UploadSession s where s.updateDate < :before order by s.updateDate")
+    List<String> findIdsUpdatedBefore(@Param("before") Date before, Pageable pageable);
+
+    @Modifying
+    @Query("delete from UploadSession s where s.uploadId = :uploadId and s.updateDate < :before")
+    int deleteIfUpdatedBefore(@Param("uploadId") String uploadId, @Param("before") Date before);
+}
@@ -1,26 +1,58 @@
 package com.example.customerarchive.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import java.security.Key;
+import javax.crypto.SecretKey;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 @Component
 public class JwtUtil {
     private String secret = "sfFJSyaAScLIIUO0prtr+2an0Xuhdae0+MkJu0CAsrE="; // Replace with your secret key
 
-    private Key getSigningKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(secret);
-        return Keys.hmacShaKeyFor(keyBytes);
+    private final SecretKey signingKey;
+    private final JwtParser jwtParser;
+    // Verified claims keyed by the exact token string; entries expire together with the token.
+    private final Cache<String, Claims> verifiedClaims;
+    private final boolean cacheClaims;
+    private final Timer verifyTimer;
+    private final Timer signTimer;
+
+    public JwtUtil(@Value("${security.jwt.claims-cache.maximum-size:10000}") long claimsCacheSize, MeterRegistry meterRegistry) {
+        this.signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret));
+        this.jwtParser = Jwts.parser()
+                .verifyWith(signingKey)
+                .build();
+        this.verifiedClaims = Caffeine.newBuilder()
+                .maximumSize(claimsCacheSize)
+                .expireAfter(new ClaimsExpiry())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedClaims, "jwt.claims");
+        // Caffeine evicts asynchronously, so a zero-sized cache would still answer hits for a moment.
+        this.cacheClaims = claimsCacheSize > 0;
+        // Only cache misses reach the parser, so this times actual signature verification.
+        this.verifyTimer = Timer.builder("archive.jwt.verify")
+                .description("Time to parse and verify a token that was not in the claims cache")
+                .register(meterRegistry);
+        this.signTimer = Timer.builder("archive.jwt.sign")
+                .register(meterRegistry);
     }
 
     public String extractUsername(String token) {
@@ -36,12 +68,17 @@ public class JwtUtil {
         return claimsResolver.apply(claims);
     }
 
-    private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    public Claims extractAllClaims(String token) {
+        if (!cacheClaims) {
+            return parseClaims(token);
+        }
+        return verifiedClaims.get(token, this::parseClaims);
+    }
+
+    private Claims parseClaims(String token) {
+        return verifyTimer.record(() -> jwtParser
+                .parseSignedClaims(token)
+                .getPayload());
     }
 
     private Boolean isTokenExpired(String token) {
@@ -54,13 +91,13 @@ public class JwtUtil {
     }
 
     private String createToken(Map<String, Object> claims, String subject) {
-        return Jwts.builder()
-                .setClaims(claims)
-                .setSubject(subject)
-                .setIssuedAt(new Date(System.currentTimeMillis()))
-                .setExpiration(new Date(System.currentTimeMillis() + 1000 * 60 * 60 * 10)) // 10 hours
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
-                .compact();
+        return signTimer.record(() -> Jwts.builder()
+                .claims(claims)
+                .subject(subject)
+                .issuedAt(new Date(System.currentTimeMillis()))
+                .expiration(new Date(System.currentTimeMillis() + 1000 * 60 * 60 * 10)) // 10 hours
+                .signWith(signingKey, Jwts.SIG.HS256)
+                .compact());
     }
 
     public Boolean validateToken(String token, String username) {
@@ -74,4 +111,25 @@ public class JwtUtil {
         }
         return null;
     }
-}
\ No newline at end of file
+
+    private static class ClaimsExpiry implements Expiry<String, Claims> {
+        @Override
+        public long expireAfterCreate(String token, Claims claims, long currentTime) {
+            Date expiration = claims.getExpiration();
+            if (expiration == null) {
+                return Long.MAX_VALUE;
+            }
+            return Math.max(0, TimeUnit.MILLISECONDS.toNanos(expiration.getTime() - System.currentTimeMillis()));
+        }
+
+        @Override
+        public long expireAfterUpdate(String token, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        @Override
+        public long expireAfterRead(String token, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -1,4 +1,6 @@
 package com.example.customerarchive.security;
+import jakarta.servlet.DispatcherType;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -40,7 +42,11 @@ public class SecurityConfig {
                 .cors() // Enable CORS
                 .and()
                 .authorizeHttpRequests(auth -> auth
+                        // Async dispatches resume requests (streamed exports) that were already authorized.
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers("/api/auth/**").permitAll()
+                        // Probes call health without a token; prometheus falls through and needs one like any other request.
+                        .requestMatchers(EndpointRequest.to("health")).permitAll()
                         .anyRequest().authenticated()
                 )
                 .sessionManagement(session -> session
@@ -1,5 +1,6 @@
 package com.example.customerarchive.security;
 
+import com.example.customerarchive.config.CorrelationIdFilter;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
@@ -17,6 +18,7 @@ public class WebConfig implements WebMvcConfigurer {
                         .allowedOrigins("http://localhost:3000") // Adjust the origin as necessary
                         .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
                         .allowedHeaders("*")
+                        .exposedHeaders(CorrelationIdFilter.HEADER)
                         .allowCredentials(true);
             }
         };
@@ -0,0 +1,35 @@
+package com.example.customerarchive.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+
+/**
+ * The stored bytes of a blob, still encoded with its codec: either a file of its own, or a slice of a
+ * packed segment.
+ */
+public interface BlobContent {
+    long length() throws IOException;
+
+    InputStream openStream() throws IOException;
+
+    /**
+     * Writes {@code count} bytes starting at {@code position} to {@code target}.
+     */
+    void transferTo(long position, long count, WritableByteChannel target) throws IOException;
+
+    /**
+     * The file holding exactly these bytes, for sendfile and random access, or null if they are packed.
+     */
+    Path getPath();
+
+    static BlobContent of(Path path) {
+        return new FileBlobContent(path);
+    }
+
+    static BlobContent of(ByteBuffer bytes) {
+        return new PackedBlobContent(bytes);
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.customerarchive.service;
+
+import com.example.customerarchive.model.StorageCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Set;
+import java.util.zip.Deflater;
+
+/**
+ * Decides per upload whether its blob is stored gzip-compressed. Only sniffed types that usually compress
+ * well are considered, and only if a trial deflate of the first buffer reaches the configured ratio, so
+ * content that is already compressed inside those types (LZW TIFFs, base64 of a JPEG) is left alone.
+ */
+@Component
+public class CompressionPolicy {
+    private final boolean enabled;
+    private final Set<String> types;
+    private final double minRatio;
+    private final int level;
+    private final long minSize;
+
+    public CompressionPolicy(@Value("${file.compression.enabled:true}") boolean enabled,
+                             @Value("${file.compression.types:text/plain,application/xml,image/tiff}") List<String> types,
+                             @Value("${file.compression.min-ratio:1.5}") double minRatio,
+                             @Value("${file.compression.level:6}") int level,
+                             @Value("${file.compression.min-size:4096}") long minSize) {
+        this.enabled = enabled;
+        this.types = Set.copyOf(types);
+        this.minRatio = minRatio;
+        this.level = level;
+        this.minSize = minSize;
+    }
+
+    /**
+     * @param head     the first bytes of the upload
+     * @param complete whether {@code head} holds the whole upload, in which case small files are skipped
+     */
+    public StorageCodec choose(String contentType, byte[] head, int length, boolean complete) {
+        if (!enabled || length == 0 || !types.contains(contentType) || (complete && length < minSize)) {
+            return StorageCodec.IDENTITY;
+        }
+        return trialRatio(head, length) >= minRatio ? StorageCodec.GZIP : StorageCodec.IDENTITY;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    private double trialRatio(byte[] head, int length) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(head, 0, length);
+            deflater.finish();
+            byte[] output = new byte[8192];
+            long compressed = 0;
+            while (!deflater.finished()) {
+                compressed += deflater.deflate(output);
+            }
+            return (double) length / Math.max(compressed, 1);
+        } finally {
+            deflater.end();
+        }
+    }
+}
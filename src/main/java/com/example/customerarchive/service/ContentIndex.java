@@ -0,0 +1,198 @@
+package com.example.customerarchive.service;
+
+import com.example.customerarchive.dto.ContentSearchResultDto;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.simple.SimpleQueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IOUtils;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * On-disk Lucene index over file names and extracted text, ranked with BM25. Lucene stores postings as
+ * compressed blocks; the index is sorted by owner so each user's documents sit together in every segment,
+ * and every query is filtered to the caller's own documents. The writer is opened on first use and holds
+ * the directory lock until shutdown, so only one instance can use a given directory.
+ */
+@Component
+public class ContentIndex implements DisposableBean {
+    static final String FILE_ID = "fileId";
+    static final String CUSTOMER_ID = "customerId";
+    static final String OWNER = "owner";
+    static final String FILE_NAME = "fileName";
+    static final String FILE_TYPE = "fileType";
+    static final String CONTENT = "content";
+    private static final Pattern NAME_SEPARATORS = Pattern.compile("[._\\-]+");
+
+    private final Path directoryPath;
+    private final double ramBufferMb;
+    private final float fileNameBoost;
+    private final Analyzer analyzer = new StandardAnalyzer();
+    private Directory directory;
+    private IndexWriter writer;
+    private SearcherManager searcherManager;
+
+    public ContentIndex(StorageLayout storageLayout,
+                        @Value("${search.content.index-dir:}") String indexDir,
+                        @Value("${search.content.ram-buffer-mb:32}") double ramBufferMb,
+                        @Value("${search.content.file-name-boost:2.0}") float fileNameBoost) {
+        this.directoryPath = indexDir.isBlank()
+                ? storageLayout.getRoot().resolve(".content-index")
+                : Paths.get(indexDir).toAbsolutePath().normalize();
+        this.ramBufferMb = ramBufferMb;
+        this.fileNameBoost = fileNameBoost;
+    }
+
+    /**
+     * Whether a committed index is on disk. Does not open the writer.
+     */
+    public boolean exists() throws IOException {
+        if (!Files.isDirectory(directoryPath)) {
+            return false;
+        }
+        try (Directory existing = FSDirectory.open(directoryPath)) {
+            return DirectoryReader.indexExists(existing);
+        }
+    }
+
+    public void updateFile(long fileId, long customerId, String owner, String fileName, String fileType, String content)
+            throws IOException {
+        Document document = new Document();
+        document.add(new StringField(FILE_ID, Long.toString(fileId), Field.Store.YES));
+        document.add(new StringField(CUSTOMER_ID, Long.toString(customerId), Field.Store.YES));
+        document.add(new StringField(OWNER, owner, Field.Store.NO));
+        document.add(new SortedDocValuesField(OWNER, new BytesRef(owner)));
+        if (fileName != null) {
+            document.add(new StoredField(FILE_NAME, fileName));
+            // The tokenizer keeps "contract.txt" or "q3_report" as one word; names are searched by their parts.
+            document.add(new TextField(FILE_NAME, NAME_SEPARATORS.matcher(fileName).replaceAll(" "), Field.Store.NO));
+        }
+        if (fileType != null) {
+            document.add(new StoredField(FILE_TYPE, fileType));
+        }
+        if (content != null) {
+            document.add(new TextField(CONTENT, content, Field.Store.NO));
+        }
+        writer().updateDocument(new Term(FILE_ID, Long.toString(fileId)), document);
+    }
+
+    public void deleteFile(long fileId) throws IOException {
+        writer().deleteDocuments(new Term(FILE_ID, Long.toString(fileId)));
+    }
+
+    public void deleteCustomer(long customerId) throws IOException {
+        writer().deleteDocuments(new Term(CUSTOMER_ID, Long.toString(customerId)));
+    }
+
+    /**
+     * Makes the changes so far durable and visible to searches.
+     */
+    public void commit() throws IOException {
+        writer().commit();
+        searcherManager.maybeRefresh();
+    }
+
+    /**
+     * Supports the simple query syntax: all terms must match by default, {@code "..."} for phrases,
+     * {@code |} for or, {@code -} to exclude, and a trailing {@code *} for prefixes.
+     */
+    public List<ContentSearchResultDto> search(String owner, String query, int limit) throws IOException {
+        SimpleQueryParser parser = new SimpleQueryParser(analyzer, Map.of(FILE_NAME, fileNameBoost, CONTENT, 1.0f));
+        parser.setDefaultOperator(BooleanClause.Occur.MUST);
+        Query text = parser.parse(query);
+        if (text == null) {
+            return List.of();
+        }
+        Query filtered = new BooleanQuery.Builder()
+                .add(text, BooleanClause.Occur.MUST)
+                .add(new TermQuery(new Term(OWNER, owner)), BooleanClause.Occur.FILTER)
+                .build();
+        SearcherManager manager = searcherManager();
+        IndexSearcher searcher = manager.acquire();
+        try {
+            TopDocs topDocs = searcher.search(filtered, limit);
+            StoredFields storedFields = searcher.storedFields();
+            List<ContentSearchResultDto> results = new ArrayList<>(topDocs.scoreDocs.length);
+            for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+                Document document = storedFields.document(scoreDoc.doc);
+                results.add(new ContentSearchResultDto(Long.valueOf(document.get(FILE_ID)), Long.valueOf(document.get(CUSTOMER_ID)),
+                        document.get(FILE_NAME), document.get(FILE_TYPE), Math.round(scoreDoc.score * 1000) / 1000f));
+            }
+            return results;
+        } finally {
+            manager.release(searcher);
+        }
+    }
+
+    private synchronized IndexWriter writer() throws IOException {
+        if (writer == null) {
+            Files.createDirectories(directoryPath);
+            Directory opened = FSDirectory.open(directoryPath);
+            IndexWriter opening = null;
+            try {
+                IndexWriterConfig config = new IndexWriterConfig(analyzer)
+                        .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND)
+                        .setIndexSort(new Sort(new SortField(OWNER, SortField.Type.STRING)))
+                        .setRAMBufferSizeMB(ramBufferMb);
+                opening = new IndexWriter(opened, config);
+                searcherManager = new SearcherManager(opening, null);
+            } catch (IOException | RuntimeException ex) {
+                IOUtils.closeWhileHandlingException(opening, opened);
+                throw ex;
+            }
+            writer = opening;
+            directory = opened;
+        }
+        return writer;
+    }
+
+    private synchronized SearcherManager searcherManager() throws IOException {
+        writer();
+        return searcherManager;
+    }
+
+    @Override
+    public synchronized void destroy() throws IOException {
+        if (writer != null) {
+            // Uncommitted changes are dropped; their tasks are still queued and replayed on the next start.
+            IOUtils.close(searcherManager);
+            writer.rollback();
+            directory.close();
+            writer = null;
+        }
+    }
+}
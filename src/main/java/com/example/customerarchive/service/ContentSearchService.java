@@ -0,0 +1,15 @@
+package com.example.customerarchive.service;
+
+import com.example.customerarchive.dto.ContentSearchResultDto;
+
+import java.util.List;
+
+public interface ContentSearchService {
+    void fileSaved(Long fileId);
+
+    void fileDeleted(Long fileId);
+
+    void customerDeleted(Long customerId);
+
+    List<ContentSearchResultDto> search(String username, String query, Integer limit);
+}
@@ -0,0 +1,296 @@
+package com.example.customerarchive.service;
+
+import com.example.customerarchive.dto.ContentSearchResultDto;
+import com.example.customerarchive.exception.BadRequestException;
+import com.example.customerarchive.exception.FileStorageException;
+import com.example.customerarchive.model.ContentIndexAction;
+import com.example.customerarchive.model.ContentIndexTask;
+import com.example.customerarchive.model.File;
+import com.example.customerarchive.repository.ContentIndexTaskRepository;
+import com.example.customerarchive.repository.FileLocation;
+import com.example.customerarchive.repository.FileOwnership;
+import com.example.customerarchive.repository.FileRepository;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Keeps the content index in step with the database off the request path. Changes are recorded as
+ * {@link ContentIndexTask} rows in the transaction that makes them, and a single worker applies them in
+ * batches once that commits. Tasks are re-read against the database when applied, so replaying one after
+ * a crash, or applying two out of order, leaves the index matching the committed state. A task that fails
+ * is postponed without holding up the ones behind it, and set aside after {@code search.content.max-attempts}.
+ */
+@Service
+@Timed(value = "archive.service", description = "Service method latency, tagged by class and method")
+public class ContentSearchServiceImpl implements ContentSearchService {
+    private static final Logger logger = LoggerFactory.getLogger(ContentSearchServiceImpl.class);
+
+    private final ContentIndexTaskRepository taskRepository;
+    private final FileRepository fileRepository;
+    private final FileStorageService fileStorageService;
+    private final ContentIndex contentIndex;
+    private final TextExtractor textExtractor;
+    private final AsyncTaskExecutor contentIndexExecutor;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    @Value("${search.content.enabled:true}")
+    private boolean enabled;
+    @Value("${search.content.batch-size:200}")
+    private int batchSize;
+    @Value("${search.content.max-attempts:5}")
+    private int maxAttempts;
+    @Value("${search.content.retry-delay:5m}")
+    private Duration retryDelay;
+    @Value("${search.default-limit:20}")
+    private int defaultLimit;
+    @Value("${search.max-limit:100}")
+    private int maxLimit;
+    @Value("${search.max-query-length:200}")
+    private int maxQueryLength;
+
+    public ContentSearchServiceImpl(ContentIndexTaskRepository taskRepository, FileRepository fileRepository,
+                                    FileStorageService fileStorageService, ContentIndex contentIndex, TextExtractor textExtractor,
+                                    @Qualifier("contentIndexExecutor") AsyncTaskExecutor contentIndexExecutor,
+                                    TransactionTemplate transactionTemplate, MeterRegistry meterRegistry) {
+        this.taskRepository = taskRepository;
+        this.fileRepository = fileRepository;
+        this.fileStorageService = fileStorageService;
+        this.contentIndex = contentIndex;
+        this.textExtractor = textExtractor;
+        this.contentIndexExecutor = contentIndexExecutor;
+        this.transactionTemplate = transactionTemplate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Transactional
+    public void fileSaved(Long fileId) {
+        enqueue(ContentIndexAction.INDEX_FILE, fileId);
+    }
+
+    @Transactional
+    public void fileDeleted(Long fileId) {
+        enqueue(ContentIndexAction.DELETE_FILE, fileId);
+    }
+
+    @Transactional
+    public void customerDeleted(Long customerId) {
+        enqueue(ContentIndexAction.DELETE_CUSTOMER, customerId);
+    }
+
+    public List<ContentSearchResultDto> search(String username, String query, Integer limit) {
+        if (query == null || query.length() > maxQueryLength) {
+            throw new BadRequestException("A search query must be at most " + maxQueryLength + " characters");
+        }
+        if (!enabled || query.isBlank()) {
+            return List.of();
+        }
+        int resolvedLimit = limit == null || limit < 1 ? defaultLimit : Math.min(limit, maxLimit);
+        try {
+            return contentIndex.search(username, query, resolvedLimit);
+        } catch (IOException ex) {
+            throw new FileStorageException("Could not search the content index", ex);
+        }
+    }
+
+    /**
+     * Files stored before the content index existed, or while its directory was lost, are indexed in the
+     * background after startup.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void scheduleBackfill() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            if (!contentIndex.exists() && !taskRepository.existsByAction(ContentIndexAction.BACKFILL)) {
+                transactionTemplate.executeWithoutResult(status -> taskRepository.save(newTask(ContentIndexAction.BACKFILL, 0L)));
+                logger.info("No content index found, queued a backfill of all files");
+            }
+        } catch (IOException ex) {
+            logger.error("Could not check for an existing content index", ex);
+        }
+        signal();
+    }
+
+    /**
+     * Picks up tasks whose signal was lost, e.g. because the worker stopped on an error.
+     */
+    @Scheduled(initialDelayString = "${search.content.initial-delay-ms:30000}",
+            fixedDelayString = "${search.content.poll-interval-ms:30000}")
+    public void pollPending() {
+        if (enabled && taskRepository.existsByFailedDateIsNull()) {
+            signal();
+        }
+    }
+
+    private void enqueue(ContentIndexAction action, Long targetId) {
+        if (!enabled) {
+            return;
+        }
+        taskRepository.save(newTask(action, targetId));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // The worker must not look for the task before it is committed.
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    signal();
+                }
+            });
+        } else {
+            signal();
+        }
+    }
+
+    private static ContentIndexTask newTask(ContentIndexAction action, Long targetId) {
+        ContentIndexTask task = new ContentIndexTask();
+        task.setAction(action);
+        task.setTargetId(targetId);
+        task.setCreatedDate(new Date());
+        task.setNotBefore(task.getCreatedDate());
+        return task;
+    }
+
+    private void signal() {
+        contentIndexExecutor.execute(this::drain);
+    }
+
+    void drain() {
+        try {
+            while (applyBatch() || backfillBatch()) {
+                // Live changes go first; the backfill advances one batch whenever the queue is empty.
+            }
+        } catch (IOException | RuntimeException ex) {
+            logger.error("Content indexing stopped, the remaining tasks are retried on the next poll", ex);
+        }
+    }
+
+    private boolean applyBatch() throws IOException {
+        List<ContentIndexTask> tasks = taskRepository.findByActionNotAndFailedDateIsNullAndNotBeforeLessThanEqualOrderByTaskId(
+                ContentIndexAction.BACKFILL, new Date(), PageRequest.of(0, batchSize));
+        if (tasks.isEmpty()) {
+            return false;
+        }
+        long start = System.nanoTime();
+        List<ContentIndexTask> applied = new ArrayList<>(tasks.size());
+        List<ContentIndexTask> failed = new ArrayList<>();
+        for (ContentIndexTask task : tasks) {
+            try {
+                switch (task.getAction()) {
+                    case INDEX_FILE -> indexFile(task.getTargetId());
+                    case DELETE_FILE -> contentIndex.deleteFile(task.getTargetId());
+                    case DELETE_CUSTOMER -> contentIndex.deleteCustomer(task.getTargetId());
+                    default -> logger.warn("Skipping content index task {} with action {}", task.getTaskId(), task.getAction());
+                }
+                applied.add(task);
+            } catch (IOException | RuntimeException ex) {
+                postpone(task, ex);
+                failed.add(task);
+            }
+        }
+        contentIndex.commit();
+        transactionTemplate.executeWithoutResult(status -> {
+            taskRepository.deleteAllInBatch(applied);
+            taskRepository.saveAll(failed);
+        });
+        record(start, "tasks");
+        return true;
+    }
+
+    private boolean backfillBatch() throws IOException {
+        ContentIndexTask backfill = taskRepository.findFirstByActionOrderByTaskId(ContentIndexAction.BACKFILL).orElse(null);
+        if (backfill == null) {
+            return false;
+        }
+        long start = System.nanoTime();
+        List<FileLocation> files = fileRepository.findByFileIdGreaterThanOrderByFileIdAsc(backfill.getTargetId(),
+                PageRequest.of(0, batchSize));
+        List<ContentIndexTask> failed = new ArrayList<>();
+        for (FileLocation file : files) {
+            try {
+                indexFile(file.getFileId());
+            } catch (IOException | RuntimeException ex) {
+                // Retried on its own so the backfill can move past it.
+                ContentIndexTask retry = newTask(ContentIndexAction.INDEX_FILE, file.getFileId());
+                postpone(retry, ex);
+                failed.add(retry);
+            }
+        }
+        contentIndex.commit();
+        transactionTemplate.executeWithoutResult(status -> {
+            taskRepository.saveAll(failed);
+            if (files.size() < batchSize) {
+                taskRepository.deleteById(backfill.getTaskId());
+            } else {
+                backfill.setTargetId(files.get(files.size() - 1).getFileId());
+                taskRepository.save(backfill);
+            }
+        });
+        if (files.size() < batchSize) {
+            logger.info("Content index backfill finished");
+        }
+        record(start, "backfill");
+        return true;
+    }
+
+    private void postpone(ContentIndexTask task, Exception ex) {
+        task.setAttempts(task.getAttempts() + 1);
+        if (task.getAttempts() >= maxAttempts) {
+            task.setFailedDate(new Date());
+            logger.error("Giving up on content index task {} ({} {}) after {} attempts", task.getTaskId(), task.getAction(),
+                    task.getTargetId(), task.getAttempts(), ex);
+        } else {
+            task.setNotBefore(new Date(System.currentTimeMillis() + retryDelay.toMillis()));
+            logger.warn("Could not apply content index task {} ({} {}), retrying in {}", task.getTaskId(), task.getAction(),
+                    task.getTargetId(), retryDelay, ex);
+        }
+    }
+
+    private void indexFile(Long fileId) throws IOException {
+        File file = fileRepository.findById(fileId).orElse(null);
+        FileOwnership ownership = file != null ? fileRepository.findOwnership(fileId).orElse(null) : null;
+        if (ownership == null) {
+            // Deleted since the task was queued; its own delete task may not have been applied yet.
+            contentIndex.deleteFile(fileId);
+            return;
+        }
+        String content = null;
+        if (textExtractor.supports(file.getFileType())) {
+            try {
+                content = textExtractor.extract(fileStorageService.openContent(file), file.getCodec(), file.getFileType());
+            } catch (IOException | RuntimeException ex) {
+                logger.warn("Could not extract text from file {}, indexing its name only", fileId, ex);
+            }
+        }
+        contentIndex.updateFile(fileId, ownership.getCustomerId(), ownership.getOwnerUsername(), file.getFileName(),
+                file.getFileType(), content);
+    }
+
+    private void record(long start, String source) {
+        Timer.builder("archive.content.index")
+                .description("Time to apply one batch of content index changes")
+                .tag("source", source)
+                .register(meterRegistry)
+                .record(Duration.ofNanos(System.nanoTime() - start));
+    }
+}
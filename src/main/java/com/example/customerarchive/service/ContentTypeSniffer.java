@@ -0,0 +1,80 @@
+package com.example.customerarchive.service;
+
+import java.nio.charset.StandardCharsets;
+
+public final class ContentTypeSniffer {
+    public static final int SNIFF_LENGTH = 512;
+    public static final String OCTET_STREAM = "application/octet-stream";
+
+    private ContentTypeSniffer() {
+    }
+
+    public static String sniff(byte[] head, int length) {
+        if (startsWith(head, length, "%PDF-")) {
+            return "application/pdf";
+        }
+        if (startsWith(head, length, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) {
+            return "image/png";
+        }
+        if (startsWith(head, length, 0xFF, 0xD8, 0xFF)) {
+            return "image/jpeg";
+        }
+        if (startsWith(head, length, "GIF87a") || startsWith(head, length, "GIF89a")) {
+            return "image/gif";
+        }
+        if (startsWith(head, length, 'I', 'I', 0x2A, 0x00) || startsWith(head, length, 'M', 'M', 0x00, 0x2A)) {
+            return "image/tiff";
+        }
+        if (startsWith(head, length, 'P', 'K', 0x03, 0x04)) {
+            return "application/zip";
+        }
+        if (startsWith(head, length, 0x1F, 0x8B)) {
+            return "application/gzip";
+        }
+        if (startsWith(head, length, "<?xml")) {
+            return "application/xml";
+        }
+        if (isText(head, length)) {
+            return "text/plain";
+        }
+        return OCTET_STREAM;
+    }
+
+    private static boolean startsWith(byte[] head, int length, String prefix) {
+        byte[] bytes = prefix.getBytes(StandardCharsets.US_ASCII);
+        if (length < bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (head[i] != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean startsWith(byte[] head, int length, int... signature) {
+        if (length < signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if ((head[i] & 0xFF) != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isText(byte[] head, int length) {
+        if (length == 0) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            int b = head[i] & 0xFF;
+            if (b < 0x09 || (b > 0x0D && b < 0x20 && b != 0x1B)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.customerarchive.service;
 
+import com.example.customerarchive.dto.CursorPage;
+import com.example.customerarchive.dto.CustomerDto;
 import com.example.customerarchive.model.Customer;
 
 import java.util.List;
@@ -8,7 +10,8 @@ public interface CustomerService {
     Customer addCustomer(Customer customer, String username);
     Customer updateCustomer(Long id, Customer customerDetails, String username);
     void deleteCustomer(Long id, String username);
-    List<Customer> getAllCustomers(String username);
-    Customer getCustomerById(Long id, String username);
+    List<CustomerDto> getAllCustomers(String username);
+    CursorPage<CustomerDto> getCustomersPage(String username, String cursor, Integer size, String sort);
+    CustomerDto getCustomerById(Long id, String username);
     boolean isCustomerOwnedByUser(Long customerId, String username);
 }
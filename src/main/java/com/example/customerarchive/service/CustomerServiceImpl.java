@@ -1,92 +1,159 @@
 package com.example.customerarchive.service;
 
+import com.example.customerarchive.dto.CursorPage;
+import com.example.customerarchive.dto.CustomerDto;
+import com.example.customerarchive.dto.PageCursor;
+import com.example.customerarchive.dto.PageSort;
 import com.example.customerarchive.exception.ResourceNotFoundException;
 import com.example.customerarchive.model.Customer;
+import com.example.customerarchive.model.File;
 import com.example.customerarchive.model.User;
 import com.example.customerarchive.repository.CustomerRepository;
 import com.example.customerarchive.repository.UserRepository;
+import io.micrometer.core.annotation.Timed;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
 @Service
+@Timed(value = "archive.service", description = "Service method latency, tagged by class and method")
 public class CustomerServiceImpl implements CustomerService {
     private static final Logger logger = LoggerFactory.getLogger(CustomerServiceImpl.class);
 
     private final CustomerRepository customerRepository;
     private final UserRepository userRepository;
+    private final OwnershipCache ownershipCache;
+    private final SearchIndex searchIndex;
+    private final ContentSearchService contentSearchService;
+    private final FileStorageService fileStorageService;
+    @Value("${pagination.default-size:50}")
+    private int defaultPageSize;
+    @Value("${pagination.max-size:500}")
+    private int maxPageSize;
 
-    public CustomerServiceImpl(CustomerRepository customerRepository, UserRepository userRepository) {
+    public CustomerServiceImpl(CustomerRepository customerRepository, UserRepository userRepository, OwnershipCache ownershipCache,
+                               SearchIndex searchIndex, ContentSearchService contentSearchService,
+                               FileStorageService fileStorageService) {
         this.customerRepository = customerRepository;
         this.userRepository = userRepository;
+        this.ownershipCache = ownershipCache;
+        this.searchIndex = searchIndex;
+        this.contentSearchService = contentSearchService;
+        this.fileStorageService = fileStorageService;
     }
 
     @Transactional
     public Customer addCustomer(Customer customer, String username) {
-        logger.info("Adding customer for user: {}", username);
+        logger.debug("Adding customer for user: {}", username);
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new RuntimeException("User not found for username :: " + username));
         customer.setUser(user);
         Customer savedCustomer = customerRepository.save(customer);
-        logger.info("Customer added successfully for user: {}", username);
+        searchIndex.customerSaved(username, savedCustomer.getCustomerId(), savedCustomer.getName(), savedCustomer.getEmail());
+        logger.debug("Customer added successfully for user: {}", username);
         return savedCustomer;
     }
 
     @Transactional
     public Customer updateCustomer(Long id, Customer customerDetails, String username) {
-        logger.info("Updating customer with id: {} for user: {}", id, username);
+        logger.debug("Updating customer with id: {} for user: {}", id, username);
         Customer existingCustomer = customerRepository.findByCustomerIdAndUserUsername(id, username)
                 .orElseThrow(() -> new ResourceNotFoundException("Customer not found with id: " + id));
         existingCustomer.setName(customerDetails.getName());
         existingCustomer.setEmail(customerDetails.getEmail());
         Customer updatedCustomer = customerRepository.save(existingCustomer);
-        logger.info("Customer with id: {} updated successfully for user: {}", id, username);
+        searchIndex.customerSaved(username, id, updatedCustomer.getName(), updatedCustomer.getEmail());
+        logger.debug("Customer with id: {} updated successfully for user: {}", id, username);
         return updatedCustomer;
     }
 
     @Transactional
     public void deleteCustomer(Long id, String username) {
-        logger.info("Deleting customer with id: {} for user: {}", id, username);
+        logger.debug("Deleting customer with id: {} for user: {}", id, username);
         Customer existingCustomer = customerRepository.findByCustomerIdAndUserUsername(id, username)
                 .orElseThrow(() -> new ResourceNotFoundException("Customer not found with id: " + id));
+        // The rows go with the customer by cascade, their blobs have to be released explicitly.
+        for (File file : existingCustomer.getFiles()) {
+            fileStorageService.releaseFile(file);
+        }
         customerRepository.delete(existingCustomer);
-        logger.info("Customer with id: {} deleted successfully for user: {}", id, username);
+        ownershipCache.evictCustomer(id);
+        searchIndex.customerDeleted(id);
+        contentSearchService.customerDeleted(id);
+        logger.debug("Customer with id: {} deleted successfully for user: {}", id, username);
     }
 
     @Transactional(readOnly = true)
-    public List<Customer> getAllCustomers(String username) {
-        logger.info("Fetching all customers for user: {}", username);
-        List<Customer> customers = customerRepository.findByUserUsername(username);
-        logger.info("Fetched {} customers for user: {}", customers.size(), username);
+    public List<CustomerDto> getAllCustomers(String username) {
+        logger.debug("Fetching all customers for user: {}", username);
+        List<CustomerDto> customers = customerRepository.findDtosByUsername(username);
+        logger.debug("Fetched {} customers for user: {}", customers.size(), username);
         return customers;
     }
 
     @Transactional(readOnly = true)
-    public Customer getCustomerById(Long id, String username) {
-        logger.info("Fetching customer with id: {} for user: {}", id, username);
-        Customer customer = customerRepository.findByCustomerIdAndUserUsername(id, username)
+    public CursorPage<CustomerDto> getCustomersPage(String username, String cursor, Integer size, String sort) {
+        PageSort pageSort = PageSort.from(sort);
+        PageCursor position = PageCursor.decode(cursor);
+        int pageSize = resolvePageSize(size);
+        logger.debug("Fetching customers page for user: {} sorted by {} with size {}", username, pageSort, pageSize);
+        Pageable limit = PageRequest.of(0, pageSize + 1);
+        List<CustomerDto> rows;
+        if (pageSort == PageSort.DATE) {
+            // Customers carry no timestamp; identity ids are assigned in creation order.
+            rows = customerRepository.findPageOrderById(username, position.getId(), limit);
+        } else if (position.getKey() == null) {
+            rows = customerRepository.findPageOrderByNameAfterNull(username, position.getId(), limit);
+        } else {
+            rows = customerRepository.findPageOrderByName(username, position.getKey(), position.getId(), limit);
+        }
+        return CursorPage.of(rows, pageSize, customer ->
+                new PageCursor(customer.getCustomerId(), pageSort == PageSort.NAME ? customer.getName() : null));
+    }
+
+    private int resolvePageSize(Integer size) {
+        if (size == null || size < 1) {
+            return defaultPageSize;
+        }
+        return Math.min(size, maxPageSize);
+    }
+
+    @Transactional(readOnly = true)
+    public CustomerDto getCustomerById(Long id, String username) {
+        logger.debug("Fetching customer with id: {} for user: {}", id, username);
+        CustomerDto customer = customerRepository.findDtoByIdAndUsername(id, username)
                 .orElseThrow(() -> new ResourceNotFoundException("Customer not found with id: " + id));
-        logger.info("Fetched customer with id: {} for user: {}", id, username);
+        logger.debug("Fetched customer with id: {} for user: {}", id, username);
         return customer;
     }
 
     @Transactional
     public void saveCustomer(Customer customer) {
-        logger.info("Saving customer with id: {}", customer.getCustomerId());
-        customerRepository.save(customer);
-        logger.info("Customer with id: {} saved successfully", customer.getCustomerId());
+        logger.debug("Saving customer with id: {}", customer.getCustomerId());
+        Customer savedCustomer = customerRepository.save(customer);
+        if (savedCustomer.getUser() != null) {
+            searchIndex.customerSaved(savedCustomer.getUser().getUsername(), savedCustomer.getCustomerId(),
+                    savedCustomer.getName(), savedCustomer.getEmail());
+        }
+        logger.debug("Customer with id: {} saved successfully", customer.getCustomerId());
     }
 
     @Transactional(readOnly = true)
     public boolean isCustomerOwnedByUser(Long customerId, String username) {
-        logger.info("Checking if customer with id: {} is owned by user: {}", customerId, username);
-        Customer customer = customerRepository.findById(customerId)
-                .orElseThrow(() -> new ResourceNotFoundException("Customer not found for this id :: " + customerId));
-        boolean isOwned = customer.getUser().getUsername().equals(username);
-        logger.info("Customer with id: {} is owned by user: {}: {}", customerId, username, isOwned);
+        logger.debug("Checking if customer with id: {} is owned by user: {}", customerId, username);
+        String ownerUsername = ownershipCache.getCustomerOwner(customerId,
+                id -> customerRepository.findOwnerUsername(id).orElse(null));
+        if (ownerUsername == null) {
+            throw new ResourceNotFoundException("Customer not found for this id :: " + customerId);
+        }
+        boolean isOwned = ownerUsername.equals(username);
+        logger.debug("Customer with id: {} is owned by user: {}: {}", customerId, username, isOwned);
         return isOwned;
     }
 }
@@ -0,0 +1,46 @@
+package com.example.customerarchive.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+class FileBlobContent implements BlobContent {
+    private final Path path;
+
+    FileBlobContent(Path path) {
+        this.path = path;
+    }
+
+    @Override
+    public long length() throws IOException {
+        return Files.size(path);
+    }
+
+    @Override
+    public InputStream openStream() throws IOException {
+        return Files.newInputStream(path);
+    }
+
+    @Override
+    public void transferTo(long position, long count, WritableByteChannel target) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long remaining = count;
+            while (remaining > 0) {
+                long transferred = channel.transferTo(position + count - remaining, remaining, target);
+                if (transferred <= 0) {
+                    throw new IOException("File ended before the requested range was written");
+                }
+                remaining -= transferred;
+            }
+        }
+    }
+
+    @Override
+    public Path getPath() {
+        return path;
+    }
+}
@@ -1,17 +1,26 @@
 package com.example.customerarchive.service;
 
-
+import com.example.customerarchive.dto.BatchUploadResult;
+import com.example.customerarchive.dto.CursorPage;
+import com.example.customerarchive.dto.FileDto;
 import com.example.customerarchive.model.File;
 import org.springframework.core.io.Resource;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.InputStream;
 import java.util.List;
 
 public interface FileService {
-    List<File> getAllFilesForCustomer(Long customerId);
+    List<FileDto> getAllFilesForCustomer(Long customerId);
+    CursorPage<FileDto> getFilesPage(Long customerId, String cursor, Integer size, String sort);
     File addFile(Long customerId, MultipartFile file);
+    File addFile(Long customerId, InputStream in, String fileName, String contentType);
+    File addFile(Long customerId, StagedFile stagedFile, String contentType);
+    List<BatchUploadResult> addFiles(Long customerId, List<MultipartFile> files);
     void deleteFile(Long fileId);
     File updateFile(Long fileId, MultipartFile file);
+    File getFile(Long fileId);
+    List<File> getFilesForExport(Long customerId, List<Long> fileIds);
     Resource loadFileAsResource(Long fileId);
     boolean isFileOwnedByUser(Long fileId, String username);
 }
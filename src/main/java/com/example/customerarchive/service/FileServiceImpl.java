@@ -1,130 +1,340 @@
 package com.example.customerarchive.service;
 
+import com.example.customerarchive.dto.BatchUploadResult;
+import com.example.customerarchive.dto.CursorPage;
+import com.example.customerarchive.dto.FileDto;
+import com.example.customerarchive.dto.PageCursor;
+import com.example.customerarchive.dto.PageSort;
+import com.example.customerarchive.exception.BadRequestException;
 import com.example.customerarchive.exception.FileStorageException;
 import com.example.customerarchive.exception.ResourceNotFoundException;
-import com.example.customerarchive.model.Customer;
 import com.example.customerarchive.model.File;
 import com.example.customerarchive.repository.CustomerRepository;
 import com.example.customerarchive.repository.FileRepository;
+import io.micrometer.core.annotation.Timed;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 @Service
+@Timed(value = "archive.service", description = "Service method latency, tagged by class and method")
 public class FileServiceImpl implements FileService {
     private static final Logger logger = LoggerFactory.getLogger(FileServiceImpl.class);
+    // 9999-12-31T23:59:59.999Z, the end of the DATETIME range.
+    private static final long MAX_DATE_KEY = 253_402_300_799_999L;
 
     private final FileRepository fileRepository;
     private final FileStorageService fileStorageService;
     private final CustomerRepository customerRepository;
-    @Value("${file.upload-dir}")
-    private String uploadDir;
+    private final OwnershipCache ownershipCache;
+    private final SearchIndex searchIndex;
+    private final ContentSearchService contentSearchService;
+    private final AsyncTaskExecutor uploadExecutor;
+    private final TransactionTemplate transactionTemplate;
+    @Value("${file.upload.batch.max-files:200}")
+    private int maxBatchFiles;
+    @Value("${pagination.default-size:50}")
+    private int defaultPageSize;
+    @Value("${pagination.max-size:500}")
+    private int maxPageSize;
 
     @Autowired
-    public FileServiceImpl(FileRepository fileRepository, FileStorageService fileStorageService, CustomerRepository customerRepository) {
+    public FileServiceImpl(FileRepository fileRepository, FileStorageService fileStorageService, CustomerRepository customerRepository,
+                           OwnershipCache ownershipCache, SearchIndex searchIndex, ContentSearchService contentSearchService,
+                           @Qualifier("uploadExecutor") AsyncTaskExecutor uploadExecutor, TransactionTemplate transactionTemplate) {
         this.fileRepository = fileRepository;
         this.fileStorageService = fileStorageService;
         this.customerRepository = customerRepository;
+        this.ownershipCache = ownershipCache;
+        this.searchIndex = searchIndex;
+        this.contentSearchService = contentSearchService;
+        this.uploadExecutor = uploadExecutor;
+        this.transactionTemplate = transactionTemplate;
     }
 
     @Transactional(readOnly = true)
-    public List<File> getAllFilesForCustomer(Long customerId) {
-        logger.info("Fetching all files for customer id: {}", customerId);
-        Customer customer = customerRepository.findById(customerId)
-                .orElseThrow(() -> new ResourceNotFoundException("Customer not found for this id :: " + customerId));
-        List<File> files = customer.getFiles().stream().collect(Collectors.toList());
-        logger.info("Found {} files for customer id: {}", files.size(), customerId);
+    public List<FileDto> getAllFilesForCustomer(Long customerId) {
+        logger.debug("Fetching all files for customer id: {}", customerId);
+        List<FileDto> files = fileRepository.findDtosByCustomerId(customerId);
+        logger.debug("Found {} files for customer id: {}", files.size(), customerId);
         return files;
     }
 
-    @Transactional
+    @Transactional(readOnly = true)
+    public CursorPage<FileDto> getFilesPage(Long customerId, String cursor, Integer size, String sort) {
+        PageSort pageSort = PageSort.from(sort);
+        PageCursor position = PageCursor.decode(cursor);
+        int pageSize = resolvePageSize(size);
+        logger.debug("Fetching files page for customer id: {} sorted by {} with size {}", customerId, pageSort, pageSize);
+        Pageable limit = PageRequest.of(0, pageSize + 1);
+        if (pageSort == PageSort.NAME) {
+            String afterName = position.getKey() != null ? position.getKey() : "";
+            List<FileDto> rows = fileRepository.findPageOrderByName(customerId, afterName, position.getId(), limit);
+            return CursorPage.of(rows, pageSize, file -> new PageCursor(file.getFileId(), file.getFileName()));
+        }
+        Date afterDate = new Date(position.getKey() != null ? parseDateKey(position.getKey()) : 0L);
+        List<FileDto> rows = fileRepository.findPageOrderByUploadDate(customerId, afterDate, position.getId(), limit);
+        return CursorPage.of(rows, pageSize, file -> new PageCursor(file.getFileId(), Long.toString(file.getUploadDate().getTime())));
+    }
+
+    private long parseDateKey(String key) {
+        long millis;
+        try {
+            millis = Long.parseLong(key);
+        } catch (NumberFormatException ex) {
+            throw new BadRequestException("Invalid page cursor", ex);
+        }
+        // Only a tampered cursor falls outside what a DATETIME column can hold, and the driver would fail on it.
+        if (millis < 0 || millis > MAX_DATE_KEY) {
+            throw new BadRequestException("Invalid page cursor");
+        }
+        return millis;
+    }
+
+    private int resolvePageSize(Integer size) {
+        if (size == null || size < 1) {
+            return defaultPageSize;
+        }
+        return Math.min(size, maxPageSize);
+    }
+
     public File addFile(Long customerId, MultipartFile file) {
-        logger.info("Adding file for customer id: {}", customerId);
-        Customer customer = customerRepository.findById(customerId)
-                .orElseThrow(() -> new ResourceNotFoundException("Customer not found for this id :: " + customerId));
+        logger.debug("Adding file for customer id: {}", customerId);
+        // The disk write runs outside the transaction, like a batch upload, so no connection is held meanwhile.
+        StagedFile stagedFile = fileStorageService.stageFile(file);
+        return saveStagedFile(customerId, stagedFile, file.getContentType());
+    }
+
+    public File addFile(Long customerId, InputStream in, String fileName, String contentType) {
+        logger.debug("Adding streamed file for customer id: {}", customerId);
+        // Not transactional either: the body is read to disk first, so a slow or aborted upload holds no connection.
+        StagedFile stagedFile = fileStorageService.stageFile(in, fileName);
+        return saveStagedFile(customerId, stagedFile, contentType);
+    }
+
+    /**
+     * Stores content that was already written to disk, e.g. by a resumable upload. The staged file is
+     * moved into the blob store, or deleted if the blob already exists.
+     */
+    public File addFile(Long customerId, StagedFile stagedFile, String contentType) {
+        logger.debug("Adding staged file for customer id: {}", customerId);
+        return saveStagedFile(customerId, stagedFile, contentType);
+    }
+
+    public List<BatchUploadResult> addFiles(Long customerId, List<MultipartFile> files) {
+        if (files.isEmpty() || files.size() > maxBatchFiles) {
+            throw new BadRequestException("A batch upload must contain between 1 and " + maxBatchFiles + " files");
+        }
+        logger.debug("Adding batch of {} files for customer id: {}", files.size(), customerId);
+
+        // Disk writes run in parallel outside any transaction; only the short commit below holds a connection.
+        List<Future<StagedFile>> pending = new ArrayList<>(files.size());
+        for (MultipartFile file : files) {
+            pending.add(uploadExecutor.submit(() -> fileStorageService.stageFile(file)));
+        }
+        StagedFile[] staged = new StagedFile[files.size()];
+        String[] errors = new String[files.size()];
+        for (int i = 0; i < pending.size(); i++) {
+            try {
+                staged[i] = pending.get(i).get();
+            } catch (ExecutionException ex) {
+                logger.warn("Could not stage file {} for customer id: {}", files.get(i).getOriginalFilename(), customerId, ex.getCause());
+                errors[i] = ex.getCause().getMessage();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                discardAll(staged);
+                throw new FileStorageException("Batch upload was interrupted", ex);
+            }
+        }
+
+        try {
+            File[] saved = transactionTemplate.execute(status -> saveStagedFiles(customerId, files, staged, errors));
+            List<BatchUploadResult> results = new ArrayList<>(files.size());
+            for (int i = 0; i < files.size(); i++) {
+                results.add(saved[i] != null
+                        ? BatchUploadResult.succeeded(FileDto.from(saved[i]))
+                        : BatchUploadResult.failed(files.get(i).getOriginalFilename(), errors[i]));
+            }
+            logger.info("Batch upload for customer id: {} finished, {} of {} files stored", customerId,
+                    results.stream().filter(BatchUploadResult::isSuccess).count(), files.size());
+            return results;
+        } finally {
+            discardAll(staged);
+        }
+    }
+
+    private File[] saveStagedFiles(Long customerId, List<MultipartFile> files, StagedFile[] staged, String[] errors) {
+        requireCustomer(customerId);
+        File[] saved = new File[staged.length];
+        List<File> batch = new ArrayList<>(staged.length);
+        Date now = new Date();
+        for (int i = 0; i < staged.length; i++) {
+            if (staged[i] == null) {
+                continue;
+            }
+            try {
+                StoredFile storedFile = fileStorageService.commitStagedFile(staged[i]);
+                saved[i] = newFile(customerId, storedFile, files.get(i).getContentType(), now);
+                batch.add(saved[i]);
+            } catch (FileStorageException ex) {
+                errors[i] = ex.getMessage();
+            }
+        }
+        // Pooled ids let these inserts go out as JDBC batches.
+        fileRepository.saveAll(batch);
+        for (File file : saved) {
+            if (file != null) {
+                searchIndex.fileSaved(customerId, file.getFileId(), file.getFileName(), file.getFileType());
+                contentSearchService.fileSaved(file.getFileId());
+            }
+        }
+        return saved;
+    }
 
-        String fileName = fileStorageService.storeFile(file);
+    private void discardAll(StagedFile[] staged) {
+        for (StagedFile stagedFile : staged) {
+            if (stagedFile != null) {
+                fileStorageService.discardStagedFile(stagedFile);
+            }
+        }
+    }
+
+    private File saveStagedFile(Long customerId, StagedFile stagedFile, String contentType) {
+        try {
+            File savedFile = transactionTemplate.execute(status -> {
+                requireCustomer(customerId);
+                StoredFile storedFile = fileStorageService.commitStagedFile(stagedFile);
+                File dbFile = fileRepository.save(newFile(customerId, storedFile, contentType, new Date()));
+                searchIndex.fileSaved(customerId, dbFile.getFileId(), dbFile.getFileName(), dbFile.getFileType());
+                contentSearchService.fileSaved(dbFile.getFileId());
+                return dbFile;
+            });
+            logger.debug("File added successfully for customer id: {}", customerId);
+            return savedFile;
+        } finally {
+            fileStorageService.discardStagedFile(stagedFile);
+        }
+    }
 
+    private File newFile(Long customerId, StoredFile storedFile, String contentType, Date now) {
         File dbFile = new File();
-        dbFile.setFileName(fileName);
-        dbFile.setFilePath(uploadDir + fileName);
-        dbFile.setFileType(file.getContentType());
-        dbFile.setCustomer(customer);
-        dbFile.setUploadDate(new Date());
-        dbFile.setUpdateDate(new Date());
-        File savedFile = fileRepository.save(dbFile);
-        logger.info("File added successfully for customer id: {}", customerId);
-        return savedFile;
+        applyStoredFile(dbFile, storedFile, contentType);
+        dbFile.setCustomer(customerRepository.getReferenceById(customerId));
+        dbFile.setUploadDate(now);
+        dbFile.setUpdateDate(now);
+        return dbFile;
+    }
+
+    private void requireCustomer(Long customerId) {
+        if (!customerRepository.existsById(customerId)) {
+            throw new ResourceNotFoundException("Customer not found for this id :: " + customerId);
+        }
     }
 
     @Transactional
     public void deleteFile(Long fileId) {
-        logger.info("Deleting file id: {}", fileId);
+        logger.debug("Deleting file id: {}", fileId);
         File file = fileRepository.findById(fileId)
                 .orElseThrow(() -> new ResourceNotFoundException("File not found with id: " + fileId));
         fileRepository.delete(file);
-        try {
-            Path filePath = Paths.get(file.getFilePath()).toAbsolutePath().normalize();
-            Files.deleteIfExists(filePath);
-            logger.info("File deleted from filesystem: {}", filePath);
-        } catch (IOException ex) {
-            logger.error("Could not delete file: {}", file.getFilePath(), ex);
-            throw new FileStorageException("Could not delete file: " + file.getFilePath(), ex);
-        }
+        ownershipCache.evictFile(fileId);
+        searchIndex.fileDeleted(fileId);
+        contentSearchService.fileDeleted(fileId);
+        fileStorageService.releaseFile(file);
     }
 
     @Transactional
     public File updateFile(Long fileId, MultipartFile file) {
-        logger.info("Updating file id: {}", fileId);
+        logger.debug("Updating file id: {}", fileId);
         File existingFile = fileRepository.findById(fileId)
                 .orElseThrow(() -> new ResourceNotFoundException("File not found for this id :: " + fileId));
 
-        try {
-            Path existingFilePath = Paths.get(existingFile.getFilePath()).toAbsolutePath().normalize();
-            Files.deleteIfExists(existingFilePath);
-            logger.info("Deleted existing file from filesystem: {}", existingFilePath);
-        } catch (IOException ex) {
-            logger.error("Could not delete existing file: {}", existingFile.getFilePath(), ex);
-            throw new FileStorageException("Could not delete existing file: " + existingFile.getFilePath(), ex);
-        }
-
-        String newFileName = fileStorageService.storeFile(file);
+        // Store the new content before releasing the old one, so re-uploading identical bytes keeps the blob alive.
+        StoredFile storedFile = fileStorageService.storeFile(file);
+        fileStorageService.releaseFile(existingFile);
 
-        existingFile.setFileName(newFileName);
-        existingFile.setFilePath(uploadDir + newFileName);
-        existingFile.setFileType(file.getContentType());
+        applyStoredFile(existingFile, storedFile, file.getContentType());
         existingFile.setUpdateDate(new Date());
         File updatedFile = fileRepository.save(existingFile);
-        logger.info("File updated successfully for file id: {}", fileId);
+        searchIndex.fileSaved(updatedFile.getCustomer().getCustomerId(), fileId, updatedFile.getFileName(), updatedFile.getFileType());
+        contentSearchService.fileSaved(fileId);
+        logger.debug("File updated successfully for file id: {}", fileId);
         return updatedFile;
     }
 
+    @Transactional(readOnly = true)
+    public File getFile(Long fileId) {
+        logger.debug("Fetching file id: {}", fileId);
+        return fileRepository.findById(fileId)
+                .orElseThrow(() -> new ResourceNotFoundException("File not found for this id :: " + fileId));
+    }
+
+    @Transactional(readOnly = true)
+    public List<File> getFilesForExport(Long customerId, List<Long> fileIds) {
+        if (fileIds == null || fileIds.isEmpty()) {
+            logger.debug("Fetching all files for export of customer id: {}", customerId);
+            return fileRepository.findByCustomerCustomerIdOrderByFileId(customerId);
+        }
+        logger.debug("Fetching {} files for export of customer id: {}", fileIds.size(), customerId);
+        List<File> files = fileRepository.findByCustomerCustomerIdAndFileIdInOrderByFileId(customerId, fileIds);
+        if (files.size() != new HashSet<>(fileIds).size()) {
+            throw new ResourceNotFoundException("Some of the requested files do not belong to customer id: " + customerId);
+        }
+        return files;
+    }
+
     @Transactional(readOnly = true)
     public Resource loadFileAsResource(Long fileId) {
-        logger.info("Loading file as resource for file id: {}", fileId);
+        logger.debug("Loading file as resource for file id: {}", fileId);
         return fileStorageService.loadFileAsResource(fileId);
     }
 
     @Transactional(readOnly = true)
     public boolean isFileOwnedByUser(Long fileId, String username) {
-        logger.info("Checking ownership of file id: {} for username: {}", fileId, username);
-        File file = fileRepository.findById(fileId)
-                .orElseThrow(() -> new ResourceNotFoundException("File not found for this id : " + fileId));
-        boolean isOwned = file.getCustomer().getUser().getUsername().equals(username);
-        logger.info("File id: {} is owned by username: {}: {}", fileId, username, isOwned);
+        logger.debug("Checking ownership of file id: {} for username: {}", fileId, username);
+        OwnershipCache.FileOwner owner = ownershipCache.getFileOwner(fileId, id -> fileRepository.findOwnership(id)
+                .map(ownership -> new OwnershipCache.FileOwner(ownership.getCustomerId(), ownership.getOwnerUsername()))
+                .orElse(null));
+        if (owner == null) {
+            throw new ResourceNotFoundException("File not found for this id : " + fileId);
+        }
+        boolean isOwned = owner.getOwnerUsername().equals(username);
+        logger.debug("File id: {} is owned by username: {}: {}", fileId, username, isOwned);
         return isOwned;
     }
+
+    static void applyStoredFile(File dbFile, StoredFile storedFile, String contentType) {
+        dbFile.setFileName(storedFile.getFileName());
+        dbFile.setFilePath(storedFile.getPath().toString());
+        dbFile.setChecksum(storedFile.getChecksum());
+        dbFile.setFileSize(storedFile.getSize());
+        dbFile.setCodec(storedFile.getCodec());
+        dbFile.setStorageRoot(storedFile.getStorageRoot());
+        dbFile.setFileType(resolveContentType(contentType, storedFile.getContentType()));
+    }
+
+    private static String resolveContentType(String declaredType, String sniffedType) {
+        if (declaredType == null || declaredType.isBlank() || ContentTypeSniffer.OCTET_STREAM.equals(declaredType)) {
+            return sniffedType;
+        }
+        return declaredType;
+    }
 }
@@ -1,10 +1,29 @@
 package com.example.customerarchive.service;
 
+import com.example.customerarchive.model.File;
 import org.springframework.core.io.Resource;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.InputStream;
+
 public interface FileStorageService {
-    String storeFile(MultipartFile file);
+    StoredFile storeFile(MultipartFile file);
+
+    StoredFile storeFile(InputStream in, String originalFileName);
+
+    StagedFile stageFile(MultipartFile file);
+
+    StagedFile stageFile(InputStream in, String originalFileName);
+
+    StoredFile commitStagedFile(StagedFile stagedFile);
+
+    void discardStagedFile(StagedFile stagedFile);
+
+    void releaseFile(File file);
 
     Resource loadFileAsResource(Long fileId);
+
+    Resource loadFileAsResource(File file);
+
+    BlobContent openContent(File file);
 }
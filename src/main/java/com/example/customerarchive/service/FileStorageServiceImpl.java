@@ -1,68 +1,230 @@
 package com.example.customerarchive.service;
 
 import com.example.customerarchive.exception.CustomFileNotFoundException;
+import com.example.customerarchive.exception.FileStorageException;
 import com.example.customerarchive.exception.ResourceNotFoundException;
 import com.example.customerarchive.model.File;
+import com.example.customerarchive.model.StorageCodec;
 import com.example.customerarchive.repository.FileRepository;
+import com.example.customerarchive.repository.StoredBlobRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.BaseUnits;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.AbstractResource;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class FileStorageServiceImpl implements FileStorageService {
 
     private static final Logger logger = LoggerFactory.getLogger(FileStorageServiceImpl.class);
 
-    private final Path fileStorageLocation;
+    private final StorageBackend storageBackend;
     private final FileRepository fileRepository;
+    private final StoredBlobRepository storedBlobRepository;
+    private final StreamingFileWriter streamingFileWriter;
+    private final CompressionPolicy compressionPolicy;
+    private final PreviewService previewService;
+    private final StorageReclaimer storageReclaimer;
+    private final SegmentStore segmentStore;
+    private final Timer writeTimer;
+    private final Timer commitTimer;
+    private final Counter bytesWritten;
 
-    public FileStorageServiceImpl(@Value("${file.upload-dir}") String uploadDir, FileRepository fileRepository) {
-        this.fileStorageLocation = Paths.get(uploadDir).toAbsolutePath().normalize();
+    public FileStorageServiceImpl(StorageBackend storageBackend, FileRepository fileRepository,
+                                  StoredBlobRepository storedBlobRepository, StreamingFileWriter streamingFileWriter,
+                                  CompressionPolicy compressionPolicy, PreviewService previewService,
+                                  StorageReclaimer storageReclaimer, SegmentStore segmentStore,
+                                  MeterRegistry meterRegistry) {
+        this.storageBackend = storageBackend;
         this.fileRepository = fileRepository;
+        this.storedBlobRepository = storedBlobRepository;
+        this.streamingFileWriter = streamingFileWriter;
+        this.compressionPolicy = compressionPolicy;
+        this.previewService = previewService;
+        this.storageReclaimer = storageReclaimer;
+        this.segmentStore = segmentStore;
+        this.writeTimer = Timer.builder("archive.storage.write")
+                .description("Time to stream, hash and write an upload to disk")
+                .register(meterRegistry);
+        this.commitTimer = Timer.builder("archive.storage.commit")
+                .description("Time to reference and move a staged upload into its blob")
+                .register(meterRegistry);
+        this.bytesWritten = Counter.builder("archive.storage.bytes.written")
+                .description("Bytes written to disk by uploads, after compression")
+                .baseUnit(BaseUnits.BYTES)
+                .register(meterRegistry);
+    }
+
+    @Transactional
+    public StoredFile storeFile(MultipartFile file) {
+        try (InputStream in = file.getInputStream()) {
+            return storeFile(in, file.getOriginalFilename());
+        } catch (IOException ex) {
+            logger.error("Could not read uploaded file {}", file.getOriginalFilename(), ex);
+            throw new FileStorageException("Could not store file " + file.getOriginalFilename() + ". Please try again!", ex);
+        }
+    }
+
+    @Transactional
+    public StoredFile storeFile(InputStream in, String originalFileName) {
+        StagedFile stagedFile = stageFile(in, originalFileName);
         try {
-            Files.createDirectories(this.fileStorageLocation);
-        } catch (Exception ex) {
-            logger.error("Could not create the directory where the uploaded files will be stored.", ex);
-            throw new RuntimeException("Could not create the directory where the uploaded files will be stored.", ex);
+            return commitStagedFile(stagedFile);
+        } finally {
+            discardStagedFile(stagedFile);
         }
     }
 
-    public String storeFile(MultipartFile file) {
-        String fileName = StringUtils.cleanPath(file.getOriginalFilename());
+    public StagedFile stageFile(MultipartFile file) {
+        try (InputStream in = file.getInputStream()) {
+            return stageFile(in, file.getOriginalFilename());
+        } catch (IOException ex) {
+            logger.error("Could not read uploaded file {}", file.getOriginalFilename(), ex);
+            throw new FileStorageException("Could not store file " + file.getOriginalFilename() + ". Please try again!", ex);
+        }
+    }
+
+    public StagedFile stageFile(InputStream in, String originalFileName) {
+        String fileName = StringUtils.cleanPath(originalFileName);
+        if (fileName.contains("..")) {
+            logger.warn("Filename contains invalid path sequence {}", fileName);
+            throw new FileStorageException("Sorry! Filename contains invalid path sequence " + fileName);
+        }
+        Path tempFile = null;
+        // The size is not known up front, so the root is picked by free space and the writes already on it.
+        String storageRoot = storageBackend.selectRoot(-1);
+        try (StorageBackend.Write write = storageBackend.beginWrite(storageRoot)) {
+            // The digest is only known once the last byte is in, so the single write lands next to the
+            // final location and is renamed into place on commit.
+            long start = System.nanoTime();
+            tempFile = Files.createTempFile(storageBackend.stagingDirectory(storageRoot), "upload-", ".tmp");
+            StagedFile stagedFile = new StagedFile(fileName, tempFile, storageRoot,
+                    streamingFileWriter.write(in, tempFile, compressionPolicy));
+            writeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            bytesWritten.increment(stagedFile.getStoredSize());
+            return stagedFile;
+        } catch (IOException ex) {
+            deleteQuietly(tempFile);
+            logger.error("Could not store file {}", fileName, ex);
+            throw new FileStorageException("Could not store file " + fileName + ". Please try again!", ex);
+        } catch (RuntimeException ex) {
+            deleteQuietly(tempFile);
+            throw ex;
+        }
+    }
+
+    private StoredFile describeStagedFile(StagedFile stagedFile) {
+        // Content that is already stored keeps its root; packed blobs live under upload-dir.
+        String storageRoot = storageBackend.findRoot(stagedFile.getChecksum(), stagedFile.getCodec());
+        if (storageRoot == null && !segmentStore.accepts(stagedFile.getStoredSize())) {
+            storageRoot = stagedFile.getStorageRoot();
+        }
+        return new StoredFile(stagedFile.getFileName(), stagedFile.getChecksum(), stagedFile.getSize(),
+                storageBackend.blobPath(storageRoot, stagedFile.getChecksum(), stagedFile.getCodec()), storageRoot,
+                stagedFile.getContentType(), stagedFile.getCodec());
+    }
+
+    /**
+     * A failure to place the bytes takes back the reference and leaves the caller's transaction usable, so a
+     * batch can drop the one file and still commit the others.
+     */
+    @Transactional(noRollbackFor = FileStorageException.class)
+    public StoredFile commitStagedFile(StagedFile stagedFile) {
+        String fileName = stagedFile.getFileName();
+        String checksum = stagedFile.getChecksum();
+        long start = System.nanoTime();
+        boolean referenced = false;
         try {
-            if (fileName.contains("..")) {
-                logger.warn("Filename contains invalid path sequence {}", fileName);
-                throw new RuntimeException("Sorry! Filename contains invalid path sequence " + fileName);
+            boolean created = storedBlobRepository.addReference(checksum, stagedFile.getSize());
+            referenced = true;
+            if (created) {
+                place(stagedFile);
+                logger.info("Stored file with name {} as new blob {}", fileName, checksum);
+                previewService.requestPreview(checksum, stagedFile.getContentType(), stagedFile.getCodec());
+            } else {
+                // Each codec has its own file, so a blob first stored under another compression setting is not misread.
+                if (storageBackend.findRoot(checksum, stagedFile.getCodec()) == null
+                        && !segmentStore.contains(checksum, stagedFile.getCodec())) {
+                    // Either the blob predates the sharded layout and has not been migrated yet, or it went missing.
+                    place(stagedFile);
+                }
+                logger.info("Stored file with name {} as existing blob {}", fileName, checksum);
             }
-            Path targetLocation = this.fileStorageLocation.resolve(fileName);
-            Files.copy(file.getInputStream(), targetLocation, StandardCopyOption.REPLACE_EXISTING);
-            logger.info("Stored file with name {}", fileName);
-            return fileName;
+            return describeStagedFile(stagedFile);
         } catch (IOException ex) {
             logger.error("Could not store file {}", fileName, ex);
-            throw new RuntimeException("Could not store file " + fileName + ". Please try again!", ex);
+            if (referenced) {
+                storedBlobRepository.decrementRefCount(checksum);
+                // Whatever part of the blob did land is deleted once no other file refers to it.
+                storageReclaimer.reclaimBlob(checksum, null);
+            }
+            throw new FileStorageException("Could not store file " + fileName + ". Please try again!", ex);
+        } finally {
+            commitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         }
     }
 
+    /**
+     * Small blobs are appended to a segment, everything else is stored on the root it was staged for.
+     */
+    private void place(StagedFile stagedFile) throws IOException {
+        if (segmentStore.accepts(stagedFile.getStoredSize())) {
+            segmentStore.append(stagedFile.getChecksum(), stagedFile.getCodec(), stagedFile.getTempPath());
+            return;
+        }
+        storageBackend.store(stagedFile.getStorageRoot(), stagedFile.getChecksum(), stagedFile.getCodec(),
+                stagedFile.getTempPath());
+        storageReclaimer.reclaimOnRollback(stagedFile.getChecksum());
+    }
+
+    public void discardStagedFile(StagedFile stagedFile) {
+        deleteQuietly(stagedFile.getTempPath());
+    }
+
+    @Transactional
+    public void releaseFile(File file) {
+        String checksum = file.getChecksum();
+        if (checksum == null) {
+            // Files stored before content addressing own their path exclusively.
+            storageReclaimer.reclaimPath(file.getFilePath());
+            return;
+        }
+        storedBlobRepository.decrementRefCount(checksum);
+        // The reclaimer checks the count again, so a blob that is still shared only costs it a lookup.
+        Path filePath = Paths.get(file.getFilePath()).toAbsolutePath().normalize();
+        boolean migrated = filePath.equals(storageBackend.blobPath(file.getStorageRoot(), checksum, file.getCodec()));
+        storageReclaimer.reclaimBlob(checksum, migrated ? null : file.getFilePath());
+    }
+
     public Resource loadFileAsResource(Long fileId) {
         File file = fileRepository.findById(fileId)
                 .orElseThrow(() -> new ResourceNotFoundException("File not found for this id :: " + fileId));
+        return loadFileAsResource(file);
+    }
+
+    public Resource loadFileAsResource(File file) {
         try {
-            Path filePath = Paths.get(file.getFilePath()).toAbsolutePath().normalize();
-            Resource resource = new UrlResource(filePath.toUri());
+            BlobContent content = openContent(file);
+            Resource resource = file.getCodec() == StorageCodec.IDENTITY && content.getPath() != null
+                    ? new UrlResource(content.getPath().toUri())
+                    : new ContentResource(content, file);
             if (resource.exists()) {
-                logger.info("Loaded file as resource with id {}", fileId);
+                logger.debug("Loaded file as resource with id {}", file.getFileId());
                 return resource;
             } else {
                 logger.error("File not found {}", file.getFilePath());
@@ -73,4 +235,75 @@ public class FileStorageServiceImpl implements FileStorageService {
             throw new CustomFileNotFoundException("File not found " + file.getFilePath(), ex);
         }
     }
+
+    public BlobContent openContent(File file) {
+        Path filePath = Paths.get(file.getFilePath()).toAbsolutePath().normalize();
+        if (Files.isReadable(filePath)) {
+            return BlobContent.of(filePath);
+        }
+        if (file.getChecksum() != null) {
+            // The layout migrator may have moved the blob since this row was read, it is packed, or the backend
+            // does not keep files.
+            try {
+                BlobContent content = segmentStore.open(file.getChecksum(), file.getCodec());
+                if (content != null) {
+                    return content;
+                }
+            } catch (IOException ex) {
+                logger.error("Could not open blob {}", file.getChecksum(), ex);
+                throw new CustomFileNotFoundException("File not found " + file.getFilePath(), ex);
+            }
+        }
+        logger.error("File not found {}", file.getFilePath());
+        throw new CustomFileNotFoundException("File not found " + file.getFilePath());
+    }
+
+    private void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ex) {
+            logger.warn("Could not delete temporary file {}", path, ex);
+        }
+    }
+
+    /**
+     * Reads as the original content; the stored bytes stay encoded.
+     */
+    private static class ContentResource extends AbstractResource {
+        private final BlobContent content;
+        private final File file;
+
+        ContentResource(BlobContent content, File file) {
+            this.content = content;
+            this.file = file;
+        }
+
+        @Override
+        public String getDescription() {
+            return "file [" + file.getFilePath() + "]";
+        }
+
+        @Override
+        public String getFilename() {
+            return file.getFileName();
+        }
+
+        @Override
+        public boolean exists() {
+            return true;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return file.getCodec().decode(content.openStream());
+        }
+
+        @Override
+        public long contentLength() {
+            return file.getFileSize();
+        }
+    }
 }
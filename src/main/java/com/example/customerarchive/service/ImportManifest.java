@@ -0,0 +1,46 @@
+package com.example.customerarchive.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Optional {@code manifest.json}, read when it is the first entry of an import archive. {@code entries} maps
+ * entry names, or directory prefixes ending in '/', to customer ids; anything unmapped goes to {@code defaultCustomerId}.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ImportManifest {
+    private Long defaultCustomerId;
+    private Map<String, Long> entries = new HashMap<>();
+
+    public Long getDefaultCustomerId() {
+        return defaultCustomerId;
+    }
+
+    public void setDefaultCustomerId(Long defaultCustomerId) {
+        this.defaultCustomerId = defaultCustomerId;
+    }
+
+    public Map<String, Long> getEntries() {
+        return entries;
+    }
+
+    public void setEntries(Map<String, Long> entries) {
+        this.entries = entries != null ? entries : new HashMap<>();
+    }
+
+    public Long customerFor(String entryName) {
+        Long customerId = entries.get(entryName);
+        String prefix = entryName;
+        while (customerId == null) {
+            int slash = prefix.lastIndexOf('/', prefix.length() - 2);
+            if (slash < 0) {
+                return defaultCustomerId;
+            }
+            prefix = prefix.substring(0, slash + 1);
+            customerId = entries.get(prefix);
+        }
+        return customerId;
+    }
+}
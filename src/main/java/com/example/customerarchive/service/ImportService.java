@@ -0,0 +1,10 @@
+package com.example.customerarchive.service;
+
+import com.example.customerarchive.model.ImportJob;
+
+import java.io.InputStream;
+
+public interface ImportService {
+    ImportJob importArchive(InputStream in, Long customerId, Long importJobId, String username);
+    ImportJob getImportJob(Long importJobId, String username);
+}
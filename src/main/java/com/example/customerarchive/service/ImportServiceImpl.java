@@ -0,0 +1,317 @@
+package com.example.customerarchive.service;
+
+import com.example.customerarchive.exception.BadRequestException;
+import com.example.customerarchive.exception.FileStorageException;
+import com.example.customerarchive.exception.ResourceNotFoundException;
+import com.example.customerarchive.model.File;
+import com.example.customerarchive.model.ImportJob;
+import com.example.customerarchive.model.ImportStatus;
+import com.example.customerarchive.repository.CustomerRepository;
+import com.example.customerarchive.repository.FileRepository;
+import com.example.customerarchive.repository.ImportJobRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLConnection;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Imports ZIP archives entry by entry: each entry is streamed through the normal staging path and rows are
+ * committed in batches together with the job's progress. A crashed or failed import is resumed by uploading
+ * the same archive again with its job id; entries already committed are skipped.
+ */
+@Service
+public class ImportServiceImpl implements ImportService {
+    private static final Logger logger = LoggerFactory.getLogger(ImportServiceImpl.class);
+
+    private static final String MANIFEST_NAME = "manifest.json";
+
+    private final ImportJobRepository importJobRepository;
+    private final FileRepository fileRepository;
+    private final CustomerRepository customerRepository;
+    private final CustomerService customerService;
+    private final FileStorageService fileStorageService;
+    private final SearchIndex searchIndex;
+    private final ContentSearchService contentSearchService;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${file.import.batch-size:100}")
+    private int batchSize;
+    @Value("${file.import.max-entries:10000}")
+    private long maxEntries;
+    @Value("${file.import.max-entry-size:1GB}")
+    private DataSize maxEntrySize;
+    @Value("${file.import.max-total-size:10GB}")
+    private DataSize maxTotalSize;
+    @Value("${file.import.stale-after:2m}")
+    private Duration staleAfter;
+
+    public ImportServiceImpl(ImportJobRepository importJobRepository, FileRepository fileRepository,
+                             CustomerRepository customerRepository, CustomerService customerService,
+                             FileStorageService fileStorageService, SearchIndex searchIndex, ContentSearchService contentSearchService,
+                             TransactionTemplate transactionTemplate, ObjectMapper objectMapper) {
+        this.importJobRepository = importJobRepository;
+        this.fileRepository = fileRepository;
+        this.customerRepository = customerRepository;
+        this.customerService = customerService;
+        this.fileStorageService = fileStorageService;
+        this.searchIndex = searchIndex;
+        this.contentSearchService = contentSearchService;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    public ImportJob importArchive(InputStream in, Long customerId, Long importJobId, String username) {
+        ImportJob job = importJobId == null ? createJob(customerId, username) : resumeJob(importJobId, username);
+        Long defaultCustomerId = customerId != null ? customerId : job.getDefaultCustomerId();
+        logger.info("Starting import job {} for user: {} at entry {}", job.getImportJobId(), username, job.getProcessedEntries());
+        try {
+            job = runImport(job, new ZipInputStream(in), defaultCustomerId, username);
+        } catch (IOException ex) {
+            markFailed(job.getImportJobId(), ex);
+            throw new FileStorageException("Could not read import archive", ex);
+        } catch (RuntimeException ex) {
+            markFailed(job.getImportJobId(), ex);
+            throw ex;
+        }
+        logger.info("Import job {} completed, {} files imported, {} entries failed",
+                job.getImportJobId(), job.getImportedFiles(), job.getFailedEntries());
+        return job;
+    }
+
+    @Transactional(readOnly = true)
+    public ImportJob getImportJob(Long importJobId, String username) {
+        return importJobRepository.findByImportJobIdAndUsername(importJobId, username)
+                .orElseThrow(() -> new ResourceNotFoundException("Import job not found for this id :: " + importJobId));
+    }
+
+    private ImportJob createJob(Long customerId, String username) {
+        ImportJob job = new ImportJob();
+        job.setUsername(username);
+        job.setDefaultCustomerId(customerId);
+        job.setStatus(ImportStatus.RUNNING);
+        job.setCreatedDate(new Date());
+        job.setUpdateDate(job.getCreatedDate());
+        return importJobRepository.save(job);
+    }
+
+    private ImportJob resumeJob(Long importJobId, String username) {
+        ImportJob job = getImportJob(importJobId, username);
+        if (job.getStatus() == ImportStatus.COMPLETED) {
+            throw new BadRequestException("Import job " + importJobId + " has already completed");
+        }
+        Date staleBefore = new Date(System.currentTimeMillis() - staleAfter.toMillis());
+        if (job.getStatus() == ImportStatus.RUNNING && job.getUpdateDate().after(staleBefore)) {
+            throw new BadRequestException("Import job " + importJobId + " is still running");
+        }
+        job.setStatus(ImportStatus.RUNNING);
+        job.setErrorMessage(null);
+        job.setUpdateDate(new Date());
+        return importJobRepository.save(job);
+    }
+
+    private ImportJob runImport(ImportJob job, ZipInputStream zip, Long defaultCustomerId, String username) throws IOException {
+        ImportManifest manifest = new ImportManifest();
+        Set<Long> checkedCustomers = new HashSet<>();
+        List<PendingEntry> pending = new ArrayList<>(batchSize);
+        long pendingFailed = 0;
+        long pendingBytes = 0;
+        long entryIndex = -1;
+        try {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                entryIndex++;
+                if (entryIndex >= maxEntries) {
+                    throw new BadRequestException("Import archive has more than " + maxEntries + " entries");
+                }
+                if (entryIndex == 0 && MANIFEST_NAME.equals(entry.getName())) {
+                    // Read again on a restart, since the entries after the restart point still need its mapping.
+                    manifest = readManifest(zip, entry.getName());
+                    continue;
+                }
+                if (entryIndex < job.getProcessedEntries() || entry.isDirectory()) {
+                    continue;
+                }
+                String fileName = StringUtils.getFilename(entry.getName());
+                Long customerId = manifest.customerFor(entry.getName());
+                if (customerId == null) {
+                    customerId = defaultCustomerId;
+                }
+                if (customerId == null || !StringUtils.hasText(fileName)) {
+                    logger.warn("Skipping import entry {} in job {}, no customer or file name", entry.getName(), job.getImportJobId());
+                    pendingFailed++;
+                    continue;
+                }
+                if (checkedCustomers.add(customerId) && !customerService.isCustomerOwnedByUser(customerId, username)) {
+                    throw new ResourceNotFoundException("Customer not found for this id :: " + customerId);
+                }
+
+                long remaining = maxTotalSize.toBytes() - job.getImportedBytes() - pendingBytes;
+                InputStream entryStream = new BoundedInputStream(zip, Math.min(maxEntrySize.toBytes(), remaining), entry.getName());
+                try {
+                    StagedFile stagedFile = fileStorageService.stageFile(entryStream, fileName);
+                    pending.add(new PendingEntry(stagedFile, customerId));
+                    pendingBytes += stagedFile.getSize();
+                } catch (FileStorageException ex) {
+                    logger.warn("Could not stage import entry {} in job {}", entry.getName(), job.getImportJobId(), ex);
+                    pendingFailed++;
+                }
+
+                if (pending.size() >= batchSize) {
+                    job = commitBatch(job.getImportJobId(), pending, pendingFailed, entryIndex + 1, false);
+                    pending.clear();
+                    pendingFailed = 0;
+                    pendingBytes = 0;
+                }
+            }
+            return commitBatch(job.getImportJobId(), pending, pendingFailed, Math.max(entryIndex + 1, job.getProcessedEntries()), true);
+        } finally {
+            for (PendingEntry pendingEntry : pending) {
+                fileStorageService.discardStagedFile(pendingEntry.stagedFile);
+            }
+        }
+    }
+
+    private ImportManifest readManifest(ZipInputStream zip, String entryName) throws IOException {
+        try {
+            return objectMapper.readValue(new BoundedInputStream(zip, maxEntrySize.toBytes(), entryName), ImportManifest.class);
+        } catch (JsonProcessingException ex) {
+            throw new BadRequestException("Invalid import manifest: " + ex.getOriginalMessage(), ex);
+        }
+    }
+
+    private ImportJob commitBatch(Long importJobId, List<PendingEntry> pending, long failed, long processedEntries, boolean last) {
+        return transactionTemplate.execute(status -> {
+            ImportJob job = importJobRepository.findById(importJobId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Import job not found for this id :: " + importJobId));
+            List<File> batch = new ArrayList<>(pending.size());
+            List<Long> customerIds = new ArrayList<>(pending.size());
+            long failedEntries = failed;
+            long bytes = 0;
+            Date now = new Date();
+            for (PendingEntry pendingEntry : pending) {
+                try {
+                    StoredFile storedFile = fileStorageService.commitStagedFile(pendingEntry.stagedFile);
+                    File dbFile = new File();
+                    FileServiceImpl.applyStoredFile(dbFile, storedFile,
+                            URLConnection.getFileNameMap().getContentTypeFor(storedFile.getFileName()));
+                    dbFile.setCustomer(customerRepository.getReferenceById(pendingEntry.customerId));
+                    dbFile.setUploadDate(now);
+                    dbFile.setUpdateDate(now);
+                    batch.add(dbFile);
+                    customerIds.add(pendingEntry.customerId);
+                    bytes += storedFile.getSize();
+                } catch (FileStorageException ex) {
+                    logger.warn("Could not store import entry {} in job {}", pendingEntry.stagedFile.getFileName(), importJobId, ex);
+                    failedEntries++;
+                }
+            }
+            fileRepository.saveAll(batch);
+            // Both indexes pick the rows up once the batch commits.
+            for (int i = 0; i < batch.size(); i++) {
+                File dbFile = batch.get(i);
+                searchIndex.fileSaved(customerIds.get(i), dbFile.getFileId(), dbFile.getFileName(), dbFile.getFileType());
+                contentSearchService.fileSaved(dbFile.getFileId());
+            }
+
+            // Progress is committed with the rows it describes, so a restart neither loses nor duplicates entries.
+            job.setProcessedEntries(processedEntries);
+            job.setImportedFiles(job.getImportedFiles() + batch.size());
+            job.setFailedEntries(job.getFailedEntries() + failedEntries);
+            job.setImportedBytes(job.getImportedBytes() + bytes);
+            job.setUpdateDate(now);
+            if (last) {
+                job.setStatus(ImportStatus.COMPLETED);
+            }
+            logger.info("Import job {} committed {} files, {} entries processed", importJobId, batch.size(), processedEntries);
+            return importJobRepository.save(job);
+        });
+    }
+
+    private void markFailed(Long importJobId, Exception cause) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> importJobRepository.findById(importJobId).ifPresent(job -> {
+                job.setStatus(ImportStatus.FAILED);
+                String message = cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+                job.setErrorMessage(message.length() > 1000 ? message.substring(0, 1000) : message);
+                job.setUpdateDate(new Date());
+            }));
+        } catch (RuntimeException ex) {
+            logger.error("Could not mark import job {} as failed", importJobId, ex);
+        }
+        logger.error("Import job {} failed", importJobId, cause);
+    }
+
+    private static class PendingEntry {
+        private final StagedFile stagedFile;
+        private final Long customerId;
+
+        PendingEntry(StagedFile stagedFile, Long customerId) {
+            this.stagedFile = stagedFile;
+            this.customerId = customerId;
+        }
+    }
+
+    /**
+     * Caps how much of the current entry may be decompressed, so a small archive cannot expand without bound.
+     * Closing it leaves the underlying archive stream open.
+     */
+    private static class BoundedInputStream extends FilterInputStream {
+        private final String entryName;
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long limit, String entryName) {
+            super(in);
+            this.remaining = limit;
+            this.entryName = entryName;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                consume(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                consume(read);
+            }
+            return read;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        private void consume(long count) {
+            remaining -= count;
+            if (remaining < 0) {
+                throw new BadRequestException("Import entry " + entryName + " exceeds the allowed decompressed size");
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.customerarchive.service;
+
+import com.example.customerarchive.model.StorageCodec;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps blobs on the heap, for tests. Uploads are still staged under {@code file.upload-dir}, and the
+ * paths recorded on rows do not exist on disk.
+ */
+@Component
+@ConditionalOnProperty(name = "file.storage.backend", havingValue = "memory")
+public class InMemoryStorageBackend implements StorageBackend {
+    public static final String ROOT = "memory";
+
+    private final StorageLayout storageLayout;
+    private final Path stagingDirectory;
+    private final Map<String, byte[]> blobs = new ConcurrentHashMap<>();
+
+    public InMemoryStorageBackend(StorageLayout storageLayout) throws IOException {
+        this.storageLayout = storageLayout;
+        this.stagingDirectory = storageLayout.getRoot().resolve(".incoming");
+        Files.createDirectories(stagingDirectory);
+    }
+
+    public String selectRoot(long size) {
+        return ROOT;
+    }
+
+    public Path stagingDirectory(String root) {
+        return stagingDirectory;
+    }
+
+    public Write beginWrite(String root) {
+        return () -> { };
+    }
+
+    public Path blobPath(String root, String digest, StorageCodec codec) {
+        return storageLayout.blobPath(Paths.get("/", ROOT), digest, codec);
+    }
+
+    public void store(String root, String digest, StorageCodec codec, Path staged) throws IOException {
+        blobs.put(SegmentStore.key(digest, codec), Files.readAllBytes(staged));
+    }
+
+    public String findRoot(String digest, StorageCodec codec) {
+        return blobs.containsKey(SegmentStore.key(digest, codec)) ? ROOT : null;
+    }
+
+    public BlobContent open(String digest, StorageCodec codec) {
+        byte[] bytes = blobs.get(SegmentStore.key(digest, codec));
+        return bytes != null ? BlobContent.of(ByteBuffer.wrap(bytes).asReadOnlyBuffer()) : null;
+    }
+
+    public void delete(String digest, StorageCodec codec) {
+        blobs.remove(SegmentStore.key(digest, codec));
+    }
+
+    public List<Path> directories() {
+        return List.of();
+    }
+}
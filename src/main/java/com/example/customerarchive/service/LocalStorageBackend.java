@@ -0,0 +1,198 @@
+package com.example.customerarchive.service;
+
+import com.example.customerarchive.model.StorageCodec;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps blobs as files under one or more {@code file.storage.roots}, typically one per disk. Each new blob
+ * goes to the root with the most usable space per write in flight, so a busy or filling disk gets fewer
+ * of them, and reads are spread the same way since they follow the blobs. Staging happens under the chosen
+ * root's {@code .incoming}, so committing an upload stays a rename.
+ */
+@Component
+@ConditionalOnProperty(name = "file.storage.backend", havingValue = "local", matchIfMissing = true)
+public class LocalStorageBackend implements StorageBackend {
+    private static final Logger logger = LoggerFactory.getLogger(LocalStorageBackend.class);
+
+    private final StorageLayout storageLayout;
+    private final Map<String, Root> roots = new LinkedHashMap<>();
+    private final List<Root> rootList = new ArrayList<>();
+    private final AtomicInteger nextRoot = new AtomicInteger();
+    private final List<Path> directories = new ArrayList<>();
+    private final long minFreeSpace;
+
+    public LocalStorageBackend(StorageLayout storageLayout, MeterRegistry meterRegistry,
+                               @Value("${file.storage.roots:${file.upload-dir}}") List<String> roots,
+                               @Value("${file.storage.min-free-space:1GB}") DataSize minFreeSpace) throws IOException {
+        this.storageLayout = storageLayout;
+        this.minFreeSpace = minFreeSpace.toBytes();
+        for (String configured : roots) {
+            Path directory = Paths.get(configured.trim()).toAbsolutePath().normalize();
+            Files.createDirectories(directory.resolve(".incoming"));
+            Root root = new Root(directory, Files.getFileStore(directory));
+            if (this.roots.putIfAbsent(directory.toString(), root) == null) {
+                Gauge.builder("archive.storage.root.writes", root.writes, AtomicInteger::get)
+                        .description("Uploads being written to a storage root")
+                        .tag("root", directory.toString())
+                        .register(meterRegistry);
+                rootList.add(root);
+                directories.add(directory);
+            }
+        }
+        if (this.roots.isEmpty()) {
+            throw new IllegalArgumentException("file.storage.roots must name at least one directory");
+        }
+        // Rows from before storage roots keep their blobs under upload-dir, even if it is no longer a root.
+        if (!directories.contains(storageLayout.getRoot())) {
+            directories.add(storageLayout.getRoot());
+        }
+        logger.info("Storing blobs under {}", this.roots.keySet());
+    }
+
+    public String selectRoot(long size) {
+        if (rootList.size() == 1) {
+            return rootList.get(0).directory.toString();
+        }
+        Root best = null;
+        double bestScore = -1;
+        Root roomiest = null;
+        long roomiestUsable = -1;
+        // Starting at a different root each time spreads ties, such as roots that share a file system.
+        int start = Math.floorMod(nextRoot.getAndIncrement(), rootList.size());
+        for (int i = 0; i < rootList.size(); i++) {
+            Root root = rootList.get((start + i) % rootList.size());
+            long usable = root.usableSpace();
+            if (usable > roomiestUsable) {
+                roomiest = root;
+                roomiestUsable = usable;
+            }
+            if (usable - Math.max(size, 0) < minFreeSpace) {
+                continue;
+            }
+            double score = (double) usable / (1 + root.writes.get());
+            if (score > bestScore) {
+                best = root;
+                bestScore = score;
+            }
+        }
+        // Every root is below the reserve: use the one with the most room and let the write fail if it must.
+        return (best != null ? best : roomiest).directory.toString();
+    }
+
+    public Path stagingDirectory(String root) {
+        return directory(root).resolve(".incoming");
+    }
+
+    public Write beginWrite(String root) {
+        Root target = root != null ? roots.get(root) : null;
+        if (target == null) {
+            return () -> { };
+        }
+        target.writes.incrementAndGet();
+        return target.writes::decrementAndGet;
+    }
+
+    public Path blobPath(String root, String digest, StorageCodec codec) {
+        return storageLayout.blobPath(directory(root), digest, codec);
+    }
+
+    public void store(String root, String digest, StorageCodec codec, Path staged) throws IOException {
+        Path target = blobPath(root, digest, codec);
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(staged, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            // Staged on another volume, e.g. a resumable upload started before its root was chosen up front.
+            Path partial = Files.createTempFile(target.getParent(), digest + "-", ".store.tmp");
+            try (Write write = beginWrite(root)) {
+                Files.copy(staged, partial, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(partial);
+            }
+        }
+    }
+
+    public String findRoot(String digest, StorageCodec codec) {
+        Path path = find(digest, codec);
+        return path != null ? rootOf(path) : null;
+    }
+
+    public BlobContent open(String digest, StorageCodec codec) {
+        Path path = find(digest, codec);
+        return path != null ? BlobContent.of(path) : null;
+    }
+
+    public void delete(String digest, StorageCodec codec) throws IOException {
+        for (Path directory : directories) {
+            Files.deleteIfExists(storageLayout.blobPath(directory, digest, codec));
+        }
+    }
+
+    public List<Path> directories() {
+        return List.copyOf(directories);
+    }
+
+    private Path find(String digest, StorageCodec codec) {
+        for (Path directory : directories) {
+            Path path = storageLayout.blobPath(directory, digest, codec);
+            if (Files.isReadable(path)) {
+                return path;
+            }
+        }
+        return null;
+    }
+
+    private String rootOf(Path path) {
+        for (Path directory : directories) {
+            if (path.startsWith(directory)) {
+                return directory.toString();
+            }
+        }
+        return null;
+    }
+
+    private Path directory(String root) {
+        return root != null ? Paths.get(root) : storageLayout.getRoot();
+    }
+
+    private static class Root {
+        private final Path directory;
+        private final FileStore fileStore;
+        private final AtomicInteger writes = new AtomicInteger();
+
+        Root(Path directory, FileStore fileStore) {
+            this.directory = directory;
+            this.fileStore = fileStore;
+        }
+
+        long usableSpace() {
+            try {
+                return fileStore.getUsableSpace();
+            } catch (IOException ex) {
+                logger.warn("Could not read the free space of {}", directory, ex);
+                return 0;
+            }
+        }
+    }
+}
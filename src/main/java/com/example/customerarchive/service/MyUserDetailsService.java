@@ -2,32 +2,58 @@ package com.example.customerarchive.service;
 
 import com.example.customerarchive.model.User;
 import com.example.customerarchive.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+
 @Service
 public class MyUserDetailsService implements UserDetailsService {
     private static final Logger logger = LoggerFactory.getLogger(MyUserDetailsService.class);
 
     private final UserRepository userRepository;
+    private final Cache<String, UserDetails> userCache;
 
     @Autowired
-    public MyUserDetailsService(UserRepository userRepository) {
+    public MyUserDetailsService(UserRepository userRepository,
+                                @Value("${security.user-cache.enabled:true}") boolean cacheEnabled,
+                                @Value("${security.user-cache.maximum-size:10000}") long cacheSize,
+                                @Value("${security.user-cache.ttl:5m}") Duration cacheTtl) {
         this.userRepository = userRepository;
+        this.userCache = cacheEnabled
+                ? Caffeine.newBuilder().maximumSize(cacheSize).expireAfterWrite(cacheTtl).build()
+                : null;
     }
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        logger.info("Loading user by username: {}", username);
+        if (userCache == null) {
+            return loadFromRepository(username);
+        }
+        return userCache.get(username, this::loadFromRepository);
+    }
+
+    public void evictUser(String username) {
+        if (userCache != null) {
+            userCache.invalidate(username);
+            logger.debug("Evicted cached user: {}", username);
+        }
+    }
+
+    private UserDetails loadFromRepository(String username) {
+        logger.debug("Loading user by username: {}", username);
 
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found for username :: " + username));
-        logger.info("User found: {}", username);
+        logger.debug("User found: {}", username);
 
         return new MyUserDetails(user);
     }
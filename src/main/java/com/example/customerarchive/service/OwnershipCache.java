@@ -0,0 +1,91 @@
+package com.example.customerarchive.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Customers never change owner and files never change customer, so these mappings can be cached
+ * until the row is deleted. Cached files are also indexed by customer, so deleting a customer only touches
+ * that customer's entries.
+ */
+@Component
+public class OwnershipCache {
+    private final Cache<Long, String> customerOwners;
+    private final Cache<Long, FileOwner> fileOwners;
+    private final Map<Long, Set<Long>> filesByCustomer = new ConcurrentHashMap<>();
+
+    public OwnershipCache(@Value("${security.ownership-cache.maximum-size:100000}") long maximumSize) {
+        this.customerOwners = Caffeine.newBuilder().maximumSize(maximumSize).build();
+        this.fileOwners = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                // Run on the removing thread, so the index never lags behind an eviction.
+                .executor(Runnable::run)
+                .<Long, FileOwner>removalListener((fileId, owner, cause) -> {
+                    if (fileId != null && owner != null) {
+                        unindex(owner.getCustomerId(), fileId);
+                    }
+                })
+                .build();
+    }
+
+    public String getCustomerOwner(Long customerId, Function<Long, String> loader) {
+        return customerOwners.get(customerId, loader);
+    }
+
+    public FileOwner getFileOwner(Long fileId, Function<Long, FileOwner> loader) {
+        return fileOwners.get(fileId, id -> {
+            FileOwner owner = loader.apply(id);
+            if (owner != null) {
+                filesByCustomer.computeIfAbsent(owner.getCustomerId(), customerId -> ConcurrentHashMap.newKeySet()).add(id);
+            }
+            return owner;
+        });
+    }
+
+    public void evictFile(Long fileId) {
+        fileOwners.invalidate(fileId);
+    }
+
+    public void evictCustomer(Long customerId) {
+        customerOwners.invalidate(customerId);
+        Set<Long> fileIds = filesByCustomer.remove(customerId);
+        if (fileIds != null) {
+            fileOwners.invalidateAll(fileIds);
+        }
+    }
+
+    private void unindex(Long customerId, Long fileId) {
+        filesByCustomer.computeIfPresent(customerId, (id, fileIds) -> {
+            // The file may have been loaded again since this entry was removed.
+            if (!fileOwners.asMap().containsKey(fileId)) {
+                fileIds.remove(fileId);
+            }
+            return fileIds.isEmpty() ? null : fileIds;
+        });
+    }
+
+    public static final class FileOwner {
+        private final Long customerId;
+        private final String ownerUsername;
+
+        public FileOwner(Long customerId, String ownerUsername) {
+            this.customerId = customerId;
+            this.ownerUsername = ownerUsername;
+        }
+
+        public Long getCustomerId() {
+            return customerId;
+        }
+
+        public String getOwnerUsername() {
+            return ownerUsername;
+        }
+    }
+}
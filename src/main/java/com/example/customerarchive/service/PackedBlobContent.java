@@ -0,0 +1,83 @@
+package com.example.customerarchive.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+
+/**
+ * Bytes held in a buffer: a slice of a memory-mapped segment, or a blob of the in-memory backend. Every
+ * reader gets its own view, so the shared buffer is never repositioned.
+ */
+class PackedBlobContent implements BlobContent {
+    private final ByteBuffer bytes;
+
+    PackedBlobContent(ByteBuffer bytes) {
+        this.bytes = bytes;
+    }
+
+    @Override
+    public long length() {
+        return bytes.capacity();
+    }
+
+    @Override
+    public InputStream openStream() {
+        return new ByteBufferInputStream(bytes.duplicate());
+    }
+
+    @Override
+    public void transferTo(long position, long count, WritableByteChannel target) throws IOException {
+        if (position < 0 || count < 0 || position + count > bytes.capacity()) {
+            throw new IOException("Blob ended before the requested range was written");
+        }
+        ByteBuffer region = bytes.slice((int) position, (int) count);
+        while (region.hasRemaining()) {
+            target.write(region);
+        }
+    }
+
+    @Override
+    public Path getPath() {
+        return null;
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
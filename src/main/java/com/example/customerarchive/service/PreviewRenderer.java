@@ -0,0 +1,172 @@
+package com.example.customerarchive.service;
+
+import com.example.customerarchive.model.StorageCodec;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.encryption.InvalidPasswordException;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.FileImageInputStream;
+import javax.imageio.stream.FileImageOutputStream;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * Renders a JPEG that fits in a {@code max-size} square: the image itself for formats ImageIO reads, and
+ * the first page for PDFs and multi-page TIFFs. Blobs above {@code max-source-size} and images above
+ * {@code max-pixels} are not rendered, so one upload cannot tie up a preview thread or its heap.
+ */
+@Component
+public class PreviewRenderer {
+    private static final Set<String> IMAGE_TYPES = Set.of("image/png", "image/jpeg", "image/gif", "image/tiff", "image/bmp");
+    private static final String PDF = "application/pdf";
+
+    private final int maxSize;
+    private final float quality;
+    private final long maxSourceSize;
+    private final long maxPixels;
+
+    public PreviewRenderer(@Value("${file.preview.max-size:256}") int maxSize,
+                           @Value("${file.preview.quality:0.8}") float quality,
+                           @Value("${file.preview.max-source-size:50MB}") DataSize maxSourceSize,
+                           @Value("${file.preview.max-pixels:100000000}") long maxPixels) {
+        this.maxSize = maxSize;
+        this.quality = quality;
+        this.maxSourceSize = maxSourceSize.toBytes();
+        this.maxPixels = maxPixels;
+    }
+
+    public boolean supports(String contentType) {
+        return contentType != null && (IMAGE_TYPES.contains(contentType) || PDF.equals(contentType));
+    }
+
+    /**
+     * Returns the preview image, or null if the content holds nothing that can be rendered or is too large
+     * to, which is not worth retrying.
+     */
+    public BufferedImage render(BlobContent source, StorageCodec codec, String contentType) throws IOException {
+        if (source.length() > maxSourceSize) {
+            return null;
+        }
+        BufferedImage image = PDF.equals(contentType) ? renderFirstPage(source, codec) : readImage(source, codec);
+        return image != null ? scale(image) : null;
+    }
+
+    private BufferedImage readImage(BlobContent source, StorageCodec codec) throws IOException {
+        if (codec == StorageCodec.IDENTITY && source.getPath() != null) {
+            try (ImageInputStream input = new FileImageInputStream(source.getPath().toFile())) {
+                return readImage(input);
+            }
+        }
+        try (InputStream in = codec.decode(source.openStream());
+             ImageInputStream input = ImageIO.createImageInputStream(in)) {
+            return readImage(input);
+        }
+    }
+
+    private BufferedImage readImage(ImageInputStream input) throws IOException {
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) {
+            return null;
+        }
+        ImageReader reader = readers.next();
+        try {
+            reader.setInput(input, true, true);
+            // Only the header has been read so far; a few bytes can declare an image far larger than the blob.
+            if ((long) reader.getWidth(0) * reader.getHeight(0) > maxPixels) {
+                return null;
+            }
+            int longestEdge = Math.max(reader.getWidth(0), reader.getHeight(0));
+            // Subsampling while decoding keeps memory proportional to the preview rather than the original.
+            int step = Math.max(1, longestEdge / (maxSize * 2));
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceSubsampling(step, step, 0, 0);
+            return reader.read(0, param);
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    private BufferedImage renderFirstPage(BlobContent source, StorageCodec codec) throws IOException {
+        PDDocument document;
+        try {
+            document = loadPdf(source, codec);
+        } catch (InvalidPasswordException ex) {
+            return null;
+        }
+        if (document == null) {
+            return null;
+        }
+        try (document) {
+            if (document.getNumberOfPages() == 0) {
+                return null;
+            }
+            PDRectangle page = document.getPage(0).getCropBox();
+            float scale = maxSize / Math.max(page.getWidth(), page.getHeight());
+            return new PDFRenderer(document).renderImage(0, scale, ImageType.RGB);
+        }
+    }
+
+    private PDDocument loadPdf(BlobContent source, StorageCodec codec) throws IOException {
+        if (codec == StorageCodec.IDENTITY && source.getPath() != null) {
+            return Loader.loadPDF(source.getPath().toFile());
+        }
+        try (InputStream in = codec.decode(source.openStream())) {
+            // Decoded into memory, so the limit applies to the decoded bytes as well.
+            byte[] bytes = in.readNBytes((int) Math.min(maxSourceSize + 1, Integer.MAX_VALUE - 8));
+            return bytes.length > maxSourceSize ? null : Loader.loadPDF(bytes);
+        }
+    }
+
+    private BufferedImage scale(BufferedImage image) {
+        double factor = Math.min(1.0, (double) maxSize / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * factor));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * factor));
+        BufferedImage preview = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = preview.createGraphics();
+        try {
+            // JPEG has no alpha channel, so transparent areas are flattened onto white.
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return preview;
+    }
+
+    public void writeJpeg(BufferedImage image, Path target) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream output = new FileImageOutputStream(target.toFile())) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.customerarchive.service;
+
+import com.example.customerarchive.model.File;
+import com.example.customerarchive.model.Preview;
+import com.example.customerarchive.model.StorageCodec;
+
+public interface PreviewService {
+    void requestPreview(String checksum, String contentType, StorageCodec codec);
+    Preview getPreview(File file);
+    void discardPreview(String checksum);
+}
@@ -0,0 +1,264 @@
+package com.example.customerarchive.service;
+
+import com.example.customerarchive.exception.ResourceNotFoundException;
+import com.example.customerarchive.model.File;
+import com.example.customerarchive.model.Preview;
+import com.example.customerarchive.model.PreviewStatus;
+import com.example.customerarchive.model.StorageCodec;
+import com.example.customerarchive.repository.PreviewRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Renders previews off the request path. The {@link Preview} rows are the job queue: a job is enqueued in
+ * the transaction that stores a new blob and handed to the preview pool once that commits, and the poller
+ * picks up whatever the pool rejected or a restart interrupted.
+ */
+@Service
+public class PreviewServiceImpl implements PreviewService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PreviewServiceImpl.class);
+
+    private final PreviewRepository previewRepository;
+    private final PreviewRenderer previewRenderer;
+    private final StorageLayout storageLayout;
+    private final SegmentStore segmentStore;
+    private final AsyncTaskExecutor previewExecutor;
+    private final AsyncTaskExecutor previewRenderExecutor;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int maxAttempts;
+    private final int batchSize;
+    private final Duration staleAfter;
+    private final Duration renderTimeout;
+
+    public PreviewServiceImpl(PreviewRepository previewRepository, PreviewRenderer previewRenderer,
+                              StorageLayout storageLayout, SegmentStore segmentStore, @Qualifier("previewExecutor") AsyncTaskExecutor previewExecutor,
+                              @Qualifier("previewRenderExecutor") AsyncTaskExecutor previewRenderExecutor,
+                              TransactionTemplate transactionTemplate, MeterRegistry meterRegistry,
+                              @Value("${file.preview.enabled:true}") boolean enabled,
+                              @Value("${file.preview.max-attempts:3}") int maxAttempts,
+                              @Value("${file.preview.batch-size:50}") int batchSize,
+                              @Value("${file.preview.stale-after:5m}") Duration staleAfter,
+                              @Value("${file.preview.render-timeout:30s}") Duration renderTimeout) {
+        this.previewRepository = previewRepository;
+        this.previewRenderer = previewRenderer;
+        this.storageLayout = storageLayout;
+        this.segmentStore = segmentStore;
+        this.previewExecutor = previewExecutor;
+        this.previewRenderExecutor = previewRenderExecutor;
+        this.transactionTemplate = transactionTemplate;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.maxAttempts = maxAttempts;
+        this.batchSize = batchSize;
+        this.staleAfter = staleAfter;
+        this.renderTimeout = renderTimeout;
+    }
+
+    /**
+     * Called when a blob is first stored. Previews are keyed by checksum, so duplicates share one.
+     */
+    @Transactional
+    public void requestPreview(String checksum, String contentType, StorageCodec codec) {
+        if (!enabled || !previewRenderer.supports(contentType) || previewRepository.existsById(checksum)) {
+            return;
+        }
+        Date now = new Date();
+        Preview preview = new Preview();
+        preview.setDigest(checksum);
+        preview.setContentType(contentType);
+        preview.setCodec(codec);
+        preview.setStatus(PreviewStatus.PENDING);
+        preview.setCreatedDate(now);
+        preview.setUpdateDate(now);
+        previewRepository.save(preview);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // The worker runs in its own transaction and must not look for the row before it is committed.
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submit(checksum);
+                }
+            });
+        } else {
+            submit(checksum);
+        }
+    }
+
+    public Preview getPreview(File file) {
+        String checksum = file.getChecksum();
+        if (checksum == null) {
+            throw new ResourceNotFoundException("No preview for file id :: " + file.getFileId());
+        }
+        Preview preview = previewRepository.findById(checksum).orElse(null);
+        if (preview != null) {
+            return preview;
+        }
+        if (!enabled || !previewRenderer.supports(file.getFileType())) {
+            throw new ResourceNotFoundException("No preview for file id :: " + file.getFileId());
+        }
+        // Blobs stored before previews existed are queued the first time someone asks.
+        try {
+            transactionTemplate.executeWithoutResult(status -> requestPreview(checksum, file.getFileType(), file.getCodec()));
+        } catch (DataIntegrityViolationException ex) {
+            logger.debug("Preview for blob {} was requested concurrently", checksum);
+        }
+        return previewRepository.findById(checksum)
+                .orElseThrow(() -> new ResourceNotFoundException("No preview for file id :: " + file.getFileId()));
+    }
+
+    @Transactional
+    public void discardPreview(String checksum) {
+        previewRepository.deleteById(checksum);
+        deleteQuietly(storageLayout.previewPath(checksum));
+    }
+
+    @Scheduled(initialDelayString = "${file.preview.initial-delay-ms:30000}",
+            fixedDelayString = "${file.preview.poll-interval-ms:10000}")
+    public void pollPending() {
+        if (!enabled) {
+            return;
+        }
+        Date staleBefore = new Date(System.currentTimeMillis() - staleAfter.toMillis());
+        Integer requeued = transactionTemplate.execute(status ->
+                previewRepository.requeueStale(PreviewStatus.RUNNING, PreviewStatus.PENDING, staleBefore, new Date()));
+        if (requeued != null && requeued > 0) {
+            logger.warn("Requeued {} previews whose render did not finish within {}", requeued, staleAfter);
+        }
+        List<String> pending = previewRepository.findDigestsByStatus(PreviewStatus.PENDING, PageRequest.of(0, batchSize));
+        for (String digest : pending) {
+            if (!submit(digest)) {
+                break;
+            }
+        }
+    }
+
+    private boolean submit(String digest) {
+        try {
+            previewExecutor.execute(() -> generate(digest));
+            return true;
+        } catch (TaskRejectedException ex) {
+            // The row stays PENDING and the poller submits it again.
+            logger.debug("Preview pool is full, deferring blob {}", digest);
+            return false;
+        }
+    }
+
+    void generate(String digest) {
+        Integer claimed = transactionTemplate.execute(status ->
+                previewRepository.claim(digest, PreviewStatus.PENDING, PreviewStatus.RUNNING, new Date()));
+        if (claimed == null || claimed == 0) {
+            return;
+        }
+        Preview preview = previewRepository.findById(digest).orElse(null);
+        if (preview == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        PreviewStatus outcome;
+        Path target = storageLayout.previewPath(digest);
+        Path tempFile = null;
+        try {
+            BlobContent source = segmentStore.open(digest, preview.getCodec());
+            if (source == null) {
+                throw new IOException("Blob " + digest + " is neither in a file nor in a segment");
+            }
+            BufferedImage image = render(source, preview);
+            if (image != null) {
+                Files.createDirectories(target.getParent());
+                tempFile = Files.createTempFile(target.getParent(), digest + "-", ".preview.tmp");
+                previewRenderer.writeJpeg(image, tempFile);
+                Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                outcome = PreviewStatus.READY;
+            } else {
+                outcome = PreviewStatus.UNSUPPORTED;
+            }
+        } catch (IOException | RuntimeException ex) {
+            // The claim already counted this attempt.
+            outcome = preview.getAttempts() >= maxAttempts ? PreviewStatus.FAILED : PreviewStatus.PENDING;
+            logger.warn("Could not render preview for blob {}, attempt {}", digest, preview.getAttempts(), ex);
+        } finally {
+            deleteQuietly(tempFile);
+        }
+        Timer.builder("archive.preview.render")
+                .description("Time to render a preview")
+                .tag("outcome", outcome.name().toLowerCase())
+                .register(meterRegistry)
+                .record(Duration.ofNanos(System.nanoTime() - start));
+        complete(digest, outcome);
+    }
+
+    private BufferedImage render(BlobContent source, Preview preview) throws IOException {
+        Future<BufferedImage> rendering = previewRenderExecutor.submit(() ->
+                previewRenderer.render(source, preview.getCodec(), preview.getContentType()));
+        try {
+            return rendering.get(renderTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            rendering.cancel(true);
+            throw new IOException("Rendering did not finish within " + renderTimeout, ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Rendering failed", ex.getCause());
+        } catch (InterruptedException ex) {
+            rendering.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while rendering", ex);
+        }
+    }
+
+    private void complete(String digest, PreviewStatus outcome) {
+        Boolean found = transactionTemplate.execute(status -> previewRepository.findById(digest)
+                .map(preview -> {
+                    preview.setStatus(outcome);
+                    preview.setUpdateDate(new Date());
+                    return true;
+                })
+                .orElse(false));
+        if (!Boolean.TRUE.equals(found)) {
+            // The blob was deleted while rendering.
+            deleteQuietly(storageLayout.previewPath(digest));
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ex) {
+            logger.warn("Could not delete preview file {}", path, ex);
+        }
+    }
+}
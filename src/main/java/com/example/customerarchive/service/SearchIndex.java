@@ -0,0 +1,644 @@
+package com.example.customerarchive.service;
+
+import com.example.customerarchive.dto.SearchResultDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory search over customer names and emails and file names and types, partitioned by owning user.
+ * Each partition keeps a sorted term dictionary: prefix queries read a range of it, and typo-tolerant
+ * queries walk it as an implicit trie, pruning every branch whose edit distance already exceeds the budget.
+ * Changes are applied once the transaction that made them commits.
+ */
+@Component
+public class SearchIndex {
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final float NAME_WEIGHT = 1.0f;
+    private static final float FILE_NAME_WEIGHT = 0.9f;
+    private static final float EMAIL_WEIGHT = 0.8f;
+    private static final float FILE_TYPE_WEIGHT = 0.5f;
+    private static final int MAX_IDLE_SCORES = 4;
+
+    private final int fuzzyMinLength;
+    private final Map<String, UserIndex> users = new ConcurrentHashMap<>();
+    private final Map<Long, String> customerOwners = new ConcurrentHashMap<>();
+    private final Map<Long, String> fileOwners = new ConcurrentHashMap<>();
+    // Keys changed by live updates while a rebuild runs; the rebuild must not overwrite them with older rows.
+    private final Set<String> touchedDuringRebuild = new HashSet<>();
+    private boolean rebuilding;
+
+    public SearchIndex(@Value("${search.fuzzy.min-length:3}") int fuzzyMinLength) {
+        this.fuzzyMinLength = fuzzyMinLength;
+    }
+
+    public void customerSaved(String username, Long customerId, String name, String email) {
+        afterCommit(() -> putCustomer(username, customerId, name, email, true));
+    }
+
+    public void customerDeleted(Long customerId) {
+        afterCommit(() -> removeCustomer(customerId));
+    }
+
+    public void fileSaved(Long customerId, Long fileId, String fileName, String fileType) {
+        afterCommit(() -> putFile(customerId, fileId, fileName, fileType, true));
+    }
+
+    public void fileDeleted(Long fileId) {
+        afterCommit(() -> removeFile(fileId));
+    }
+
+    synchronized void beginRebuild() {
+        rebuilding = true;
+        touchedDuringRebuild.clear();
+    }
+
+    synchronized void endRebuild() {
+        rebuilding = false;
+        touchedDuringRebuild.clear();
+    }
+
+    void loadCustomer(String username, Long customerId, String name, String email) {
+        putCustomer(username, customerId, name, email, false);
+    }
+
+    void loadFile(Long customerId, Long fileId, String fileName, String fileType) {
+        putFile(customerId, fileId, fileName, fileType, false);
+    }
+
+    public List<SearchResultDto> search(String username, String query, int limit) {
+        List<String> terms = tokenize(query);
+        UserIndex index = users.get(username);
+        if (terms.isEmpty() || index == null) {
+            return Collections.emptyList();
+        }
+        index.lock.readLock().lock();
+        try {
+            return index.search(terms, limit, fuzzyMinLength);
+        } finally {
+            index.lock.readLock().unlock();
+        }
+    }
+
+    private synchronized void putCustomer(String username, Long customerId, String name, String email, boolean live) {
+        String key = customerKey(customerId);
+        if (!accept(key, live)) {
+            return;
+        }
+        customerOwners.put(customerId, username);
+        Map<String, Float> terms = new LinkedHashMap<>();
+        addTerms(terms, name, NAME_WEIGHT);
+        addTerms(terms, email, EMAIL_WEIGHT);
+        Doc doc = new Doc(key, customerId, null, name, email, terms);
+        UserIndex index = users.computeIfAbsent(username, user -> new UserIndex());
+        index.lock.writeLock().lock();
+        try {
+            index.put(doc);
+        } finally {
+            index.lock.writeLock().unlock();
+        }
+    }
+
+    private synchronized void removeCustomer(Long customerId) {
+        String key = customerKey(customerId);
+        accept(key, true);
+        String username = customerOwners.remove(customerId);
+        UserIndex index = username != null ? users.get(username) : null;
+        if (index == null) {
+            return;
+        }
+        index.lock.writeLock().lock();
+        try {
+            index.remove(key);
+            // Deleting a customer cascades to its files.
+            for (Doc file : index.removeFilesOf(customerId)) {
+                fileOwners.remove(file.fileId);
+            }
+        } finally {
+            index.lock.writeLock().unlock();
+        }
+    }
+
+    private synchronized void putFile(Long customerId, Long fileId, String fileName, String fileType, boolean live) {
+        String key = fileKey(fileId);
+        String username = customerOwners.get(customerId);
+        UserIndex index = username != null ? users.get(username) : null;
+        // Checked before the key is marked: a rebuild loads every customer before any file, so a live file whose
+        // customer is not loaded yet is read by the rebuild's file pass, which marking it would make it skip.
+        if (index == null || !accept(key, live)) {
+            return;
+        }
+        fileOwners.put(fileId, username);
+        Map<String, Float> terms = new LinkedHashMap<>();
+        addTerms(terms, fileName, FILE_NAME_WEIGHT);
+        addTerms(terms, fileType, FILE_TYPE_WEIGHT);
+        Doc doc = new Doc(key, customerId, fileId, fileName, fileType, terms);
+        index.lock.writeLock().lock();
+        try {
+            index.put(doc);
+        } finally {
+            index.lock.writeLock().unlock();
+        }
+    }
+
+    private synchronized void removeFile(Long fileId) {
+        String key = fileKey(fileId);
+        accept(key, true);
+        String username = fileOwners.remove(fileId);
+        UserIndex index = username != null ? users.get(username) : null;
+        if (index == null) {
+            return;
+        }
+        index.lock.writeLock().lock();
+        try {
+            index.remove(key);
+        } finally {
+            index.lock.writeLock().unlock();
+        }
+    }
+
+    private boolean accept(String key, boolean live) {
+        if (live) {
+            if (rebuilding) {
+                touchedDuringRebuild.add(key);
+            }
+            return true;
+        }
+        return !touchedDuringRebuild.contains(key);
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static void addTerms(Map<String, Float> terms, String text, float weight) {
+        for (String term : tokenize(text)) {
+            terms.merge(term, weight, Math::max);
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return Collections.emptyList();
+        }
+        String folded = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        List<String> terms = new ArrayList<>();
+        for (String term : SEPARATORS.split(folded)) {
+            if (!term.isEmpty()) {
+                terms.add(term);
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Fills {@code rows[depth]}, the distances between {@code candidate[0, depth)} and each prefix of
+     * {@code term}, and returns the smallest of them.
+     */
+    private static int computeRow(int[][] rows, int depth, String candidate, String term) {
+        int[] row = rows[depth];
+        int[] above = rows[depth - 1];
+        char c = candidate.charAt(depth - 1);
+        row[0] = depth;
+        int rowMin = depth;
+        for (int j = 1; j < row.length; j++) {
+            int value = Math.min(Math.min(above[j] + 1, row[j - 1] + 1), above[j - 1] + (c == term.charAt(j - 1) ? 0 : 1));
+            if (depth > 1 && j > 1 && c == term.charAt(j - 2) && candidate.charAt(depth - 2) == term.charAt(j - 1)) {
+                value = Math.min(value, rows[depth - 2][j - 2] + 1);
+            }
+            row[j] = value;
+            rowMin = Math.min(rowMin, value);
+        }
+        return rowMin;
+    }
+
+    private static String customerKey(Long customerId) {
+        return "c" + customerId;
+    }
+
+    private static String fileKey(Long fileId) {
+        return "f" + fileId;
+    }
+
+    private static final class UserIndex {
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Map<String, Doc> docs = new HashMap<>();
+        private final NavigableMap<String, Postings> terms = new TreeMap<>();
+        private final Map<Long, Set<Doc>> filesByCustomer = new HashMap<>();
+        // Dense ordinals let a query score documents in plain arrays, which are reused across queries.
+        private final Queue<Scores> idleScores = new ConcurrentLinkedQueue<>();
+        private Doc[] byOrdinal = new Doc[64];
+        private int ordinalLimit;
+        private int[] freeOrdinals = new int[16];
+        private int freeCount;
+
+        void put(Doc doc) {
+            remove(doc.key);
+            doc.ordinal = freeCount > 0 ? freeOrdinals[--freeCount] : ordinalLimit++;
+            if (doc.ordinal == byOrdinal.length) {
+                byOrdinal = Arrays.copyOf(byOrdinal, byOrdinal.length * 2);
+            }
+            byOrdinal[doc.ordinal] = doc;
+            docs.put(doc.key, doc);
+            for (int i = 0; i < doc.terms.length; i++) {
+                terms.computeIfAbsent(doc.terms[i], term -> new Postings()).add(doc.ordinal, doc.weights[i]);
+            }
+            if (doc.fileId != null) {
+                filesByCustomer.computeIfAbsent(doc.customerId, id -> new HashSet<>()).add(doc);
+            }
+        }
+
+        void remove(String key) {
+            Doc doc = docs.remove(key);
+            if (doc == null) {
+                return;
+            }
+            for (String term : doc.terms) {
+                Postings postings = terms.get(term);
+                if (postings != null && postings.remove(doc.ordinal) && postings.size == 0) {
+                    terms.remove(term);
+                }
+            }
+            if (doc.fileId != null) {
+                Set<Doc> files = filesByCustomer.get(doc.customerId);
+                if (files != null && files.remove(doc) && files.isEmpty()) {
+                    filesByCustomer.remove(doc.customerId);
+                }
+            }
+            byOrdinal[doc.ordinal] = null;
+            if (freeCount == freeOrdinals.length) {
+                freeOrdinals = Arrays.copyOf(freeOrdinals, freeCount * 2);
+            }
+            freeOrdinals[freeCount++] = doc.ordinal;
+        }
+
+        List<Doc> removeFilesOf(Long customerId) {
+            List<Doc> files = new ArrayList<>(filesByCustomer.getOrDefault(customerId, Collections.emptySet()));
+            for (Doc file : files) {
+                remove(file.key);
+            }
+            return files;
+        }
+
+        List<SearchResultDto> search(List<String> queryTerms, int limit, int fuzzyMinLength) {
+            Scores scores = idleScores.poll();
+            if (scores == null || scores.capacity() < ordinalLimit) {
+                scores = new Scores(ordinalLimit);
+            }
+            try {
+                return search(queryTerms, limit, fuzzyMinLength, scores);
+            } finally {
+                scores.reset();
+                if (idleScores.size() < MAX_IDLE_SCORES) {
+                    idleScores.offer(scores);
+                }
+            }
+        }
+
+        private List<SearchResultDto> search(List<String> queryTerms, int limit, int fuzzyMinLength, Scores scores) {
+            for (String term : queryTerms) {
+                scores.startTerm();
+                for (Map.Entry<String, Postings> entry : terms.subMap(term, true, term + Character.MAX_VALUE, false).entrySet()) {
+                    // A whole-word match ranks above a word that merely starts with the term.
+                    scores.collect(entry.getValue(), entry.getKey().length() == term.length() ? 1.0f : 0.9f);
+                }
+                if (term.length() >= fuzzyMinLength) {
+                    collectFuzzy(term, term.length() <= 5 ? 1 : 2, scores);
+                }
+                // Every term has to match somewhere in the document.
+                if (scores.endTerm() == 0) {
+                    return Collections.emptyList();
+                }
+            }
+            return scores.top(limit, byOrdinal);
+        }
+
+        /**
+         * Walks the terms that share the query term's first character depth-first, reusing the distance rows
+         * of the prefix shared with the previous term. A branch is skipped as soon as no extension can come
+         * within {@code maxEdits} of the query term, and scored whole as soon as no extension can change its
+         * distance. Typos in the first character are not looked for; they are rare and would widen the walk
+         * to the whole dictionary.
+         */
+        private void collectFuzzy(String term, int maxEdits, Scores scores) {
+            int m = term.length();
+            int maxDepth = m + maxEdits;
+            int[][] rows = new int[maxDepth + 1][m + 1];
+            // Per depth of the current path: the smallest distance in the row, and the best prefix distance so far.
+            int[] rowMin = new int[maxDepth + 1];
+            int[] best = new int[maxDepth + 1];
+            for (int j = 0; j <= m; j++) {
+                rows[0][j] = j;
+            }
+            best[0] = m;
+            char first = term.charAt(0);
+            String previous = "";
+            int computed = 0;
+            String key = terms.ceilingKey(String.valueOf(first));
+            while (key != null && key.charAt(0) == first) {
+                int depth = Math.min(commonPrefixLength(previous, key), computed);
+                int limit = Math.min(key.length(), maxDepth);
+                String skipPrefix = null;
+                while (true) {
+                    if (depth > 0 && best[depth] <= maxEdits && rowMin[depth] >= best[depth]) {
+                        skipPrefix = key.substring(0, depth);
+                        collectBranch(skipPrefix, term, 0.7f - 0.1f * best[depth], scores);
+                        break;
+                    }
+                    if (depth == limit) {
+                        break;
+                    }
+                    depth++;
+                    rowMin[depth] = computeRow(rows, depth, key, term);
+                    best[depth] = Math.min(best[depth - 1], rows[depth][m]);
+                    if (rowMin[depth] > maxEdits) {
+                        skipPrefix = key.substring(0, depth);
+                        break;
+                    }
+                }
+                if (skipPrefix == null) {
+                    if (key.length() > maxDepth) {
+                        // Deeper characters can only add to the distance.
+                        skipPrefix = key.substring(0, maxDepth);
+                        if (best[depth] <= maxEdits) {
+                            collectBranch(skipPrefix, term, 0.7f - 0.1f * best[depth], scores);
+                        }
+                    } else if (best[depth] <= maxEdits && !key.startsWith(term)) {
+                        scores.collect(terms.get(key), 0.7f - 0.1f * best[depth]);
+                    }
+                }
+                previous = key;
+                computed = depth;
+                key = skipPrefix != null ? terms.higherKey(skipPrefix + Character.MAX_VALUE) : terms.higherKey(key);
+            }
+        }
+
+        /**
+         * Scores the terms under {@code prefix}, leaving out those that start with the query term, which the
+         * prefix lookup has already scored.
+         */
+        private void collectBranch(String prefix, String term, float quality, Scores scores) {
+            String end = prefix + Character.MAX_VALUE;
+            if (term.startsWith(prefix)) {
+                collectAll(terms.subMap(prefix, true, term, false), quality, scores);
+                collectAll(terms.subMap(term + Character.MAX_VALUE, false, end, false), quality, scores);
+            } else if (!prefix.startsWith(term)) {
+                collectAll(terms.subMap(prefix, true, end, false), quality, scores);
+            }
+        }
+
+        private static void collectAll(Map<String, Postings> branch, float quality, Scores scores) {
+            for (Postings postings : branch.values()) {
+                scores.collect(postings, quality);
+            }
+        }
+
+        private static int commonPrefixLength(String a, String b) {
+            int length = Math.min(a.length(), b.length());
+            for (int i = 0; i < length; i++) {
+                if (a.charAt(i) != b.charAt(i)) {
+                    return i;
+                }
+            }
+            return length;
+        }
+    }
+
+    /**
+     * Per-query scratch space. A document stays a candidate only while it has matched every term so far.
+     */
+    private static final class Scores {
+        private final float[] total;
+        private final float[] current;
+        private final int[] matchedTerms;
+        private int[] touched = new int[256];
+        private int touchedCount;
+        private int[] firstTermMatches;
+        private int term;
+
+        Scores(int size) {
+            this.total = new float[size];
+            this.current = new float[size];
+            this.matchedTerms = new int[size];
+        }
+
+        void startTerm() {
+            touchedCount = 0;
+        }
+
+        void collect(Postings postings, float quality) {
+            for (int i = 0; i < postings.size; i++) {
+                int ordinal = postings.ordinals[i];
+                if (matchedTerms[ordinal] != term) {
+                    continue;
+                }
+                float score = postings.weights[i] * quality;
+                if (current[ordinal] == 0) {
+                    if (touchedCount == touched.length) {
+                        touched = Arrays.copyOf(touched, touchedCount * 2);
+                    }
+                    touched[touchedCount++] = ordinal;
+                }
+                if (score > current[ordinal]) {
+                    current[ordinal] = score;
+                }
+            }
+        }
+
+        int endTerm() {
+            for (int i = 0; i < touchedCount; i++) {
+                int ordinal = touched[i];
+                total[ordinal] += current[ordinal];
+                current[ordinal] = 0;
+                matchedTerms[ordinal]++;
+            }
+            if (term == 0) {
+                // Later terms only ever touch these documents, so this is all reset() has to clear.
+                firstTermMatches = Arrays.copyOf(touched, touchedCount);
+            }
+            term++;
+            return touchedCount;
+        }
+
+        int capacity() {
+            return total.length;
+        }
+
+        void reset() {
+            for (int i = 0; i < touchedCount; i++) {
+                current[touched[i]] = 0;
+            }
+            if (firstTermMatches != null) {
+                for (int ordinal : firstTermMatches) {
+                    total[ordinal] = 0;
+                    matchedTerms[ordinal] = 0;
+                }
+            }
+            firstTermMatches = null;
+            touchedCount = 0;
+            term = 0;
+        }
+
+        /**
+         * Selects the best {@code limit} of the documents that matched the last term, and therefore all terms,
+         * with a bounded min-heap.
+         */
+        List<SearchResultDto> top(int limit, Doc[] byOrdinal) {
+            int[] heap = new int[Math.min(limit, touchedCount)];
+            int size = 0;
+            for (int i = 0; i < touchedCount; i++) {
+                int ordinal = touched[i];
+                if (size < heap.length) {
+                    heap[size] = ordinal;
+                    siftUp(heap, size++);
+                } else if (heap.length > 0 && better(ordinal, heap[0])) {
+                    heap[0] = ordinal;
+                    siftDown(heap, size);
+                }
+            }
+            List<SearchResultDto> results = new ArrayList<>(size);
+            while (size > 0) {
+                int ordinal = heap[0];
+                heap[0] = heap[--size];
+                siftDown(heap, size);
+                results.add(byOrdinal[ordinal].toResult(total[ordinal]));
+            }
+            Collections.reverse(results);
+            return results;
+        }
+
+        private boolean better(int a, int b) {
+            return total[a] > total[b] || (total[a] == total[b] && a < b);
+        }
+
+        private void siftUp(int[] heap, int index) {
+            while (index > 0) {
+                int parent = (index - 1) / 2;
+                if (!better(heap[parent], heap[index])) {
+                    return;
+                }
+                swap(heap, parent, index);
+                index = parent;
+            }
+        }
+
+        private void siftDown(int[] heap, int size) {
+            int index = 0;
+            while (true) {
+                int worst = index;
+                int left = 2 * index + 1;
+                int right = left + 1;
+                if (left < size && better(heap[worst], heap[left])) {
+                    worst = left;
+                }
+                if (right < size && better(heap[worst], heap[right])) {
+                    worst = right;
+                }
+                if (worst == index) {
+                    return;
+                }
+                swap(heap, worst, index);
+                index = worst;
+            }
+        }
+
+        private static void swap(int[] heap, int a, int b) {
+            int tmp = heap[a];
+            heap[a] = heap[b];
+            heap[b] = tmp;
+        }
+    }
+
+    /**
+     * Ordinals and weights in parallel arrays, so scoring a term never dereferences a document.
+     */
+    private static final class Postings {
+        private int[] ordinals = new int[4];
+        private float[] weights = new float[4];
+        private int size;
+
+        void add(int ordinal, float weight) {
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            ordinals[size] = ordinal;
+            weights[size++] = weight;
+        }
+
+        boolean remove(int ordinal) {
+            for (int i = 0; i < size; i++) {
+                if (ordinals[i] == ordinal) {
+                    size--;
+                    ordinals[i] = ordinals[size];
+                    weights[i] = weights[size];
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class Doc {
+        private final String key;
+        private final Long customerId;
+        private final Long fileId;
+        private final String name;
+        private final String detail;
+        private final String[] terms;
+        private final float[] weights;
+        private int ordinal;
+
+        Doc(String key, Long customerId, Long fileId, String name, String detail, Map<String, Float> termWeights) {
+            this.key = key;
+            this.customerId = customerId;
+            this.fileId = fileId;
+            this.name = name;
+            this.detail = detail;
+            this.terms = termWeights.keySet().toArray(new String[0]);
+            this.weights = new float[terms.length];
+            for (int i = 0; i < terms.length; i++) {
+                weights[i] = termWeights.get(terms[i]);
+            }
+        }
+
+        SearchResultDto toResult(float score) {
+            score = Math.round(score * 1000) / 1000f;
+            return fileId == null
+                    ? SearchResultDto.customer(customerId, name, detail, score)
+                    : SearchResultDto.file(customerId, fileId, name, detail, score);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.customerarchive.service;
+
+import com.example.customerarchive.dto.SearchResultDto;
+
+import java.util.List;
+
+public interface SearchService {
+    List<SearchResultDto> search(String username, String query, Integer limit);
+}
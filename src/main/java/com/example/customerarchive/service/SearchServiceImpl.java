@@ -0,0 +1,89 @@
+package com.example.customerarchive.service;
+
+import com.example.customerarchive.dto.SearchResultDto;
+import com.example.customerarchive.exception.BadRequestException;
+import com.example.customerarchive.repository.CustomerRepository;
+import com.example.customerarchive.repository.CustomerSearchRow;
+import com.example.customerarchive.repository.FileRepository;
+import com.example.customerarchive.repository.FileSearchRow;
+import io.micrometer.core.annotation.Timed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+@Service
+@Timed(value = "archive.service", description = "Service method latency, tagged by class and method")
+public class SearchServiceImpl implements SearchService {
+    private static final Logger logger = LoggerFactory.getLogger(SearchServiceImpl.class);
+
+    private final SearchIndex searchIndex;
+    private final CustomerRepository customerRepository;
+    private final FileRepository fileRepository;
+    @Value("${search.default-limit:20}")
+    private int defaultLimit;
+    @Value("${search.max-limit:100}")
+    private int maxLimit;
+    @Value("${search.max-query-length:200}")
+    private int maxQueryLength;
+    @Value("${search.rebuild.batch-size:1000}")
+    private int rebuildBatchSize;
+
+    public SearchServiceImpl(SearchIndex searchIndex, CustomerRepository customerRepository, FileRepository fileRepository) {
+        this.searchIndex = searchIndex;
+        this.customerRepository = customerRepository;
+        this.fileRepository = fileRepository;
+    }
+
+    public List<SearchResultDto> search(String username, String query, Integer limit) {
+        if (query == null || query.length() > maxQueryLength) {
+            throw new BadRequestException("A search query must be at most " + maxQueryLength + " characters");
+        }
+        int resolvedLimit = limit == null || limit < 1 ? defaultLimit : Math.min(limit, maxLimit);
+        return searchIndex.search(username, query, resolvedLimit);
+    }
+
+    /**
+     * Loads the index from the database in id order. Requests served meanwhile see a partial index, and
+     * changes committed meanwhile are kept over the rows the rebuild reads.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.nanoTime();
+        searchIndex.beginRebuild();
+        try {
+            long customers = 0;
+            long afterId = 0;
+            List<CustomerSearchRow> customerRows;
+            do {
+                customerRows = customerRepository.findSearchRows(afterId, PageRequest.of(0, rebuildBatchSize));
+                for (CustomerSearchRow row : customerRows) {
+                    searchIndex.loadCustomer(row.getOwnerUsername(), row.getCustomerId(), row.getName(), row.getEmail());
+                    afterId = row.getCustomerId();
+                }
+                customers += customerRows.size();
+            } while (customerRows.size() == rebuildBatchSize);
+
+            long files = 0;
+            afterId = 0;
+            List<FileSearchRow> fileRows;
+            do {
+                fileRows = fileRepository.findSearchRows(afterId, PageRequest.of(0, rebuildBatchSize));
+                for (FileSearchRow row : fileRows) {
+                    searchIndex.loadFile(row.getCustomerId(), row.getFileId(), row.getFileName(), row.getFileType());
+                    afterId = row.getFileId();
+                }
+                files += fileRows.size();
+            } while (fileRows.size() == rebuildBatchSize);
+            logger.info("Search index built from {} customers and {} files in {} ms", customers, files,
+                    (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            searchIndex.endRebuild();
+        }
+    }
+}
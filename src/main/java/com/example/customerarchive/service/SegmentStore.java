@@ -0,0 +1,467 @@
+package com.example.customerarchive.service;
+
+import com.example.customerarchive.model.PackedBlob;
+import com.example.customerarchive.model.StorageCodec;
+import com.example.customerarchive.repository.PackedBlobRepository;
+import com.example.customerarchive.repository.SegmentUsage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Packs small blobs into large append-only segment files under {@code <upload-dir>/.segments}, so that a
+ * receipt does not cost an inode and a disk block of its own. The {@link PackedBlob} table maps each blob
+ * to its segment, offset and length. Reads from sealed segments are slices of a mapping of the whole file;
+ * the open segment is still growing, so its blobs are read from the file instead of mapping it again and
+ * again as it grows.
+ * <p>
+ * Every process appends to segments it opened itself, so a segment is never appended to after a restart.
+ * Deleting a blob only drops its row; compaction later copies the live entries of sparse segments into the
+ * open one and deletes the old file on the following run, so readers that looked up the old location
+ * before the copy was committed can still finish.
+ */
+@Component
+public class SegmentStore implements DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(SegmentStore.class);
+    private static final String EXTENSION = ".seg";
+    private static final int COMPACTION_BATCH_SIZE = 500;
+
+    private final StorageBackend storageBackend;
+    private final PackedBlobRepository packedBlobRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Path directory;
+    private final boolean enabled;
+    private final long maxBlobSize;
+    private final long segmentSize;
+    private final double minLiveRatio;
+    private final Counter appendedBytes;
+    private final Counter compactedBytes;
+
+    private final Object appendLock = new Object();
+    private Segment openSegment;
+    // Read without the append lock, to tell whether a blob's segment may still grow.
+    private volatile int openSegmentId = -1;
+    private int lastSegmentId;
+    // Appends whose transaction has not completed yet. A segment with any is never compacted or deleted.
+    private final Map<Integer, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+    private final Map<Integer, ByteBuffer> mappings = new ConcurrentHashMap<>();
+    private final Map<Integer, FileChannel> sealedChannels = new ConcurrentHashMap<>();
+    private final Set<Integer> pendingDeletes = ConcurrentHashMap.newKeySet();
+
+    public SegmentStore(StorageLayout storageLayout, StorageBackend storageBackend, PackedBlobRepository packedBlobRepository,
+                        TransactionTemplate transactionTemplate, MeterRegistry meterRegistry,
+                        @Value("${file.storage.segments.enabled:true}") boolean enabled,
+                        @Value("${file.storage.segments.max-blob-size:64KB}") DataSize maxBlobSize,
+                        @Value("${file.storage.segments.segment-size:256MB}") DataSize segmentSize,
+                        @Value("${file.storage.segments.compaction.min-live-ratio:0.5}") double minLiveRatio) throws IOException {
+        if (segmentSize.toBytes() > Integer.MAX_VALUE || maxBlobSize.toBytes() > segmentSize.toBytes()) {
+            throw new IllegalArgumentException("Invalid segment sizes: segments of " + segmentSize.toBytes()
+                    + " bytes, blobs of up to " + maxBlobSize.toBytes() + " bytes");
+        }
+        this.storageBackend = storageBackend;
+        this.packedBlobRepository = packedBlobRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.directory = storageLayout.getRoot().resolve(".segments");
+        this.enabled = enabled;
+        this.maxBlobSize = maxBlobSize.toBytes();
+        this.segmentSize = segmentSize.toBytes();
+        this.minLiveRatio = minLiveRatio;
+        this.appendedBytes = Counter.builder("archive.storage.segments.appended")
+                .description("Bytes of small blobs appended to segments, including compaction copies")
+                .baseUnit(BaseUnits.BYTES)
+                .register(meterRegistry);
+        this.compactedBytes = Counter.builder("archive.storage.segments.reclaimed")
+                .description("Bytes freed by deleting compacted or empty segments")
+                .baseUnit(BaseUnits.BYTES)
+                .register(meterRegistry);
+        Files.createDirectories(directory);
+        for (int segmentId : segmentIds()) {
+            lastSegmentId = Math.max(lastSegmentId, segmentId);
+        }
+    }
+
+    /**
+     * Whether a blob of this many stored bytes goes into a segment rather than a file of its own.
+     */
+    public boolean accepts(long storedSize) {
+        return enabled && storedSize <= maxBlobSize;
+    }
+
+    /**
+     * Appends {@code source} and records its location in the current transaction. If that rolls back, the
+     * bytes stay behind as dead space until compaction.
+     */
+    public void append(String digest, StorageCodec codec, Path source) throws IOException {
+        long length = Files.size(source);
+        Placement placement;
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            placement = write(length, (channel, position) -> {
+                long written = 0;
+                while (written < length) {
+                    long transferred = channel.transferFrom(in, position + written, length - written);
+                    if (transferred <= 0) {
+                        throw new IOException("Staged file ended before " + length + " bytes were packed");
+                    }
+                    written += transferred;
+                }
+            });
+        }
+        releaseOnCompletion(placement.segmentId);
+        PackedBlob entry = new PackedBlob();
+        entry.setBlobKey(key(digest, codec));
+        entry.setSegmentId(placement.segmentId);
+        entry.setSegmentOffset(placement.offset);
+        entry.setStoredLength(length);
+        entry.setCreatedDate(new Date());
+        packedBlobRepository.save(entry);
+    }
+
+    /**
+     * Opens the blob from its own file if it has one, and from its segment otherwise. Returns null if it
+     * is in neither.
+     */
+    public BlobContent open(String digest, StorageCodec codec) throws IOException {
+        BlobContent stored = storageBackend.open(digest, codec);
+        if (stored != null) {
+            return stored;
+        }
+        PackedBlob entry = packedBlobRepository.findById(key(digest, codec)).orElse(null);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.getSegmentId() == openSegmentId) {
+            return BlobContent.of(read(entry.getSegmentId(), entry.getSegmentOffset(), entry.getStoredLength()));
+        }
+        ByteBuffer segment = map(entry.getSegmentId(), entry.getSegmentOffset() + entry.getStoredLength());
+        return BlobContent.of(segment.slice((int) entry.getSegmentOffset(), (int) entry.getStoredLength()));
+    }
+
+    public boolean contains(String digest, StorageCodec codec) {
+        return packedBlobRepository.existsById(key(digest, codec));
+    }
+
+    /**
+     * Returns the keys among {@code blobKeys} that are packed.
+     */
+    public Set<String> findPacked(Collection<String> blobKeys) {
+        return blobKeys.isEmpty() ? Set.of() : new HashSet<>(packedBlobRepository.findExistingKeys(blobKeys));
+    }
+
+    /**
+     * Drops every codec's entry for the blob in the current transaction.
+     */
+    public void discard(String digest) {
+        List<String> keys = new ArrayList<>();
+        for (StorageCodec codec : StorageCodec.values()) {
+            keys.add(key(digest, codec));
+        }
+        packedBlobRepository.deleteByBlobKeys(keys);
+    }
+
+    public static String key(String digest, StorageCodec codec) {
+        return codec == null ? digest : digest + codec.getExtension();
+    }
+
+    @Scheduled(initialDelayString = "${file.storage.segments.compaction.initial-delay-ms:600000}",
+            fixedDelayString = "${file.storage.segments.compaction.interval-ms:3600000}")
+    public void compact() {
+        deletePendingSegments();
+        Integer openSegmentId;
+        synchronized (appendLock) {
+            openSegmentId = openSegment != null ? openSegment.id : null;
+        }
+        List<Integer> sealed = new ArrayList<>();
+        for (int segmentId : segmentIds()) {
+            if (!Integer.valueOf(segmentId).equals(openSegmentId) && !pendingDeletes.contains(segmentId) && inFlight(segmentId).get() == 0) {
+                sealed.add(segmentId);
+            }
+        }
+        if (sealed.isEmpty()) {
+            return;
+        }
+        // Read after the in-flight check, so no append to these segments can still commit.
+        Map<Integer, Long> liveBytes = new HashMap<>();
+        for (SegmentUsage usage : packedBlobRepository.findSegmentUsage()) {
+            liveBytes.put(usage.getSegmentId(), usage.getLiveBytes());
+        }
+        for (int segmentId : sealed) {
+            try {
+                closeSealedChannel(segmentId);
+                long size = Files.size(segmentPath(segmentId));
+                long live = liveBytes.getOrDefault(segmentId, 0L);
+                if (live == 0) {
+                    deleteSegment(segmentId);
+                } else if (live < size * minLiveRatio) {
+                    int moved = compactSegment(segmentId, size);
+                    pendingDeletes.add(segmentId);
+                    logger.info("Compacted segment {}, moved {} blobs ({} of {} bytes live)", segmentId, moved, live, size);
+                }
+            } catch (IOException | RuntimeException ex) {
+                logger.error("Could not compact segment {}, will retry on the next run", segmentId, ex);
+            }
+        }
+    }
+
+    private int compactSegment(int segmentId, long size) throws IOException {
+        ByteBuffer source = map(segmentId, size);
+        List<PackedBlob> entries = packedBlobRepository.findBySegmentIdOrderBySegmentOffset(segmentId);
+        for (int from = 0; from < entries.size(); from += COMPACTION_BATCH_SIZE) {
+            List<PackedBlob> batch = entries.subList(from, Math.min(entries.size(), from + COMPACTION_BATCH_SIZE));
+            List<Placement> copies = new ArrayList<>(batch.size());
+            try {
+                for (PackedBlob entry : batch) {
+                    ByteBuffer bytes = source.slice((int) entry.getSegmentOffset(), (int) entry.getStoredLength());
+                    copies.add(write(entry.getStoredLength(), (channel, position) -> {
+                        long written = 0;
+                        while (bytes.hasRemaining()) {
+                            written += channel.write(bytes, position + written);
+                        }
+                    }));
+                }
+                transactionTemplate.executeWithoutResult(status -> {
+                    for (int i = 0; i < batch.size(); i++) {
+                        PackedBlob entry = batch.get(i);
+                        packedBlobRepository.relocate(entry.getBlobKey(), segmentId, entry.getSegmentOffset(),
+                                copies.get(i).segmentId, copies.get(i).offset);
+                    }
+                });
+            } finally {
+                for (Placement copy : copies) {
+                    inFlight(copy.segmentId).decrementAndGet();
+                }
+            }
+        }
+        return entries.size();
+    }
+
+    private Placement write(long length, SegmentWriter writer) throws IOException {
+        Segment segment;
+        long offset;
+        synchronized (appendLock) {
+            if (openSegment == null || (openSegment.size > 0 && openSegment.size + length > segmentSize)) {
+                roll();
+            }
+            segment = openSegment;
+            offset = segment.size;
+            writer.write(segment.channel, offset);
+            segment.size += length;
+            inFlight(segment.id).incrementAndGet();
+        }
+        // Outside the lock, so concurrent appends share the flush instead of queueing behind each other.
+        try {
+            segment.channel.force(false);
+        } catch (IOException ex) {
+            inFlight(segment.id).decrementAndGet();
+            throw ex;
+        }
+        appendedBytes.increment(length);
+        return new Placement(segment.id, offset);
+    }
+
+    private void roll() throws IOException {
+        int segmentId = lastSegmentId + 1;
+        FileChannel channel = FileChannel.open(segmentPath(segmentId),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (openSegment != null) {
+            // Appends that already left the lock may still be flushing through this channel.
+            sealedChannels.put(openSegment.id, openSegment.channel);
+        }
+        lastSegmentId = segmentId;
+        openSegment = new Segment(segmentId, channel);
+        openSegmentId = segmentId;
+        logger.info("Opened segment {}", segmentId);
+    }
+
+    private void releaseOnCompletion(int segmentId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            inFlight(segmentId).decrementAndGet();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                inFlight(segmentId).decrementAndGet();
+            }
+        });
+    }
+
+    private AtomicInteger inFlight(int segmentId) {
+        return inFlight.computeIfAbsent(segmentId, id -> new AtomicInteger());
+    }
+
+    /**
+     * Copies a blob out of a segment that is still being appended to. Packed blobs are small, so the copy is
+     * cheap. The read goes through a channel of its own, because an interrupted read would close the
+     * channel it used and the appends share theirs.
+     */
+    private ByteBuffer read(int segmentId, long offset, long length) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate((int) length);
+        try (FileChannel channel = FileChannel.open(segmentPath(segmentId), StandardOpenOption.READ)) {
+            while (bytes.hasRemaining()) {
+                if (channel.read(bytes, offset + bytes.position()) < 0) {
+                    throw new IOException("Segment " + segmentId + " is shorter than " + (offset + length) + " bytes");
+                }
+            }
+        }
+        return bytes.flip();
+    }
+
+    /**
+     * Maps the whole of a sealed segment once. Sealed segments no longer grow, so a mapping never has to be
+     * replaced and each segment holds a single entry against {@code vm.max_map_count}.
+     */
+    private ByteBuffer map(int segmentId, long end) throws IOException {
+        ByteBuffer mapping = mappings.get(segmentId);
+        if (mapping == null) {
+            try {
+                mapping = mappings.computeIfAbsent(segmentId, id -> {
+                    try (FileChannel channel = FileChannel.open(segmentPath(id), StandardOpenOption.READ)) {
+                        return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+        }
+        if (mapping.capacity() < end) {
+            throw new IOException("Segment " + segmentId + " is shorter than " + end + " bytes");
+        }
+        return mapping;
+    }
+
+    /**
+     * The segments currently mapped, for tests.
+     */
+    Set<Integer> mappedSegments() {
+        return Set.copyOf(mappings.keySet());
+    }
+
+    private void deletePendingSegments() {
+        for (Integer segmentId : List.copyOf(pendingDeletes)) {
+            try {
+                deleteSegment(segmentId);
+                pendingDeletes.remove(segmentId);
+            } catch (IOException ex) {
+                logger.warn("Could not delete compacted segment {}", segmentId, ex);
+            }
+        }
+    }
+
+    private void deleteSegment(int segmentId) throws IOException {
+        Path path = segmentPath(segmentId);
+        long size = Files.exists(path) ? Files.size(path) : 0;
+        // Readers that already hold a slice keep the pages until they are done.
+        mappings.remove(segmentId);
+        Files.deleteIfExists(path);
+        inFlight.remove(segmentId);
+        compactedBytes.increment(size);
+        logger.info("Deleted segment {}, {} bytes freed", segmentId, size);
+    }
+
+    private void closeSealedChannel(int segmentId) {
+        FileChannel channel = sealedChannels.remove(segmentId);
+        if (channel != null) {
+            closeQuietly(channel);
+        }
+    }
+
+    private List<Integer> segmentIds() {
+        List<Integer> segmentIds = new ArrayList<>();
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (Path segment : segments) {
+                String name = segment.getFileName().toString();
+                try {
+                    segmentIds.add(Integer.parseInt(name.substring(0, name.length() - EXTENSION.length())));
+                } catch (NumberFormatException ex) {
+                    logger.warn("Ignoring unexpected file {} in the segment directory", segment);
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not list segments in " + directory, ex);
+        }
+        segmentIds.sort(null);
+        return segmentIds;
+    }
+
+    private Path segmentPath(int segmentId) {
+        return directory.resolve(String.format("%010d%s", segmentId, EXTENSION));
+    }
+
+    private void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            logger.warn("Could not close segment channel", ex);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        synchronized (appendLock) {
+            if (openSegment != null) {
+                closeQuietly(openSegment.channel);
+                openSegment = null;
+                openSegmentId = -1;
+            }
+        }
+        sealedChannels.values().forEach(this::closeQuietly);
+        sealedChannels.clear();
+        mappings.clear();
+    }
+
+    private interface SegmentWriter {
+        void write(FileChannel channel, long position) throws IOException;
+    }
+
+    private static class Segment {
+        private final int id;
+        private final FileChannel channel;
+        private long size;
+
+        Segment(int id, FileChannel channel) {
+            this.id = id;
+            this.channel = channel;
+        }
+    }
+
+    private static class Placement {
+        private final int segmentId;
+        private final long offset;
+
+        Placement(int segmentId, long offset) {
+            this.segmentId = segmentId;
+            this.offset = offset;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.customerarchive.service;
+
+import com.example.customerarchive.model.StorageCodec;
+import java.nio.file.Path;
+
+/**
+ * Upload bytes written to a temporary file whose digest is known but which is not yet part of the blob store.
+ */
+public class StagedFile {
+    private final String fileName;
+    private final Path tempPath;
+    private final String storageRoot;
+    private final StreamingFileWriter.Result content;
+
+    public StagedFile(String fileName, Path tempPath, String storageRoot, StreamingFileWriter.Result content) {
+        this.fileName = fileName;
+        this.tempPath = tempPath;
+        this.storageRoot = storageRoot;
+        this.content = content;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public Path getTempPath() {
+        return tempPath;
+    }
+
+    /**
+     * The storage root the blob goes to if no root holds it yet.
+     */
+    public String getStorageRoot() {
+        return storageRoot;
+    }
+
+    public String getChecksum() {
+        return content.getChecksum();
+    }
+
+    public long getSize() {
+        return content.getSize();
+    }
+
+    public String getContentType() {
+        return content.getContentType();
+    }
+
+    public StorageCodec getCodec() {
+        return content.getCodec();
+    }
+
+    public long getStoredSize() {
+        return content.getStoredSize();
+    }
+}
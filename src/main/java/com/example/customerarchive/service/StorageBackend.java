@@ -0,0 +1,67 @@
+package com.example.customerarchive.service;
+
+import com.example.customerarchive.model.StorageCodec;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Where blobs that get a file of their own are kept. Small blobs go to the {@link SegmentStore} instead,
+ * and previews, segments and the content index stay under {@code file.upload-dir}.
+ * <p>
+ * A root names one place blobs are written to, and is recorded on every {@code File} row. A null root means
+ * {@code file.upload-dir}, which is where rows written before roots existed keep their blobs.
+ */
+public interface StorageBackend {
+    /**
+     * Picks the root for a new blob. {@code size} is -1 while the upload is still streaming in.
+     */
+    String selectRoot(long size);
+
+    /**
+     * Directory to stage an upload bound for {@code root} in, so that storing it is a rename.
+     */
+    Path stagingDirectory(String root);
+
+    /**
+     * Counts a write against {@code root} until the returned handle is closed.
+     */
+    Write beginWrite(String root);
+
+    /**
+     * The path a blob is stored under on {@code root}. It is recorded on the row, and only exists on disk for
+     * backends that keep files.
+     */
+    Path blobPath(String root, String digest, StorageCodec codec);
+
+    /**
+     * Moves a staged upload in as the blob, replacing a copy that is already there.
+     */
+    void store(String root, String digest, StorageCodec codec, Path staged) throws IOException;
+
+    /**
+     * Returns the root that holds the blob, or null if none does.
+     */
+    String findRoot(String digest, StorageCodec codec);
+
+    /**
+     * Opens the blob from whichever root holds it, or returns null if none does.
+     */
+    BlobContent open(String digest, StorageCodec codec) throws IOException;
+
+    /**
+     * Deletes the blob from every root that holds it.
+     */
+    void delete(String digest, StorageCodec codec) throws IOException;
+
+    /**
+     * Directories the reconciler walks, or an empty list if blobs are not kept on disk.
+     */
+    List<Path> directories();
+
+    interface Write extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
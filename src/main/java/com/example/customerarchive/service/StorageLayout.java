@@ -0,0 +1,79 @@
+package com.example.customerarchive.service;
+
+import com.example.customerarchive.model.StorageCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+@Component
+public class StorageLayout {
+    private final Path root;
+    private final int shardDepth;
+    private final int shardWidth;
+
+    public StorageLayout(@Value("${file.upload-dir}") String uploadDir,
+                         @Value("${file.storage.shard-depth:2}") int shardDepth,
+                         @Value("${file.storage.shard-width:2}") int shardWidth) {
+        if (shardDepth < 0 || shardWidth < 1 || shardDepth * shardWidth >= 64) {
+            throw new IllegalArgumentException("Invalid shard layout: depth " + shardDepth + ", width " + shardWidth);
+        }
+        this.root = Paths.get(uploadDir).toAbsolutePath().normalize();
+        this.shardDepth = shardDepth;
+        this.shardWidth = shardWidth;
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    public int getShardDepth() {
+        return shardDepth;
+    }
+
+    public int getShardWidth() {
+        return shardWidth;
+    }
+
+    /**
+     * Blobs are fanned out over nested directories named after the leading hex digits of their
+     * checksum, e.g. {@code ab/cd/abcd...} for a depth of 2 and a width of 2.
+     */
+    public Path blobPath(String checksum) {
+        return blobPath(root, checksum);
+    }
+
+    /**
+     * Encoded blobs sit next to where the plain blob would be, with the codec's extension appended.
+     */
+    public Path blobPath(String checksum, StorageCodec codec) {
+        return blobPath(root, checksum, codec);
+    }
+
+    /**
+     * The same layout under another storage root.
+     */
+    public Path blobPath(Path storageRoot, String checksum, StorageCodec codec) {
+        Path path = blobPath(storageRoot, checksum);
+        if (codec == null || codec == StorageCodec.IDENTITY) {
+            return path;
+        }
+        return path.resolveSibling(checksum + codec.getExtension());
+    }
+
+    private Path blobPath(Path storageRoot, String checksum) {
+        Path directory = storageRoot;
+        for (int level = 0; level < shardDepth; level++) {
+            directory = directory.resolve(checksum.substring(level * shardWidth, (level + 1) * shardWidth));
+        }
+        return directory.resolve(checksum);
+    }
+
+    /**
+     * Derivatives are rendered from the decoded content, so one preview serves every codec of a blob.
+     */
+    public Path previewPath(String checksum) {
+        return blobPath(checksum).resolveSibling(checksum + ".preview.jpg");
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.customerarchive.service;
+
+import com.example.customerarchive.model.MigrationCursor;
+import com.example.customerarchive.model.StorageCodec;
+import com.example.customerarchive.repository.FileLocation;
+import com.example.customerarchive.repository.FileRepository;
+import com.example.customerarchive.repository.MigrationCursorRepository;
+import com.example.customerarchive.repository.ReclaimTaskRepository;
+import com.example.customerarchive.repository.StoredBlobRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Moves blobs written before the sharded layout (or under a different shard configuration) into
+ * their {@link StorageLayout} location and rewrites {@code File.filePath}, one batch per transaction.
+ * Each batch advances a {@link MigrationCursor} for the current layout, so later runs and restarts only look at
+ * files added since. Old paths are queued with the {@link StorageReclaimer} in the same transaction and deleted
+ * after {@code file.storage.migration.delete-delay}, so downloads that read the previous path keep working.
+ */
+@Component
+public class StorageLayoutMigrator {
+    private static final Logger logger = LoggerFactory.getLogger(StorageLayoutMigrator.class);
+
+    private final FileRepository fileRepository;
+    private final StoredBlobRepository storedBlobRepository;
+    private final MigrationCursorRepository cursorRepository;
+    private final ReclaimTaskRepository reclaimTaskRepository;
+    private final StorageBackend storageBackend;
+    private final StreamingFileWriter streamingFileWriter;
+    private final SegmentStore segmentStore;
+    private final StorageReclaimer storageReclaimer;
+    private final TransactionTemplate transactionTemplate;
+    private final String cursorName;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long pauseMillis;
+    private final Duration deleteDelay;
+
+    private volatile boolean completed;
+
+    public StorageLayoutMigrator(FileRepository fileRepository, StoredBlobRepository storedBlobRepository,
+                                 MigrationCursorRepository cursorRepository, ReclaimTaskRepository reclaimTaskRepository,
+                                 StorageBackend storageBackend, StreamingFileWriter streamingFileWriter, SegmentStore segmentStore,
+                                 StorageReclaimer storageReclaimer, StorageLayout storageLayout, TransactionTemplate transactionTemplate,
+                                 @Value("${file.storage.migration.enabled:true}") boolean enabled,
+                                 @Value("${file.storage.migration.batch-size:500}") int batchSize,
+                                 @Value("${file.storage.migration.pause-ms:100}") long pauseMillis,
+                                 @Value("${file.storage.migration.delete-delay:5m}") Duration deleteDelay) {
+        this.fileRepository = fileRepository;
+        this.storedBlobRepository = storedBlobRepository;
+        this.cursorRepository = cursorRepository;
+        this.reclaimTaskRepository = reclaimTaskRepository;
+        this.storageBackend = storageBackend;
+        this.streamingFileWriter = streamingFileWriter;
+        this.segmentStore = segmentStore;
+        this.storageReclaimer = storageReclaimer;
+        this.transactionTemplate = transactionTemplate;
+        // A new shard configuration has to look at every file again, so it gets its own cursor.
+        this.cursorName = "storage-layout-" + storageLayout.getShardDepth() + "x" + storageLayout.getShardWidth();
+        // A backend that keeps no files has nothing to migrate into.
+        this.enabled = enabled && !storageBackend.directories().isEmpty();
+        this.batchSize = batchSize;
+        this.pauseMillis = pauseMillis;
+        this.deleteDelay = deleteDelay;
+    }
+
+    /**
+     * Whether every blob file on disk already has its row, which is not the case while legacy files are
+     * being adopted or old paths are waiting to be deleted.
+     */
+    public boolean isSettled() {
+        return !enabled || completed;
+    }
+
+    @Scheduled(initialDelayString = "${file.storage.migration.initial-delay-ms:30000}",
+            fixedDelayString = "${file.storage.migration.interval-ms:300000}")
+    public void migrate() {
+        if (!enabled || completed) {
+            return;
+        }
+        long lastFileId = cursorRepository.findById(cursorName).map(MigrationCursor::getLastFileId).orElse(0L);
+        logger.info("Starting storage layout migration after file id {}", lastFileId);
+        int migrated = 0;
+        // Ascending, so the first entry is where the next run has to start again.
+        List<Long> failedFileIds = new ArrayList<>();
+        while (true) {
+            final long afterFileId = lastFileId;
+            List<FileLocation> batch = fileRepository.findByFileIdGreaterThanOrderByFileIdAsc(afterFileId, PageRequest.of(0, batchSize));
+            if (batch.isEmpty()) {
+                break;
+            }
+            lastFileId = batch.get(batch.size() - 1).getFileId();
+            final long batchLastFileId = lastFileId;
+            try {
+                Integer count = transactionTemplate.execute(status -> {
+                    int moved = migrateBatch(batch, failedFileIds);
+                    saveCursor(failedFileIds.isEmpty() ? batchLastFileId : failedFileIds.get(0) - 1);
+                    return moved;
+                });
+                migrated += count != null ? count : 0;
+            } catch (RuntimeException ex) {
+                logger.error("Storage layout migration batch after file id {} failed, will retry on the next run", afterFileId, ex);
+                return;
+            }
+            if (!pause()) {
+                return;
+            }
+        }
+        if (!failedFileIds.isEmpty()) {
+            logger.warn("Storage layout migration moved {} files, {} could not be moved and are retried on the next run",
+                    migrated, failedFileIds.size());
+        } else if (reclaimTaskRepository.existsByDigestIsNull()) {
+            logger.info("Storage layout migration moved {} files, old paths are still waiting to be deleted", migrated);
+        } else {
+            logger.info("Storage layout migration finished, {} files moved", migrated);
+            completed = true;
+        }
+    }
+
+    private void saveCursor(long lastFileId) {
+        MigrationCursor cursor = new MigrationCursor();
+        cursor.setName(cursorName);
+        cursor.setLastFileId(lastFileId);
+        cursor.setUpdatedDate(new Date());
+        cursorRepository.save(cursor);
+    }
+
+    private int migrateBatch(List<FileLocation> batch, List<Long> failedFileIds) {
+        int migrated = 0;
+        Set<String> handledPaths = new HashSet<>();
+        for (FileLocation location : batch) {
+            String oldPath = location.getFilePath();
+            if (oldPath == null || handledPaths.contains(oldPath)) {
+                continue;
+            }
+            Path source = Paths.get(oldPath).toAbsolutePath().normalize();
+            try {
+                if (location.getChecksum() != null) {
+                    Path target = storageBackend.blobPath(location.getStorageRoot(), location.getChecksum(), location.getCodec());
+                    if (target.equals(source)) {
+                        continue;
+                    }
+                    boolean packed = Files.notExists(source) && segmentStore.contains(location.getChecksum(), location.getCodec());
+                    if (!packed && !placeAt(source, target)) {
+                        continue;
+                    }
+                    fileRepository.updateFilePath(oldPath, target.toString());
+                    handledPaths.add(oldPath);
+                    if (!packed) {
+                        storageReclaimer.reclaimPath(source.toString(), deleteDelay);
+                    }
+                } else {
+                    if (Files.notExists(source)) {
+                        logger.warn("Cannot migrate file id {}, {} does not exist", location.getFileId(), source);
+                        continue;
+                    }
+                    // Rows from before content addressing are adopted into the blob store on the way.
+                    String checksum = streamingFileWriter.checksum(source);
+                    long size = Files.size(source);
+                    String storageRoot = storageBackend.findRoot(checksum, StorageCodec.IDENTITY);
+                    if (storageRoot == null) {
+                        storageRoot = storageBackend.selectRoot(size);
+                    }
+                    Path target = storageBackend.blobPath(storageRoot, checksum, StorageCodec.IDENTITY);
+                    placeAt(source, target);
+                    storedBlobRepository.addReference(checksum, size);
+                    fileRepository.updateStoredLocation(location.getFileId(), target.toString(), storageRoot, checksum, size);
+                    if (!fileRepository.existsByFilePath(oldPath)) {
+                        storageReclaimer.reclaimPath(source.toString(), deleteDelay);
+                    }
+                }
+                migrated++;
+            } catch (IOException ex) {
+                logger.error("Could not migrate file id {} from {}", location.getFileId(), source, ex);
+                failedFileIds.add(location.getFileId());
+            }
+        }
+        return migrated;
+    }
+
+    private boolean placeAt(Path source, Path target) throws IOException {
+        if (Files.exists(target)) {
+            return true;
+        }
+        if (Files.notExists(source)) {
+            logger.warn("Cannot migrate {}, the file does not exist", source);
+            return false;
+        }
+        Files.createDirectories(target.getParent());
+        try {
+            Files.createLink(target, source);
+        } catch (UnsupportedOperationException | IOException ex) {
+            Path partial = target.resolveSibling(target.getFileName() + ".migrating");
+            Files.copy(source, partial, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE);
+        }
+        return true;
+    }
+
+    private boolean pause() {
+        try {
+            Thread.sleep(pauseMillis);
+            return true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
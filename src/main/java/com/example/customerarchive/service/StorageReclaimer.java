@@ -0,0 +1,239 @@
+package com.example.customerarchive.service;
+
+import com.example.customerarchive.model.ReclaimTask;
+import com.example.customerarchive.model.StorageCodec;
+import com.example.customerarchive.model.StoredBlob;
+import com.example.customerarchive.repository.ReclaimTaskRepository;
+import com.example.customerarchive.repository.StoredBlobRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Deletes blobs and legacy files once nothing references them. Releasing a file only writes a
+ * {@link ReclaimTask} in the caller's transaction, so a rollback keeps both the reference and the bytes, and
+ * the request never waits on the filesystem. Each task is then handled in its own transaction that holds the
+ * blob's row while the files are deleted, so an upload of the same content waits for it instead of racing it.
+ */
+@Component
+public class StorageReclaimer {
+    private static final Logger logger = LoggerFactory.getLogger(StorageReclaimer.class);
+
+    private final ReclaimTaskRepository taskRepository;
+    private final StoredBlobRepository storedBlobRepository;
+    private final StorageBackend storageBackend;
+    private final SegmentStore segmentStore;
+    private final PreviewService previewService;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate newTransactionTemplate;
+    private final Counter reclaimed;
+    private final boolean enabled;
+    private final int batchSize;
+    private final Duration retryDelay;
+
+    public StorageReclaimer(ReclaimTaskRepository taskRepository, StoredBlobRepository storedBlobRepository,
+                            StorageBackend storageBackend, SegmentStore segmentStore, PreviewService previewService,
+                            TransactionTemplate transactionTemplate, MeterRegistry meterRegistry,
+                            @Value("${file.reclaim.enabled:true}") boolean enabled,
+                            @Value("${file.reclaim.batch-size:100}") int batchSize,
+                            @Value("${file.reclaim.retry-delay:10m}") Duration retryDelay) {
+        this.taskRepository = taskRepository;
+        this.storedBlobRepository = storedBlobRepository;
+        this.storageBackend = storageBackend;
+        this.segmentStore = segmentStore;
+        this.previewService = previewService;
+        this.transactionTemplate = transactionTemplate;
+        this.newTransactionTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.newTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.reclaimed = Counter.builder("archive.storage.reclaimed")
+                .description("Blobs and legacy files deleted once nothing referenced them")
+                .register(meterRegistry);
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.retryDelay = retryDelay;
+    }
+
+    /**
+     * Queues the blob for deletion if it ends up unreferenced. {@code filePath} is the released row's path,
+     * which is also deleted if the layout migrator has not moved it yet.
+     */
+    @Transactional
+    public void reclaimBlob(String digest, String filePath) {
+        taskRepository.save(newTask(digest, filePath, new Date()));
+    }
+
+    /**
+     * Queues a file stored before content addressing, which its row owned exclusively.
+     */
+    @Transactional
+    public void reclaimPath(String filePath) {
+        taskRepository.save(newTask(null, filePath, new Date()));
+    }
+
+    /**
+     * Like {@link #reclaimPath(String)}, but the file is kept for the given delay, e.g. for downloads that
+     * looked up the old path just before it was replaced.
+     */
+    @Transactional
+    public void reclaimPath(String filePath, Duration delay) {
+        ReclaimTask task = newTask(null, filePath, new Date());
+        task.setNotBefore(new Date(task.getCreatedDate().getTime() + delay.toMillis()));
+        taskRepository.save(task);
+    }
+
+    /**
+     * Queues a blob that the current transaction just moved into place, in case the transaction rolls back
+     * and leaves the bytes with no row.
+     */
+    public void reclaimOnRollback(String digest) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_ROLLED_BACK) {
+                    return;
+                }
+                try {
+                    newTransactionTemplate.executeWithoutResult(tx -> taskRepository.save(newTask(digest, null, new Date())));
+                } catch (RuntimeException ex) {
+                    logger.warn("Could not queue blob {} of a rolled back upload, the reconciler will report it", digest, ex);
+                }
+            }
+        });
+    }
+
+    @Scheduled(initialDelayString = "${file.reclaim.initial-delay-ms:10000}",
+            fixedDelayString = "${file.reclaim.interval-ms:5000}")
+    public void pollPending() {
+        if (enabled) {
+            reclaimPending();
+        }
+    }
+
+    /**
+     * Deletes every blob and file whose task is due. Tasks that fail are postponed by the retry delay.
+     */
+    public void reclaimPending() {
+        int deleted = 0;
+        List<ReclaimTask> tasks;
+        do {
+            tasks = taskRepository.findByNotBeforeLessThanEqualOrderByTaskId(new Date(), PageRequest.of(0, batchSize));
+            for (ReclaimTask task : tasks) {
+                try {
+                    if (task.getDigest() != null ? reclaimBlob(task) : reclaimPath(task)) {
+                        deleted++;
+                    }
+                } catch (RuntimeException ex) {
+                    logger.warn("Could not reclaim {}, retrying in {}", describe(task), retryDelay, ex);
+                    Date notBefore = new Date(System.currentTimeMillis() + retryDelay.toMillis());
+                    transactionTemplate.executeWithoutResult(status -> taskRepository.postpone(task.getTaskId(), notBefore));
+                }
+            }
+        } while (tasks.size() == batchSize);
+        if (deleted > 0) {
+            logger.info("Reclaimed {} unreferenced blobs and files", deleted);
+        }
+    }
+
+    private boolean reclaimBlob(ReclaimTask task) {
+        String digest = task.getDigest();
+        try {
+            return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                if (!storedBlobRepository.existsById(digest)) {
+                    // Bytes without a row, left by a rolled back upload or found by the reconciler. The
+                    // placeholder locks the digest the same way a real row would.
+                    storedBlobRepository.saveAndFlush(placeholder(digest));
+                }
+                boolean unreferenced = storedBlobRepository.deleteIfUnreferenced(digest) > 0;
+                if (unreferenced) {
+                    for (StorageCodec codec : StorageCodec.values()) {
+                        delete(digest, codec);
+                    }
+                    if (task.getFilePath() != null) {
+                        delete(Paths.get(task.getFilePath()).toAbsolutePath().normalize());
+                    }
+                    segmentStore.discard(digest);
+                    previewService.discardPreview(digest);
+                    reclaimed.increment();
+                    logger.info("Blob {} is no longer referenced, deleted from filesystem", digest);
+                }
+                taskRepository.deleteById(task.getTaskId());
+                return unreferenced;
+            }));
+        } catch (DataIntegrityViolationException ex) {
+            // An upload of the same content inserted the row first, so the bytes are in use again.
+            transactionTemplate.executeWithoutResult(status -> taskRepository.deleteById(task.getTaskId()));
+            return false;
+        }
+    }
+
+    private boolean reclaimPath(ReclaimTask task) {
+        Path filePath = Paths.get(task.getFilePath()).toAbsolutePath().normalize();
+        transactionTemplate.executeWithoutResult(status -> {
+            delete(filePath);
+            taskRepository.deleteById(task.getTaskId());
+        });
+        reclaimed.increment();
+        logger.info("File deleted from filesystem: {}", filePath);
+        return true;
+    }
+
+    private static void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not delete " + path, ex);
+        }
+    }
+
+    private void delete(String digest, StorageCodec codec) {
+        try {
+            storageBackend.delete(digest, codec);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not delete blob " + digest, ex);
+        }
+    }
+
+    private static String describe(ReclaimTask task) {
+        return task.getDigest() != null ? "blob " + task.getDigest() : task.getFilePath();
+    }
+
+    private static ReclaimTask newTask(String digest, String filePath, Date now) {
+        ReclaimTask task = new ReclaimTask();
+        task.setDigest(digest);
+        task.setFilePath(filePath);
+        task.setNotBefore(now);
+        task.setCreatedDate(now);
+        return task;
+    }
+
+    private static StoredBlob placeholder(String digest) {
+        StoredBlob blob = new StoredBlob();
+        blob.setDigest(digest);
+        blob.setRefCount(0);
+        blob.setCreatedDate(new Date());
+        return blob;
+    }
+}
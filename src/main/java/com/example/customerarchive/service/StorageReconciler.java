@@ -0,0 +1,288 @@
+package com.example.customerarchive.service;
+
+import com.example.customerarchive.exception.ResourceNotFoundException;
+import com.example.customerarchive.model.StoredBlob;
+import com.example.customerarchive.repository.FileLocation;
+import com.example.customerarchive.repository.FileRepository;
+import com.example.customerarchive.repository.StoredBlobRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares the {@code File} table with the storage roots and reports rows whose bytes are gone and files
+ * nothing refers to. With {@code file.reconcile.clean} it also deletes them: dangling rows through
+ * {@link FileService#deleteFile}, orphan blobs through the {@link StorageReclaimer}, and stale temporary and
+ * legacy files directly. Rows and directory entries are read in batches with a pause in between, and files
+ * younger than the grace period are left alone since they may belong to an upload that is still committing.
+ */
+@Component
+public class StorageReconciler {
+    private static final Logger logger = LoggerFactory.getLogger(StorageReconciler.class);
+    private static final Pattern BLOB_NAME = Pattern.compile("([0-9a-f]{64})(\\.gz|\\.preview\\.jpg)?");
+
+    private final FileRepository fileRepository;
+    private final StoredBlobRepository storedBlobRepository;
+    private final StorageBackend storageBackend;
+    private final StorageLayoutMigrator storageLayoutMigrator;
+    private final StorageReclaimer storageReclaimer;
+    private final SegmentStore segmentStore;
+    private final FileService fileService;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final boolean clean;
+    private final int batchSize;
+    private final long pauseMillis;
+    private final Duration gracePeriod;
+
+    public StorageReconciler(FileRepository fileRepository, StoredBlobRepository storedBlobRepository,
+                             StorageBackend storageBackend, StorageLayoutMigrator storageLayoutMigrator,
+                             StorageReclaimer storageReclaimer, SegmentStore segmentStore, FileService fileService, MeterRegistry meterRegistry,
+                             @Value("${file.reconcile.enabled:true}") boolean enabled,
+                             @Value("${file.reconcile.clean:false}") boolean clean,
+                             @Value("${file.reconcile.batch-size:500}") int batchSize,
+                             @Value("${file.reconcile.pause-ms:100}") long pauseMillis,
+                             @Value("${file.reconcile.grace-period:1h}") Duration gracePeriod) {
+        this.fileRepository = fileRepository;
+        this.storedBlobRepository = storedBlobRepository;
+        this.storageBackend = storageBackend;
+        this.storageLayoutMigrator = storageLayoutMigrator;
+        this.storageReclaimer = storageReclaimer;
+        this.segmentStore = segmentStore;
+        this.fileService = fileService;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.clean = clean;
+        this.batchSize = batchSize;
+        this.pauseMillis = pauseMillis;
+        this.gracePeriod = gracePeriod;
+    }
+
+    @Scheduled(initialDelayString = "${file.reconcile.initial-delay-ms:3600000}",
+            fixedDelayString = "${file.reconcile.interval-ms:86400000}")
+    public void reconcile() {
+        if (!enabled) {
+            return;
+        }
+        if (!storageLayoutMigrator.isSettled()) {
+            logger.info("Skipping storage reconciliation while the layout migration is running");
+            return;
+        }
+        logger.info("Starting storage reconciliation{}", clean ? ", cleaning up findings" : "");
+        Findings findings = new Findings();
+        try {
+            Set<Path> legacyPaths = checkRows(findings);
+            checkFiles(legacyPaths, findings);
+        } catch (IOException ex) {
+            logger.error("Storage reconciliation failed, will retry on the next run", ex);
+            return;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        findings.counts.forEach((kind, count) -> meterRegistry.counter("archive.storage.reconcile.findings", "kind", kind).increment(count));
+        if (findings.counts.values().stream().allMatch(count -> count == 0)) {
+            logger.info("Storage reconciliation finished, database and disk agree");
+        } else {
+            logger.warn("Storage reconciliation finished with findings {}{}", findings.counts, clean ? ", cleaned up" : "");
+        }
+    }
+
+    /**
+     * Reports rows whose file is missing, and returns the paths of rows that are not at their layout location
+     * so that the directory walk does not take those files for orphans.
+     */
+    private Set<Path> checkRows(Findings findings) throws InterruptedException {
+        Set<Path> legacyPaths = new HashSet<>();
+        long lastFileId = 0;
+        while (true) {
+            List<FileLocation> batch = fileRepository.findByFileIdGreaterThanOrderByFileIdAsc(lastFileId, PageRequest.of(0, batchSize));
+            if (batch.isEmpty()) {
+                return legacyPaths;
+            }
+            lastFileId = batch.get(batch.size() - 1).getFileId();
+            Map<String, List<FileLocation>> missing = new LinkedHashMap<>();
+            for (FileLocation location : batch) {
+                Path filePath = Paths.get(location.getFilePath()).toAbsolutePath().normalize();
+                Path blobPath = location.getChecksum() != null
+                        ? storageBackend.blobPath(location.getStorageRoot(), location.getChecksum(), location.getCodec())
+                        : null;
+                if (!filePath.equals(blobPath)) {
+                    legacyPaths.add(filePath);
+                }
+                if (!Files.exists(filePath)
+                        && (blobPath == null || storageBackend.findRoot(location.getChecksum(), location.getCodec()) == null)) {
+                    String key = location.getChecksum() != null
+                            ? SegmentStore.key(location.getChecksum(), location.getCodec())
+                            : "file:" + location.getFileId();
+                    missing.computeIfAbsent(key, k -> new ArrayList<>()).add(location);
+                }
+            }
+            // Small blobs have no file of their own.
+            missing.keySet().removeAll(segmentStore.findPacked(missing.keySet()));
+            for (List<FileLocation> locations : missing.values()) {
+                for (FileLocation location : locations) {
+                    // The file may have been deleted along with its row since the batch was read.
+                    if (fileRepository.existsById(location.getFileId())) {
+                        danglingRow(location, findings);
+                    }
+                }
+            }
+            pause();
+        }
+    }
+
+    private void danglingRow(FileLocation location, Findings findings) {
+        findings.add("dangling_row");
+        logger.warn("File id {} points at {}, which does not exist", location.getFileId(), location.getFilePath());
+        if (!clean) {
+            return;
+        }
+        try {
+            fileService.deleteFile(location.getFileId());
+        } catch (ResourceNotFoundException ex) {
+            logger.debug("File id {} was deleted concurrently", location.getFileId());
+        }
+    }
+
+    private void checkFiles(Set<Path> legacyPaths, Findings findings) throws IOException, InterruptedException {
+        long staleBefore = System.currentTimeMillis() - gracePeriod.toMillis();
+        for (Path root : storageBackend.directories()) {
+            checkDirectory(root, legacyPaths, staleBefore, findings);
+        }
+    }
+
+    private void checkDirectory(Path root, Set<Path> legacyPaths, long staleBefore, Findings findings)
+            throws IOException, InterruptedException {
+        checkIncoming(root.resolve(".incoming"), staleBefore, findings);
+        Map<String, Path> candidates = new LinkedHashMap<>();
+        List<InterruptedException> interrupted = new ArrayList<>(1);
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) {
+                // Hidden directories hold the staging area, segments and the content index, not loose blobs.
+                return dir.equals(root) || !dir.getFileName().toString().startsWith(".")
+                        ? FileVisitResult.CONTINUE : FileVisitResult.SKIP_SUBTREE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                if (attributes.lastModifiedTime().toMillis() > staleBefore) {
+                    return FileVisitResult.CONTINUE;
+                }
+                String name = file.getFileName().toString();
+                Matcher blobName = BLOB_NAME.matcher(name);
+                if (blobName.matches()) {
+                    candidates.putIfAbsent(blobName.group(1), file);
+                    if (candidates.size() < batchSize) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    checkBlobs(candidates, findings);
+                    candidates.clear();
+                    try {
+                        pause();
+                    } catch (InterruptedException ex) {
+                        interrupted.add(ex);
+                        return FileVisitResult.TERMINATE;
+                    }
+                } else if (name.endsWith(".preview.tmp") || name.endsWith(".store.tmp") || name.endsWith(".migrating")) {
+                    orphanFile(file, "temp_file", findings);
+                } else if (!legacyPaths.contains(file.toAbsolutePath().normalize())) {
+                    orphanFile(file, "orphan_file", findings);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        if (!interrupted.isEmpty()) {
+            throw interrupted.get(0);
+        }
+        checkBlobs(candidates, findings);
+    }
+
+    private void checkIncoming(Path incoming, long staleBefore, Findings findings) throws IOException {
+        if (Files.notExists(incoming)) {
+            return;
+        }
+        // Uploads in progress live here; anything older than the grace period was left by a crash.
+        try (DirectoryStream<Path> staged = Files.newDirectoryStream(incoming, "upload-*.tmp")) {
+            for (Path file : staged) {
+                if (Files.getLastModifiedTime(file).toMillis() <= staleBefore) {
+                    orphanFile(file, "temp_file", findings);
+                }
+            }
+        }
+    }
+
+    private void checkBlobs(Map<String, Path> candidates, Findings findings) {
+        if (candidates.isEmpty()) {
+            return;
+        }
+        Set<String> known = new HashSet<>();
+        for (StoredBlob blob : storedBlobRepository.findAllById(candidates.keySet())) {
+            known.add(blob.getDigest());
+        }
+        candidates.forEach((digest, file) -> {
+            if (known.contains(digest)) {
+                return;
+            }
+            findings.add("orphan_blob");
+            logger.warn("Blob {} has no row, found at {}", digest, file);
+            if (clean) {
+                storageReclaimer.reclaimBlob(digest, null);
+            }
+        });
+    }
+
+    private void orphanFile(Path file, String kind, Findings findings) {
+        findings.add(kind);
+        logger.warn("{} is not referenced by any file", file);
+        if (!clean) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ex) {
+            logger.warn("Could not delete {}", file, ex);
+        }
+    }
+
+    private void pause() throws InterruptedException {
+        Thread.sleep(pauseMillis);
+    }
+
+    private static class Findings {
+        private final Map<String, Long> counts = new LinkedHashMap<>();
+
+        Findings() {
+            for (String kind : List.of("dangling_row", "orphan_blob", "orphan_file", "temp_file")) {
+                counts.put(kind, 0L);
+            }
+        }
+
+        void add(String kind) {
+            counts.merge(kind, 1L, Long::sum);
+        }
+    }
+}
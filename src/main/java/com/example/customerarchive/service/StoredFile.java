@@ -0,0 +1,52 @@
+package com.example.customerarchive.service;
+
+import com.example.customerarchive.model.StorageCodec;
+import java.nio.file.Path;
+
+public class StoredFile {
+    private final String fileName;
+    private final String checksum;
+    private final long size;
+    private final Path path;
+    private final String storageRoot;
+    private final String contentType;
+    private final StorageCodec codec;
+
+    public StoredFile(String fileName, String checksum, long size, Path path, String storageRoot, String contentType, StorageCodec codec) {
+        this.fileName = fileName;
+        this.checksum = checksum;
+        this.size = size;
+        this.path = path;
+        this.storageRoot = storageRoot;
+        this.contentType = contentType;
+        this.codec = codec;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public String getChecksum() {
+        return checksum;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public String getStorageRoot() {
+        return storageRoot;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public StorageCodec getCodec() {
+        return codec;
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.customerarchive.service;
+
+import com.example.customerarchive.model.StorageCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.zip.GZIPOutputStream;
+
+@Component
+public class StreamingFileWriter {
+
+    private final int bufferSize;
+
+    public StreamingFileWriter(@Value("${file.upload.buffer-size:65536}") int bufferSize) {
+        if (bufferSize < ContentTypeSniffer.SNIFF_LENGTH) {
+            throw new IllegalArgumentException("file.upload.buffer-size must be at least " + ContentTypeSniffer.SNIFF_LENGTH);
+        }
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Copies the stream into a new file in a single pass, computing the SHA-256 digest,
+     * size and sniffed content type as the bytes go by.
+     */
+    public Result write(InputStream in, Path target) throws IOException {
+        return write(in, target, null);
+    }
+
+    /**
+     * Like {@link #write(InputStream, Path)}, but the policy may choose to gzip the bytes on their way to
+     * disk, based on the first buffer. The digest and size still describe the uncompressed content.
+     */
+    public Result write(InputStream in, Path target, CompressionPolicy compressionPolicy) throws IOException {
+        MessageDigest messageDigest = newDigest();
+        byte[] buffer = new byte[bufferSize];
+        ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+        int read = readFully(in, buffer, buffer.length);
+        String contentType = read > 0
+                ? ContentTypeSniffer.sniff(buffer, Math.min(read, ContentTypeSniffer.SNIFF_LENGTH))
+                : ContentTypeSniffer.OCTET_STREAM;
+        StorageCodec codec = compressionPolicy != null
+                ? compressionPolicy.choose(contentType, buffer, read, read < buffer.length)
+                : StorageCodec.IDENTITY;
+        long size = 0;
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             OutputStream encoder = codec == StorageCodec.GZIP
+                     ? new GzipEncoder(Channels.newOutputStream(channel), bufferSize, compressionPolicy.getLevel())
+                     : null) {
+            while (read > 0) {
+                messageDigest.update(buffer, 0, read);
+                if (encoder != null) {
+                    encoder.write(buffer, 0, read);
+                } else {
+                    byteBuffer.clear().limit(read);
+                    while (byteBuffer.hasRemaining()) {
+                        channel.write(byteBuffer);
+                    }
+                }
+                size += read;
+                read = readFully(in, buffer, buffer.length);
+            }
+        }
+        return new Result(HexFormat.of().formatHex(messageDigest.digest()), size, contentType, codec, Files.size(target));
+    }
+
+    public String checksum(Path source) throws IOException {
+        MessageDigest messageDigest = newDigest();
+        ByteBuffer byteBuffer = ByteBuffer.allocate(bufferSize);
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            while (channel.read(byteBuffer.clear()) >= 0) {
+                messageDigest.update(byteBuffer.flip());
+            }
+        }
+        return HexFormat.of().formatHex(messageDigest.digest());
+    }
+
+    private static int readFully(InputStream in, byte[] buffer, int length) throws IOException {
+        int total = 0;
+        while (total < length) {
+            int read = in.read(buffer, total, length - total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+
+    public static class Result {
+        private final String checksum;
+        private final long size;
+        private final String contentType;
+        private final StorageCodec codec;
+        private final long storedSize;
+
+        public Result(String checksum, long size, String contentType, StorageCodec codec, long storedSize) {
+            this.checksum = checksum;
+            this.size = size;
+            this.contentType = contentType;
+            this.codec = codec;
+            this.storedSize = storedSize;
+        }
+
+        public String getChecksum() {
+            return checksum;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public StorageCodec getCodec() {
+            return codec;
+        }
+
+        public long getStoredSize() {
+            return storedSize;
+        }
+    }
+
+    private static class GzipEncoder extends GZIPOutputStream {
+        GzipEncoder(OutputStream out, int size, int level) throws IOException {
+            super(out, size);
+            def.setLevel(level);
+        }
+    }
+}
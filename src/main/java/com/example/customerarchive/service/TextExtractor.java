@@ -0,0 +1,61 @@
+package com.example.customerarchive.service;
+
+import com.example.customerarchive.model.StorageCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the text of plain-text, CSV, XML and similar uploads for the content index. Markup is replaced by
+ * spaces so tag and attribute names do not end up as terms.
+ */
+@Component
+public class TextExtractor {
+    private static final Set<String> MARKUP_TYPES = Set.of("application/xml", "text/xml", "text/html");
+    private static final Pattern TAG = Pattern.compile("<[^>]*>");
+
+    private final Set<String> types;
+    private final int maxChars;
+
+    public TextExtractor(@Value("${search.content.types:text/plain,text/csv,text/tab-separated-values,text/markdown,text/xml,text/html,application/xml,application/json}") List<String> types,
+                         @Value("${search.content.max-chars:1000000}") int maxChars) {
+        this.types = Set.copyOf(types);
+        this.maxChars = maxChars;
+    }
+
+    public boolean supports(String contentType) {
+        return contentType != null && types.contains(baseType(contentType));
+    }
+
+    /**
+     * Returns at most {@code max-chars} characters of the decoded content. Bytes that are not valid UTF-8
+     * come out as replacement characters rather than failing the file.
+     */
+    public String extract(BlobContent source, StorageCodec codec, String contentType) throws IOException {
+        StringBuilder text = new StringBuilder();
+        StorageCodec resolvedCodec = codec != null ? codec : StorageCodec.IDENTITY;
+        try (Reader reader = new InputStreamReader(resolvedCodec.decode(source.openStream()), StandardCharsets.UTF_8)) {
+            char[] buffer = new char[8192];
+            int read;
+            while (text.length() < maxChars
+                    && (read = reader.read(buffer, 0, Math.min(buffer.length, maxChars - text.length()))) != -1) {
+                text.append(buffer, 0, read);
+            }
+        }
+        return MARKUP_TYPES.contains(baseType(contentType)) ? TAG.matcher(text).replaceAll(" ") : text.toString();
+    }
+
+    private static String baseType(String contentType) {
+        int parameters = contentType.indexOf(';');
+        String type = parameters >= 0 ? contentType.substring(0, parameters) : contentType;
+        return type.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.customerarchive.service;
+
+import com.example.customerarchive.dto.UploadSessionDto;
+import com.example.customerarchive.dto.UploadSessionRequestDto;
+import com.example.customerarchive.model.File;
+
+import java.io.InputStream;
+
+public interface UploadSessionService {
+    UploadSessionDto createSession(Long customerId, UploadSessionRequestDto request, String username);
+    UploadSessionDto getSession(String uploadId, String username);
+    void writeChunk(String uploadId, int chunkIndex, InputStream in, long contentLength, String checksum, String username);
+    File commitSession(String uploadId, String username);
+    void abortSession(String uploadId, String username);
+}
@@ -0,0 +1,460 @@
+package com.example.customerarchive.service;
+
+import com.example.customerarchive.dto.UploadSessionDto;
+import com.example.customerarchive.dto.UploadSessionRequestDto;
+import com.example.customerarchive.exception.BadRequestException;
+import com.example.customerarchive.exception.FileStorageException;
+import com.example.customerarchive.exception.ResourceNotFoundException;
+import com.example.customerarchive.model.File;
+import com.example.customerarchive.model.StorageCodec;
+import com.example.customerarchive.model.UploadChunk;
+import com.example.customerarchive.model.UploadSession;
+import com.example.customerarchive.model.UploadStatus;
+import com.example.customerarchive.repository.UploadChunkRepository;
+import com.example.customerarchive.repository.UploadSessionRepository;
+import io.micrometer.core.annotation.Timed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Resumable uploads. Each chunk is written at its offset into a file preallocated to the full size, so
+ * chunks can arrive in any order and in parallel, and is recorded only once it is flushed and its checksum
+ * matches. The part is kept on the storage root chosen when the session is created. Committing hashes the
+ * assembled file once and hands it to {@link FileService} as a staged file, which renames it into the blob store.
+ * <p>
+ * Chunk writes share a per-session lock that committing takes exclusively, so a write that started before the
+ * commit finishes before the file is hashed, and a write that starts later sees the session is committing.
+ */
+@Service
+@Timed(value = "archive.service", description = "Service method latency, tagged by class and method")
+public class UploadSessionServiceImpl implements UploadSessionService {
+    private static final Logger logger = LoggerFactory.getLogger(UploadSessionServiceImpl.class);
+    private static final Pattern SHA256_HEX = Pattern.compile("[0-9a-fA-F]{64}");
+
+    private final UploadSessionRepository sessionRepository;
+    private final UploadChunkRepository chunkRepository;
+    private final FileService fileService;
+    private final StreamingFileWriter streamingFileWriter;
+    private final TransactionTemplate transactionTemplate;
+    private final StorageBackend storageBackend;
+    private final Map<String, ReadWriteLock> sessionLocks = new ConcurrentHashMap<>();
+    @Value("${file.upload.buffer-size:65536}")
+    private int bufferSize;
+    @Value("${file.upload.chunked.max-size:10GB}")
+    private DataSize maxSize;
+    @Value("${file.upload.chunked.default-chunk-size:8MB}")
+    private DataSize defaultChunkSize;
+    @Value("${file.upload.chunked.min-chunk-size:256KB}")
+    private DataSize minChunkSize;
+    @Value("${file.upload.chunked.max-chunk-size:64MB}")
+    private DataSize maxChunkSize;
+    @Value("${file.upload.chunked.expire-after:24h}")
+    private Duration expireAfter;
+    @Value("${file.upload.chunked.commit-wait:30s}")
+    private Duration commitWait;
+
+    public UploadSessionServiceImpl(UploadSessionRepository sessionRepository, UploadChunkRepository chunkRepository,
+                                    FileService fileService, StreamingFileWriter streamingFileWriter,
+                                    TransactionTemplate transactionTemplate, StorageBackend storageBackend) {
+        this.sessionRepository = sessionRepository;
+        this.chunkRepository = chunkRepository;
+        this.fileService = fileService;
+        this.streamingFileWriter = streamingFileWriter;
+        this.transactionTemplate = transactionTemplate;
+        this.storageBackend = storageBackend;
+    }
+
+    public UploadSessionDto createSession(Long customerId, UploadSessionRequestDto request, String username) {
+        if (request.getFileName() == null || request.getFileName().isBlank()) {
+            throw new BadRequestException("A file name is required");
+        }
+        String fileName = StringUtils.cleanPath(request.getFileName());
+        if (fileName.contains("..")) {
+            throw new BadRequestException("Sorry! Filename contains invalid path sequence " + fileName);
+        }
+        long size = request.getSize() != null ? request.getSize() : 0;
+        if (size < 1 || size > maxSize.toBytes()) {
+            throw new BadRequestException("A resumable upload must be between 1 and " + maxSize.toBytes() + " bytes");
+        }
+        long chunkSize = request.getChunkSize() != null ? request.getChunkSize() : defaultChunkSize.toBytes();
+        if (chunkSize < minChunkSize.toBytes() || chunkSize > maxChunkSize.toBytes()) {
+            throw new BadRequestException("The chunk size must be between " + minChunkSize.toBytes() + " and " + maxChunkSize.toBytes() + " bytes");
+        }
+        String checksum = request.getChecksum();
+        if (checksum != null && !SHA256_HEX.matcher(checksum).matches()) {
+            throw new BadRequestException("The checksum must be a hex-encoded SHA-256 digest");
+        }
+
+        Date now = new Date();
+        UploadSession session = new UploadSession();
+        session.setUploadId(UUID.randomUUID().toString());
+        session.setUsername(username);
+        session.setCustomerId(customerId);
+        session.setFileName(fileName);
+        session.setContentType(request.getContentType());
+        session.setFileSize(size);
+        session.setChunkSize((int) chunkSize);
+        session.setChunkCount(Math.toIntExact((size + chunkSize - 1) / chunkSize));
+        session.setChecksum(checksum != null ? checksum.toLowerCase(Locale.ROOT) : null);
+        session.setStatus(UploadStatus.UPLOADING);
+        // Chosen now rather than on commit, so the part is written where the blob will live and storing it is a
+        // rename, however large it is.
+        session.setStorageRoot(storageBackend.selectRoot(size));
+        session.setCreatedDate(now);
+        session.setUpdateDate(now);
+
+        Path part = partPath(session);
+        preallocate(part, size);
+        try {
+            transactionTemplate.executeWithoutResult(status -> sessionRepository.save(session));
+        } catch (RuntimeException ex) {
+            deleteQuietly(part);
+            throw ex;
+        }
+        logger.info("Created upload {} of {} bytes in {} chunks for customer id: {}", session.getUploadId(), size,
+                session.getChunkCount(), customerId);
+        return describe(session);
+    }
+
+    public UploadSessionDto getSession(String uploadId, String username) {
+        return describe(findSession(uploadId, username));
+    }
+
+    public void writeChunk(String uploadId, int chunkIndex, InputStream in, long contentLength, String checksum, String username) {
+        Lock lock = sessionLock(uploadId).readLock();
+        lock.lock();
+        try {
+            writeChunkLocked(uploadId, chunkIndex, in, contentLength, checksum, username);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void writeChunkLocked(String uploadId, int chunkIndex, InputStream in, long contentLength, String checksum, String username) {
+        UploadSession session = findSession(uploadId, username);
+        if (session.getStatus() != UploadStatus.UPLOADING) {
+            throw new BadRequestException("Upload " + uploadId + " is already being committed");
+        }
+        if (chunkIndex < 0 || chunkIndex >= session.getChunkCount()) {
+            throw new BadRequestException("Chunk index must be between 0 and " + (session.getChunkCount() - 1));
+        }
+        long offset = (long) chunkIndex * session.getChunkSize();
+        long expected = Math.min(session.getChunkSize(), session.getFileSize() - offset);
+        if (contentLength >= 0 && contentLength != expected) {
+            throw new BadRequestException("Chunk " + chunkIndex + " must be " + expected + " bytes");
+        }
+
+        String actual;
+        try (StorageBackend.Write write = storageBackend.beginWrite(session.getStorageRoot())) {
+            actual = writeAt(partPath(session), offset, expected, in, chunkIndex);
+        } catch (NoSuchFileException ex) {
+            throw new ResourceNotFoundException("Upload not found for this id :: " + uploadId);
+        } catch (IOException ex) {
+            logger.error("Could not write chunk {} of upload {}", chunkIndex, uploadId, ex);
+            throw new FileStorageException("Could not write chunk " + chunkIndex + ". Please try again!", ex);
+        }
+        // The bytes are on disk either way; a chunk that fails the check is simply not recorded, so it is sent again.
+        if (checksum != null && !checksum.equalsIgnoreCase(actual)) {
+            throw new BadRequestException("Chunk " + chunkIndex + " does not match its checksum");
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                // Checked again, since another instance may have started committing while the chunk was written.
+                if (sessionRepository.touch(uploadId, UploadStatus.UPLOADING, new Date()) == 0) {
+                    if (sessionRepository.existsById(uploadId)) {
+                        throw new BadRequestException("Upload " + uploadId + " is already being committed");
+                    }
+                    throw new ResourceNotFoundException("Upload not found for this id :: " + uploadId);
+                }
+                UploadChunk chunk = chunkRepository.findByUploadIdAndChunkIndex(uploadId, chunkIndex).orElseGet(UploadChunk::new);
+                chunk.setUploadId(uploadId);
+                chunk.setChunkIndex(chunkIndex);
+                chunk.setChecksum(actual);
+                chunkRepository.save(chunk);
+            });
+        } catch (DataIntegrityViolationException ex) {
+            logger.debug("Chunk {} of upload {} was recorded concurrently", chunkIndex, uploadId);
+        }
+    }
+
+    public File commitSession(String uploadId, String username) {
+        UploadSession session = claimForCommit(uploadId, username);
+
+        Path part = partPath(session);
+        StagedFile stagedFile;
+        try {
+            String checksum = streamingFileWriter.checksum(part);
+            if (session.getChecksum() != null && !session.getChecksum().equals(checksum)) {
+                discard(session);
+                throw new BadRequestException("Upload " + uploadId + " does not match its checksum, please upload the file again");
+            }
+            stagedFile = new StagedFile(session.getFileName(), part, session.getStorageRoot(),
+                    new StreamingFileWriter.Result(checksum, session.getFileSize(), sniff(part), StorageCodec.IDENTITY,
+                            session.getFileSize()));
+        } catch (IOException ex) {
+            transactionTemplate.execute(status ->
+                    sessionRepository.transition(uploadId, UploadStatus.COMMITTING, UploadStatus.UPLOADING, new Date()));
+            logger.error("Could not read upload {}", uploadId, ex);
+            throw new FileStorageException("Could not read upload " + uploadId + ". Please try again!", ex);
+        }
+
+        try {
+            File file = transactionTemplate.execute(status -> {
+                File saved = fileService.addFile(session.getCustomerId(), stagedFile, session.getContentType());
+                deleteRows(uploadId);
+                return saved;
+            });
+            sessionLocks.remove(uploadId);
+            logger.info("Committed upload {} as file id: {}", uploadId, file.getFileId());
+            return file;
+        } catch (RuntimeException ex) {
+            // The staged file is gone once the hand-off fails, so the session cannot be committed again.
+            discard(session);
+            throw ex;
+        }
+    }
+
+    /**
+     * Moves the session to COMMITTING once the chunk writes in progress have finished.
+     */
+    private UploadSession claimForCommit(String uploadId, String username) {
+        Lock lock = sessionLock(uploadId).writeLock();
+        try {
+            if (!lock.tryLock(commitWait.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new BadRequestException("Upload " + uploadId + " still has chunks being written, please try again");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new FileStorageException("Commit of upload " + uploadId + " was interrupted", ex);
+        }
+        try {
+            UploadSession session = findSession(uploadId, username);
+            if (session.getStatus() != UploadStatus.UPLOADING) {
+                throw new BadRequestException("Upload " + uploadId + " is already being committed");
+            }
+            long received = chunkRepository.countByUploadId(uploadId);
+            if (received < session.getChunkCount()) {
+                throw new BadRequestException("Upload " + uploadId + " is missing " + (session.getChunkCount() - received)
+                        + " of " + session.getChunkCount() + " chunks");
+            }
+            Integer claimed = transactionTemplate.execute(status ->
+                    sessionRepository.transition(uploadId, UploadStatus.UPLOADING, UploadStatus.COMMITTING, new Date()));
+            if (claimed == null || claimed == 0) {
+                throw new BadRequestException("Upload " + uploadId + " is already being committed");
+            }
+            return session;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void abortSession(String uploadId, String username) {
+        UploadSession session = findSession(uploadId, username);
+        if (session.getStatus() != UploadStatus.UPLOADING) {
+            throw new BadRequestException("Upload " + uploadId + " is already being committed");
+        }
+        discard(session);
+        logger.info("Aborted upload {}", uploadId);
+    }
+
+    @Scheduled(initialDelayString = "${file.upload.chunked.cleanup-interval-ms:600000}",
+            fixedDelayString = "${file.upload.chunked.cleanup-interval-ms:600000}")
+    public void expireSessions() {
+        Date before = new Date(System.currentTimeMillis() - expireAfter.toMillis());
+        int expired = 0;
+        for (String uploadId : sessionRepository.findIdsUpdatedBefore(before, PageRequest.of(0, 500))) {
+            UploadSession deleted = transactionTemplate.execute(status -> {
+                UploadSession session = sessionRepository.findById(uploadId).orElse(null);
+                if (session == null || sessionRepository.deleteIfUpdatedBefore(uploadId, before) == 0) {
+                    return null;
+                }
+                chunkRepository.deleteByUploadId(uploadId);
+                return session;
+            });
+            if (deleted != null) {
+                sessionLocks.remove(uploadId);
+                deleteQuietly(partPath(deleted));
+                expired++;
+            }
+        }
+        // Files left behind by a session whose row was never committed.
+        for (Path sessionLocation : sessionLocations()) {
+            try (DirectoryStream<Path> parts = Files.newDirectoryStream(sessionLocation, "*.part")) {
+                for (Path part : parts) {
+                    String name = part.getFileName().toString();
+                    if (Files.getLastModifiedTime(part).toMillis() < before.getTime()
+                            && !sessionRepository.existsById(name.substring(0, name.length() - ".part".length()))) {
+                        deleteQuietly(part);
+                        expired++;
+                    }
+                }
+            } catch (NoSuchFileException ex) {
+                // No session has been created on this root yet.
+            } catch (IOException ex) {
+                logger.warn("Could not scan {} for abandoned uploads", sessionLocation, ex);
+            }
+        }
+        if (expired > 0) {
+            logger.info("Expired {} upload sessions not updated within {}", expired, expireAfter);
+        }
+    }
+
+    private UploadSession findSession(String uploadId, String username) {
+        return sessionRepository.findByUploadIdAndUsername(uploadId, username)
+                .orElseThrow(() -> new ResourceNotFoundException("Upload not found for this id :: " + uploadId));
+    }
+
+    private UploadSessionDto describe(UploadSession session) {
+        List<Integer> chunkIndexes = chunkRepository.findChunkIndexes(session.getUploadId());
+        return UploadSessionDto.from(session, chunkIndexes, new Date(session.getUpdateDate().getTime() + expireAfter.toMillis()));
+    }
+
+    /**
+     * A lock is dropped once its session is gone or committing; a writer that arrives later gets a new one and
+     * then finds the session no longer accepts chunks.
+     */
+    private ReadWriteLock sessionLock(String uploadId) {
+        return sessionLocks.computeIfAbsent(uploadId, id -> new ReentrantReadWriteLock());
+    }
+
+    private Path partPath(UploadSession session) {
+        return sessionLocation(session.getStorageRoot()).resolve(session.getUploadId() + ".part");
+    }
+
+    private Path sessionLocation(String root) {
+        return storageBackend.stagingDirectory(root).resolve("sessions");
+    }
+
+    /**
+     * The parts directory of every root, and the one under upload-dir that older sessions use.
+     */
+    private Set<Path> sessionLocations() {
+        Set<Path> locations = new LinkedHashSet<>();
+        locations.add(sessionLocation(null));
+        for (Path directory : storageBackend.directories()) {
+            locations.add(sessionLocation(directory.toString()));
+        }
+        return locations;
+    }
+
+    private void preallocate(Path part, long size) {
+        try {
+            // Fails a too-large upload now rather than at its last chunks; setLength itself only reserves the size.
+            Files.createDirectories(part.getParent());
+            if (Files.getFileStore(part.getParent()).getUsableSpace() < size) {
+                throw new FileStorageException("Not enough disk space for an upload of " + size + " bytes");
+            }
+            try (RandomAccessFile file = new RandomAccessFile(part.toFile(), "rw")) {
+                file.setLength(size);
+            }
+        } catch (IOException ex) {
+            deleteQuietly(part);
+            logger.error("Could not create upload file {}", part, ex);
+            throw new FileStorageException("Could not create the upload. Please try again!", ex);
+        }
+    }
+
+    /**
+     * Writes exactly {@code length} bytes from {@code in} at {@code offset}, flushes them and returns their
+     * SHA-256. Positional writes do not move a shared file pointer, so chunks can be written concurrently.
+     */
+    private String writeAt(Path part, long offset, long length, InputStream in, int chunkIndex) throws IOException {
+        MessageDigest messageDigest = newDigest();
+        byte[] buffer = new byte[bufferSize];
+        long written = 0;
+        try (FileChannel channel = FileChannel.open(part, StandardOpenOption.WRITE)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                if (written + read > length) {
+                    throw new BadRequestException("Chunk " + chunkIndex + " must be " + length + " bytes");
+                }
+                messageDigest.update(buffer, 0, read);
+                ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, read);
+                long position = offset + written;
+                while (byteBuffer.hasRemaining()) {
+                    position += channel.write(byteBuffer, position);
+                }
+                written += read;
+            }
+            if (written != length) {
+                throw new BadRequestException("Chunk " + chunkIndex + " must be " + length + " bytes");
+            }
+            // A recorded chunk is never sent again, so it has to survive a crash.
+            channel.force(false);
+        }
+        return HexFormat.of().formatHex(messageDigest.digest());
+    }
+
+    private static String sniff(Path part) throws IOException {
+        byte[] head = new byte[ContentTypeSniffer.SNIFF_LENGTH];
+        int read;
+        try (InputStream in = Files.newInputStream(part)) {
+            read = in.readNBytes(head, 0, head.length);
+        }
+        return ContentTypeSniffer.sniff(head, read);
+    }
+
+    private void discard(UploadSession session) {
+        String uploadId = session.getUploadId();
+        transactionTemplate.executeWithoutResult(status -> deleteRows(uploadId));
+        sessionLocks.remove(uploadId);
+        deleteQuietly(partPath(session));
+    }
+
+    private void deleteRows(String uploadId) {
+        chunkRepository.deleteByUploadId(uploadId);
+        sessionRepository.deleteById(uploadId);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ex) {
+            logger.warn("Could not delete upload file {}", path, ex);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.customerarchive.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CorrelationIdFilterTests {
+    private final CorrelationIdFilter filter = new CorrelationIdFilter();
+
+    @Test
+    void wellFormedRequestIdIsReusedAndEchoed() throws ServletException, IOException {
+        String requestId = "edge-7f3a.01_" + "x".repeat(51);
+
+        assertThat(filterWith(requestId)).isEqualTo(requestId);
+    }
+
+    @Test
+    void missingRequestIdIsGenerated() throws ServletException, IOException {
+        assertThat(filterWith(null)).isNotBlank();
+    }
+
+    @Test
+    void tooLongRequestIdIsReplaced() throws ServletException, IOException {
+        String requestId = "x".repeat(65);
+
+        assertThat(filterWith(requestId)).isNotEqualTo(requestId).hasSizeLessThanOrEqualTo(64);
+    }
+
+    @Test
+    void requestIdWithOtherCharactersIsReplaced() throws ServletException, IOException {
+        for (String requestId : new String[]{"abc def", "abc\r\nX-Injected: 1", "{\"json\":1}", ""}) {
+            assertThat(filterWith(requestId)).isNotEqualTo(requestId).matches("[A-Za-z0-9._-]{1,64}");
+        }
+    }
+
+    @Test
+    void mdcIsClearedWhenTheChainFails() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        FilterChain failing = (req, res) -> {
+            throw new ServletException("boom");
+        };
+
+        assertThatThrownBy(() -> filter.doFilter(request, new MockHttpServletResponse(), failing))
+                .isInstanceOf(ServletException.class);
+        assertThat(MDC.get(CorrelationIdFilter.MDC_KEY)).isNull();
+    }
+
+    /**
+     * Runs one request carrying {@code requestId}, checks that the ID seen by the chain in the MDC is the one
+     * echoed in the response and that the MDC is clean afterwards, and returns it.
+     */
+    private String filterWith(String requestId) throws ServletException, IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        if (requestId != null) {
+            request.addHeader(CorrelationIdFilter.HEADER, requestId);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        AtomicReference<String> logged = new AtomicReference<>();
+
+        filter.doFilter(request, response, (req, res) -> logged.set(MDC.get(CorrelationIdFilter.MDC_KEY)));
+
+        assertThat(response.getHeader(CorrelationIdFilter.HEADER)).isEqualTo(logged.get());
+        assertThat(MDC.get(CorrelationIdFilter.MDC_KEY)).isNull();
+        return logged.get();
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.customerarchive.config;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.spi.FilterReply;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LogSamplingFilterTests {
+    private static final int KEEP_ONE_IN = 4;
+
+    private final LoggerContext context = new LoggerContext();
+    private final LogSamplingFilter filter = new LogSamplingFilter();
+    private Logger uploads;
+    private Logger exports;
+
+    @BeforeEach
+    void setUp() {
+        filter.setLoggers("com.example.uploads, com.example.exports,");
+        filter.setKeepOneIn(KEEP_ONE_IN);
+        uploads = context.getLogger("com.example.uploads.UploadService");
+        uploads.setLevel(Level.INFO);
+        exports = context.getLogger("com.example.exports.ExportService");
+        exports.setLevel(Level.INFO);
+    }
+
+    @Test
+    void keepsOneInKeepOneInInfoEventsPerCategory() {
+        int uploadsKept = 0;
+        int exportsKept = 0;
+        // A busy category interleaved with a quiet one: each is sampled from its own counter.
+        for (int i = 0; i < KEEP_ONE_IN * 10; i++) {
+            if (info(uploads) == FilterReply.NEUTRAL) {
+                uploadsKept++;
+            }
+            if (i % 2 == 0 && info(exports) == FilterReply.NEUTRAL) {
+                exportsKept++;
+            }
+        }
+
+        assertThat(uploadsKept).isEqualTo(10);
+        assertThat(exportsKept).isEqualTo(5);
+    }
+
+    @Test
+    void warnAndErrorAlwaysPass() {
+        for (int i = 0; i < KEEP_ONE_IN * 3; i++) {
+            assertThat(decide(uploads, Level.WARN, "slow upload")).isEqualTo(FilterReply.NEUTRAL);
+            assertThat(decide(uploads, Level.ERROR, "failed upload")).isEqualTo(FilterReply.NEUTRAL);
+        }
+    }
+
+    @Test
+    void enabledChecksDoNotUseUpASample() {
+        assertThat(info(uploads)).isEqualTo(FilterReply.NEUTRAL);
+        for (int i = 1; i < KEEP_ONE_IN; i++) {
+            // isInfoEnabled() reaches the filter with a null format before each event.
+            assertThat(decide(uploads, Level.INFO, null)).isEqualTo(FilterReply.NEUTRAL);
+            assertThat(info(uploads)).isEqualTo(FilterReply.DENY);
+        }
+        assertThat(decide(uploads, Level.INFO, null)).isEqualTo(FilterReply.NEUTRAL);
+        assertThat(info(uploads)).isEqualTo(FilterReply.NEUTRAL);
+    }
+
+    @Test
+    void eventsBelowTheLoggerLevelDoNotUseUpASample() {
+        assertThat(info(uploads)).isEqualTo(FilterReply.NEUTRAL);
+        for (int i = 0; i < KEEP_ONE_IN * 2; i++) {
+            decide(uploads, Level.DEBUG, "chunk written");
+        }
+        for (int i = 1; i < KEEP_ONE_IN; i++) {
+            assertThat(info(uploads)).isEqualTo(FilterReply.DENY);
+        }
+        assertThat(info(uploads)).isEqualTo(FilterReply.NEUTRAL);
+    }
+
+    @Test
+    void otherCategoriesAreNotSampled() {
+        Logger other = context.getLogger("com.example.search.SearchService");
+        other.setLevel(Level.INFO);
+
+        for (int i = 0; i < KEEP_ONE_IN * 2; i++) {
+            assertThat(info(other)).isEqualTo(FilterReply.NEUTRAL);
+        }
+    }
+
+    private FilterReply info(Logger logger) {
+        return decide(logger, Level.INFO, "stored {}");
+    }
+
+    private FilterReply decide(Logger logger, Level level, String format) {
+        return filter.decide(null, logger, level, format, null, null);
+    }
+}
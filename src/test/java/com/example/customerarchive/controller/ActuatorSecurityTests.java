@@ -0,0 +1,53 @@
+package com.example.customerarchive.controller;
+
+import com.example.customerarchive.model.User;
+import com.example.customerarchive.repository.UserRepository;
+import com.example.customerarchive.security.JwtUtil;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Metrics export is off in tests by default, which would leave no prometheus endpoint to secure.
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+class ActuatorSecurityTests {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void healthIsOpenAndMetricsNeedAToken() throws Exception {
+        mockMvc.perform(get("/actuator/health")).andExpect(status().isOk());
+        mockMvc.perform(get("/actuator/prometheus")).andExpect(status().isForbidden());
+
+        String suffix = UUID.randomUUID().toString();
+        User user = new User();
+        user.setUsername("scraper-" + suffix);
+        user.setPassword("secret");
+        user.setEmail("scraper-" + suffix + "@example.com");
+        userRepository.save(user);
+        String metrics = mockMvc.perform(get("/actuator/prometheus")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + jwtUtil.generateToken(user.getUsername())))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        // The per-endpoint statement summary is recorded, but without histogram buckets.
+        assertThat(metrics).contains("archive_jpa_statements_count").doesNotContain("archive_jpa_statements_bucket");
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.customerarchive.controller;
+
+import com.example.customerarchive.model.Customer;
+import com.example.customerarchive.model.User;
+import com.example.customerarchive.repository.CustomerRepository;
+import com.example.customerarchive.repository.UserRepository;
+import com.example.customerarchive.security.JwtUtil;
+import com.example.customerarchive.service.FileService;
+import jakarta.servlet.DispatcherType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:exports;MODE=MySQL;NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1",
+        "file.upload-dir=${java.io.tmpdir}/customer-archive-test/exports/",
+        // One export at a time and no queue, so a second concurrent export is turned away.
+        "file.export.threads=1",
+        "file.export.queue-capacity=0"
+})
+@AutoConfigureMockMvc
+class ExportControllerTests {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @SpyBean
+    private ZipExportWriter zipExportWriter;
+
+    private String token;
+    private Long customerId;
+
+    @BeforeEach
+    void setUp() {
+        String suffix = UUID.randomUUID().toString();
+        User user = new User();
+        user.setUsername("exports-" + suffix);
+        user.setPassword("secret");
+        user.setEmail("exports-" + suffix + "@example.com");
+        userRepository.save(user);
+        token = jwtUtil.generateToken(user.getUsername());
+        Customer customer = new Customer();
+        customer.setName("Exports");
+        customer.setEmail("customer-" + suffix + "@example.com");
+        customer.setUser(user);
+        customerId = customerRepository.save(customer).getCustomerId();
+        fileService.addFile(customerId, new ByteArrayInputStream("exported".getBytes(StandardCharsets.UTF_8)), "notes.txt",
+                "text/plain");
+    }
+
+    @Test
+    void exportRunsOnTheExportPoolAndIsTurnedAwayWhenItIsFull() throws Exception {
+        assertExportIsTurnedAwayWhenThePoolIsFull(mockMvc, zipExportWriter, false);
+    }
+
+    @Nested
+    @TestPropertySource(properties = "spring.threads.virtual.enabled=true")
+    class WithVirtualThreads {
+        // The enclosing instance is injected from the platform-thread context; the data it sets up is shared
+        // through the database, the beans under test are not. The spy itself is declared by the enclosing class.
+        @Autowired
+        private MockMvc virtualMockMvc;
+
+        @Autowired
+        private ZipExportWriter virtualZipExportWriter;
+
+        @Test
+        void exportRunsOnTheExportPoolAndIsTurnedAwayWhenItIsFull() throws Exception {
+            assertExportIsTurnedAwayWhenThePoolIsFull(virtualMockMvc, virtualZipExportWriter, true);
+        }
+    }
+
+    private void assertExportIsTurnedAwayWhenThePoolIsFull(MockMvc mockMvc, ZipExportWriter zipExportWriter,
+                                                           boolean virtualThreads) throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicReference<String> exportThread = new AtomicReference<>();
+        AtomicBoolean exportThreadVirtual = new AtomicBoolean();
+        doAnswer(invocation -> {
+            exportThread.set(Thread.currentThread().getName());
+            exportThreadVirtual.set(Thread.currentThread().isVirtual());
+            started.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return invocation.callRealMethod();
+        }).when(zipExportWriter).write(any(), any(OutputStream.class));
+
+        MvcResult running = export(mockMvc);
+        assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(exportThread.get()).startsWith("export-");
+        assertThat(exportThreadVirtual.get()).isEqualTo(virtualThreads);
+
+        MvcResult rejected = export(mockMvc);
+        assertThat(WebAsyncUtils.getAsyncManager(rejected.getRequest()).getConcurrentResult())
+                .isInstanceOf(TaskRejectedException.class);
+        mockMvc.perform(redispatch(rejected))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "30"))
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_DISPOSITION));
+
+        release.countDown();
+        running.getAsyncResult(10_000);
+        mockMvc.perform(asyncDispatch(running))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "application/zip"));
+    }
+
+    private MvcResult export(MockMvc mockMvc) throws Exception {
+        return mockMvc.perform(get("/files/customer/{customerId}/export", customerId)
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                .andReturn();
+    }
+
+    private static RequestBuilder redispatch(MvcResult result) {
+        // A rejected submission never reaches the callable interceptors MockMvc records async results with, so
+        // asyncDispatch would wait for a result that is only held by the request's WebAsyncManager.
+        return servletContext -> {
+            MockHttpServletRequest request = (MockHttpServletRequest) result.getRequest();
+            request.setDispatcherType(DispatcherType.ASYNC);
+            request.setAsyncStarted(false);
+            return request;
+        };
+    }
+}
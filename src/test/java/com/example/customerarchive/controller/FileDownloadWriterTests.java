@@ -0,0 +1,168 @@
+package com.example.customerarchive.controller;
+
+import com.example.customerarchive.model.File;
+import com.example.customerarchive.model.StorageCodec;
+import com.example.customerarchive.service.BlobContent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FileDownloadWriterTests {
+    private static final byte[] CONTENT = randomBytes(200_000);
+
+    private final FileDownloadWriter writer = new FileDownloadWriter(49152, new SimpleMeterRegistry());
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void malformedQualityInAcceptEncodingCountsAsAccepted() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/files/download/1");
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip;q=high, br");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        writer.write(file(StorageCodec.GZIP), gzipped(), "application/octet-stream", request, response);
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getHeader(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+    }
+
+    @Test
+    void decodedRangesAreServedFromOnePassOverTheBlob() throws IOException {
+        CountingBlobContent content = new CountingBlobContent(gzipped());
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/files/download/1");
+        request.addHeader(HttpHeaders.RANGE, "bytes=10-19,100000-100009,150000-150009");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        writer.write(file(StorageCodec.GZIP), content, "application/octet-stream", request, response);
+
+        assertThat(response.getStatus()).isEqualTo(206);
+        String body = response.getContentAsString(StandardCharsets.ISO_8859_1);
+        assertThat(body).contains(latin1(10, 20), latin1(100_000, 100_010), latin1(150_000, 150_010));
+        assertThat(content.opened).isEqualTo(1);
+    }
+
+    @Test
+    void overlappingRangesAreMergedIntoOne() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/files/download/1");
+        request.addHeader(HttpHeaders.RANGE, "bytes=100-199,0-99,150-299");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        writer.write(file(StorageCodec.IDENTITY), stored(), "application/octet-stream", request, response);
+
+        assertThat(response.getStatus()).isEqualTo(206);
+        assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 0-299/" + CONTENT.length);
+        assertThat(response.getContentAsByteArray()).isEqualTo(Arrays.copyOfRange(CONTENT, 0, 300));
+    }
+
+    @Test
+    void separateRangesAreSentInAscendingOrder() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/files/download/1");
+        request.addHeader(HttpHeaders.RANGE, "bytes=5000-5009,10-19");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        writer.write(file(StorageCodec.IDENTITY), stored(), "application/octet-stream", request, response);
+
+        assertThat(response.getStatus()).isEqualTo(206);
+        String body = response.getContentAsString(StandardCharsets.ISO_8859_1);
+        assertThat(body.indexOf("bytes 10-19/")).isLessThan(body.indexOf("bytes 5000-5009/"));
+        assertThat(body).contains(latin1(10, 20), latin1(5000, 5010));
+    }
+
+    @Test
+    void rangesAddingUpToMoreThanTheFileGetTheWholeFile() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/files/download/1");
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-,0-,0-,0-");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        writer.write(file(StorageCodec.IDENTITY), stored(), "application/octet-stream", request, response);
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isNull();
+        assertThat(response.getContentAsByteArray()).isEqualTo(CONTENT);
+    }
+
+    private File file(StorageCodec codec) {
+        File file = new File();
+        file.setFileId(1L);
+        file.setFileName("content.bin");
+        file.setFileSize((long) CONTENT.length);
+        file.setChecksum("0123456789abcdef");
+        file.setCodec(codec);
+        file.setUpdateDate(new Date(1_700_000_000_000L));
+        return file;
+    }
+
+    private BlobContent stored() throws IOException {
+        Path path = directory.resolve("content.bin");
+        Files.write(path, CONTENT);
+        return BlobContent.of(path);
+    }
+
+    private BlobContent gzipped() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(CONTENT);
+        }
+        Path path = directory.resolve("content.bin.gz");
+        Files.write(path, bytes.toByteArray());
+        return BlobContent.of(path);
+    }
+
+    private static String latin1(int from, int to) {
+        return new String(Arrays.copyOfRange(CONTENT, from, to), StandardCharsets.ISO_8859_1);
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] content = new byte[size];
+        new Random(42).nextBytes(content);
+        return content;
+    }
+
+    private static class CountingBlobContent implements BlobContent {
+        private final BlobContent delegate;
+        private int opened;
+
+        CountingBlobContent(BlobContent delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public long length() throws IOException {
+            return delegate.length();
+        }
+
+        @Override
+        public InputStream openStream() throws IOException {
+            opened++;
+            return delegate.openStream();
+        }
+
+        @Override
+        public void transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            delegate.transferTo(position, count, target);
+        }
+
+        @Override
+        public Path getPath() {
+            return delegate.getPath();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.customerarchive.controller;
+
+import com.example.customerarchive.model.Customer;
+import com.example.customerarchive.model.File;
+import com.example.customerarchive.model.User;
+import com.example.customerarchive.repository.CustomerRepository;
+import com.example.customerarchive.repository.FileRepository;
+import com.example.customerarchive.repository.UserRepository;
+import com.example.customerarchive.security.JwtUtil;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.util.Date;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Guards the JSON read paths against N+1 regressions: the number of JDBC statements per request must
+ * not grow with the number of customers or files returned.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class ReadQueryCountTests {
+    private static final int CUSTOMERS = 5;
+    private static final int FILES_PER_CUSTOMER = 4;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private FileRepository fileRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private String token;
+    private Long firstCustomerId;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        String suffix = UUID.randomUUID().toString();
+        User user = new User();
+        user.setUsername("reader-" + suffix);
+        user.setPassword("secret");
+        user.setEmail("reader-" + suffix + "@example.com");
+        userRepository.save(user);
+        token = jwtUtil.generateToken(user.getUsername());
+
+        for (int i = 0; i < CUSTOMERS; i++) {
+            Customer customer = new Customer();
+            customer.setName("Customer " + i);
+            customer.setEmail("customer-" + i + "-" + suffix + "@example.com");
+            customer.setUser(user);
+            customerRepository.save(customer);
+            if (firstCustomerId == null) {
+                firstCustomerId = customer.getCustomerId();
+            }
+            for (int j = 0; j < FILES_PER_CUSTOMER; j++) {
+                File file = new File();
+                file.setFileName("file-" + j + ".txt");
+                file.setFileType("text/plain");
+                file.setFilePath("/tmp/file-" + j + ".txt");
+                file.setFileSize(10L);
+                file.setUploadDate(new Date());
+                file.setUpdateDate(new Date());
+                file.setCustomer(customer);
+                fileRepository.save(file);
+            }
+        }
+    }
+
+    @Test
+    void getAllCustomersUsesOneQuery() throws Exception {
+        assertStatements(1, perform("/api/customers/getAll")
+                .andExpect(jsonPath("$", hasSize(CUSTOMERS)))
+                .andExpect(jsonPath("$[0].files").doesNotExist()));
+    }
+
+    @Test
+    void getCustomerByIdUsesOneQuery() throws Exception {
+        assertStatements(1, perform("/api/customers/" + firstCustomerId)
+                .andExpect(jsonPath("$.customerId").value(firstCustomerId)));
+    }
+
+    @Test
+    void customersPageUsesOneQuery() throws Exception {
+        assertStatements(1, perform("/api/customers/page?sort=name")
+                .andExpect(jsonPath("$.items", hasSize(CUSTOMERS))));
+    }
+
+    @Test
+    void filesForCustomerUseOwnershipAndListQueries() throws Exception {
+        assertStatements(2, perform("/files/customer/" + firstCustomerId)
+                .andExpect(jsonPath("$", hasSize(FILES_PER_CUSTOMER)))
+                .andExpect(jsonPath("$[0].filePath").doesNotExist()));
+    }
+
+    @Test
+    void filesPageUsesOwnershipAndPageQueries() throws Exception {
+        assertStatements(2, perform("/files/customer/" + firstCustomerId + "/page")
+                .andExpect(jsonPath("$.items", hasSize(FILES_PER_CUSTOMER))));
+    }
+
+    private ResultActions perform(String uri) throws Exception {
+        statistics.clear();
+        return mockMvc.perform(get(uri).header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                .andExpect(status().isOk());
+    }
+
+    private void assertStatements(long expected, ResultActions result) {
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(expected);
+    }
+}
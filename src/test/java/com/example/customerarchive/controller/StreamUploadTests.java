@@ -0,0 +1,118 @@
+package com.example.customerarchive.controller;
+
+import com.example.customerarchive.exception.PayloadTooLargeException;
+import com.example.customerarchive.model.Customer;
+import com.example.customerarchive.model.User;
+import com.example.customerarchive.repository.CustomerRepository;
+import com.example.customerarchive.repository.FileRepository;
+import com.example.customerarchive.repository.UserRepository;
+import com.example.customerarchive.security.JwtUtil;
+import com.example.customerarchive.service.FileService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:streams;MODE=MySQL;NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1",
+        "file.upload-dir=${java.io.tmpdir}/customer-archive-test/streams/",
+        "file.upload.stream.max-size=1KB"
+})
+@AutoConfigureMockMvc
+class StreamUploadTests {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private FileRepository fileRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Value("${file.upload-dir}")
+    private String uploadDir;
+
+    private String token;
+    private Long customerId;
+
+    @BeforeEach
+    void setUp() {
+        String suffix = UUID.randomUUID().toString();
+        User user = new User();
+        user.setUsername("streams-" + suffix);
+        user.setPassword("secret");
+        user.setEmail("streams-" + suffix + "@example.com");
+        userRepository.save(user);
+        token = jwtUtil.generateToken(user.getUsername());
+        Customer customer = new Customer();
+        customer.setName("Streams");
+        customer.setEmail("customer-" + suffix + "@example.com");
+        customer.setUser(user);
+        customerId = customerRepository.save(customer).getCustomerId();
+    }
+
+    @Test
+    void bodyWithinTheLimitIsStored() throws Exception {
+        mockMvc.perform(post("/files/stream/{customerId}", customerId)
+                        .param("fileName", "small.bin")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .content(new byte[1024]))
+                .andExpect(status().isOk());
+
+        assertThat(fileRepository.findByCustomerCustomerId(customerId)).hasSize(1);
+    }
+
+    @Test
+    void declaredLengthOverTheLimitIsRefusedBeforeReading() throws Exception {
+        mockMvc.perform(post("/files/stream/{customerId}", customerId)
+                        .param("fileName", "large.bin")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .content(new byte[1025]))
+                .andExpect(status().isPayloadTooLarge());
+
+        assertThat(fileRepository.findByCustomerCustomerId(customerId)).isEmpty();
+    }
+
+    @Test
+    void bodyWithoutALengthIsCutOffAtTheLimit() throws IOException {
+        // What the controller hands the service for a chunked body.
+        SizeLimitedInputStream in = new SizeLimitedInputStream(new ByteArrayInputStream(new byte[200_000]), 1024);
+
+        assertThatThrownBy(() -> fileService.addFile(customerId, in, "large.bin", "application/octet-stream"))
+                .isInstanceOf(PayloadTooLargeException.class);
+
+        assertThat(fileRepository.findByCustomerCustomerId(customerId)).isEmpty();
+        assertThat(in.available()).isPositive();
+        try (Stream<Path> incoming = Files.walk(Path.of(uploadDir))) {
+            assertThat(incoming.filter(path -> path.getFileName().toString().endsWith(".tmp"))).isEmpty();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.customerarchive.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class StoredBlobRepositoryTests {
+    private static final int UPLOADS = 8;
+
+    @Autowired
+    private StoredBlobRepository storedBlobRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void concurrentFirstUploadsOfADigestAllAddAReference() throws Exception {
+        String digest = UUID.randomUUID().toString().replace("-", "").repeat(2);
+        CyclicBarrier start = new CyclicBarrier(UPLOADS);
+        ExecutorService executor = Executors.newFixedThreadPool(UPLOADS);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < UPLOADS; i++) {
+                results.add(executor.submit(() -> transactionTemplate.execute(status -> {
+                    await(start);
+                    boolean created = storedBlobRepository.addReference(digest, 42);
+                    // Keep the row uncommitted for a moment, so the other uploads run into it.
+                    sleep(50);
+                    return created;
+                })));
+            }
+            int created = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get(30, TimeUnit.SECONDS)) {
+                    created++;
+                }
+            }
+            assertThat(created).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(storedBlobRepository.findById(digest)).get()
+                .satisfies(blob -> {
+                    assertThat(blob.getRefCount()).isEqualTo(UPLOADS);
+                    assertThat(blob.getSize()).isEqualTo(42);
+                });
+    }
+
+    private static void await(CyclicBarrier barrier) {
+        try {
+            barrier.await(10, TimeUnit.SECONDS);
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.customerarchive.security;
+
+import com.example.customerarchive.model.User;
+import com.example.customerarchive.repository.UserRepository;
+import com.example.customerarchive.service.MyUserDetailsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:jwtfilter;MODE=MySQL;NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1",
+        "file.upload-dir=${java.io.tmpdir}/customer-archive-test/jwtfilter/",
+        "security.jwt.stateless=true"
+})
+@AutoConfigureMockMvc
+class JwtRequestFilterTests {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @SpyBean
+    private UserRepository userRepository;
+
+    private String username;
+
+    @BeforeEach
+    void setUp() {
+        username = "filter-" + UUID.randomUUID();
+        User user = new User();
+        user.setUsername(username);
+        user.setPassword("secret");
+        user.setEmail(username + "@example.com");
+        userRepository.save(user);
+    }
+
+    @Test
+    void statelessRequestRunsNoUserQuery() throws Exception {
+        clearInvocations(userRepository);
+
+        mockMvc.perform(get("/api/customers/getAll")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + jwtUtil.generateToken(username)))
+                .andExpect(status().isOk());
+
+        verify(userRepository, never()).findByUsername(anyString());
+    }
+
+    @Nested
+    @TestPropertySource(properties = "security.jwt.stateless=false")
+    class WithUserLookup {
+        // The enclosing instance is injected from the stateless context; these beans come from this one.
+        @Autowired
+        private MockMvc statefulMockMvc;
+
+        @Autowired
+        private UserRepository statefulUserRepository;
+
+        @Autowired
+        private MyUserDetailsService userDetailsService;
+
+        @Test
+        void tokenForKnownUserIsAccepted() throws Exception {
+            statefulMockMvc.perform(get("/api/customers/getAll")
+                            .header(HttpHeaders.AUTHORIZATION, "Bearer " + jwtUtil.generateToken(username)))
+                    .andExpect(status().isOk());
+        }
+
+        @Test
+        void tokenForUnknownUserIsRefused() throws Exception {
+            String token = jwtUtil.generateToken("unknown-" + UUID.randomUUID());
+
+            statefulMockMvc.perform(get("/api/customers/getAll").header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                    .andExpect(status().isForbidden());
+        }
+
+        @Test
+        void registeringEvictsTheCachedUser() throws Exception {
+            // A user deleted and registered again must not be served from the details cached for the old row.
+            String reused = "reused-" + UUID.randomUUID();
+            User old = new User();
+            old.setUsername(reused);
+            old.setPassword("old-password");
+            old.setEmail(reused + "@example.com");
+            statefulUserRepository.save(old);
+            assertThat(userDetailsService.loadUserByUsername(reused).getPassword()).isEqualTo("old-password");
+            statefulUserRepository.delete(old);
+            clearInvocations(statefulUserRepository);
+
+            statefulMockMvc.perform(post("/api/auth/register")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"username\":\"" + reused + "\",\"password\":\"new-password\",\"email\":\""
+                                    + reused + "@example.com\"}"))
+                    .andExpect(status().isOk());
+
+            // One lookup for the taken-username check, one for the reload after the eviction.
+            verify(statefulUserRepository, times(2)).findByUsername(reused);
+            assertThat(userDetailsService.loadUserByUsername(reused).getPassword()).isNotEqualTo("old-password");
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.customerarchive.security;
+
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SignatureException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.SecretKey;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JwtUtilTests {
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void cachedTokenIsVerifiedOnce() {
+        JwtUtil jwtUtil = new JwtUtil(100, meterRegistry);
+        String token = jwtUtil.generateToken("alice");
+
+        assertThat(jwtUtil.extractUsername(token)).isEqualTo("alice");
+        assertThat(jwtUtil.extractUsername(token)).isEqualTo("alice");
+
+        assertThat(verifications()).isEqualTo(1);
+        assertThat(cachedTokens()).isEqualTo(1);
+    }
+
+    @Test
+    void cachedTokenIsDroppedOnceItExpires() throws InterruptedException {
+        JwtUtil jwtUtil = new JwtUtil(100, meterRegistry);
+        // The exp claim has second precision, so round up to a whole second at least a second away.
+        Date expiration = new Date((System.currentTimeMillis() / 1000 + 2) * 1000);
+        String token = token(signingKey(jwtUtil), expiration);
+        assertThat(jwtUtil.extractUsername(token)).isEqualTo("alice");
+
+        Thread.sleep(expiration.getTime() - System.currentTimeMillis() + 100);
+
+        // Served from the cache this would still succeed; verifying it again rejects the expired token.
+        assertThatThrownBy(() -> jwtUtil.extractUsername(token)).isInstanceOf(ExpiredJwtException.class);
+        assertThat(verifications()).isEqualTo(2);
+    }
+
+    @Test
+    void tokenWithBadSignatureIsNeverCached() {
+        JwtUtil jwtUtil = new JwtUtil(100, meterRegistry);
+        SecretKey otherKey = Keys.hmacShaKeyFor(new byte[32]);
+        String forged = token(otherKey, new Date(System.currentTimeMillis() + 60_000));
+
+        assertThatThrownBy(() -> jwtUtil.extractUsername(forged)).isInstanceOf(SignatureException.class);
+        assertThatThrownBy(() -> jwtUtil.extractUsername(forged)).isInstanceOf(SignatureException.class);
+
+        assertThat(verifications()).isEqualTo(2);
+        assertThat(cachedTokens()).isZero();
+    }
+
+    @Test
+    void zeroSizedCacheVerifiesEveryCall() {
+        JwtUtil jwtUtil = new JwtUtil(0, meterRegistry);
+        String token = jwtUtil.generateToken("alice");
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(jwtUtil.extractUsername(token)).isEqualTo("alice");
+        }
+
+        assertThat(verifications()).isEqualTo(5);
+    }
+
+    private long verifications() {
+        return meterRegistry.get("archive.jwt.verify").timer().count();
+    }
+
+    private double cachedTokens() {
+        return meterRegistry.get("cache.size").tag("cache", "jwt.claims").gauge().value();
+    }
+
+    private static SecretKey signingKey(JwtUtil jwtUtil) {
+        // generateToken fixes a ten hour expiry, so a short-lived token has to be signed here.
+        return (SecretKey) ReflectionTestUtils.getField(jwtUtil, "signingKey");
+    }
+
+    private static String token(SecretKey key, Date expiration) {
+        return Jwts.builder()
+                .subject("alice")
+                .issuedAt(new Date())
+                .expiration(expiration)
+                .signWith(key, Jwts.SIG.HS256)
+                .compact();
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.customerarchive.service;
+
+import com.example.customerarchive.dto.ContentSearchResultDto;
+import com.example.customerarchive.model.ContentIndexTask;
+import com.example.customerarchive.model.Customer;
+import com.example.customerarchive.model.File;
+import com.example.customerarchive.model.User;
+import com.example.customerarchive.repository.ContentIndexTaskRepository;
+import com.example.customerarchive.repository.CustomerRepository;
+import com.example.customerarchive.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:content;MODE=MySQL;NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1",
+        "file.upload-dir=${java.io.tmpdir}/customer-archive-test/content/",
+        "search.content.enabled=true",
+        "search.content.index-dir=${java.io.tmpdir}/customer-archive-test/content-index-${random.uuid}/",
+        "search.content.max-attempts=2",
+        // Retried straight away, so the worker reaches the limit in one pass.
+        "search.content.retry-delay=0s"
+})
+class ContentSearchServiceTests {
+    @Autowired
+    private ContentSearchService contentSearchService;
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private ContentIndexTaskRepository taskRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @SpyBean
+    private ContentIndex contentIndex;
+
+    private String username;
+    private Long customerId;
+
+    @BeforeEach
+    void setUp() {
+        String suffix = UUID.randomUUID().toString();
+        User user = new User();
+        user.setUsername("content-" + suffix);
+        user.setPassword("secret");
+        user.setEmail("content-" + suffix + "@example.com");
+        username = userRepository.save(user).getUsername();
+        Customer customer = new Customer();
+        customer.setName("Content");
+        customer.setEmail("customer-" + suffix + "@example.com");
+        customer.setUser(user);
+        customerId = customerRepository.save(customer).getCustomerId();
+    }
+
+    @Test
+    void taskThatKeepsFailingIsSetAsideWithoutBlockingTheQueue() throws Exception {
+        doThrow(new IOException("index unavailable")).when(contentIndex)
+                .updateFile(anyLong(), anyLong(), anyString(), eq("broken.txt"), any(), any());
+
+        Long brokenId = upload("broken.txt", "quarterly figures").getFileId();
+        upload("before.txt", "quarterly figures");
+        awaitResults("quarterly", 1);
+        upload("after.txt", "quarterly figures");
+
+        assertThat(awaitResults("quarterly", 2)).extracting(ContentSearchResultDto::getFileName)
+                .containsExactlyInAnyOrder("before.txt", "after.txt");
+        assertThat(awaitRemainingTasks(1)).singleElement().satisfies(task -> {
+            assertThat(task.getTargetId()).isEqualTo(brokenId);
+            assertThat(task.getAttempts()).isEqualTo(2);
+            assertThat(task.getFailedDate()).isNotNull();
+        });
+    }
+
+    private File upload(String fileName, String text) {
+        return fileService.addFile(customerId, new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), fileName,
+                "text/plain");
+    }
+
+    private List<ContentIndexTask> awaitRemainingTasks(int expected) throws InterruptedException {
+        // Applied tasks are deleted just after their changes become searchable.
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (taskRepository.count() > expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        return taskRepository.findAll();
+    }
+
+    private List<ContentSearchResultDto> awaitResults(String query, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        List<ContentSearchResultDto> results = contentSearchService.search(username, query, null);
+        while (results.size() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            results = contentSearchService.search(username, query, null);
+        }
+        return results;
+    }
+}
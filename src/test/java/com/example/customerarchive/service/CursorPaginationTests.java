@@ -0,0 +1,230 @@
+package com.example.customerarchive.service;
+
+import com.example.customerarchive.dto.CursorPage;
+import com.example.customerarchive.dto.CustomerDto;
+import com.example.customerarchive.dto.FileDto;
+import com.example.customerarchive.dto.PageCursor;
+import com.example.customerarchive.model.Customer;
+import com.example.customerarchive.model.File;
+import com.example.customerarchive.model.User;
+import com.example.customerarchive.repository.CustomerRepository;
+import com.example.customerarchive.repository.FileRepository;
+import com.example.customerarchive.repository.UserRepository;
+import com.example.customerarchive.security.JwtUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Pages through every sort with pages smaller than the data, including the ties the seek predicates must
+ * break by id, and checks the concatenated pages against the full ordering.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:paging;MODE=MySQL;NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1",
+        "file.upload-dir=${java.io.tmpdir}/customer-archive-test/paging/"
+})
+@AutoConfigureMockMvc
+class CursorPaginationTests {
+    private static final int PAGE_SIZE = 2;
+    // Null names sort first, and duplicate names must be ordered by id across page boundaries.
+    private static final String[] CUSTOMER_NAMES = {"Beta", null, "Acme", null, "Acme", "", "Beta", null, "Acme"};
+    private static final String[] FILE_NAMES = {"b.txt", "a.txt", "a.txt", "c.txt", "a.txt", "b.txt", "a.txt"};
+    private static final long[] UPLOAD_DATES = {
+            1_700_000_000_500L, 1_700_000_000_123L, 1_700_000_000_500L, 1_700_000_000_123L,
+            1_700_000_000_124L, 1_700_000_000_500L, 1_700_000_000_123L};
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private CustomerService customerService;
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private FileRepository fileRepository;
+
+    private String username;
+    private String token;
+    private Long customerId;
+
+    @BeforeEach
+    void setUp() {
+        String suffix = UUID.randomUUID().toString();
+        User user = new User();
+        user.setUsername("paging-" + suffix);
+        user.setPassword("secret");
+        user.setEmail("paging-" + suffix + "@example.com");
+        userRepository.save(user);
+        username = user.getUsername();
+        token = jwtUtil.generateToken(username);
+
+        for (int i = 0; i < CUSTOMER_NAMES.length; i++) {
+            Customer customer = new Customer();
+            customer.setName(CUSTOMER_NAMES[i]);
+            customer.setEmail("customer-" + i + "-" + suffix + "@example.com");
+            customer.setUser(user);
+            customerRepository.save(customer);
+            if (customerId == null) {
+                customerId = customer.getCustomerId();
+            }
+        }
+
+        Customer owner = customerRepository.findById(customerId).orElseThrow();
+        for (int i = 0; i < FILE_NAMES.length; i++) {
+            File file = new File();
+            file.setFileName(FILE_NAMES[i]);
+            file.setFileType("text/plain");
+            file.setFilePath("/tmp/paging-" + i + ".txt");
+            file.setFileSize(10L);
+            file.setUploadDate(new Date(UPLOAD_DATES[i]));
+            file.setUpdateDate(new Date(UPLOAD_DATES[i]));
+            file.setCustomer(owner);
+            fileRepository.save(file);
+        }
+    }
+
+    @Test
+    void customersByNameVisitEveryRowOnceWithNullNamesFirst() {
+        List<CustomerDto> all = customerRepository.findDtosByUsername(username);
+        List<Long> expected = all.stream()
+                .sorted(Comparator.comparing(CustomerDto::getName, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+                        .thenComparing(CustomerDto::getCustomerId))
+                .map(CustomerDto::getCustomerId)
+                .toList();
+
+        List<Long> paged = pageThrough(cursor -> customerService.getCustomersPage(username, cursor, PAGE_SIZE, "name"),
+                CustomerDto::getCustomerId);
+
+        assertThat(paged).hasSize(CUSTOMER_NAMES.length).doesNotHaveDuplicates().isEqualTo(expected);
+    }
+
+    @Test
+    void customersByDateFallBackToIdOrder() {
+        // Customers carry no timestamp, so a date sort is creation order, which is id order.
+        List<Long> expected = customerRepository.findDtosByUsername(username).stream()
+                .map(CustomerDto::getCustomerId)
+                .sorted()
+                .toList();
+
+        List<Long> paged = pageThrough(cursor -> customerService.getCustomersPage(username, cursor, PAGE_SIZE, "date"),
+                CustomerDto::getCustomerId);
+
+        assertThat(paged).hasSize(CUSTOMER_NAMES.length).doesNotHaveDuplicates().isEqualTo(expected);
+    }
+
+    @Test
+    void filesByNameVisitEveryRowOnce() {
+        List<Long> expected = fileRepository.findDtosByCustomerId(customerId).stream()
+                .sorted(Comparator.comparing(FileDto::getFileName).thenComparing(FileDto::getFileId))
+                .map(FileDto::getFileId)
+                .toList();
+
+        List<Long> paged = pageThrough(cursor -> fileService.getFilesPage(customerId, cursor, PAGE_SIZE, "name"),
+                FileDto::getFileId);
+
+        assertThat(paged).hasSize(FILE_NAMES.length).doesNotHaveDuplicates().isEqualTo(expected);
+    }
+
+    @Test
+    void filesByUploadDateVisitEveryRowOnce() {
+        List<Long> expected = fileRepository.findDtosByCustomerId(customerId).stream()
+                .sorted(Comparator.comparing((FileDto file) -> file.getUploadDate().getTime())
+                        .thenComparing(FileDto::getFileId))
+                .map(FileDto::getFileId)
+                .toList();
+
+        List<Long> paged = pageThrough(cursor -> fileService.getFilesPage(customerId, cursor, PAGE_SIZE, "date"),
+                FileDto::getFileId);
+
+        assertThat(paged).hasSize(FILE_NAMES.length).doesNotHaveDuplicates().isEqualTo(expected);
+    }
+
+    @Test
+    void cursorRoundTripsThroughItsEncoding() {
+        PageCursor cursor = PageCursor.decode(new PageCursor(42, "name:with:separators").encode());
+        assertThat(cursor.getId()).isEqualTo(42);
+        assertThat(cursor.getKey()).isEqualTo("name:with:separators");
+
+        PageCursor withoutKey = PageCursor.decode(new PageCursor(7, null).encode());
+        assertThat(withoutKey.getId()).isEqualTo(7);
+        assertThat(withoutKey.getKey()).isNull();
+
+        assertThat(PageCursor.decode(null).getId()).isZero();
+        assertThat(PageCursor.decode("").getKey()).isNull();
+    }
+
+    @Test
+    void malformedOrTamperedCursorsAreBadRequests() throws Exception {
+        List<String> cursors = List.of(
+                "not a cursor!",
+                encode("abc"),
+                encode("12x:Acme"),
+                encode("99999999999999999999"));
+        for (String cursor : cursors) {
+            for (String sort : List.of("name", "date")) {
+                mockMvc.perform(get("/api/customers/page").param("cursor", cursor).param("sort", sort)
+                                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                        .andExpect(status().isBadRequest());
+                mockMvc.perform(get("/files/customer/{customerId}/page", customerId).param("cursor", cursor)
+                                .param("sort", sort)
+                                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                        .andExpect(status().isBadRequest());
+            }
+        }
+    }
+
+    @Test
+    void tamperedUploadDateKeysAreBadRequests() throws Exception {
+        for (String key : List.of("yesterday", Long.toString(Long.MAX_VALUE), Long.toString(Long.MIN_VALUE))) {
+            mockMvc.perform(get("/files/customer/{customerId}/page", customerId)
+                            .param("cursor", new PageCursor(1, key).encode())
+                            .param("sort", "date")
+                            .header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                    .andExpect(status().isBadRequest());
+        }
+    }
+
+    private static <T> List<Long> pageThrough(Function<String, CursorPage<T>> fetch, Function<T, Long> idOf) {
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPage<T> page = fetch.apply(cursor);
+            assertThat(page.getItems()).hasSizeLessThanOrEqualTo(PAGE_SIZE);
+            page.getItems().forEach(item -> ids.add(idOf.apply(item)));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return ids;
+    }
+
+    private static String encode(String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
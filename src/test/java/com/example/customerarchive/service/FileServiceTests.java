@@ -0,0 +1,130 @@
+package com.example.customerarchive.service;
+
+import com.example.customerarchive.dto.BatchUploadResult;
+import com.example.customerarchive.model.Customer;
+import com.example.customerarchive.model.File;
+import com.example.customerarchive.model.User;
+import com.example.customerarchive.repository.CustomerRepository;
+import com.example.customerarchive.repository.FileRepository;
+import com.example.customerarchive.repository.StoredBlobRepository;
+import com.example.customerarchive.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:files;MODE=MySQL;NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1",
+        "file.upload-dir=${java.io.tmpdir}/customer-archive-test/files/",
+        // Fewer connections than concurrent uploads, so an id generator that needs a second one would hang.
+        "spring.datasource.hikari.maximum-pool-size=2",
+        "spring.datasource.hikari.connection-timeout=5000"
+})
+class FileServiceTests {
+    // Above the segment limit, so every blob goes through the storage backend.
+    private static final int BLOB_SIZE = 100_000;
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private FileRepository fileRepository;
+
+    @Autowired
+    private StoredBlobRepository storedBlobRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @SpyBean
+    private StorageBackend storageBackend;
+
+    private Long customerId;
+
+    @BeforeEach
+    void setUp() {
+        String suffix = UUID.randomUUID().toString();
+        User user = new User();
+        user.setUsername("files-" + suffix);
+        user.setPassword("secret");
+        user.setEmail("files-" + suffix + "@example.com");
+        userRepository.save(user);
+        Customer customer = new Customer();
+        customer.setName("Files");
+        customer.setEmail("customer-" + suffix + "@example.com");
+        customer.setUser(user);
+        customerId = customerRepository.save(customer).getCustomerId();
+    }
+
+    @Test
+    void batchUploadKeepsTheFilesThatCouldBeStored() throws Exception {
+        byte[] failing = randomBytes(BLOB_SIZE);
+        String failingDigest = sha256(failing);
+        doThrow(new IOException("disk full")).when(storageBackend).store(any(), eq(failingDigest), any(), any());
+        List<MultipartFile> files = List.of(
+                new MockMultipartFile("files", "first.bin", "application/octet-stream", randomBytes(BLOB_SIZE)),
+                new MockMultipartFile("files", "failing.bin", "application/octet-stream", failing),
+                new MockMultipartFile("files", "third.bin", "application/octet-stream", randomBytes(BLOB_SIZE)));
+
+        List<BatchUploadResult> results = fileService.addFiles(customerId, files);
+
+        assertThat(results).extracting(BatchUploadResult::isSuccess).containsExactly(true, false, true);
+        assertThat(results.get(1).getError()).contains("failing.bin");
+        assertThat(fileRepository.findByCustomerCustomerId(customerId)).extracting(File::getFileName)
+                .containsExactlyInAnyOrder("first.bin", "third.bin");
+        assertThat(storedBlobRepository.findById(failingDigest))
+                .hasValueSatisfying(blob -> assertThat(blob.getRefCount()).isZero());
+    }
+
+    @Test
+    void concurrentUploadsDoNotWaitForASecondConnection() {
+        // Enough uploads to use up several id blocks while all connections are taken.
+        int threads = 4;
+        int uploadsPerThread = 40;
+        List<CompletableFuture<Void>> uploads = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            uploads.add(CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < uploadsPerThread; i++) {
+                    fileService.addFile(customerId, new ByteArrayInputStream(randomBytes(1_000)), "small.bin",
+                            "application/octet-stream");
+                }
+            }));
+        }
+
+        CompletableFuture.allOf(uploads.toArray(CompletableFuture[]::new)).orTimeout(60, TimeUnit.SECONDS).join();
+
+        assertThat(fileRepository.findByCustomerCustomerId(customerId)).hasSize(threads * uploadsPerThread);
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] content = new byte[size];
+        new Random(System.nanoTime()).nextBytes(content);
+        return content;
+    }
+
+    private static String sha256(byte[] content) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+    }
+}
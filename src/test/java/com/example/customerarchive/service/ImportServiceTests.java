@@ -0,0 +1,114 @@
+package com.example.customerarchive.service;
+
+import com.example.customerarchive.model.Customer;
+import com.example.customerarchive.model.File;
+import com.example.customerarchive.model.ImportJob;
+import com.example.customerarchive.model.ImportStatus;
+import com.example.customerarchive.model.User;
+import com.example.customerarchive.repository.CustomerRepository;
+import com.example.customerarchive.repository.FileRepository;
+import com.example.customerarchive.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:imports;MODE=MySQL;NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1",
+        "file.upload-dir=${java.io.tmpdir}/customer-archive-test/imports/"
+})
+class ImportServiceTests {
+    // Above the segment limit, so every blob goes through the storage backend.
+    private static final int BLOB_SIZE = 100_000;
+
+    @Autowired
+    private ImportService importService;
+
+    @Autowired
+    private FileRepository fileRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @SpyBean
+    private StorageBackend storageBackend;
+
+    private String username;
+    private Long customerId;
+
+    @BeforeEach
+    void setUp() {
+        String suffix = UUID.randomUUID().toString();
+        User user = new User();
+        user.setUsername("imports-" + suffix);
+        user.setPassword("secret");
+        user.setEmail("imports-" + suffix + "@example.com");
+        username = userRepository.save(user).getUsername();
+        Customer customer = new Customer();
+        customer.setName("Imports");
+        customer.setEmail("customer-" + suffix + "@example.com");
+        customer.setUser(user);
+        customerId = customerRepository.save(customer).getCustomerId();
+    }
+
+    @Test
+    void entryThatCannotBeStoredIsCountedAsFailed() throws Exception {
+        byte[] failing = randomBytes();
+        doThrow(new IOException("disk full")).when(storageBackend).store(any(), eq(sha256(failing)), any(), any());
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("first.bin", randomBytes());
+        entries.put("failing.bin", failing);
+        entries.put("third.bin", randomBytes());
+
+        ImportJob job = importService.importArchive(new ByteArrayInputStream(zip(entries)), customerId, null, username);
+
+        assertThat(job.getStatus()).isEqualTo(ImportStatus.COMPLETED);
+        assertThat(job.getImportedFiles()).isEqualTo(2);
+        assertThat(job.getFailedEntries()).isEqualTo(1);
+        assertThat(fileRepository.findByCustomerCustomerId(customerId)).extracting(File::getFileName)
+                .containsExactlyInAnyOrder("first.bin", "third.bin");
+    }
+
+    private static byte[] zip(Map<String, byte[]> entries) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                zip.putNextEntry(new ZipEntry(entry.getKey()));
+                zip.write(entry.getValue());
+                zip.closeEntry();
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] randomBytes() {
+        byte[] content = new byte[BLOB_SIZE];
+        new Random(System.nanoTime()).nextBytes(content);
+        return content;
+    }
+
+    private static String sha256(byte[] content) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+    }
+}
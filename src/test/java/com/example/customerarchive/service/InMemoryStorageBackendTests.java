@@ -0,0 +1,81 @@
+package com.example.customerarchive.service;
+
+import com.example.customerarchive.model.Customer;
+import com.example.customerarchive.model.File;
+import com.example.customerarchive.model.User;
+import com.example.customerarchive.repository.CustomerRepository;
+import com.example.customerarchive.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:memory;MODE=MySQL;NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1",
+        "file.upload-dir=${java.io.tmpdir}/customer-archive-test/memory/",
+        "file.storage.backend=memory"
+})
+class InMemoryStorageBackendTests {
+    @Autowired
+    private StorageBackend storageBackend;
+
+    @Autowired
+    private StorageReclaimer storageReclaimer;
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    private Long customerId;
+
+    @BeforeEach
+    void setUp() {
+        String suffix = UUID.randomUUID().toString();
+        User user = new User();
+        user.setUsername("memory-" + suffix);
+        user.setPassword("secret");
+        user.setEmail("memory-" + suffix + "@example.com");
+        userRepository.save(user);
+        Customer customer = new Customer();
+        customer.setName("Memory");
+        customer.setEmail("customer-" + suffix + "@example.com");
+        customer.setUser(user);
+        customerId = customerRepository.save(customer).getCustomerId();
+    }
+
+    @Test
+    void blobIsKeptOnTheHeapUntilItsFileIsDeleted() throws Exception {
+        byte[] content = new byte[100_000];
+        new Random(System.nanoTime()).nextBytes(content);
+
+        File file = fileService.addFile(customerId, new ByteArrayInputStream(content), "heap.bin", "application/octet-stream");
+
+        assertThat(storageBackend).isInstanceOf(InMemoryStorageBackend.class);
+        assertThat(file.getStorageRoot()).isEqualTo(InMemoryStorageBackend.ROOT);
+        assertThat(Path.of(file.getFilePath())).doesNotExist();
+        try (InputStream in = fileStorageService.loadFileAsResource(file).getInputStream()) {
+            assertThat(in.readAllBytes()).isEqualTo(content);
+        }
+
+        fileService.deleteFile(file.getFileId());
+        storageReclaimer.reclaimPending();
+
+        assertThat(storageBackend.findRoot(file.getChecksum(), file.getCodec())).isNull();
+    }
+}
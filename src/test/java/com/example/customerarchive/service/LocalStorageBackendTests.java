@@ -0,0 +1,75 @@
+package com.example.customerarchive.service;
+
+import com.example.customerarchive.model.StorageCodec;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LocalStorageBackendTests {
+    private static final String DIGEST = "ab".repeat(32);
+
+    @TempDir
+    private Path temp;
+
+    @Test
+    void newBlobGoesToTheRootWithFewerWritesInFlight() throws Exception {
+        Path first = temp.resolve("first");
+        Path second = temp.resolve("second");
+        LocalStorageBackend backend = backend(List.of(first, second), DataSize.ofBytes(0));
+
+        try (StorageBackend.Write write = backend.beginWrite(first.toString())) {
+            // Both roots share a file system, so the write in flight decides.
+            assertThat(backend.selectRoot(1_000)).isEqualTo(second.toString());
+            assertThat(backend.selectRoot(1_000)).isEqualTo(second.toString());
+        }
+        try (StorageBackend.Write write = backend.beginWrite(second.toString())) {
+            assertThat(backend.selectRoot(1_000)).isEqualTo(first.toString());
+        }
+    }
+
+    @Test
+    void rootsBelowTheReserveStillGetTheBlobWhenNoneHasRoom() throws Exception {
+        Path first = temp.resolve("first");
+        Path second = temp.resolve("second");
+        LocalStorageBackend backend = backend(List.of(first, second), DataSize.ofTerabytes(1_000_000));
+
+        assertThat(backend.selectRoot(1_000)).isIn(first.toString(), second.toString());
+    }
+
+    @Test
+    void blobIsFoundOnWhicheverRootOrUploadDirHoldsIt() throws Exception {
+        Path first = temp.resolve("first");
+        Path second = temp.resolve("second");
+        LocalStorageBackend backend = backend(List.of(first, second), DataSize.ofBytes(0));
+        assertThat(backend.directories()).containsExactly(first, second, temp.resolve("uploads"));
+        assertThat(backend.findRoot(DIGEST, StorageCodec.IDENTITY)).isNull();
+
+        // A blob stored before roots existed lives under upload-dir, which is not a root here.
+        Path legacy = backend.blobPath(null, DIGEST, StorageCodec.IDENTITY);
+        Files.createDirectories(legacy.getParent());
+        Files.writeString(legacy, "legacy");
+        assertThat(backend.findRoot(DIGEST, StorageCodec.IDENTITY)).isEqualTo(temp.resolve("uploads").toString());
+
+        Path staged = Files.writeString(temp.resolve("staged"), "stored");
+        backend.store(second.toString(), DIGEST, StorageCodec.GZIP, staged);
+        assertThat(backend.findRoot(DIGEST, StorageCodec.GZIP)).isEqualTo(second.toString());
+        assertThat(Files.readString(backend.blobPath(second.toString(), DIGEST, StorageCodec.GZIP))).isEqualTo("stored");
+
+        backend.delete(DIGEST, StorageCodec.IDENTITY);
+        assertThat(backend.findRoot(DIGEST, StorageCodec.IDENTITY)).isNull();
+        assertThat(backend.findRoot(DIGEST, StorageCodec.GZIP)).isEqualTo(second.toString());
+    }
+
+    private LocalStorageBackend backend(List<Path> roots, DataSize minFreeSpace) throws Exception {
+        StorageLayout storageLayout = new StorageLayout(temp.resolve("uploads").toString(), 2, 2);
+        return new LocalStorageBackend(storageLayout, new SimpleMeterRegistry(),
+                roots.stream().map(Path::toString).toList(), minFreeSpace);
+    }
+}
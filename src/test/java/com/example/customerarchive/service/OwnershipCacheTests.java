@@ -0,0 +1,44 @@
+package com.example.customerarchive.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OwnershipCacheTests {
+    @Test
+    void evictingACustomerDropsOnlyItsFiles() {
+        OwnershipCache cache = new OwnershipCache(1_000);
+        AtomicInteger loads = new AtomicInteger();
+        cache.getFileOwner(1L, id -> load(loads, 10L));
+        cache.getFileOwner(2L, id -> load(loads, 10L));
+        cache.getFileOwner(3L, id -> load(loads, 20L));
+
+        cache.evictCustomer(10L);
+
+        cache.getFileOwner(1L, id -> load(loads, 10L));
+        cache.getFileOwner(2L, id -> load(loads, 10L));
+        cache.getFileOwner(3L, id -> load(loads, 20L));
+        assertThat(loads).hasValue(5);
+    }
+
+    @Test
+    void fileEvictedOnItsOwnIsLoadedAgainAfterItsCustomerIsEvicted() {
+        OwnershipCache cache = new OwnershipCache(1_000);
+        AtomicInteger loads = new AtomicInteger();
+        cache.getFileOwner(1L, id -> load(loads, 10L));
+        cache.evictFile(1L);
+        cache.getFileOwner(1L, id -> load(loads, 10L));
+
+        cache.evictCustomer(10L);
+
+        cache.getFileOwner(1L, id -> load(loads, 10L));
+        assertThat(loads).hasValue(3);
+    }
+
+    private static OwnershipCache.FileOwner load(AtomicInteger loads, Long customerId) {
+        loads.incrementAndGet();
+        return new OwnershipCache.FileOwner(customerId, "owner-" + customerId);
+    }
+}
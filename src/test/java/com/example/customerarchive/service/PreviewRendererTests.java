@@ -0,0 +1,48 @@
+package com.example.customerarchive.service;
+
+import com.example.customerarchive.model.StorageCodec;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PreviewRendererTests {
+    @TempDir
+    Path directory;
+
+    @Test
+    void imageIsScaledToFitThePreviewSize() throws IOException {
+        PreviewRenderer renderer = new PreviewRenderer(256, 0.8f, DataSize.ofMegabytes(50), 100_000_000);
+
+        BufferedImage preview = renderer.render(png(1000, 500), StorageCodec.IDENTITY, "image/png");
+
+        assertThat(preview.getWidth()).isEqualTo(256);
+        assertThat(preview.getHeight()).isEqualTo(128);
+    }
+
+    @Test
+    void imageWithMorePixelsThanTheLimitIsNotDecoded() throws IOException {
+        PreviewRenderer renderer = new PreviewRenderer(256, 0.8f, DataSize.ofMegabytes(50), 400_000);
+
+        assertThat(renderer.render(png(1000, 500), StorageCodec.IDENTITY, "image/png")).isNull();
+    }
+
+    @Test
+    void blobAboveTheSizeLimitIsSkipped() throws IOException {
+        PreviewRenderer renderer = new PreviewRenderer(256, 0.8f, DataSize.ofBytes(100), 100_000_000);
+
+        assertThat(renderer.render(png(1000, 500), StorageCodec.IDENTITY, "image/png")).isNull();
+    }
+
+    private BlobContent png(int width, int height) throws IOException {
+        Path path = directory.resolve(width + "x" + height + ".png");
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", path.toFile());
+        return BlobContent.of(path);
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.customerarchive.service;
+
+import com.example.customerarchive.dto.SearchResultDto;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SearchIndexTests {
+    private final SearchIndex index = new SearchIndex(3);
+
+    @Test
+    void wholeWordsRankAbovePrefixesAndPrefixesAboveTypos() {
+        index.customerSaved("alice", 1L, "Report", null);
+        index.customerSaved("alice", 2L, "Reports", null);
+        index.customerSaved("alice", 3L, "Repotr", null);
+        index.customerSaved("alice", 4L, "Unrelated", null);
+
+        assertThat(index.search("alice", "report", 10)).extracting(SearchResultDto::getCustomerId)
+                .containsExactly(1L, 2L, 3L);
+    }
+
+    @Test
+    void nameMatchesRankAboveEmailMatchesAndEveryTermMustMatch() {
+        index.customerSaved("alice", 1L, "Someone", "berlin@example.com");
+        index.customerSaved("alice", 2L, "Berlin Office", "office@example.com");
+        index.fileSaved(2L, 10L, "berlin-contract.pdf", "application/pdf");
+
+        assertThat(index.search("alice", "berlin", 10)).extracting(SearchResultDto::getName)
+                .containsExactly("Berlin Office", "berlin-contract.pdf", "Someone");
+        assertThat(index.search("alice", "berlin office", 10)).extracting(SearchResultDto::getCustomerId)
+                .containsExactly(2L);
+    }
+
+    @Test
+    void searchOnlySeesTheUsersOwnPartition() {
+        index.customerSaved("alice", 1L, "Shared Name", null);
+        index.customerSaved("bob", 2L, "Shared Name", null);
+
+        assertThat(index.search("alice", "shared", 10)).extracting(SearchResultDto::getCustomerId).containsExactly(1L);
+        assertThat(index.search("carol", "shared", 10)).isEmpty();
+    }
+
+    @Test
+    void deletedFilesAndCustomersAreNoLongerFound() {
+        index.customerSaved("alice", 1L, "Acme", null);
+        index.fileSaved(1L, 10L, "invoice.pdf", "application/pdf");
+        index.fileSaved(1L, 11L, "invoice-copy.pdf", "application/pdf");
+
+        index.fileDeleted(10L);
+        assertThat(index.search("alice", "invoice", 10)).extracting(SearchResultDto::getFileId).containsExactly(11L);
+
+        index.customerDeleted(1L);
+        assertThat(index.search("alice", "invoice", 10)).isEmpty();
+        assertThat(index.search("alice", "acme", 10)).isEmpty();
+    }
+
+    @Test
+    void liveFileOfACustomerNotLoadedYetIsPickedUpByTheRebuild() {
+        index.beginRebuild();
+        // Committed after the rebuild started but before it reached the customer.
+        index.fileSaved(1L, 10L, "contract.pdf", "application/pdf");
+        index.loadCustomer("alice", 1L, "Acme", null);
+        index.loadFile(1L, 10L, "contract.pdf", "application/pdf");
+        index.endRebuild();
+
+        assertThat(index.search("alice", "contract", 10)).extracting(SearchResultDto::getFileId).containsExactly(10L);
+    }
+
+    @Test
+    void liveChangesDuringARebuildWinOverTheRowsItReads() {
+        index.beginRebuild();
+        index.loadCustomer("alice", 1L, "Acme", null);
+        index.fileSaved(1L, 10L, "renamed.pdf", "application/pdf");
+        index.fileSaved(1L, 11L, "deleted.pdf", "application/pdf");
+        index.fileDeleted(11L);
+        // The rebuild read these rows before the changes above committed.
+        index.loadFile(1L, 10L, "original.pdf", "application/pdf");
+        index.loadFile(1L, 11L, "deleted.pdf", "application/pdf");
+        index.endRebuild();
+
+        assertThat(index.search("alice", "renamed", 10)).extracting(SearchResultDto::getFileId).containsExactly(10L);
+        assertThat(index.search("alice", "original", 10)).isEmpty();
+        assertThat(index.search("alice", "deleted", 10)).isEmpty();
+    }
+}
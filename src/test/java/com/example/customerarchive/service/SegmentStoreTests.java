@@ -0,0 +1,167 @@
+package com.example.customerarchive.service;
+
+import com.example.customerarchive.model.StorageCodec;
+import com.example.customerarchive.repository.PackedBlobRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:segments;MODE=MySQL;NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1",
+        "file.upload-dir=${java.io.tmpdir}/customer-archive-test/segments/"
+})
+class SegmentStoreTests {
+    private static final int BLOB_SIZE = 1024;
+
+    @Autowired
+    private StorageBackend storageBackend;
+
+    @Autowired
+    private PackedBlobRepository packedBlobRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @TempDir
+    Path root;
+
+    private final Random random = new Random();
+
+    @BeforeEach
+    void setUp() {
+        // Every store in these tests numbers its segments from 1, and compaction reads usage from the whole table.
+        packedBlobRepository.deleteAll();
+    }
+
+    @Test
+    void blobsInTheOpenSegmentAreReadWithoutMappingIt() throws IOException {
+        SegmentStore store = newStore(DataSize.ofKilobytes(8));
+        List<String> digests = new ArrayList<>();
+        List<byte[]> contents = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            byte[] content = randomBytes();
+            digests.add(append(store, content));
+            contents.add(content);
+            // Read straight after each append, while the segment is still growing.
+            assertThat(read(store, digests.get(i))).isEqualTo(content);
+        }
+        assertThat(store.mappedSegments()).isEmpty();
+
+        // The ninth blob does not fit, so segment 1 is sealed and read through one mapping from now on.
+        byte[] ninth = randomBytes();
+        String ninthDigest = append(store, ninth);
+        for (int i = 0; i < digests.size(); i++) {
+            assertThat(read(store, digests.get(i))).isEqualTo(contents.get(i));
+        }
+        assertThat(read(store, ninthDigest)).isEqualTo(ninth);
+        assertThat(store.mappedSegments()).containsExactly(1);
+        store.destroy();
+    }
+
+    @Test
+    void compactionRelocatesLiveBlobsAndDeletesTheOldSegmentOnTheNextRun() throws IOException {
+        SegmentStore store = newStore(DataSize.ofKilobytes(4));
+        byte[] survivor = randomBytes();
+        String survivorDigest = append(store, survivor);
+        List<String> dead = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            dead.add(append(store, randomBytes()));
+        }
+        // Segment 1 is full, so this rolls to segment 2 and seals segment 1.
+        append(store, randomBytes());
+        for (String digest : dead) {
+            transactionTemplate.executeWithoutResult(status -> store.discard(digest));
+        }
+
+        store.compact();
+        assertThat(packedBlobRepository.findById(survivorDigest).orElseThrow().getSegmentId()).isEqualTo(2);
+        assertThat(read(store, survivorDigest)).isEqualTo(survivor);
+        // Readers that looked up the old location before the relocation committed can still finish.
+        assertThat(segmentPath(1)).exists();
+
+        store.compact();
+        assertThat(segmentPath(1)).doesNotExist();
+        assertThat(store.mappedSegments()).isEmpty();
+        assertThat(read(store, survivorDigest)).isEqualTo(survivor);
+        store.destroy();
+    }
+
+    @Test
+    void idOfAnEmptySegmentDeletedAfterARestartIsReusedSafely() throws IOException {
+        SegmentStore first = newStore(DataSize.ofKilobytes(64));
+        byte[] sealed = randomBytes();
+        String sealedDigest = append(first, sealed);
+        first.destroy();
+
+        // The segment the previous process was appending to ends up holding nothing live.
+        SegmentStore second = newStore(DataSize.ofKilobytes(64));
+        String abandoned = append(second, randomBytes());
+        assertThat(packedBlobRepository.findById(abandoned).orElseThrow().getSegmentId()).isEqualTo(2);
+        transactionTemplate.executeWithoutResult(status -> second.discard(abandoned));
+        second.destroy();
+
+        SegmentStore third = newStore(DataSize.ofKilobytes(64));
+        third.compact();
+        assertThat(segmentPath(1)).exists();
+        assertThat(segmentPath(2)).doesNotExist();
+        third.destroy();
+
+        // The next process starts after the highest remaining segment and so opens segment 2 again.
+        SegmentStore fourth = newStore(DataSize.ofKilobytes(64));
+        byte[] reused = randomBytes();
+        String reusedDigest = append(fourth, reused);
+        assertThat(packedBlobRepository.findById(reusedDigest).orElseThrow().getSegmentId()).isEqualTo(2);
+        assertThat(read(fourth, reusedDigest)).isEqualTo(reused);
+        assertThat(read(fourth, sealedDigest)).isEqualTo(sealed);
+        fourth.destroy();
+    }
+
+    private SegmentStore newStore(DataSize segmentSize) throws IOException {
+        return new SegmentStore(new StorageLayout(root.toString(), 2, 2), storageBackend, packedBlobRepository,
+                transactionTemplate, new SimpleMeterRegistry(), true, DataSize.ofBytes(BLOB_SIZE), segmentSize, 0.5);
+    }
+
+    private String append(SegmentStore store, byte[] content) throws IOException {
+        String digest = HexFormat.of().formatHex(randomBytes(32));
+        Path source = Files.write(root.resolve(digest + ".staged"), content);
+        store.append(digest, StorageCodec.IDENTITY, source);
+        Files.delete(source);
+        return digest;
+    }
+
+    private static byte[] read(SegmentStore store, String digest) throws IOException {
+        try (InputStream in = store.open(digest, StorageCodec.IDENTITY).openStream()) {
+            return in.readAllBytes();
+        }
+    }
+
+    private Path segmentPath(int segmentId) {
+        return root.resolve(".segments").resolve(String.format("%010d.seg", segmentId));
+    }
+
+    private byte[] randomBytes() {
+        return randomBytes(BLOB_SIZE);
+    }
+
+    private byte[] randomBytes(int size) {
+        byte[] content = new byte[size];
+        random.nextBytes(content);
+        return content;
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.customerarchive.service;
+
+import com.example.customerarchive.model.Customer;
+import com.example.customerarchive.model.File;
+import com.example.customerarchive.model.MigrationCursor;
+import com.example.customerarchive.model.StorageCodec;
+import com.example.customerarchive.model.User;
+import com.example.customerarchive.repository.CustomerRepository;
+import com.example.customerarchive.repository.FileRepository;
+import com.example.customerarchive.repository.MigrationCursorRepository;
+import com.example.customerarchive.repository.ReclaimTaskRepository;
+import com.example.customerarchive.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:migrate;MODE=MySQL;NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1",
+        "file.upload-dir=${java.io.tmpdir}/customer-archive-test/migrate/",
+        "file.storage.migration.enabled=true",
+        "file.storage.migration.batch-size=2",
+        "file.storage.migration.pause-ms=0",
+        "file.storage.migration.delete-delay=0s"
+})
+class StorageLayoutMigratorTests {
+    @Autowired
+    private StorageLayoutMigrator storageLayoutMigrator;
+
+    @Autowired
+    private StorageReclaimer storageReclaimer;
+
+    @Autowired
+    private StorageLayout storageLayout;
+
+    @Autowired
+    private MigrationCursorRepository cursorRepository;
+
+    @Autowired
+    private ReclaimTaskRepository reclaimTaskRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @SpyBean
+    private FileRepository fileRepository;
+
+    private Customer customer;
+
+    @BeforeEach
+    void setUp() {
+        String suffix = UUID.randomUUID().toString();
+        User user = new User();
+        user.setUsername("migrate-" + suffix);
+        user.setPassword("secret");
+        user.setEmail("migrate-" + suffix + "@example.com");
+        userRepository.save(user);
+        customer = new Customer();
+        customer.setName("Migrate");
+        customer.setEmail("customer-" + suffix + "@example.com");
+        customer.setUser(user);
+        customer = customerRepository.save(customer);
+    }
+
+    @Test
+    void oldPathsAreQueuedForDeletionAndTheNextRunResumesAtTheCursor() throws Exception {
+        List<Path> legacyPaths = new ArrayList<>();
+        List<Long> fileIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Path legacyPath = Files.writeString(storageLayout.getRoot().resolve("legacy-" + UUID.randomUUID() + ".txt"),
+                    "legacy " + i);
+            legacyPaths.add(legacyPath);
+            fileIds.add(legacyFile(legacyPath).getFileId());
+        }
+        long lastFileId = fileIds.get(fileIds.size() - 1);
+
+        storageLayoutMigrator.migrate();
+
+        for (Long fileId : fileIds) {
+            File file = fileRepository.findById(fileId).orElseThrow();
+            assertThat(Path.of(file.getFilePath()))
+                    .isEqualTo(storageLayout.blobPath(file.getChecksum(), StorageCodec.IDENTITY))
+                    .exists();
+        }
+        assertThat(cursorRepository.findAll()).extracting(MigrationCursor::getLastFileId).containsExactly(lastFileId);
+        // Nothing is deleted by the migration itself, and the deletes survive a restart as rows.
+        assertThat(legacyPaths).allMatch(Files::exists);
+        assertThat(reclaimTaskRepository.count()).isEqualTo(3);
+        assertThat(storageLayoutMigrator.isSettled()).isFalse();
+
+        storageReclaimer.reclaimPending();
+        assertThat(legacyPaths).noneMatch(Files::exists);
+
+        Mockito.clearInvocations(fileRepository);
+        storageLayoutMigrator.migrate();
+        verify(fileRepository).findByFileIdGreaterThanOrderByFileIdAsc(eq(lastFileId), any());
+        verify(fileRepository, never()).findByFileIdGreaterThanOrderByFileIdAsc(eq(0L), any());
+        assertThat(storageLayoutMigrator.isSettled()).isTrue();
+    }
+
+    private File legacyFile(Path path) throws Exception {
+        // Stored before content addressing: only the path is known.
+        File file = new File();
+        file.setFileName(path.getFileName().toString());
+        file.setFilePath(path.toString());
+        file.setFileType("text/plain");
+        file.setFileSize(Files.size(path));
+        file.setUploadDate(new Date());
+        file.setUpdateDate(new Date());
+        file.setCustomer(customer);
+        return fileRepository.save(file);
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.customerarchive.service;
+
+import com.example.customerarchive.model.Customer;
+import com.example.customerarchive.model.File;
+import com.example.customerarchive.model.StorageCodec;
+import com.example.customerarchive.model.User;
+import com.example.customerarchive.repository.CustomerRepository;
+import com.example.customerarchive.repository.ReclaimTaskRepository;
+import com.example.customerarchive.repository.StoredBlobRepository;
+import com.example.customerarchive.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:reclaim;MODE=MySQL;NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1",
+        "file.upload-dir=${java.io.tmpdir}/customer-archive-test/reclaim/"
+})
+class StorageReclaimerTests {
+    // Above the segment limit, so every blob gets a file of its own.
+    private static final int BLOB_SIZE = 100_000;
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private StorageReclaimer storageReclaimer;
+
+    @Autowired
+    private StorageLayout storageLayout;
+
+    @Autowired
+    private StoredBlobRepository storedBlobRepository;
+
+    @Autowired
+    private ReclaimTaskRepository reclaimTaskRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Long customerId;
+
+    @BeforeEach
+    void setUp() {
+        String suffix = UUID.randomUUID().toString();
+        User user = new User();
+        user.setUsername("reclaim-" + suffix);
+        user.setPassword("secret");
+        user.setEmail("reclaim-" + suffix + "@example.com");
+        userRepository.save(user);
+        Customer customer = new Customer();
+        customer.setName("Reclaim");
+        customer.setEmail("customer-" + suffix + "@example.com");
+        customer.setUser(user);
+        customerId = customerRepository.save(customer).getCustomerId();
+    }
+
+    @Test
+    void sharedBlobIsKeptUntilItsLastFileIsDeleted() throws Exception {
+        byte[] content = randomBytes(1);
+        File first = upload(content, "first.bin");
+        File second = upload(content, "second.bin");
+        Path blobPath = storageLayout.blobPath(first.getChecksum(), StorageCodec.IDENTITY);
+        assertThat(second.getFilePath()).isEqualTo(first.getFilePath());
+
+        fileService.deleteFile(first.getFileId());
+        storageReclaimer.reclaimPending();
+        assertThat(blobPath).exists();
+        assertThat(storedBlobRepository.findById(first.getChecksum())).get()
+                .extracting(blob -> blob.getRefCount()).isEqualTo(1L);
+
+        fileService.deleteFile(second.getFileId());
+        assertThat(blobPath).exists();
+        storageReclaimer.reclaimPending();
+        assertThat(blobPath).doesNotExist();
+        assertThat(storedBlobRepository.existsById(first.getChecksum())).isFalse();
+        assertThat(reclaimTaskRepository.count()).isZero();
+    }
+
+    @Test
+    void orphanBlobWithoutRowIsDeleted() throws Exception {
+        byte[] content = randomBytes(2);
+        String digest = sha256(content);
+        Path blobPath = writeBlob(digest, content);
+
+        storageReclaimer.reclaimBlob(digest, null);
+        storageReclaimer.reclaimPending();
+
+        assertThat(blobPath).doesNotExist();
+        // The placeholder that locked the digest is gone with the bytes.
+        assertThat(storedBlobRepository.existsById(digest)).isFalse();
+    }
+
+    @Test
+    void uploadRacingTheReclaimKeepsTheBlob() throws Exception {
+        byte[] content = randomBytes(3);
+        String digest = sha256(content);
+        Path blobPath = writeBlob(digest, content);
+        storageReclaimer.reclaimBlob(digest, null);
+
+        // An upload of the same content has inserted the blob's row but not committed yet.
+        CountDownLatch inserted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> upload = CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(status -> {
+            storedBlobRepository.addReference(digest, content.length);
+            storedBlobRepository.flush();
+            inserted.countDown();
+            await(release);
+        }));
+        assertThat(inserted.await(10, TimeUnit.SECONDS)).isTrue();
+
+        // The reclaimer's placeholder insert waits on the upload's row, then loses to it.
+        CompletableFuture<Void> reclaim = CompletableFuture.runAsync(storageReclaimer::reclaimPending);
+        Thread.sleep(300);
+        release.countDown();
+        upload.get(10, TimeUnit.SECONDS);
+        reclaim.get(10, TimeUnit.SECONDS);
+
+        assertThat(blobPath).exists();
+        assertThat(storedBlobRepository.findById(digest)).get()
+                .extracting(blob -> blob.getRefCount()).isEqualTo(1L);
+    }
+
+    private File upload(byte[] content, String fileName) {
+        return fileService.addFile(customerId, new ByteArrayInputStream(content), fileName, "application/octet-stream");
+    }
+
+    private Path writeBlob(String digest, byte[] content) throws Exception {
+        Path blobPath = storageLayout.blobPath(digest, StorageCodec.IDENTITY);
+        Files.createDirectories(blobPath.getParent());
+        Files.write(blobPath, content);
+        return blobPath;
+    }
+
+    private static byte[] randomBytes(long seed) {
+        byte[] content = new byte[BLOB_SIZE];
+        new Random(seed ^ System.nanoTime()).nextBytes(content);
+        return content;
+    }
+
+    private static String sha256(byte[] content) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
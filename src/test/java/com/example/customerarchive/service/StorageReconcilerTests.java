@@ -0,0 +1,144 @@
+package com.example.customerarchive.service;
+
+import com.example.customerarchive.model.Customer;
+import com.example.customerarchive.model.File;
+import com.example.customerarchive.model.StorageCodec;
+import com.example.customerarchive.model.User;
+import com.example.customerarchive.repository.CustomerRepository;
+import com.example.customerarchive.repository.FileRepository;
+import com.example.customerarchive.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:reconcile;MODE=MySQL;NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1",
+        "file.upload-dir=" + StorageReconcilerTests.UPLOAD_DIR,
+        "file.reconcile.enabled=true",
+        "file.reconcile.clean=true",
+        "file.reconcile.grace-period=0s",
+        "file.reconcile.pause-ms=0"
+})
+class StorageReconcilerTests {
+    static final String UPLOAD_DIR = "${java.io.tmpdir}/customer-archive-test/reconcile/";
+
+    @Autowired
+    private StorageReconciler storageReconciler;
+
+    @Autowired
+    private StorageReclaimer storageReclaimer;
+
+    @Autowired
+    private StorageLayout storageLayout;
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private FileRepository fileRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Blobs left by an earlier run have no rows in the fresh in-memory database and would count as orphans.
+     * Runs before the application context creates the directory.
+     */
+    @BeforeAll
+    static void emptyUploadDir() throws Exception {
+        Path directory = Path.of(System.getProperty("java.io.tmpdir"), "customer-archive-test", "reconcile");
+        if (Files.exists(directory)) {
+            try (Stream<Path> paths = Files.walk(directory)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    @Test
+    void cleanModeRemovesFindingsAndKeepsLiveFiles() throws Exception {
+        Long customerId = newCustomer();
+        File large = upload(customerId, randomBytes(100_000), "large.bin");
+        File small = upload(customerId, randomBytes(1_000), "small.bin");
+        File lost = upload(customerId, randomBytes(100_000), "lost.bin");
+        Files.delete(Path.of(lost.getFilePath()));
+
+        byte[] orphanContent = randomBytes(100_000);
+        Path orphanBlob = storageLayout.blobPath(sha256(orphanContent), StorageCodec.IDENTITY);
+        Files.createDirectories(orphanBlob.getParent());
+        Files.write(orphanBlob, orphanContent);
+        Path strayFile = Files.writeString(storageLayout.getRoot().resolve("stray-" + UUID.randomUUID() + ".txt"), "stray");
+        Path staleUpload = Files.createTempFile(storageLayout.getRoot().resolve(".incoming"), "upload-", ".tmp");
+        double before = findings("orphan_blob") + findings("dangling_row") + findings("orphan_file") + findings("temp_file");
+
+        storageReconciler.reconcile();
+        storageReclaimer.reclaimPending();
+
+        assertThat(fileRepository.existsById(lost.getFileId())).isFalse();
+        assertThat(orphanBlob).doesNotExist();
+        assertThat(strayFile).doesNotExist();
+        assertThat(staleUpload).doesNotExist();
+        double after = findings("orphan_blob") + findings("dangling_row") + findings("orphan_file") + findings("temp_file");
+        assertThat(after - before).isEqualTo(4);
+
+        // Packed and stand-alone blobs that rows point at are left alone.
+        assertThat(fileRepository.existsById(large.getFileId())).isTrue();
+        assertThat(fileRepository.existsById(small.getFileId())).isTrue();
+        assertThat(Path.of(large.getFilePath())).exists();
+        try (var in = fileService.loadFileAsResource(small.getFileId()).getInputStream()) {
+            assertThat(in.readAllBytes()).hasSize(1_000);
+        }
+    }
+
+    private double findings(String kind) {
+        var counter = meterRegistry.find("archive.storage.reconcile.findings").tag("kind", kind).counter();
+        return counter != null ? counter.count() : 0;
+    }
+
+    private Long newCustomer() {
+        String suffix = UUID.randomUUID().toString();
+        User user = new User();
+        user.setUsername("reconcile-" + suffix);
+        user.setPassword("secret");
+        user.setEmail("reconcile-" + suffix + "@example.com");
+        userRepository.save(user);
+        Customer customer = new Customer();
+        customer.setName("Reconcile");
+        customer.setEmail("customer-" + suffix + "@example.com");
+        customer.setUser(user);
+        return customerRepository.save(customer).getCustomerId();
+    }
+
+    private File upload(Long customerId, byte[] content, String fileName) {
+        return fileService.addFile(customerId, new ByteArrayInputStream(content), fileName, "application/octet-stream");
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] content = new byte[size];
+        new Random(System.nanoTime()).nextBytes(content);
+        return content;
+    }
+
+    private static String sha256(byte[] content) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+    }
+}
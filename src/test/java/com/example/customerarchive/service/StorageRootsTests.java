@@ -0,0 +1,163 @@
+package com.example.customerarchive.service;
+
+import com.example.customerarchive.dto.UploadSessionRequestDto;
+import com.example.customerarchive.model.Customer;
+import com.example.customerarchive.model.File;
+import com.example.customerarchive.model.StorageCodec;
+import com.example.customerarchive.model.User;
+import com.example.customerarchive.repository.CustomerRepository;
+import com.example.customerarchive.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:roots;MODE=MySQL;NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1",
+        "file.upload-dir=" + StorageRootsTests.BASE_DIR + "uploads/",
+        "file.storage.roots=" + StorageRootsTests.BASE_DIR + "first," + StorageRootsTests.BASE_DIR + "second",
+        "file.storage.min-free-space=0",
+        "file.reconcile.enabled=true",
+        "file.reconcile.clean=true",
+        "file.reconcile.grace-period=0s",
+        "file.reconcile.pause-ms=0"
+})
+class StorageRootsTests {
+    static final String BASE_DIR = "${java.io.tmpdir}/customer-archive-test/roots/";
+
+    @Autowired
+    private StorageBackend storageBackend;
+
+    @Autowired
+    private StorageReconciler storageReconciler;
+
+    @Autowired
+    private StorageReclaimer storageReclaimer;
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private UploadSessionService uploadSessionService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private String username;
+    private Long customerId;
+
+    /**
+     * Blobs left by an earlier run have no rows in the fresh in-memory database and would count as orphans.
+     */
+    @BeforeAll
+    static void emptyRoots() throws Exception {
+        Path directory = Path.of(System.getProperty("java.io.tmpdir"), "customer-archive-test", "roots");
+        if (Files.exists(directory)) {
+            try (Stream<Path> paths = Files.walk(directory)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        String suffix = UUID.randomUUID().toString();
+        User user = new User();
+        user.setUsername("roots-" + suffix);
+        user.setPassword("secret");
+        user.setEmail("roots-" + suffix + "@example.com");
+        username = userRepository.save(user).getUsername();
+        Customer customer = new Customer();
+        customer.setName("Roots");
+        customer.setEmail("customer-" + suffix + "@example.com");
+        customer.setUser(user);
+        customerId = customerRepository.save(customer).getCustomerId();
+    }
+
+    @Test
+    void reconcilerWalksEveryRoot() throws Exception {
+        File live = fileService.addFile(customerId, new ByteArrayInputStream(randomBytes(100_000)), "live.bin",
+                "application/octet-stream");
+        Path firstOrphan = writeOrphan(storageBackend.directories().get(0));
+        Path secondOrphan = writeOrphan(storageBackend.directories().get(1));
+        double before = findings("orphan_blob");
+
+        storageReconciler.reconcile();
+        storageReclaimer.reclaimPending();
+
+        assertThat(findings("orphan_blob") - before).isEqualTo(2);
+        assertThat(firstOrphan).doesNotExist();
+        assertThat(secondOrphan).doesNotExist();
+        assertThat(Path.of(live.getFilePath())).exists();
+    }
+
+    @Test
+    void resumableUploadIsWrittenOnTheRootItIsStoredOn() throws Exception {
+        byte[] content = randomBytes(300 * 1024);
+        UploadSessionRequestDto request = new UploadSessionRequestDto();
+        request.setFileName("resumable.bin");
+        request.setSize((long) content.length);
+        request.setChunkSize(content.length);
+        String uploadId = uploadSessionService.createSession(customerId, request, username).getUploadId();
+        Path part = null;
+        for (Path directory : storageBackend.directories()) {
+            Path candidate = directory.resolve(".incoming").resolve("sessions").resolve(uploadId + ".part");
+            if (Files.exists(candidate)) {
+                part = candidate;
+            }
+        }
+        assertThat(part).isNotNull();
+        Path root = part.getParent().getParent().getParent();
+        assertThat(root.toString()).isIn(storageBackend.directories().get(0).toString(), storageBackend.directories().get(1).toString());
+
+        uploadSessionService.writeChunk(uploadId, 0, new ByteArrayInputStream(content), content.length, null, username);
+        File file = uploadSessionService.commitSession(uploadId, username);
+
+        assertThat(file.getStorageRoot()).isEqualTo(root.toString());
+        assertThat(Path.of(file.getFilePath())).startsWith(root).hasBinaryContent(content);
+        assertThat(part).doesNotExist();
+    }
+
+    private Path writeOrphan(Path root) throws Exception {
+        byte[] content = randomBytes(100_000);
+        Path blob = storageBackend.blobPath(root.toString(), sha256(content), StorageCodec.IDENTITY);
+        Files.createDirectories(blob.getParent());
+        Files.write(blob, content);
+        return blob;
+    }
+
+    private double findings(String kind) {
+        var counter = meterRegistry.find("archive.storage.reconcile.findings").tag("kind", kind).counter();
+        return counter != null ? counter.count() : 0;
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] content = new byte[size];
+        new Random(System.nanoTime()).nextBytes(content);
+        return content;
+    }
+
+    private static String sha256(byte[] content) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+    }
+}
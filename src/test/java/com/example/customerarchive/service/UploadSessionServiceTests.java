@@ -0,0 +1,207 @@
+package com.example.customerarchive.service;
+
+import com.example.customerarchive.dto.UploadSessionDto;
+import com.example.customerarchive.dto.UploadSessionRequestDto;
+import com.example.customerarchive.exception.BadRequestException;
+import com.example.customerarchive.model.Customer;
+import com.example.customerarchive.model.File;
+import com.example.customerarchive.model.UploadStatus;
+import com.example.customerarchive.model.User;
+import com.example.customerarchive.repository.CustomerRepository;
+import com.example.customerarchive.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:uploads;MODE=MySQL;NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1",
+        "file.upload-dir=${java.io.tmpdir}/customer-archive-test/uploads-resumable/"
+})
+class UploadSessionServiceTests {
+    private static final int CHUNK_SIZE = 256 * 1024;
+
+    @Autowired
+    private UploadSessionService uploadSessionService;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    private String username;
+    private Long customerId;
+
+    @BeforeEach
+    void setUp() {
+        String suffix = UUID.randomUUID().toString();
+        User user = new User();
+        user.setUsername("uploads-" + suffix);
+        user.setPassword("secret");
+        user.setEmail("uploads-" + suffix + "@example.com");
+        username = userRepository.save(user).getUsername();
+        Customer customer = new Customer();
+        customer.setName("Uploads");
+        customer.setEmail("customer-" + suffix + "@example.com");
+        customer.setUser(user);
+        customerId = customerRepository.save(customer).getCustomerId();
+    }
+
+    @Test
+    void interruptedUploadIsResumedWithTheMissingChunks() throws Exception {
+        byte[] content = randomBytes(2 * CHUNK_SIZE + 1000);
+        String uploadId = createSession(content);
+        writeChunk(uploadId, content, 0);
+        writeChunk(uploadId, content, 2);
+
+        UploadSessionDto session = uploadSessionService.getSession(uploadId, username);
+        assertThat(session.getReceivedChunks()).isEqualTo(2);
+        assertThat(session.getReceivedRanges()).extracting(UploadSessionDto.ByteRange::getStart)
+                .containsExactly(0L, 2L * CHUNK_SIZE);
+
+        writeChunk(uploadId, content, 1);
+        File file = uploadSessionService.commitSession(uploadId, username);
+
+        assertThat(readContent(file)).isEqualTo(content);
+    }
+
+    @Test
+    void chunkSentTwiceIsRecordedOnce() throws Exception {
+        byte[] content = randomBytes(CHUNK_SIZE + 1000);
+        String uploadId = createSession(content);
+        writeChunk(uploadId, content, 0);
+        writeChunk(uploadId, content, 0);
+        writeChunk(uploadId, content, 1);
+
+        assertThat(uploadSessionService.getSession(uploadId, username).getReceivedChunks()).isEqualTo(2);
+        assertThat(readContent(uploadSessionService.commitSession(uploadId, username))).isEqualTo(content);
+    }
+
+    @Test
+    void commitWithMissingChunksIsRejected() {
+        byte[] content = randomBytes(2 * CHUNK_SIZE);
+        String uploadId = createSession(content);
+        writeChunk(uploadId, content, 1);
+
+        assertThatThrownBy(() -> uploadSessionService.commitSession(uploadId, username))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessageContaining("missing 1 of 2 chunks");
+        assertThat(uploadSessionService.getSession(uploadId, username).getStatus()).isEqualTo(UploadStatus.UPLOADING);
+    }
+
+    @Test
+    void commitWaitsForAChunkBeingWritten() throws Exception {
+        byte[] content = randomBytes(2 * CHUNK_SIZE);
+        String uploadId = createSession(content);
+        writeChunk(uploadId, content, 0);
+        writeChunk(uploadId, content, 1);
+
+        // Chunk 0 is sent again with different bytes and stalls halfway, after the commit has been requested.
+        byte[] rewritten = content.clone();
+        Arrays.fill(rewritten, 0, CHUNK_SIZE, (byte) 7);
+        CountDownLatch halfWritten = new CountDownLatch(1);
+        CountDownLatch resume = new CountDownLatch(1);
+        InputStream stalling = new StallingInputStream(new ByteArrayInputStream(rewritten, 0, CHUNK_SIZE),
+                CHUNK_SIZE / 2, halfWritten, resume);
+        CompletableFuture<Void> write = CompletableFuture.runAsync(() ->
+                uploadSessionService.writeChunk(uploadId, 0, stalling, CHUNK_SIZE, null, username));
+        assertThat(halfWritten.await(10, TimeUnit.SECONDS)).isTrue();
+
+        CompletableFuture<File> commit = CompletableFuture.supplyAsync(() -> uploadSessionService.commitSession(uploadId, username));
+        Thread.sleep(300);
+        assertThat(commit).isNotDone();
+
+        resume.countDown();
+        write.get(10, TimeUnit.SECONDS);
+        File file = commit.get(10, TimeUnit.SECONDS);
+
+        // The file was hashed after the write finished, so its checksum covers the bytes that were stored.
+        assertThat(readContent(file)).isEqualTo(rewritten);
+        assertThat(file.getChecksum()).isEqualTo(sha256(rewritten));
+    }
+
+    private String createSession(byte[] content) {
+        UploadSessionRequestDto request = new UploadSessionRequestDto();
+        request.setFileName("resumable.bin");
+        request.setSize((long) content.length);
+        request.setChunkSize(CHUNK_SIZE);
+        return uploadSessionService.createSession(customerId, request, username).getUploadId();
+    }
+
+    private void writeChunk(String uploadId, byte[] content, int index) {
+        int offset = index * CHUNK_SIZE;
+        int length = Math.min(CHUNK_SIZE, content.length - offset);
+        uploadSessionService.writeChunk(uploadId, index, new ByteArrayInputStream(content, offset, length), length, null, username);
+    }
+
+    private byte[] readContent(File file) throws IOException {
+        try (InputStream in = fileStorageService.loadFileAsResource(file).getInputStream()) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] content = new byte[size];
+        new Random(System.nanoTime()).nextBytes(content);
+        return content;
+    }
+
+    private static String sha256(byte[] content) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+    }
+
+    /**
+     * Signals once {@code pauseAt} bytes have been read and then waits to be resumed.
+     */
+    private static class StallingInputStream extends FilterInputStream {
+        private final long pauseAt;
+        private final CountDownLatch paused;
+        private final CountDownLatch resume;
+        private long read;
+
+        StallingInputStream(InputStream in, long pauseAt, CountDownLatch paused, CountDownLatch resume) {
+            super(in);
+            this.pauseAt = pauseAt;
+            this.paused = paused;
+            this.resume = resume;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (read >= pauseAt && paused.getCount() > 0) {
+                paused.countDown();
+                try {
+                    resume.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            int limit = read < pauseAt ? (int) Math.min(len, pauseAt - read) : len;
+            int n = super.read(b, off, limit);
+            if (n > 0) {
+                read += n;
+            }
+            return n;
+        }
+    }
+}